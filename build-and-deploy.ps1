@@ -1,6 +1,10 @@
 # Build and Deploy Script for Tech Challenge Feedback System
 # Autor: Tech Challenge FIAP - Fase 4
 # Descrição: Compila todos os módulos Lambda e faz deploy com AWS SAM
+#
+# Variáveis de ambiente:
+#   MAILTRAP_TOKEN  token da API do Mailtrap (obrigatório para o deploy), repassado ao parâmetro
+#                   MailtrapToken do template; ex.: $env:MAILTRAP_TOKEN = "xxxx"; .\build-and-deploy.ps1
 
 param(
     [switch]$SkipTests,
@@ -21,6 +25,12 @@ function Test-CommandExists {
     return $?
 }
 
+# O deploy exige o token: falha antes do build em vez de no meio do sam deploy
+if (-not $BuildOnly -and [string]::IsNullOrEmpty($env:MAILTRAP_TOKEN)) {
+    Write-Host "❌ MAILTRAP_TOKEN não definido! Defina o token da API do Mailtrap antes do deploy." -ForegroundColor Red
+    exit 1
+}
+
 # Verificar pré-requisitos
 if (-not (Test-CommandExists "mvn")) {
     Write-Host "❌ Maven não encontrado! Instale o Maven primeiro." -ForegroundColor Red
@@ -76,7 +86,7 @@ if ($LASTEXITCODE -ne 0) {
 
 Write-Host ""
 Write-Host "🚀 Iniciando deploy..." -ForegroundColor Cyan
-sam deploy --no-confirm-changeset --no-fail-on-empty-changeset
+sam deploy --no-confirm-changeset --no-fail-on-empty-changeset --parameter-overrides "MailtrapToken=$env:MAILTRAP_TOKEN"
 
 if ($LASTEXITCODE -ne 0) {
     Write-Host ""
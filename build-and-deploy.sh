@@ -2,6 +2,10 @@
 # Build and Deploy Script for Tech Challenge Feedback System
 # Autor: Tech Challenge FIAP - Fase 4
 # Descrição: Compila todos os módulos Lambda e faz deploy com AWS SAM
+#
+# Variáveis de ambiente:
+#   MAILTRAP_TOKEN  token da API do Mailtrap (obrigatório para o deploy), repassado ao parâmetro
+#                   MailtrapToken do template; ex.: MAILTRAP_TOKEN=xxxx ./build-and-deploy.sh
 
 set -e
 
@@ -44,6 +48,12 @@ echo -e "${CYAN}🚀 Tech Challenge - Build & Deploy Script${NC}"
 echo -e "${CYAN}===========================================${NC}"
 echo ""
 
+# O deploy exige o token: falha antes do build em vez de no meio do sam deploy
+if [ "$BUILD_ONLY" = false ] && [ -z "$MAILTRAP_TOKEN" ]; then
+    echo -e "${RED}❌ MAILTRAP_TOKEN não definido! Exporte o token da API do Mailtrap antes do deploy.${NC}"
+    exit 1
+fi
+
 # Verificar se Maven está instalado
 if ! command -v mvn &> /dev/null; then
     echo -e "${RED}❌ Maven não encontrado! Instale o Maven primeiro.${NC}"
@@ -88,7 +98,8 @@ sam build
 
 echo ""
 echo -e "${CYAN}🚀 Iniciando deploy...${NC}"
-sam deploy --no-confirm-changeset --no-fail-on-empty-changeset
+sam deploy --no-confirm-changeset --no-fail-on-empty-changeset \
+    --parameter-overrides "MailtrapToken=$MAILTRAP_TOKEN"
 
 echo ""
 echo -e "${GREEN}✅ Deploy concluído com sucesso!${NC}"
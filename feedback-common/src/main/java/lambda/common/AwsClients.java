@@ -0,0 +1,127 @@
+package lambda.common;
+
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.awscore.client.builder.AwsAsyncClientBuilder;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.awscore.client.builder.AwsSyncClientBuilder;
+import software.amazon.awssdk.core.SdkClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Fábrica única dos clientes do SDK usados pelas Lambdas. Cada cliente é criado uma vez por container
+ * (memoizado pelo nome do serviço e pela classe do customizer, ou seja, por ponto de chamada: dois módulos
+ * que ajustam o mesmo serviço de formas diferentes recebem clientes diferentes) com a mesma configuração:
+ * <ul>
+ *   <li>UrlConnectionHttpClient no lugar do Apache HTTP, que pesa bem menos no cold start;</li>
+ *   <li>região de AWS_REGION e credenciais das variáveis de ambiente do Lambda, sem percorrer as cadeias padrão;</li>
+ *   <li>timeouts de conexão, socket, tentativa e chamada, ajustáveis por serviço ({@code <SERVICO>_CONNECT_TIMEOUT_MS} etc.);</li>
+ *   <li>endpoint local opcional via {@code <SERVICO>_ENDPOINT} (ex.: DYNAMODB_ENDPOINT, S3_ENDPOINT) ou AWS_ENDPOINT_URL.</li>
+ * </ul>
+ * As conexões são reaproveitadas pelo keep-alive do HttpURLConnection (até 5 ociosas por host, padrão da JDK).
+ * O UrlConnectionHttpClient não expõe limite de conexões no builder, e a fábrica não altera propriedades
+ * globais da JVM (como http.maxConnections) que valeriam para todo HTTP do processo.
+ */
+public final class AwsClients {
+
+    private static final ConcurrentMap<String, SdkClient> CLIENTS = new ConcurrentHashMap<>();
+
+    private AwsClients() {
+    }
+
+    public static <B extends AwsClientBuilder<B, C> & AwsSyncClientBuilder<B, C>, C extends SdkClient> C sync(
+            String service, Supplier<B> builder) {
+        return sync(service, builder, b -> { });
+    }
+
+    /**
+     * @param service    prefixo das variáveis de ambiente do serviço, ex.: "DYNAMODB", "S3"
+     * @param customizer ajustes específicos do serviço, aplicados depois da configuração comum; entra na chave
+     *                   do cache pela classe, então não deve depender de estado capturado que mude entre chamadas
+     */
+    @SuppressWarnings("unchecked")
+    public static <B extends AwsClientBuilder<B, C> & AwsSyncClientBuilder<B, C>, C extends SdkClient> C sync(
+            String service, Supplier<B> builder, Consumer<B> customizer) {
+        return (C) CLIENTS.computeIfAbsent(service + "#" + customizer.getClass().getName(), key -> {
+            B b = configure(service, builder.get());
+            b.httpClientBuilder(UrlConnectionHttpClient.builder()
+                    .connectionTimeout(timeout(service, "CONNECT_TIMEOUT_MS", 1000))
+                    .socketTimeout(timeout(service, "SOCKET_TIMEOUT_MS", 2000)));
+            customizer.accept(b);
+            return b.build();
+        });
+    }
+
+    /**
+     * Variante assíncrona; o HTTP client (ex.: AWS CRT) fica a cargo do módulo, que é quem declara a dependência.
+     * A chave inclui a implementação do HTTP client, como a do customizer no {@link #sync}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <B extends AwsClientBuilder<B, C> & AwsAsyncClientBuilder<B, C>, C extends SdkClient> C async(
+            String service, Supplier<B> builder, SdkAsyncHttpClient.Builder<?> httpClient) {
+        return (C) CLIENTS.computeIfAbsent(service + "#async#" + httpClient.getClass().getName(), key -> {
+            B b = configure(service, builder.get());
+            b.httpClientBuilder(httpClient);
+            return b.build();
+        });
+    }
+
+    /** {@code <SERVICO>_CLIENT_MODE=async} escolhe o cliente assíncrono. */
+    public static boolean asyncMode(String service) {
+        return "async".equalsIgnoreCase(System.getenv(service + "_CLIENT_MODE"));
+    }
+
+    public static Region region() {
+        String region = System.getenv("AWS_REGION");
+        if (region == null || region.isEmpty()) {
+            region = System.getProperty("aws.region", "us-east-1");
+        }
+        return Region.of(region);
+    }
+
+    /** Endpoint local configurado para o serviço, ou null para o endpoint da AWS. */
+    public static String endpoint(String service) {
+        String endpoint = System.getenv(service + "_ENDPOINT");
+        if (endpoint == null || endpoint.isEmpty()) {
+            endpoint = System.getenv("AWS_ENDPOINT_URL");
+        }
+        return endpoint == null || endpoint.isEmpty() ? null : endpoint;
+    }
+
+    public static Duration timeout(String service, String name, int defaultMillis) {
+        String value = System.getenv(service + "_" + name);
+        if (value == null || value.isEmpty()) {
+            value = System.getenv("AWS_CLIENT_" + name);
+        }
+        return Duration.ofMillis(value != null && !value.isEmpty() ? Long.parseLong(value) : defaultMillis);
+    }
+
+    public static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static <B extends AwsClientBuilder<B, C>, C> B configure(String service, B builder) {
+        builder.region(region());
+        // Com SnapStart as credenciais não vêm por variável de ambiente: fica a cadeia padrão (container provider)
+        if (System.getenv("AWS_ACCESS_KEY_ID") != null) {
+            builder.credentialsProvider(EnvironmentVariableCredentialsProvider.create());
+        }
+        String endpoint = endpoint(service);
+        if (endpoint != null) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        builder.overrideConfiguration(config -> config
+                .apiCallAttemptTimeout(timeout(service, "ATTEMPT_TIMEOUT_MS", 2000))
+                .apiCallTimeout(timeout(service, "CALL_TIMEOUT_MS", 8000)));
+        return builder;
+    }
+}
@@ -0,0 +1,83 @@
+package lambda.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Serializa um item do DynamoDB no formato JSON do próprio DynamoDB ({"rating":{"N":"5"}}), para trafegar
+ * itens já montados em mensagens (ex.: fila de ingestão). Cobre os tipos usados pela tabela: S, N, B, BOOL e NULL.
+ *
+ * Depende de dynamodb e jackson-databind, declarados como opcionais: o módulo que usa esta classe declara os dois.
+ */
+public final class ItemJson {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private ItemJson() {
+    }
+
+    public static String write(Map<String, AttributeValue> item) {
+        ObjectNode root = MAPPER.createObjectNode();
+        item.forEach((name, value) -> {
+            ObjectNode node = root.putObject(name);
+            if (value.s() != null) {
+                node.put("S", value.s());
+            } else if (value.n() != null) {
+                node.put("N", value.n());
+            } else if (value.b() != null) {
+                node.put("B", Base64.getEncoder().encodeToString(value.b().asByteArrayUnsafe()));
+            } else if (value.bool() != null) {
+                node.put("BOOL", value.bool());
+            } else if (Boolean.TRUE.equals(value.nul())) {
+                node.put("NULL", true);
+            } else {
+                throw new IllegalArgumentException("Tipo não suportado no atributo " + name);
+            }
+        });
+        return root.toString();
+    }
+
+    public static Map<String, AttributeValue> read(String json) {
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Item JSON inválido", e);
+        }
+        if (root == null || !root.isObject()) {
+            throw new IllegalArgumentException("Item JSON inválido");
+        }
+
+        Map<String, AttributeValue> item = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode node = field.getValue();
+            AttributeValue value;
+            if (node.hasNonNull("S")) {
+                value = AttributeValue.builder().s(node.get("S").asText()).build();
+            } else if (node.hasNonNull("N")) {
+                value = AttributeValue.builder().n(node.get("N").asText()).build();
+            } else if (node.hasNonNull("B")) {
+                value = AttributeValue.builder().b(SdkBytes.fromByteArrayUnsafe(Base64.getDecoder().decode(node.get("B").asText()))).build();
+            } else if (node.hasNonNull("BOOL")) {
+                value = AttributeValue.builder().bool(node.get("BOOL").asBoolean()).build();
+            } else if (node.hasNonNull("NULL")) {
+                value = AttributeValue.builder().nul(true).build();
+            } else {
+                throw new IllegalArgumentException("Tipo não suportado no atributo " + field.getKey());
+            }
+            item.put(field.getKey(), value);
+        }
+        return item;
+    }
+}
@@ -0,0 +1,227 @@
+package lambda.common;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sketch KLL (Karnin, Lang e Liberty) para quantis aproximados (ex.: p10/p50/p90 das notas) com memória
+ * limitada por k: o nível h guarda itens de peso 2^h e, quando enche, é ordenado e metade dos itens
+ * (pares ou ímpares, ao acaso) sobe para o nível seguinte. Com k = 200 o erro de rank fica em torno de 1%
+ * e o sketch ocupa poucos KB, independentemente de quantos valores recebeu. Sketches são combinados
+ * nível a nível ({@link #merge}), o que permite somar os dias de uma semana.
+ *
+ * Serialização ({@link #toBytes}): {@code [versão][k][n][min][max][níveis]} e, por nível, a quantidade e os
+ * valores em float.
+ */
+public final class KllSketch {
+
+    public static final int DEFAULT_K = 200;
+
+    private static final byte VERSION = 1;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private final int k;
+    private final List<float[]> levels = new ArrayList<>();
+    private final List<Integer> sizes = new ArrayList<>();
+    private long count;
+    private float min = Float.NaN;
+    private float max = Float.NaN;
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    public KllSketch(int k) {
+        if (k < 8 || k > 65535) {
+            throw new IllegalArgumentException("k do KLL fora de 8..65535: " + k);
+        }
+        this.k = k;
+        addLevel();
+    }
+
+    public void update(float value) {
+        if (Float.isNaN(value)) {
+            return;
+        }
+        min = count == 0 || value < min ? value : min;
+        max = count == 0 || value > max ? value : max;
+        count++;
+        append(0, value);
+        compress();
+    }
+
+    public void merge(KllSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        min = count == 0 || other.min < min ? other.min : min;
+        max = count == 0 || other.max > max ? other.max : max;
+        count += other.count;
+        for (int h = 0; h < other.levels.size(); h++) {
+            while (levels.size() <= h) {
+                addLevel();
+            }
+            float[] items = other.levels.get(h);
+            for (int i = 0; i < other.sizes.get(h); i++) {
+                append(h, items[i]);
+            }
+        }
+        compress();
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @param rank entre 0 e 1 (0,5 = mediana)
+     * @return o menor valor cujo rank acumulado alcança {@code rank}; NaN se o sketch está vazio
+     */
+    public float quantile(double rank) {
+        if (count == 0) {
+            return Float.NaN;
+        }
+        if (rank <= 0) {
+            return min;
+        }
+        if (rank >= 1) {
+            return max;
+        }
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        float[] values = new float[total];
+        long[] weights = new long[total];
+        long[] order = new long[total];
+        int position = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            float[] items = levels.get(h);
+            for (int i = 0; i < sizes.get(h); i++) {
+                values[position] = items[i];
+                weights[position] = 1L << h;
+                position++;
+            }
+        }
+        // Ordena índices pelo valor sem criar objetos por item
+        Integer[] indexes = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, (a, b) -> Float.compare(values[a], values[b]));
+        long totalWeight = 0;
+        for (int i = 0; i < total; i++) {
+            totalWeight += weights[indexes[i]];
+            order[i] = totalWeight;
+        }
+        double target = rank * totalWeight;
+        for (int i = 0; i < total; i++) {
+            if (order[i] >= target) {
+                return values[indexes[i]];
+            }
+        }
+        return max;
+    }
+
+    public byte[] toBytes() {
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 2 + 8 + 4 + 4 + 1 + levels.size() * 2 + total * 4);
+        buffer.put(VERSION).putShort((short) k).putLong(count).putFloat(min).putFloat(max).put((byte) levels.size());
+        for (int h = 0; h < levels.size(); h++) {
+            int size = sizes.get(h);
+            buffer.putShort((short) size);
+            float[] items = levels.get(h);
+            for (int i = 0; i < size; i++) {
+                buffer.putFloat(items[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static KllSketch fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Versão de KLL desconhecida: " + version);
+        }
+        KllSketch sketch = new KllSketch(buffer.getShort() & 0xFFFF);
+        sketch.count = buffer.getLong();
+        sketch.min = buffer.getFloat();
+        sketch.max = buffer.getFloat();
+        int levelCount = buffer.get();
+        for (int h = 0; h < levelCount; h++) {
+            while (sketch.levels.size() <= h) {
+                sketch.addLevel();
+            }
+            int size = buffer.getShort() & 0xFFFF;
+            for (int i = 0; i < size; i++) {
+                sketch.append(h, buffer.getFloat());
+            }
+        }
+        return sketch;
+    }
+
+    // Capacidade do nível h: os níveis mais altos guardam k itens e os mais baixos decaem em 2/3 por nível
+    private int capacity(int h) {
+        int depth = levels.size() - h - 1;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void addLevel() {
+        levels.add(new float[MIN_CAPACITY]);
+        sizes.add(0);
+    }
+
+    private void append(int h, float value) {
+        float[] items = levels.get(h);
+        int size = sizes.get(h);
+        if (size == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+            levels.set(h, items);
+        }
+        items[size] = value;
+        sizes.set(h, size + 1);
+    }
+
+    private void compress() {
+        boolean compacted = true;
+        while (compacted) {
+            compacted = false;
+            for (int h = 0; h < levels.size(); h++) {
+                if (sizes.get(h) >= capacity(h)) {
+                    if (h + 1 == levels.size()) {
+                        addLevel();
+                    }
+                    compact(h);
+                    compacted = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    // Ordena o nível e promove os itens de uma das paridades; um item ímpar que sobra permanece no nível
+    private void compact(int h) {
+        float[] items = levels.get(h);
+        int size = sizes.get(h);
+        Arrays.sort(items, 0, size);
+        int offset = ThreadLocalRandom.current().nextInt(2);
+        int pairs = size / 2;
+        for (int i = 0; i < pairs; i++) {
+            append(h + 1, items[2 * i + offset]);
+        }
+        if (size % 2 == 1) {
+            items[0] = items[size - 1];
+            sizes.set(h, 1);
+        } else {
+            sizes.set(h, 0);
+        }
+    }
+}
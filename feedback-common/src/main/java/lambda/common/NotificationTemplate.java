@@ -0,0 +1,155 @@
+package lambda.common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Template de notificação compilado uma única vez em uma lista de segmentos (texto literal ou variável
+ * {@code {{nome}}}), para que renderizar seja só concatenar: sem reinterpretar o formato a cada chamada, como
+ * acontece com {@code String.formatted}. Os valores são escapados conforme {@link Escaping}: em templates
+ * JSON as variáveis ficam dentro de strings JSON e aspas, barras e quebras de linha do conteúdo não quebram
+ * o payload.
+ *
+ * {@link #render} usa um StringBuilder por thread, reaproveitado entre renderizações.
+ */
+public final class NotificationTemplate {
+
+    public enum Escaping {
+        /** Conteúdo de string JSON: escapa aspas, barra invertida e caracteres de controle */
+        JSON,
+        /** Texto puro, sem escape */
+        NONE
+    }
+
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Literal (slot < 0) ou variável, pelo índice em variables()
+    private record Segment(String literal, int slot) {}
+
+    private final Segment[] segments;
+    private final List<String> variables;
+    private final Escaping escaping;
+
+    private NotificationTemplate(Segment[] segments, List<String> variables, Escaping escaping) {
+        this.segments = segments;
+        this.variables = variables;
+        this.escaping = escaping;
+    }
+
+    public static NotificationTemplate compile(String source, Escaping escaping) {
+        List<Segment> segments = new ArrayList<>();
+        Map<String, Integer> slotByName = new LinkedHashMap<>();
+        int position = 0;
+        while (position < source.length()) {
+            int open = source.indexOf("{{", position);
+            if (open < 0) {
+                segments.add(new Segment(source.substring(position), -1));
+                break;
+            }
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) {
+                throw new IllegalArgumentException("Variável sem fechamento na posição " + open);
+            }
+            String name = source.substring(open + 2, close).trim();
+            if (name.isEmpty() || !name.chars().allMatch(c -> Character.isLetterOrDigit(c) || c == '_')) {
+                throw new IllegalArgumentException("Nome de variável inválido na posição " + open + ": '" + name + "'");
+            }
+            if (open > position) {
+                segments.add(new Segment(source.substring(position, open), -1));
+            }
+            segments.add(new Segment(null, slotByName.computeIfAbsent(name, unused -> slotByName.size())));
+            position = close + 2;
+        }
+        return new NotificationTemplate(segments.toArray(Segment[]::new), List.copyOf(slotByName.keySet()), escaping);
+    }
+
+    public List<String> variables() {
+        return variables;
+    }
+
+    /**
+     * Renderiza no buffer da thread e devolve o texto.
+     * @throws IllegalArgumentException se faltar alguma variável em {@code values}; null vira "null"
+     */
+    public String render(Map<String, ?> values) {
+        return render(slots(values));
+    }
+
+    /**
+     * Variante sem mapa para o caminho quente: os valores vêm na ordem de {@link #variables()}.
+     */
+    public String render(Object... values) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        String result = renderTo(buffer, values).toString();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return result;
+    }
+
+    public StringBuilder renderTo(StringBuilder out, Map<String, ?> values) {
+        return renderTo(out, slots(values));
+    }
+
+    public StringBuilder renderTo(StringBuilder out, Object... values) {
+        if (values.length != variables.size()) {
+            throw new IllegalArgumentException("Esperados " + variables.size() + " valores " + variables + ", recebidos " + values.length);
+        }
+        for (Segment segment : segments) {
+            if (segment.slot() < 0) {
+                out.append(segment.literal());
+            } else if (escaping == Escaping.JSON) {
+                appendJsonEscaped(out, String.valueOf(values[segment.slot()]));
+            } else {
+                out.append(values[segment.slot()]);
+            }
+        }
+        return out;
+    }
+
+    private Object[] slots(Map<String, ?> values) {
+        Object[] slots = new Object[variables.size()];
+        for (int i = 0; i < slots.length; i++) {
+            String name = variables.get(i);
+            if (!values.containsKey(name)) {
+                throw new IllegalArgumentException("Variável sem valor: " + name);
+            }
+            slots[i] = values.get(name);
+        }
+        return slots;
+    }
+
+    // Copia trechos sem escape de uma vez e escapa só os caracteres que exigem
+    static void appendJsonEscaped(StringBuilder out, String value) {
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.append(value, start, i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                case '\b' -> out.append("\\b");
+                case '\f' -> out.append("\\f");
+                default -> out.append("\\u00").append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        if (start == 0) {
+            out.append(value);
+        } else {
+            out.append(value, start, length);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package lambda.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Templates de notificação por tipo de evento, compilados na primeira consulta e mantidos pelo container
+ * (o priming das funções os compila antes do snapshot). Os payloads do Mailtrap são JSON; o corpo do
+ * relatório semanal, enviado pelo SES, é texto puro.
+ */
+public final class NotificationTemplates {
+
+    /** Alerta de feedback crítico (um e-mail por feedback) */
+    public static final String CRITICAL_ALERT = "FeedbackCreated";
+    /** Resumo do modo digest: um e-mail por janela e categoria */
+    public static final String CRITICAL_DIGEST = "CriticalDigest";
+    /** Linha de um feedback no resumo, em texto; o resultado entra escapado em {@link #CRITICAL_DIGEST} */
+    public static final String CRITICAL_DIGEST_ITEM = "CriticalDigestItem";
+    /** Corpo do e-mail do relatório semanal */
+    public static final String WEEKLY_REPORT = "WeeklyReport";
+
+    private record Source(String text, NotificationTemplate.Escaping escaping) {}
+
+    private static final Map<String, Source> SOURCES = Map.of(
+            CRITICAL_ALERT, new Source("""
+                    {"from":{"email":"hello@demomailtrap.co","name":"TechChallenge"},\
+                    "to":[{"email":"{{to}}"}],\
+                    "subject":"🚨 Feedback Recebido",\
+                    "text":"ID: {{feedbackId}}\\nNome: {{fullName}}\\nCategoria: {{category}}\\nComentario: {{comment}}\\nNota: {{rating}}\\nData: {{sentAt}}",\
+                    "category":"Feedback Alert"}""", NotificationTemplate.Escaping.JSON),
+            CRITICAL_DIGEST, new Source("""
+                    {"from":{"email":"hello@demomailtrap.co","name":"TechChallenge"},\
+                    "to":[{"email":"{{to}}"}],\
+                    "subject":"🚨 {{count}} feedbacks críticos - {{category}}{{partSuffix}}",\
+                    "text":"Janela: {{windowStart}} a {{windowEnd}}\\nCategoria: {{category}}\\nFeedbacks críticos: {{count}}{{partDetail}}\\n\\n{{items}}",\
+                    "category":"Feedback Digest"}""", NotificationTemplate.Escaping.JSON),
+            CRITICAL_DIGEST_ITEM, new Source(
+                    "ID: {{feedbackId}} | Nome: {{fullName}} | Nota: {{rating}} | Comentario: {{comment}}\n",
+                    NotificationTemplate.Escaping.NONE),
+            WEEKLY_REPORT, new Source("""
+                    {{report}}
+
+                    --
+                    Relatório {{reportKey}} gerado automaticamente pelo TechChallenge Feedback.
+                    """, NotificationTemplate.Escaping.NONE)
+    );
+
+    private static final Map<String, NotificationTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private NotificationTemplates() {
+    }
+
+    /** @throws IllegalArgumentException se não houver template para o tipo de evento */
+    public static NotificationTemplate forEventType(String eventType) {
+        return CACHE.computeIfAbsent(eventType, type -> {
+            Source source = SOURCES.get(type);
+            if (source == null) {
+                throw new IllegalArgumentException("Sem template para o tipo de evento: " + type);
+            }
+            return NotificationTemplate.compile(source.text(), source.escaping());
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package lambda.common;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaRuntime;
+import org.crac.Core;
+import org.crac.Resource;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Priming dos handlers para SnapStart: antes do snapshot (org.crac beforeCheckpoint) executa uma
+ * requisição fictícia pelos caminhos de parsing/serialização e aquece os clientes do SDK, de modo que
+ * o custo de class loading, introspecção do Jackson, resolução de endpoint e TLS fique no snapshot.
+ *
+ * PRIMING_ENABLED=false desliga o priming, para comparar a primeira invocação com e sem ele
+ * (ver {@link #measureFirstInvocation}). Em containers de provisioned concurrency o priming roda já no init.
+ */
+public final class Priming implements Resource {
+
+    // O contexto global do CRaC guarda referências fracas: os recursos precisam de referência forte
+    private static final List<Priming> REGISTERED = new CopyOnWriteArrayList<>();
+
+    private static final AtomicBoolean FIRST_INVOCATION = new AtomicBoolean(true);
+    private static volatile boolean primed;
+
+    private final String name;
+    private final Runnable primer;
+    private final Runnable afterRestore;
+
+    private Priming(String name, Runnable primer, Runnable afterRestore) {
+        this.name = name;
+        this.primer = primer;
+        this.afterRestore = afterRestore;
+    }
+
+    public static void register(String name, Runnable primer) {
+        register(name, primer, () -> { });
+    }
+
+    /**
+     * @param afterRestore executado em cada restore do snapshot; use para renovar estado que não pode
+     *                     ser compartilhado entre containers restaurados do mesmo snapshot (ex.: sementes aleatórias)
+     */
+    public static void register(String name, Runnable primer, Runnable afterRestore) {
+        if (!enabled()) {
+            return;
+        }
+        Priming priming = new Priming(name, primer, afterRestore);
+        REGISTERED.add(priming);
+        Core.getGlobalContext().register(priming);
+
+        if ("provisioned-concurrency".equals(System.getenv("AWS_LAMBDA_INITIALIZATION_TYPE"))) {
+            priming.prime();
+        }
+    }
+
+    /**
+     * Executa o handler e, apenas na primeira invocação do container, registra no log a duração
+     * e se o container foi primado.
+     */
+    public static <T> T measureFirstInvocation(Context context, Supplier<T> handler) {
+        if (!FIRST_INVOCATION.compareAndSet(true, false)) {
+            return handler.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return handler.get();
+        } finally {
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            if (context != null && context.getLogger() != null) {
+                context.getLogger().log("Primeira invocação do container: " + elapsedMs + " ms (primed=" + primed + ")\n");
+            }
+        }
+    }
+
+    static boolean enabled() {
+        return !"false".equalsIgnoreCase(System.getenv("PRIMING_ENABLED"));
+    }
+
+    static boolean isPrimed() {
+        return primed;
+    }
+
+    // Sem Context no checkpoint/init: o logger do runtime mantém as linhas no mesmo fluxo (e formato) dos handlers
+    void prime() {
+        long start = System.nanoTime();
+        try {
+            primer.run();
+        } catch (RuntimeException e) {
+            // Priming é melhor esforço: uma falha aqui não pode impedir o snapshot nem o init
+            LambdaRuntime.getLogger().log("Priming de " + name + " falhou: " + e.getMessage() + "\n");
+        }
+        primed = true;
+        LambdaRuntime.getLogger().log("Priming de " + name + " concluído em " + (System.nanoTime() - start) / 1_000_000 + " ms\n");
+    }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        prime();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Os clientes do SDK reabrem conexões sob demanda; só o estado específico do handler é renovado
+        afterRestore.run();
+    }
+}
@@ -0,0 +1,78 @@
+package lambda.common;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formato da tabela de agregados (AGGREGATES_TABLE), mantida pelo send-queue a partir do stream e lida
+ * pelo relatório semanal. Um item por dia ({@code DAY#2026-01-08}) e por semana ISO ({@code WEEK#2026-W02}),
+ * com contadores incrementados por UpdateItem ADD:
+ * <ul>
+ *   <li>{@code total}, {@code critical}, {@code ratingSum} e {@code ratingCount} (média = soma / contagem);</li>
+ *   <li>{@code urgency#<valor>}, {@code category#<valor>} e {@code rating#1} a {@code rating#5} (histograma).</li>
+ * </ul>
+ * Os itens de dia guardam também sketches binários, combinados dia a dia pelo relatório: {@code reporters}
+ * ({@link HyperLogLog} dos clientes) e {@code ratingSketch#<categoria>} ({@link KllSketch} das notas),
+ * regravados com controle otimista por {@code sketchVersion}.
+ * Os marcadores {@code SEQ#<sequence number>} registram os registros do stream já somados e expiram com TTL.
+ */
+public final class Rollups {
+
+    public static final String KEY = "rollupKey";
+    public static final String EXPIRES_AT = "expiresAt";
+
+    public static final String TOTAL = "total";
+    public static final String CRITICAL = "critical";
+    public static final String RATING_SUM = "ratingSum";
+    public static final String RATING_COUNT = "ratingCount";
+
+    public static final String URGENCY_PREFIX = "urgency#";
+    public static final String CATEGORY_PREFIX = "category#";
+    public static final String RATING_PREFIX = "rating#";
+
+    public static final String REPORTERS = "reporters";
+    public static final String RATING_SKETCH_PREFIX = "ratingSketch#";
+    public static final String SKETCH_VERSION = "sketchVersion";
+
+    private Rollups() {
+    }
+
+    public static String dayKey(String day) {
+        return "DAY#" + day;
+    }
+
+    public static String weekKey(String isoWeek) {
+        return "WEEK#" + isoWeek;
+    }
+
+    public static String sequenceKey(String sequenceNumber) {
+        return "SEQ#" + sequenceNumber;
+    }
+
+    // Semana ISO-8601, ex.: 2026-W02; mesmo formato do atributo isoWeek gravado pelo insert-feedback
+    public static String isoWeek(LocalDate day) {
+        return String.format("%d-W%02d", day.get(IsoFields.WEEK_BASED_YEAR), day.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+    }
+
+    /** Os sete dias (segunda a domingo) de uma semana no formato de {@link #isoWeek}. */
+    public static List<LocalDate> daysOf(String isoWeek) {
+        int separator = isoWeek.indexOf("-W");
+        if (separator < 0) {
+            throw new IllegalArgumentException("Semana inválida: " + isoWeek);
+        }
+        int year = Integer.parseInt(isoWeek.substring(0, separator));
+        int week = Integer.parseInt(isoWeek.substring(separator + 2));
+        // 4 de janeiro está sempre na semana 1 do ano ISO
+        LocalDate monday = LocalDate.of(year, 1, 4)
+                .with(IsoFields.WEEK_OF_WEEK_BASED_YEAR, week)
+                .with(DayOfWeek.MONDAY);
+        List<LocalDate> days = new ArrayList<>(7);
+        for (int i = 0; i < 7; i++) {
+            days.add(monday.plusDays(i));
+        }
+        return days;
+    }
+}
@@ -0,0 +1,100 @@
+package lambda.common;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressão dos textos livres (comment, descricao) gravados no DynamoDB. Textos acima de
+ * TEXT_COMPRESSION_THRESHOLD_BYTES (UTF-8) são gravados como atributo binário no formato
+ * {@code [marcador][dados]}, reduzindo WCU, tamanho do registro do stream e replicação do GSI
+ * (que projeta ALL). Quem lê o item usa {@link #decode} sempre que o atributo vier como B.
+ *
+ * Marcadores: {@link #DEFLATE_DICT_V1} = deflate raw com o dicionário {@link #DICTIONARY_V1}.
+ * O dicionário nunca é alterado: um dicionário novo ganha um marcador novo, e os itens antigos continuam legíveis.
+ */
+public final class TextCodec {
+
+    public static final byte DEFLATE_DICT_V1 = 0x01;
+
+    public static final int THRESHOLD_BYTES = Integer.parseInt(
+            System.getenv().getOrDefault("TEXT_COMPRESSION_THRESHOLD_BYTES", "256"));
+
+    // Trechos frequentes nos feedbacks; o deflate encontra as repetições mesmo em textos curtos.
+    // As palavras mais comuns ficam no fim, onde a distância até o texto é menor.
+    static final byte[] DICTIONARY_V1 = String.join(" ",
+            "feedback avaliação sugestão reclamação elogio crítico urgente",
+            "plataforma sistema aplicativo site página login senha acesso erro",
+            "vídeo áudio legenda material apostila exercício atividade prova nota",
+            "curso aula aulas módulo conteúdo professor professora tutor suporte atendimento",
+            "não consigo acessar não funciona está muito lento travando",
+            "gostaria de sugerir que seria melhor se poderia ter mais",
+            "o conteúdo das aulas o professor explica muito bem",
+            "de que não para com uma os no se na por mais as dos como mas foi ao",
+            "muito bom muito ruim a aula o curso e a de o que é")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private TextCodec() {
+    }
+
+    /**
+     * @return o texto comprimido com marcador, ou null quando o texto está abaixo do limite ou não diminui
+     */
+    public static byte[] encode(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < THRESHOLD_BYTES) {
+            return null;
+        }
+
+        // Sem cache por thread: o estado nativo do zlib não pode ficar preso a threads virtuais descartáveis
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setDictionary(DICTIONARY_V1);
+            deflater.setInput(raw);
+            deflater.finish();
+
+            // O resultado só interessa se for menor que o original
+            byte[] out = new byte[raw.length];
+            out[0] = DEFLATE_DICT_V1;
+            int length = 1;
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return deflater.finished() && length < raw.length ? Arrays.copyOf(out, length) : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String decode(byte[] data) {
+        if (data.length == 0 || data[0] != DEFLATE_DICT_V1) {
+            throw new IllegalArgumentException("Codec de texto desconhecido: " + (data.length == 0 ? "vazio" : data[0]));
+        }
+
+        Inflater inflater = new Inflater(true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        byte[] buffer = new byte[4096];
+        try {
+            inflater.setDictionary(DICTIONARY_V1);
+            inflater.setInput(data, 1, data.length - 1);
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Texto comprimido truncado");
+                }
+                out.write(buffer, 0, read);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Texto comprimido inválido", e);
+        } finally {
+            inflater.end();
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
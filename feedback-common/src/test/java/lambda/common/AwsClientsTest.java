@@ -0,0 +1,51 @@
+package lambda.common;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AwsClientsTest {
+
+    @Test
+    void clienteEMemoizadoPorServico() {
+        DynamoDbClient first = AwsClients.sync("DYNAMODB", DynamoDbClient::builder);
+        DynamoDbClient second = AwsClients.sync("DYNAMODB", DynamoDbClient::builder);
+
+        assertSame(first, second);
+        assertNotNull(first.serviceClientConfiguration().region());
+    }
+
+    @Test
+    void customizersDiferentesNaoCompartilhamCliente() {
+        DynamoDbClient plain = AwsClients.sync("DYNAMODB", DynamoDbClient::builder);
+        DynamoDbClient tuned = AwsClients.sync("DYNAMODB", DynamoDbClient::builder,
+                b -> b.overrideConfiguration(c -> c.apiCallTimeout(Duration.ofSeconds(1))));
+
+        assertNotSame(plain, tuned);
+        assertEquals(Duration.ofSeconds(1), tuned.serviceClientConfiguration().overrideConfiguration().apiCallTimeout().orElseThrow());
+    }
+
+    @Test
+    void semVariavelUsaEndpointDaAws() {
+        assertNull(AwsClients.endpoint("SERVICO_INEXISTENTE"));
+    }
+
+    @Test
+    void timeoutSemVariavelUsaPadrao() {
+        assertEquals(Duration.ofMillis(1234), AwsClients.timeout("SERVICO_INEXISTENTE", "CONNECT_TIMEOUT_MS", 1234));
+    }
+
+    @Test
+    void modoPadraoESincrono() {
+        assertFalse(AwsClients.asyncMode("SERVICO_INEXISTENTE"));
+    }
+
+    @Test
+    void naoAlteraPropriedadesGlobaisDaJvm() {
+        AwsClients.sync("DYNAMODB", DynamoDbClient::builder);
+        assertNull(System.getProperty("http.maxConnections"));
+    }
+}
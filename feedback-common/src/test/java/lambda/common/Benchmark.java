@@ -0,0 +1,18 @@
+package lambda.common;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca uma classe de benchmark: fora da suíte padrão, só roda com -Dbenchmark=true, por exemplo
+ * mvn -pl send-queue test -Dtest=DetailEncoderBenchmark -Dbenchmark=true
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public @interface Benchmark {
+}
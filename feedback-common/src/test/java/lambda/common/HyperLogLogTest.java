@@ -0,0 +1,68 @@
+package lambda.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimateStaysWithinExpectedError() {
+        for (int cardinality : new int[]{10, 1_000, 100_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < cardinality; i++) {
+                sketch.offer("cliente-" + i + "@example.com");
+                // Repetições não contam
+                sketch.offer("cliente-" + i + "@example.com");
+            }
+            // 3 erros padrão de 2,3%
+            assertEquals(cardinality, sketch.estimate(), Math.max(1, cardinality * 0.07), "cardinalidade " + cardinality);
+        }
+    }
+
+    @Test
+    void mergeOfDaysEqualsSketchOfWholePeriod() {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        HyperLogLog week = new HyperLogLog();
+        for (int i = 0; i < 5_000; i++) {
+            monday.offer("cliente-" + i);
+            week.offer("cliente-" + i);
+        }
+        for (int i = 2_500; i < 8_000; i++) {
+            tuesday.offer("cliente-" + i);
+            week.offer("cliente-" + i);
+        }
+
+        monday.merge(tuesday);
+
+        assertEquals(week.estimate(), monday.estimate());
+    }
+
+    @Test
+    void roundTripsThroughSparseAndDenseFormats() {
+        HyperLogLog small = new HyperLogLog();
+        for (int i = 0; i < 50; i++) {
+            small.offer("cliente-" + i);
+        }
+        byte[] sparse = small.toBytes();
+        assertEquals(HyperLogLog.SPARSE, sparse[0]);
+        assertEquals(2 + 3 * 50, sparse.length, 3 * 3);
+        assertEquals(small.estimate(), HyperLogLog.fromBytes(sparse).estimate());
+
+        HyperLogLog large = new HyperLogLog();
+        for (int i = 0; i < 20_000; i++) {
+            large.offer("cliente-" + i);
+        }
+        byte[] dense = large.toBytes();
+        assertEquals(HyperLogLog.DENSE, dense[0]);
+        assertEquals(2 + 2048 * 6 / 8, dense.length);
+        assertArrayEquals(dense, HyperLogLog.fromBytes(dense).toBytes());
+        assertEquals(large.estimate(), HyperLogLog.fromBytes(dense).estimate());
+    }
+
+    @Test
+    void differentPrecisionsCannotBeMerged() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(11).merge(new HyperLogLog(12)));
+    }
+}
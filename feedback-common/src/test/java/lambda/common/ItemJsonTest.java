@@ -0,0 +1,34 @@
+package lambda.common;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemJsonTest {
+
+    @Test
+    void itemFazIdaEVolta() {
+        Map<String, AttributeValue> item = Map.of(
+                "feedbackId", AttributeValue.builder().s("fb-1").build(),
+                "rating", AttributeValue.builder().n("5").build(),
+                "comment", AttributeValue.builder().b(SdkBytes.fromByteArray(new byte[]{1, -2, 3})).build(),
+                "isCritical", AttributeValue.builder().bool(true).build(),
+                "vazio", AttributeValue.builder().nul(true).build());
+
+        String json = ItemJson.write(item);
+
+        assertTrue(json.contains("\"rating\":{\"N\":\"5\"}"));
+        assertEquals(item, ItemJson.read(json));
+    }
+
+    @Test
+    void jsonInvalidoFalha() {
+        assertThrows(IllegalArgumentException.class, () -> ItemJson.read("não é json"));
+        assertThrows(IllegalArgumentException.class, () -> ItemJson.read("[1,2]"));
+        assertThrows(IllegalArgumentException.class, () -> ItemJson.read("{\"a\":{\"SS\":[\"x\"]}}"));
+    }
+}
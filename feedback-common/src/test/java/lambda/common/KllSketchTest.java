@@ -0,0 +1,64 @@
+package lambda.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KllSketchTest {
+
+    @Test
+    void quantilesStayWithinRankError() {
+        KllSketch sketch = new KllSketch();
+        int n = 100_000;
+        for (int i = 0; i < n; i++) {
+            // Ordem embaralhada de 0..n-1: o valor é o próprio rank
+            sketch.update((float) ((i * 7919L) % n));
+        }
+
+        assertEquals(n, sketch.count());
+        for (double rank : new double[]{0.1, 0.5, 0.9}) {
+            assertEquals(rank * n, sketch.quantile(rank), n * 0.02, "rank " + rank);
+        }
+        assertEquals(0f, sketch.quantile(0));
+        assertEquals(n - 1, sketch.quantile(1));
+    }
+
+    @Test
+    void memoryIsBoundedByK() {
+        KllSketch sketch = new KllSketch();
+        Random random = new Random(42);
+        for (int i = 0; i < 1_000_000; i++) {
+            sketch.update(1 + random.nextInt(5));
+        }
+
+        assertTrue(sketch.toBytes().length < 4 * 1024, "tamanho " + sketch.toBytes().length);
+    }
+
+    @Test
+    void mergedDaysMatchDiscreteRatings() {
+        KllSketch week = new KllSketch();
+        for (int day = 0; day < 7; day++) {
+            KllSketch daily = new KllSketch();
+            // 10% nota 1, 40% nota 3, 50% nota 5
+            for (int i = 0; i < 1_000; i++) {
+                daily.update(i < 100 ? 1 : i < 500 ? 3 : 5);
+            }
+            week.merge(KllSketch.fromBytes(daily.toBytes()));
+        }
+
+        assertEquals(7_000, week.count());
+        assertEquals(1f, week.quantile(0.05));
+        assertEquals(3f, week.quantile(0.3));
+        assertEquals(5f, week.quantile(0.9));
+    }
+
+    @Test
+    void emptySketchHasNoQuantile() {
+        KllSketch sketch = KllSketch.fromBytes(new KllSketch().toBytes());
+
+        assertEquals(0, sketch.count());
+        assertTrue(Float.isNaN(sketch.quantile(0.5)));
+    }
+}
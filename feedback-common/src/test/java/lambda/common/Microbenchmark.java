@@ -0,0 +1,47 @@
+package lambda.common;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Laço de medição dos microbenchmarks dos módulos (publicado no test-jar da feedback-common): aquece, mede
+ * ns/op pelo System.nanoTime e bytes/op pela alocação da thread. A operação recebe o índice da iteração e
+ * devolve um long, somado no checksum para que o JIT não a elimine.
+ */
+public final class Microbenchmark {
+
+    public record Result(String name, int iterations, double nanosPerOp, double bytesPerOp, long checksum) {}
+
+    // Destino do checksum do aquecimento, pelo mesmo motivo
+    private static volatile long blackhole;
+
+    private Microbenchmark() {
+    }
+
+    public static Result measure(String name, int warmup, int iterations, IntToLongFunction operation) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long warmupChecksum = 0;
+        for (int i = 0; i < warmup; i++) {
+            warmupChecksum += operation.applyAsLong(i);
+        }
+        blackhole = warmupChecksum;
+
+        long checksum = 0;
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += operation.applyAsLong(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return new Result(name, iterations, (double) elapsed / iterations, (double) allocated / iterations, checksum);
+    }
+
+    /** {@link #measure} e uma linha "nome ns/op B/op" no stdout */
+    public static Result run(String name, int warmup, int iterations, IntToLongFunction operation) {
+        Result result = measure(name, warmup, iterations, operation);
+        System.out.printf("%-32s %8.1f ns/op %8.1f B/op (%d)%n",
+                name, result.nanosPerOp(), result.bytesPerOp(), result.checksum() & 1);
+        return result;
+    }
+}
@@ -0,0 +1,70 @@
+package lambda.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NotificationTemplateTest {
+
+    @Test
+    void renderShouldReplaceVariablesInOrder() {
+        NotificationTemplate template = NotificationTemplate.compile("Olá {{nome}}, nota {{ nota }} de {{nome}}.",
+                NotificationTemplate.Escaping.NONE);
+
+        assertEquals(List.of("nome", "nota"), template.variables());
+        assertEquals("Olá Ana, nota 5 de Ana.", template.render(Map.of("nome", "Ana", "nota", 5)));
+    }
+
+    @Test
+    void jsonEscapingShouldKeepPayloadValid() {
+        NotificationTemplate template = NotificationTemplate.compile("{\"text\":\"{{comment}}\"}",
+                NotificationTemplate.Escaping.JSON);
+
+        String rendered = template.render(Map.of("comment", "Disse \"péssimo\"\nC:\\temp\t\u0001"));
+
+        assertEquals("{\"text\":\"Disse \\\"péssimo\\\"\\nC:\\\\temp\\t\\u0001\"}", rendered);
+    }
+
+    @Test
+    void nullValueShouldRenderAsNull() {
+        NotificationTemplate template = NotificationTemplate.compile("[{{a}}]", NotificationTemplate.Escaping.JSON);
+        Map<String, Object> values = new HashMap<>();
+        values.put("a", null);
+
+        assertEquals("[null]", template.render(values));
+    }
+
+    @Test
+    void missingValueShouldFail() {
+        NotificationTemplate template = NotificationTemplate.compile("{{a}}{{b}}", NotificationTemplate.Escaping.NONE);
+
+        assertThrows(IllegalArgumentException.class, () -> template.render(Map.of("a", 1)));
+    }
+
+    @Test
+    void malformedSourceShouldFailAtCompile() {
+        assertThrows(IllegalArgumentException.class,
+                () -> NotificationTemplate.compile("abc {{nome", NotificationTemplate.Escaping.NONE));
+        assertThrows(IllegalArgumentException.class,
+                () -> NotificationTemplate.compile("abc {{no-me}}", NotificationTemplate.Escaping.NONE));
+    }
+
+    @Test
+    void renderToShouldAppendToGivenBuffer() {
+        NotificationTemplate template = NotificationTemplate.compile("{{x}};", NotificationTemplate.Escaping.NONE);
+        StringBuilder out = new StringBuilder("início:");
+
+        template.renderTo(out, Map.of("x", "a"));
+        template.renderTo(out, Map.of("x", "b"));
+
+        assertEquals("início:a;b;", out.toString());
+        // O buffer por thread de render() não vaza conteúdo entre chamadas
+        assertEquals("c;", template.render(Map.of("x", "c")));
+        assertEquals("d;", template.render(Map.of("x", "d")));
+    }
+}
@@ -0,0 +1,33 @@
+package lambda.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NotificationTemplatesTest {
+
+    @Test
+    void templatesShouldBeCompiledOncePerEventType() {
+        NotificationTemplate first = NotificationTemplates.forEventType(NotificationTemplates.CRITICAL_ALERT);
+
+        assertSame(first, NotificationTemplates.forEventType(NotificationTemplates.CRITICAL_ALERT));
+        assertEquals(List.of("to", "feedbackId", "fullName", "category", "comment", "rating", "sentAt"), first.variables());
+    }
+
+    @Test
+    void allEventTypesShouldCompile() {
+        for (String type : List.of(NotificationTemplates.CRITICAL_ALERT, NotificationTemplates.CRITICAL_DIGEST,
+                NotificationTemplates.CRITICAL_DIGEST_ITEM, NotificationTemplates.WEEKLY_REPORT)) {
+            NotificationTemplates.forEventType(type);
+        }
+    }
+
+    @Test
+    void unknownEventTypeShouldFail() {
+        assertThrows(IllegalArgumentException.class, () -> NotificationTemplates.forEventType("Desconhecido"));
+    }
+}
@@ -0,0 +1,61 @@
+package lambda.common;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+class PrimingTest {
+
+    private static Priming newPriming(Runnable primer, Runnable afterRestore) throws Exception {
+        Constructor<Priming> constructor = Priming.class.getDeclaredConstructor(String.class, Runnable.class, Runnable.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance("teste", primer, afterRestore);
+    }
+
+    @Test
+    void beforeCheckpointExecutaPrimer() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Priming priming = newPriming(calls::incrementAndGet, () -> { });
+
+        priming.beforeCheckpoint(null);
+
+        assertEquals(1, calls.get());
+        assertTrue(Priming.isPrimed());
+    }
+
+    @Test
+    void falhaNoPrimerNaoPropaga() throws Exception {
+        Priming priming = newPriming(() -> { throw new IllegalStateException("sem rede"); }, () -> { });
+
+        assertDoesNotThrow(() -> priming.beforeCheckpoint(null));
+    }
+
+    @Test
+    void afterRestoreExecutaCallback() throws Exception {
+        AtomicInteger restores = new AtomicInteger();
+        Priming priming = newPriming(() -> { }, restores::incrementAndGet);
+
+        priming.afterRestore(null);
+
+        assertEquals(1, restores.get());
+    }
+
+    @Test
+    void medicaoRegistraApenasPrimeiraInvocacao() {
+        Context context = mock(Context.class);
+        LambdaLogger logger = mock(LambdaLogger.class);
+        when(context.getLogger()).thenReturn(logger);
+
+        assertEquals("a", Priming.measureFirstInvocation(context, () -> "a"));
+        assertEquals("b", Priming.measureFirstInvocation(context, () -> "b"));
+
+        verify(logger, atMostOnce()).log(contains("Primeira invocação do container"));
+    }
+}
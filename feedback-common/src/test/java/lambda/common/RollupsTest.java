@@ -0,0 +1,33 @@
+package lambda.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollupsTest {
+
+    @Test
+    void isoWeekUsesWeekBasedYear() {
+        assertEquals("2026-W02", Rollups.isoWeek(LocalDate.of(2026, 1, 8)));
+        // 1º de janeiro de 2027 (sexta) ainda pertence à última semana de 2026
+        assertEquals("2026-W53", Rollups.isoWeek(LocalDate.of(2027, 1, 1)));
+    }
+
+    @Test
+    void daysOfReturnsMondayToSunday() {
+        List<LocalDate> days = Rollups.daysOf("2026-W02");
+
+        assertEquals(7, days.size());
+        assertEquals(LocalDate.of(2026, 1, 5), days.getFirst());
+        assertEquals(LocalDate.of(2026, 1, 11), days.getLast());
+        assertEquals("2026-W53", Rollups.isoWeek(Rollups.daysOf("2026-W53").getLast()));
+    }
+
+    @Test
+    void invalidWeekIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Rollups.daysOf("2026-02"));
+    }
+}
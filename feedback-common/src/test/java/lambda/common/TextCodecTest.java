@@ -0,0 +1,53 @@
+package lambda.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextCodecTest {
+
+    static final String LONG_COMMENT = "Não consigo acessar as aulas do módulo 3 desde ontem. A plataforma fica travando "
+            + "no vídeo e o áudio está fora de sincronia com a legenda. Já tentei pelo aplicativo e pelo site, "
+            + "limpei o cache e troquei de navegador, mas o erro continua. O conteúdo do curso é muito bom e o "
+            + "professor explica muito bem, mas assim não consigo acompanhar as atividades da semana.";
+
+    @Test
+    void textoLongoFazIdaEVolta() {
+        byte[] encoded = TextCodec.encode(LONG_COMMENT);
+
+        assertNotNull(encoded);
+        assertEquals(TextCodec.DEFLATE_DICT_V1, encoded[0]);
+        assertTrue(encoded.length < LONG_COMMENT.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(LONG_COMMENT, TextCodec.decode(encoded));
+    }
+
+    @Test
+    void textoCurtoNaoEComprimido() {
+        assertNull(TextCodec.encode("Ótimo curso"));
+        assertNull(TextCodec.encode(null));
+    }
+
+    @Test
+    void limiteConsideraBytesUtf8() {
+        String accented = "ã".repeat(TextCodec.THRESHOLD_BYTES / 2);
+
+        assertNotNull(TextCodec.encode(accented));
+        assertNull(TextCodec.encode("a".repeat(TextCodec.THRESHOLD_BYTES - 1)));
+    }
+
+    @Test
+    void marcadorDesconhecidoFalha() {
+        assertThrows(IllegalArgumentException.class, () -> TextCodec.decode(new byte[]{0x7f, 1, 2}));
+        assertThrows(IllegalArgumentException.class, () -> TextCodec.decode(new byte[0]));
+    }
+
+    @Test
+    void dadosTruncadosFalham() {
+        byte[] encoded = TextCodec.encode(LONG_COMMENT);
+        byte[] truncated = java.util.Arrays.copyOf(encoded, encoded.length / 2);
+
+        assertThrows(IllegalArgumentException.class, () -> TextCodec.decode(truncated));
+    }
+}
@@ -3,74 +3,117 @@ package lambda;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import lambda.common.AwsClients;
+import lambda.common.HyperLogLog;
+import lambda.common.KllSketch;
+import lambda.common.Priming;
+import lambda.common.Rollups;
+import lambda.common.TextCodec;
 
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.S3ClientBuilder;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
 import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
 import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
 import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.Select;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 
-import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class GenerateWeeklyReportFunction implements RequestHandler<Map<String, Object>, String> {
 
+    // GSI esparso: só os itens críticos têm criticalPk (ver InsertFeedbackFunction.putDerivedAttributes)
+    private static final String CRITICAL_INDEX = "critical-createdAt-index";
+    private static final String CRITICAL_PK = "CRITICAL";
+
     private final S3Client s3;
     private final DynamoDbClient dynamoDB;
     private final String bucketName;
     private final String tableName;
+    // Com AGGREGATES_TABLE o relatório lê os agregados da semana mantidos pelo send-queue em vez de varrer a tabela
+    private final String aggregatesTable;
 
     public GenerateWeeklyReportFunction() {
-        this.dynamoDB = DynamoDbClient.builder()
-            .region(Region.US_EAST_1)
-            .build();
+        this.dynamoDB = AwsClients.sync("DYNAMODB", DynamoDbClient::builder);
         this.tableName = System.getenv("TABLE_NAME");
-        String s3Endpoint = System.getenv("S3_ENDPOINT");
-        String accessKey = System.getenv("AWS_ACCESS_KEY_ID");
-        String secretKey = System.getenv("AWS_SECRET_ACCESS_KEY");
-        
-        S3ClientBuilder builder = S3Client.builder();
-        
-        if (s3Endpoint != null && !s3Endpoint.isEmpty()) {
-            // MinIO ou S3 local
-            builder.endpointOverride(URI.create(s3Endpoint))
-                   .forcePathStyle(true)
-                   .region(Region.US_EAST_1);
-            
-            if (accessKey != null && secretKey != null) {
-                AwsBasicCredentials credentials = AwsBasicCredentials.create(accessKey, secretKey);
-                builder.credentialsProvider(StaticCredentialsProvider.create(credentials));
-            }
-        } else {
-            // AWS S3 em produção - usar credenciais padrão
-            String regionEnv = System.getenv("AWS_REGION");
-            Region region = regionEnv != null ? Region.of(regionEnv) : Region.US_EAST_1;
-            builder.region(region);
-        }
-        
-        this.s3 = builder.build();
+        this.aggregatesTable = System.getenv("AGGREGATES_TABLE");
+        // S3_ENDPOINT aponta para MinIO ou S3 local, que exigem path-style
+        this.s3 = AwsClients.sync("S3", S3Client::builder, builder -> builder.forcePathStyle(AwsClients.endpoint("S3") != null));
         this.bucketName = System.getenv("REPORTS_BUCKET");
+        Priming.register("generate-weekly-report", this::prime);
     }
 
     @Override
     public String handleRequest(Map<String, Object> input, Context context) {
+        return Priming.measureFirstInvocation(context, () -> generateReport(input, context));
+    }
+
+    // Relatório de uma amostra fictícia + chamadas somente leitura para aquecer os clientes DynamoDB e S3
+    private void prime() {
+        LambdaLogger silent = new LambdaLogger() {
+            @Override
+            public void log(String message) {
+            }
+
+            @Override
+            public void log(byte[] message) {
+            }
+        };
+
+        Map<String, Object> sample = new HashMap<>();
+        sample.put("feedbackId", "priming");
+        sample.put("nota", "5");
+        sample.put("urgency", "baixa");
+        sample.put("createdAt", "1970-01-01T00:00:00Z");
+        sample.put("descricao", "priming");
+        generateReportContent(List.of(sample), 0, silent);
+
+        if (aggregatesTable != null) {
+            Map<String, Map<String, AttributeValue>> rollups = new HashMap<>();
+            rollups.put(Rollups.weekKey("1970-W01"), Map.of(
+                    Rollups.TOTAL, AttributeValue.builder().n("1").build(),
+                    Rollups.RATING_SUM, AttributeValue.builder().n("5").build(),
+                    Rollups.RATING_COUNT, AttributeValue.builder().n("1").build()));
+            generateReportContentFromRollups("1970-W01", rollups);
+            getRollups(List.of(Rollups.weekKey("1970-W01")));
+            return;
+        }
+        dynamoDB.scan(ScanRequest.builder().tableName(tableName).limit(1).build());
+        dynamoDB.query(criticalCountQuery(null).toBuilder().limit(1).build());
+        s3.headBucket(HeadBucketRequest.builder().bucket(bucketName).build());
+    }
+
+    private String generateReport(Map<String, Object> input, Context context) {
         LambdaLogger logger = context.getLogger();
         logger.log("Iniciando geração do relatório semanal...\n");
 
         try {
-            // Buscar TODOS os feedbacks do DynamoDB
-            List<Map<String, Object>> feedbacks = getAllFeedbacksFromDynamoDB(logger);
+            String reportContent;
+            if (aggregatesTable != null) {
+                // Semana do input (ex.: {"week": "2026-W02"}) ou a corrente; o agendamento roda no domingo à noite
+                String week = input != null && input.get("week") != null
+                        ? input.get("week").toString()
+                        : Rollups.isoWeek(LocalDate.now(ZoneOffset.UTC));
+                reportContent = generateReportContentFromRollups(week, getWeekRollups(week, logger));
+            } else {
+                // Buscar TODOS os feedbacks do DynamoDB
+                List<Map<String, Object>> feedbacks = getAllFeedbacksFromDynamoDB(logger);
+                reportContent = generateReportContent(feedbacks, countCriticalFeedbacks(feedbacks, logger), logger);
+            }
 
             // Verificar se o bucket existe, criar se necessário
             try {
@@ -89,8 +132,6 @@ public class GenerateWeeklyReportFunction implements RequestHandler<Map<String,
                 }
             }
 
-            // Calcular estatísticas dos feedbacks
-            String reportContent = generateReportContent(feedbacks, logger);
             logger.log("Conteúdo do relatório:\n" + reportContent + "\n");
 
             // Nome do arquivo no S3
@@ -120,7 +161,7 @@ public class GenerateWeeklyReportFunction implements RequestHandler<Map<String,
         }
     }
 
-    private String generateReportContent(List<Map<String, Object>> feedbacks, LambdaLogger logger) {
+    private String generateReportContent(List<Map<String, Object>> feedbacks, long criticos, LambdaLogger logger) {
         StringBuilder report = new StringBuilder();
         
         report.append("=== RELATÓRIO SEMANAL DE FEEDBACKS ===\n");
@@ -168,11 +209,18 @@ public class GenerateWeeklyReportFunction implements RequestHandler<Map<String,
         report.append("Média: ").append(media).append(" feedbacks\n");
         report.append("Baixa: ").append(baixa).append(" feedbacks\n");
 
+        report.append("\n=== FEEDBACKS CRÍTICOS ===\n");
+        report.append("Críticos: ").append(criticos).append(" feedbacks\n");
+
         // Quantidade de avaliações por dia
         Map<String, Long> avaliacoesPorDia = feedbacks.stream()
             .filter(feedback -> feedback.get("createdAt") != null)
             .collect(Collectors.groupingBy(
                 feedback -> {
+                    // dayBucket é gravado pelo insert-feedback; itens antigos ainda derivam o dia do createdAt
+                    if (feedback.get("dayBucket") != null) {
+                        return feedback.get("dayBucket").toString();
+                    }
                     try {
                         String createdAt = feedback.get("createdAt").toString();
                         // Extrair apenas a data (YYYY-MM-DD) do timestamp ISO
@@ -212,45 +260,238 @@ public class GenerateWeeklyReportFunction implements RequestHandler<Map<String,
         return report.toString();
     }
 
-    private List<Map<String, Object>> getAllFeedbacksFromDynamoDB(LambdaLogger logger) {
-        logger.log("Buscando feedbacks do DynamoDB...\n");
-        
-        ScanRequest scanRequest = ScanRequest.builder()
-            .tableName(tableName)
-            .build();
-        
-        ScanResponse response = dynamoDB.scan(scanRequest);
-        logger.log("Total de feedbacks encontrados: " + response.count() + "\n");
-        
-        List<Map<String, Object>> feedbacks = new ArrayList<>();
-        
-        for (Map<String, AttributeValue> item : response.items()) {
-            Map<String, Object> feedback = new HashMap<>();
-            
-            // Extrair campos do DynamoDB
-            if (item.containsKey("rating")) {
-                feedback.put("nota", item.get("rating").n());
+    /**
+     * Relatório a partir dos agregados: o item da semana traz os totais e as distribuições, e os itens
+     * dos dias a contagem diária. Oito leituras, independentemente do volume de feedbacks.
+     */
+    private String generateReportContentFromRollups(String week, Map<String, Map<String, AttributeValue>> rollups) {
+        StringBuilder report = new StringBuilder();
+
+        report.append("=== RELATÓRIO SEMANAL DE FEEDBACKS ===\n");
+        report.append("Data de geração: ").append(LocalDate.now()).append("\n");
+        report.append("Semana: ").append(week).append("\n\n");
+
+        Map<String, AttributeValue> totals = rollups.get(Rollups.weekKey(week));
+        long total = totals != null ? counter(totals, Rollups.TOTAL).longValue() : 0;
+        if (total == 0) {
+            report.append("Nenhum feedback encontrado no período.\n");
+            return report.toString();
+        }
+        report.append("Total de feedbacks: ").append(total).append("\n\n");
+
+        BigDecimal ratingCount = counter(totals, Rollups.RATING_COUNT);
+        if (ratingCount.signum() > 0) {
+            BigDecimal media = counter(totals, Rollups.RATING_SUM).divide(ratingCount, 2, RoundingMode.HALF_UP);
+            report.append(String.format("Média geral das notas: %.2f\n", media.doubleValue()));
+        }
+
+        report.append("\n=== DISTRIBUIÇÃO POR URGÊNCIA ===\n");
+        report.append("Alta: ").append(counter(totals, Rollups.URGENCY_PREFIX + "alta").longValue()).append(" feedbacks\n");
+        report.append("Média: ").append(counter(totals, Rollups.URGENCY_PREFIX + "media").longValue()).append(" feedbacks\n");
+        report.append("Baixa: ").append(counter(totals, Rollups.URGENCY_PREFIX + "baixa").longValue()).append(" feedbacks\n");
+
+        report.append("\n=== FEEDBACKS CRÍTICOS ===\n");
+        report.append("Críticos: ").append(counter(totals, Rollups.CRITICAL).longValue()).append(" feedbacks\n");
+
+        report.append("\n=== DISTRIBUIÇÃO POR CATEGORIA ===\n");
+        new TreeMap<>(totals).forEach((name, value) -> {
+            if (name.startsWith(Rollups.CATEGORY_PREFIX)) {
+                report.append(name.substring(Rollups.CATEGORY_PREFIX.length())).append(": ")
+                        .append(new BigDecimal(value.n()).longValue()).append(" feedbacks\n");
             }
-            if (item.containsKey("urgency")) {
-                feedback.put("urgency", item.get("urgency").s());
-            } else {
-                feedback.put("urgency", "baixa");
+        });
+
+        report.append("\n=== DISTRIBUIÇÃO POR NOTA ===\n");
+        for (int nota = 1; nota <= 5; nota++) {
+            report.append(nota).append(": ").append(counter(totals, Rollups.RATING_PREFIX + nota).longValue()).append(" feedbacks\n");
+        }
+
+        report.append("\n=== QUANTIDADE DE AVALIAÇÕES POR DIA ===\n");
+        for (LocalDate day : Rollups.daysOf(week)) {
+            Map<String, AttributeValue> daily = rollups.get(Rollups.dayKey(day.toString()));
+            long count = daily != null ? counter(daily, Rollups.TOTAL).longValue() : 0;
+            if (count > 0) {
+                report.append(day).append(": ").append(count).append(" avaliações\n");
             }
-            if (item.containsKey("createdAt")) {
-                feedback.put("createdAt", item.get("createdAt").s());
+        }
+
+        appendSketchStatistics(report, week, rollups);
+        return report.toString();
+    }
+
+    /**
+     * Clientes distintos e quantis de nota por categoria, combinando os sketches dos dias: a memória usada
+     * é a de um sketch por estatística, qualquer que seja o volume da semana.
+     */
+    private static void appendSketchStatistics(StringBuilder report, String week, Map<String, Map<String, AttributeValue>> rollups) {
+        HyperLogLog reporters = new HyperLogLog();
+        Map<String, KllSketch> ratings = new TreeMap<>();
+        boolean found = false;
+        for (LocalDate day : Rollups.daysOf(week)) {
+            Map<String, AttributeValue> daily = rollups.get(Rollups.dayKey(day.toString()));
+            if (daily == null) {
+                continue;
             }
-            if (item.containsKey("comment")) {
-                feedback.put("descricao", item.get("comment").s());
-            } else if (item.containsKey("descricao")) {
-                feedback.put("descricao", item.get("descricao").s());
+            for (Map.Entry<String, AttributeValue> attribute : daily.entrySet()) {
+                if (attribute.getValue().b() == null) {
+                    continue;
+                }
+                byte[] bytes = attribute.getValue().b().asByteArrayUnsafe();
+                if (attribute.getKey().equals(Rollups.REPORTERS)) {
+                    reporters.merge(HyperLogLog.fromBytes(bytes));
+                    found = true;
+                } else if (attribute.getKey().startsWith(Rollups.RATING_SKETCH_PREFIX)) {
+                    ratings.computeIfAbsent(attribute.getKey().substring(Rollups.RATING_SKETCH_PREFIX.length()), c -> new KllSketch())
+                            .merge(KllSketch.fromBytes(bytes));
+                }
+            }
+        }
+
+        if (found) {
+            report.append("\n=== CLIENTES DISTINTOS ===\n");
+            report.append("Clientes distintos (estimativa): ").append(reporters.estimate()).append("\n");
+        }
+        if (!ratings.isEmpty()) {
+            report.append("\n=== NOTAS POR CATEGORIA (p10 / p50 / p90) ===\n");
+            ratings.forEach((category, sketch) -> report.append(String.format("%s: %.1f / %.1f / %.1f (%d notas)\n",
+                    category, sketch.quantile(0.1), sketch.quantile(0.5), sketch.quantile(0.9), sketch.count())));
+        }
+    }
+
+    private static BigDecimal counter(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value != null && value.n() != null ? new BigDecimal(value.n()) : BigDecimal.ZERO;
+    }
+
+    private Map<String, Map<String, AttributeValue>> getWeekRollups(String week, LambdaLogger logger) {
+        List<String> keys = new ArrayList<>();
+        keys.add(Rollups.weekKey(week));
+        for (LocalDate day : Rollups.daysOf(week)) {
+            keys.add(Rollups.dayKey(day.toString()));
+        }
+        Map<String, Map<String, AttributeValue>> rollups = getRollups(keys);
+        logger.log("Agregados lidos da semana " + week + ": " + rollups.size() + " itens\n");
+        return rollups;
+    }
+
+    // BatchGetItem dos itens de agregado, repetindo as chaves não processadas
+    private Map<String, Map<String, AttributeValue>> getRollups(List<String> keys) {
+        List<Map<String, AttributeValue>> pending = new ArrayList<>();
+        for (String key : keys) {
+            pending.add(Map.of(Rollups.KEY, AttributeValue.builder().s(key).build()));
+        }
+        Map<String, Map<String, AttributeValue>> rollups = new HashMap<>();
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            if (attempt > 5) {
+                throw new IllegalStateException("Agregados não lidos após " + (attempt - 1) + " tentativas");
             }
-            if (item.containsKey("feedbackId")) {
-                feedback.put("feedbackId", item.get("feedbackId").s());
+            BatchGetItemResponse response = dynamoDB.batchGetItem(BatchGetItemRequest.builder()
+                    .requestItems(Map.of(aggregatesTable, KeysAndAttributes.builder().keys(pending).build()))
+                    .build());
+            for (Map<String, AttributeValue> item : response.responses().getOrDefault(aggregatesTable, List.of())) {
+                rollups.put(item.get(Rollups.KEY).s(), item);
             }
-            
-            feedbacks.add(feedback);
+            KeysAndAttributes unprocessed = response.unprocessedKeys().get(aggregatesTable);
+            pending = unprocessed != null ? unprocessed.keys() : List.of();
         }
-        
+        return rollups;
+    }
+
+    /**
+     * Críticos contados pelo GSI esparso critical-createdAt-index (Select COUNT, sem trazer os itens) somados aos
+     * itens gravados antes do isCritical existir, que não estão no índice: para esses vale o predicado antigo,
+     * category == "Critical".
+     */
+    private long countCriticalFeedbacks(List<Map<String, Object>> feedbacks, LambdaLogger logger) {
+        long indexed = 0;
+        Map<String, AttributeValue> startKey = null;
+        do {
+            QueryResponse response = dynamoDB.query(criticalCountQuery(startKey));
+            indexed += response.count() != null ? response.count() : 0;
+            startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    ? response.lastEvaluatedKey()
+                    : null;
+        } while (startKey != null);
+
+        long legacy = feedbacks.stream()
+            .filter(f -> !f.containsKey("isCritical"))
+            .filter(f -> "Critical".equalsIgnoreCase((String) f.get("category")))
+            .count();
+        logger.log("Feedbacks críticos: " + indexed + " pelo índice " + CRITICAL_INDEX + ", " + legacy + " sem isCritical\n");
+        return indexed + legacy;
+    }
+
+    private QueryRequest criticalCountQuery(Map<String, AttributeValue> startKey) {
+        return QueryRequest.builder()
+            .tableName(tableName)
+            .indexName(CRITICAL_INDEX)
+            .keyConditionExpression("criticalPk = :pk")
+            .expressionAttributeValues(Map.of(":pk", AttributeValue.builder().s(CRITICAL_PK).build()))
+            .select(Select.COUNT)
+            .exclusiveStartKey(startKey)
+            .build();
+    }
+
+    // Scan paginado: uma única chamada pararia no primeiro 1 MB da tabela
+    private List<Map<String, Object>> getAllFeedbacksFromDynamoDB(LambdaLogger logger) {
+        logger.log("Buscando feedbacks do DynamoDB...\n");
+
+        List<Map<String, Object>> feedbacks = new ArrayList<>();
+        Map<String, AttributeValue> startKey = null;
+        do {
+            ScanResponse response = dynamoDB.scan(ScanRequest.builder()
+                .tableName(tableName)
+                .exclusiveStartKey(startKey)
+                .build());
+            for (Map<String, AttributeValue> item : response.items()) {
+                feedbacks.add(toFeedback(item));
+            }
+            startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    ? response.lastEvaluatedKey()
+                    : null;
+        } while (startKey != null);
+
+        logger.log("Total de feedbacks encontrados: " + feedbacks.size() + "\n");
         return feedbacks;
     }
+
+    private static Map<String, Object> toFeedback(Map<String, AttributeValue> item) {
+        Map<String, Object> feedback = new HashMap<>();
+
+        // Extrair campos do DynamoDB
+        if (item.containsKey("rating")) {
+            feedback.put("nota", item.get("rating").n());
+        }
+        if (item.containsKey("urgency")) {
+            feedback.put("urgency", item.get("urgency").s());
+        } else {
+            feedback.put("urgency", "baixa");
+        }
+        if (item.containsKey("createdAt")) {
+            feedback.put("createdAt", item.get("createdAt").s());
+        }
+        if (item.containsKey("dayBucket")) {
+            feedback.put("dayBucket", item.get("dayBucket").s());
+        }
+        if (item.containsKey("isCritical")) {
+            feedback.put("isCritical", item.get("isCritical").bool());
+        }
+        if (item.containsKey("category")) {
+            feedback.put("category", item.get("category").s());
+        }
+        if (item.containsKey("comment")) {
+            feedback.put("descricao", text(item.get("comment")));
+        } else if (item.containsKey("descricao")) {
+            feedback.put("descricao", text(item.get("descricao")));
+        }
+        if (item.containsKey("feedbackId")) {
+            feedback.put("feedbackId", item.get("feedbackId").s());
+        }
+        return feedback;
+    }
+
+    // Textos longos são gravados comprimidos como B (ver TextCodec)
+    private static String text(AttributeValue value) {
+        return value.b() != null ? TextCodec.decode(value.b().asByteArrayUnsafe()) : value.s();
+    }
 }
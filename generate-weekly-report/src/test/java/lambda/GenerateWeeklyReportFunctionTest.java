@@ -2,14 +2,22 @@ package lambda;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import lambda.common.TextCodec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
 import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
 import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
 import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -41,6 +49,8 @@ class GenerateWeeklyReportFunctionTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         when(mockContext.getLogger()).thenReturn(mockLogger);
+        // Contagem de críticos pelo GSI esparso; cada teste sobrescreve quando precisa
+        when(mockDynamoDB.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder().count(0).build());
 
         // Configurar variáveis de ambiente
         System.setProperty("REPORTS_BUCKET", "test-reports-bucket");
@@ -125,6 +135,100 @@ class GenerateWeeklyReportFunctionTest {
         verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
     }
 
+    @Test
+    void handleRequestShouldDecodeCompressedComment() throws Exception {
+        String longComment = "Não consigo acessar as aulas do módulo 3 desde ontem. A plataforma fica travando "
+            + "no vídeo e o áudio está fora de sincronia com a legenda. Já tentei pelo aplicativo e pelo site, "
+            + "mas o erro continua. O conteúdo do curso é muito bom e o professor explica muito bem.";
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("feedbackId", AttributeValue.builder().s("fb-123").build());
+        item.put("rating", AttributeValue.builder().n("2").build());
+        item.put("createdAt", AttributeValue.builder().s("2026-01-08T10:00:00Z").build());
+        item.put("comment", AttributeValue.builder().b(SdkBytes.fromByteArray(TextCodec.encode(longComment))).build());
+
+        when(mockDynamoDB.scan(any(ScanRequest.class)))
+            .thenReturn(ScanResponse.builder().items(item).count(1).build());
+        when(mockS3.headBucket(any(HeadBucketRequest.class)))
+            .thenReturn(HeadBucketResponse.builder().build());
+        when(mockS3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().build());
+
+        function.handleRequest(new HashMap<>(), mockContext);
+
+        ArgumentCaptor<RequestBody> bodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        verify(mockS3).putObject(any(PutObjectRequest.class), bodyCaptor.capture());
+        String report = new String(bodyCaptor.getValue().contentStreamProvider().newStream().readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+        assertTrue(report.contains(longComment));
+    }
+
+    @Test
+    void handleRequestShouldUsePrecomputedDayBucketAndIsCritical() throws Exception {
+        // dayBucket prevalece sobre o createdAt; os críticos vêm do índice, não do isCritical varrido
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("feedbackId", AttributeValue.builder().s("fb-789").build());
+        item.put("rating", AttributeValue.builder().n("1").build());
+        item.put("createdAt", AttributeValue.builder().s("2026-01-08T23:59:00Z").build());
+        item.put("dayBucket", AttributeValue.builder().s("2026-01-07").build());
+        item.put("isCritical", AttributeValue.builder().bool(true).build());
+
+        when(mockDynamoDB.scan(any(ScanRequest.class))).thenReturn(ScanResponse.builder().items(item).count(1).build());
+        when(mockDynamoDB.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder().count(1).build());
+        when(mockS3.headBucket(any(HeadBucketRequest.class))).thenReturn(HeadBucketResponse.builder().build());
+        when(mockS3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().build());
+
+        function.handleRequest(new HashMap<>(), mockContext);
+
+        ArgumentCaptor<RequestBody> bodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        verify(mockS3).putObject(any(PutObjectRequest.class), bodyCaptor.capture());
+        String report = new String(bodyCaptor.getValue().contentStreamProvider().newStream().readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+        assertTrue(report.contains("2026-01-07: 1 avaliações"));
+        assertTrue(report.contains("Críticos: 1 feedbacks"));
+    }
+
+    @Test
+    void handleRequestShouldCountCriticalFromSparseIndexAndLegacyCategory() throws Exception {
+        // Gravado antes do isCritical: fora do índice, contado pela categoria
+        Map<String, AttributeValue> legacy = new HashMap<>();
+        legacy.put("feedbackId", AttributeValue.builder().s("fb-old").build());
+        legacy.put("rating", AttributeValue.builder().n("4").build());
+        legacy.put("category", AttributeValue.builder().s("Critical").build());
+        legacy.put("createdAt", AttributeValue.builder().s("2025-12-01T10:00:00Z").build());
+
+        Map<String, AttributeValue> current = new HashMap<>();
+        current.put("feedbackId", AttributeValue.builder().s("fb-new").build());
+        current.put("rating", AttributeValue.builder().n("5").build());
+        current.put("category", AttributeValue.builder().s("Elogio").build());
+        current.put("isCritical", AttributeValue.builder().bool(false).build());
+        current.put("createdAt", AttributeValue.builder().s("2026-01-08T10:00:00Z").build());
+
+        when(mockDynamoDB.scan(any(ScanRequest.class)))
+            .thenReturn(ScanResponse.builder().items(legacy)
+                .lastEvaluatedKey(Map.of("feedbackId", AttributeValue.builder().s("fb-old").build())).build())
+            .thenReturn(ScanResponse.builder().items(current).build());
+        when(mockDynamoDB.query(any(QueryRequest.class)))
+            .thenReturn(QueryResponse.builder().count(2)
+                .lastEvaluatedKey(Map.of("criticalPk", AttributeValue.builder().s("CRITICAL").build())).build())
+            .thenReturn(QueryResponse.builder().count(1).build());
+        when(mockS3.headBucket(any(HeadBucketRequest.class))).thenReturn(HeadBucketResponse.builder().build());
+        when(mockS3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().build());
+
+        function.handleRequest(new HashMap<>(), mockContext);
+
+        ArgumentCaptor<QueryRequest> queryCaptor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(mockDynamoDB, times(2)).query(queryCaptor.capture());
+        assertEquals("critical-createdAt-index", queryCaptor.getValue().indexName());
+        assertEquals("COUNT", queryCaptor.getValue().selectAsString());
+        verify(mockDynamoDB, times(2)).scan(any(ScanRequest.class));
+
+        ArgumentCaptor<RequestBody> bodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        verify(mockS3).putObject(any(PutObjectRequest.class), bodyCaptor.capture());
+        String report = new String(bodyCaptor.getValue().contentStreamProvider().newStream().readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+        assertTrue(report.contains("Total de feedbacks: 2"));
+        assertTrue(report.contains("Críticos: 4 feedbacks"));
+    }
+
     @Test
     void handleRequestWithEmptyFeedbacksShouldStillGenerateReport() {
         // Mock do DynamoDB vazio
@@ -523,4 +627,69 @@ class GenerateWeeklyReportFunctionTest {
         assertNotNull(result);
         verify(mockS3, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
     }
+
+    @Test
+    void handleRequestShouldReadWeekRollupsInsteadOfScanning() throws Exception {
+        java.lang.reflect.Field field = GenerateWeeklyReportFunction.class.getDeclaredField("aggregatesTable");
+        field.setAccessible(true);
+        field.set(function, "FeedbackAggregatesTable");
+
+        Map<String, AttributeValue> week = new HashMap<>();
+        week.put("rollupKey", AttributeValue.builder().s("WEEK#2026-W02").build());
+        week.put("total", AttributeValue.builder().n("4").build());
+        week.put("critical", AttributeValue.builder().n("2").build());
+        week.put("ratingSum", AttributeValue.builder().n("11").build());
+        week.put("ratingCount", AttributeValue.builder().n("4").build());
+        week.put("urgency#alta", AttributeValue.builder().n("1").build());
+        week.put("urgency#baixa", AttributeValue.builder().n("3").build());
+        week.put("category#UX", AttributeValue.builder().n("3").build());
+        week.put("category#Critical", AttributeValue.builder().n("1").build());
+        week.put("rating#1", AttributeValue.builder().n("1").build());
+        week.put("rating#5", AttributeValue.builder().n("2").build());
+        lambda.common.HyperLogLog reporters = new lambda.common.HyperLogLog();
+        lambda.common.KllSketch uxRatings = new lambda.common.KllSketch();
+        for (int i = 1; i <= 3; i++) {
+            reporters.offer("reporter-" + i);
+            uxRatings.update(i == 1 ? 1 : 5);
+        }
+        Map<String, AttributeValue> day = Map.of(
+            "rollupKey", AttributeValue.builder().s("DAY#2026-01-08").build(),
+            "total", AttributeValue.builder().n("4").build(),
+            "reporters", AttributeValue.builder().b(SdkBytes.fromByteArray(reporters.toBytes())).build(),
+            "ratingSketch#UX", AttributeValue.builder().b(SdkBytes.fromByteArray(uxRatings.toBytes())).build());
+        Map<String, AttributeValue> missing = Map.of("rollupKey", AttributeValue.builder().s("DAY#2026-01-09").build());
+
+        // A primeira resposta devolve uma chave não processada, lida na segunda chamada
+        when(mockDynamoDB.batchGetItem(any(BatchGetItemRequest.class)))
+            .thenReturn(BatchGetItemResponse.builder()
+                .responses(Map.of("FeedbackAggregatesTable", List.of(week)))
+                .unprocessedKeys(Map.of("FeedbackAggregatesTable", KeysAndAttributes.builder().keys(missing).build()))
+                .build())
+            .thenReturn(BatchGetItemResponse.builder()
+                .responses(Map.of("FeedbackAggregatesTable", List.of(day)))
+                .build());
+        when(mockS3.headBucket(any(HeadBucketRequest.class))).thenReturn(HeadBucketResponse.builder().build());
+        when(mockS3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+            .thenReturn(PutObjectResponse.builder().build());
+
+        function.handleRequest(new HashMap<>(Map.of("week", "2026-W02")), mockContext);
+
+        verify(mockDynamoDB, never()).scan(any(ScanRequest.class));
+        ArgumentCaptor<BatchGetItemRequest> requestCaptor = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+        verify(mockDynamoDB, times(2)).batchGetItem(requestCaptor.capture());
+        assertEquals(8, requestCaptor.getAllValues().getFirst().requestItems().get("FeedbackAggregatesTable").keys().size());
+
+        ArgumentCaptor<RequestBody> bodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        verify(mockS3).putObject(any(PutObjectRequest.class), bodyCaptor.capture());
+        String report = new String(bodyCaptor.getValue().contentStreamProvider().newStream().readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+        assertTrue(report.contains("Total de feedbacks: 4"));
+        assertTrue(report.contains(String.format("Média geral das notas: %.2f", 2.75)));
+        assertTrue(report.contains("Alta: 1 feedbacks"));
+        assertTrue(report.contains("Críticos: 2 feedbacks"));
+        assertTrue(report.contains("UX: 3 feedbacks"));
+        assertTrue(report.contains("5: 2 feedbacks"));
+        assertTrue(report.contains("2026-01-08: 4 avaliações"));
+        assertTrue(report.contains("Clientes distintos (estimativa): 3"));
+        assertTrue(report.contains(String.format("UX: %.1f / %.1f / %.1f (3 notas)", 1.0, 5.0, 5.0)));
+    }
 }
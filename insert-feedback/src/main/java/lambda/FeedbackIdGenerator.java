@@ -0,0 +1,89 @@
+package lambda;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gera feedbackIds no formato UUIDv7 (RFC 9562): 48 bits de timestamp em ms, 12 bits de contador
+ * monotônico e 62 bits aleatórios. IDs gerados pela mesma instância são estritamente crescentes,
+ * então ordenar por feedbackId equivale a ordenar por createdAt.
+ *
+ * Thread-safe sem lock (CAS sobre um único AtomicLong) e sem SecureRandom no caminho quente: os bits
+ * aleatórios vêm do ThreadLocalRandom misturados a um nonce do container. Containers restaurados do mesmo
+ * snapshot (SnapStart) compartilham o estado do ThreadLocalRandom, por isso o nonce é renovado em {@link #reseed()}.
+ */
+final class FeedbackIdGenerator {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int COUNTER_BITS = 12;
+
+    // Buffer de formatação reaproveitado por thread: a única alocação por ID é a String final
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[36]);
+
+    // timestamp (ms) << 12 | contador do milissegundo
+    private final AtomicLong state = new AtomicLong();
+    private volatile long nonce = new SecureRandom().nextLong();
+
+    String nextId() {
+        return nextId(System.currentTimeMillis());
+    }
+
+    String nextId(long epochMillis) {
+        long previous;
+        long next;
+        do {
+            previous = state.get();
+            if (epochMillis > previous >>> COUNTER_BITS) {
+                // Novo milissegundo: contador parte de um valor aleatório na metade inferior,
+                // deixando espaço para IDs seguintes no mesmo ms
+                next = epochMillis << COUNTER_BITS | ThreadLocalRandom.current().nextInt(1 << (COUNTER_BITS - 1));
+            } else {
+                // Mesmo ms (ou relógio voltou): incrementa; o estouro do contador avança o timestamp
+                next = previous + 1;
+            }
+        } while (!state.compareAndSet(previous, next));
+
+        long msb = (next >>> COUNTER_BITS) << 16 | 0x7000L | (next & 0xFFFL);
+        long lsb = (ThreadLocalRandom.current().nextLong() ^ nonce) & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return format(msb, lsb);
+    }
+
+    /** Sorteia um novo nonce; chamado após o restore de um snapshot. */
+    void reseed() {
+        nonce = new SecureRandom().nextLong();
+    }
+
+    /** Timestamp (epoch ms) embutido em um ID gerado por esta classe. */
+    static long epochMillis(String id) {
+        long millis = 0;
+        for (int i = 0; i < 13; i++) {
+            if (i != 8) {
+                millis = millis << 4 | Character.digit(id.charAt(i), 16);
+            }
+        }
+        return millis;
+    }
+
+    private static String format(long msb, long lsb) {
+        byte[] out = BUFFER.get();
+        writeHex(out, 0, msb >>> 32, 8);
+        out[8] = '-';
+        writeHex(out, 9, msb >>> 16, 4);
+        out[13] = '-';
+        writeHex(out, 14, msb, 4);
+        out[18] = '-';
+        writeHex(out, 19, lsb >>> 48, 4);
+        out[23] = '-';
+        writeHex(out, 24, lsb, 12);
+        return new String(out, 0, 36, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void writeHex(byte[] out, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            out[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package lambda;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU limitado, com expiração, das respostas (status e corpo) já emitidas por Idempotency-Key.
+ * Vive enquanto o container estiver quente e responde retries repetidos sem ida ao DynamoDB.
+ */
+class IdempotencyCache {
+
+    record Response(int statusCode, Map<String, Object> body) {}
+
+    private record Entry(Response response, long expiresAtMillis) {}
+
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+
+    IdempotencyCache(int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized Response get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis() < System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.response();
+    }
+
+    synchronized void put(String key, int statusCode, Map<String, Object> body) {
+        entries.put(key, new Entry(new Response(statusCode, Map.copyOf(body)), System.currentTimeMillis() + ttlMillis));
+    }
+}
@@ -4,33 +4,131 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
-import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.http.crt.AwsCrtAsyncHttpClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import lambda.common.AwsClients;
+import lambda.common.ItemJson;
+import lambda.common.Priming;
+import lambda.common.TextCodec;
 
 public class InsertFeedbackFunction implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
+    private static final String TABLE_NAME = "FeedbacksTable";
+
+    // Limites do BatchWriteItem e da estratégia de retry de UnprocessedItems
+    private static final int BATCH_WRITE_LIMIT = 25;
+    private static final int BATCH_MAX_ATTEMPTS = 5;
+    private static final long BATCH_BASE_BACKOFF_MS = 50;
+    private static final long BATCH_MAX_BACKOFF_MS = 1000;
+
+    // createdAt com precisão fixa de ms: a ordem lexicográfica acompanha a ordem dos feedbackIds
+    private static final DateTimeFormatter CREATED_AT_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private static final FeedbackIdGenerator ID_GENERATOR = new FeedbackIdGenerator();
+
+    // Chave do GSI esparso critical-createdAt-index, presente apenas nos feedbacks críticos
+    private static final String CRITICAL_PK = "CRITICAL";
+
+    private static final String PRIMING_BODY =
+            "{\"fullName\":\"Priming\",\"category\":\"suggestion\",\"comment\":\"priming\",\"rating\":5}";
+
     private final DynamoDbClient dynamoDbClient;
+    // Preenchido apenas com DYNAMODB_CLIENT_MODE=async; nesse modo o cliente síncrono não é criado
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    // Preenchido apenas com INGESTION_MODE=async: o item vai para a fila e o write-feedbacks grava no DynamoDB
+    private final SqsClient sqsClient;
+    private final String ingestionQueueUrl = System.getenv("INGESTION_QUEUE_URL");
+    private final int maxBatchItems = Integer.parseInt(System.getenv().getOrDefault("MAX_BATCH_ITEMS", "500"));
+    private final int shardCount = Integer.parseInt(System.getenv().getOrDefault("PK_SHARD_COUNT", "1"));
+    private final String idempotencyTable = System.getenv().getOrDefault("IDEMPOTENCY_TABLE", "FeedbackIdempotencyTable");
+    private final long idempotencyTtlSeconds = Long.parseLong(System.getenv().getOrDefault("IDEMPOTENCY_TTL_SECONDS", "86400"));
+    private final IdempotencyCache idempotencyCache = new IdempotencyCache(
+            Integer.parseInt(System.getenv().getOrDefault("IDEMPOTENCY_CACHE_SIZE", "1000")),
+            idempotencyTtlSeconds * 1000);
+    // Requisições por minuto por identidade (claim email); 0 desliga o rate limiting
+    private final int rateLimitPerMinute = Integer.parseInt(System.getenv().getOrDefault("RATE_LIMIT_PER_MINUTE", "0"));
+    private final String rateLimitTable = System.getenv().getOrDefault("RATE_LIMIT_TABLE", "FeedbackRateLimitTable");
+    private final RateLimiter rateLimiter = new RateLimiter(
+            Integer.parseInt(System.getenv().getOrDefault("RATE_LIMIT_BURST", "10")),
+            rateLimitPerMinute,
+            Integer.parseInt(System.getenv().getOrDefault("RATE_LIMIT_CACHE_SIZE", "10000")));
     private final ObjectMapper mapper = new ObjectMapper();
 
     public InsertFeedbackFunction() {
-        this.dynamoDbClient = DynamoDbClient.builder()
-                .region(Region.US_EAST_1)
-                .build();
+        // DYNAMODB_CLIENT_MODE=async usa o DynamoDbAsyncClient sobre o HTTP client do AWS CRT
+        if (AwsClients.asyncMode("DYNAMODB")) {
+            this.dynamoDbClient = null;
+            this.dynamoDbAsyncClient = AwsClients.async("DYNAMODB", DynamoDbAsyncClient::builder, AwsCrtAsyncHttpClient.builder()
+                    .maxConcurrency(AwsClients.intEnv("DYNAMODB_MAX_CONCURRENCY", 50))
+                    .connectionTimeout(AwsClients.timeout("DYNAMODB", "CONNECT_TIMEOUT_MS", 1000))
+                    .connectionMaxIdleTime(Duration.ofSeconds(60)));
+        } else {
+            this.dynamoDbClient = AwsClients.sync("DYNAMODB", DynamoDbClient::builder);
+            this.dynamoDbAsyncClient = null;
+        }
+        this.sqsClient = "async".equalsIgnoreCase(System.getenv("INGESTION_MODE"))
+                ? AwsClients.sync("SQS", SqsClient::builder)
+                : null;
+        Priming.register("insert-feedback", this::prime, ID_GENERATOR::reseed);
     }
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
+        return Priming.measureFirstInvocation(context, () -> processRequest(input, context));
+    }
+
+    private APIGatewayProxyResponseEvent processRequest(APIGatewayProxyRequestEvent input, Context context) {
+        // O lote é cobrado por feedback dentro de handleBatchRequest
+        if (isBatchRequest(input)) {
+            return handleBatchRequest(input, context);
+        }
+
         Map<Object, Object> body = new HashMap<>();
 
         if (input.getBody() != null) {
@@ -41,6 +139,509 @@ public class InsertFeedbackFunction implements RequestHandler<APIGatewayProxyReq
             }
         }
 
+        String email = extractEmail(input);
+
+        // --- Idempotency-Key: retries do cliente devolvem o feedback já gravado ---
+        String idempotencyKey = extractHeader(input, "Idempotency-Key");
+        if (idempotencyKey != null) {
+            // A chave é escopada por usuário para que clientes diferentes não colidam
+            idempotencyKey = email + "#" + idempotencyKey;
+            IdempotencyCache.Response cached = idempotencyCache.get(idempotencyKey);
+            if (cached != null) {
+                return buildResponse(cached.statusCode(), cached.body());
+            }
+        }
+
+        String invalidText = invalidTextField(body);
+        if (invalidText != null) {
+            return buildResponse(400, Map.of("error", "Campo " + invalidText + " inválido"));
+        }
+
+        // No modo async não há escrita síncrona para rejeitar valores inválidos: a validação fica aqui
+        if (sqsClient != null) {
+            String invalid = invalidField(body);
+            if (invalid != null) {
+                return buildResponse(400, Map.of("error", "Campo " + invalid + " inválido"));
+            }
+        }
+
+        // --- Monta item DynamoDB ---
+        String feedbackId = ID_GENERATOR.nextId();
+        String createdAt = createdAtOf(feedbackId);
+        Map<String, AttributeValue> item = buildItem(body, email, feedbackId, createdAt);
+        // 202: o feedback foi aceito e será gravado pelo consumidor da fila
+        int statusCode = sqsClient != null ? 202 : 200;
+
+        if (idempotencyKey != null) {
+            try {
+                Map<String, AttributeValue> existing = claimIdempotencyKey(idempotencyKey, feedbackId, createdAt, statusCode);
+                if (existing != null) {
+                    Map<String, Object> responseBody = successBody(email, existing.get("feedbackId").s(), existing.get("createdAt").s());
+                    // Registros anteriores ao statusCode gravado vieram do modo síncrono
+                    AttributeValue originalStatus = existing.get("statusCode");
+                    int replayStatus = originalStatus != null ? Integer.parseInt(originalStatus.n()) : 200;
+                    idempotencyCache.put(idempotencyKey, replayStatus, responseBody);
+                    return buildResponse(replayStatus, responseBody);
+                }
+            } catch (Exception e) {
+                log(context, "Erro ao registrar Idempotency-Key: " + e.getMessage());
+                return buildResponse(500, Map.of("error", "Falha ao salvar feedback no banco"));
+            }
+        }
+
+        // Depois dos replays: o retry de um feedback já gravado não consome token nem recebe 429
+        APIGatewayProxyResponseEvent limited = checkRateLimit(rateLimitIdentity(input), context);
+        if (limited != null) {
+            if (idempotencyKey != null) {
+                releaseIdempotencyKey(idempotencyKey, context);
+            }
+            return limited;
+        }
+
+        try {
+            if (sqsClient != null) {
+                enqueue(item);
+            } else {
+                PutItemRequest request = PutItemRequest.builder()
+                        .tableName(TABLE_NAME)
+                        .item(item)
+                        .build();
+
+                putItem(request);
+            }
+        } catch (Exception e) {
+            if (idempotencyKey != null) {
+                releaseIdempotencyKey(idempotencyKey, context);
+            }
+            log(context, "Erro ao gravar feedback: " + e.getMessage());
+            return buildResponse(500, Map.of("error", sqsClient != null
+                    ? "Falha ao enfileirar feedback"
+                    : "Falha ao salvar feedback no banco"));
+        }
+
+        // --- Monta resposta JSON no formato desejado ---
+        Map<String, Object> responseBody = successBody(email, feedbackId, createdAt);
+        if (idempotencyKey != null) {
+            idempotencyCache.put(idempotencyKey, statusCode, responseBody);
+        }
+
+        return buildResponse(statusCode, responseBody);
+    }
+
+    private void enqueue(Map<String, AttributeValue> item) {
+        sqsClient.sendMessage(SendMessageRequest.builder()
+                .queueUrl(ingestionQueueUrl)
+                .messageBody(ItemJson.write(item))
+                .build());
+    }
+
+    // Campos de texto que buildItem lê como String; número ou objeto no lugar viraria ClassCastException
+    private static String invalidTextField(Map<?, ?> body) {
+        for (String field : List.of("fullName", "category", "comment", "urgency", "descricao")) {
+            Object value = body.get(field);
+            if (value != null && !(value instanceof String)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    // Campos numéricos que o DynamoDB rejeitaria na gravação
+    private static String invalidField(Map<?, ?> body) {
+        for (String field : List.of("rating", "nota")) {
+            Object value = body.get(field);
+            if (value == null || value instanceof Number) {
+                continue;
+            }
+            try {
+                new BigDecimal(value.toString());
+            } catch (NumberFormatException e) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    // Requisição fictícia pelos caminhos de parsing e serialização; nada é gravado
+    private void prime() {
+        try {
+            Map<Object, Object> body = mapper.readValue(PRIMING_BODY, Map.class);
+            buildItem(body, "priming", "priming", createdAtOf(ID_GENERATOR.nextId()));
+            buildResponse(200, successBody("priming", "priming", "priming"));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        // GetItem de uma chave inexistente aquece endpoint, credenciais, TLS e os modelos do SDK
+        getItem(GetItemRequest.builder()
+                .tableName(TABLE_NAME)
+                .key(Map.of("feedbackId", AttributeValue.builder().s("priming").build()))
+                .build());
+    }
+
+    private Map<String, Object> successBody(String email, String feedbackId, String createdAt) {
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("message", "Olá " + email + " seu feedback foi enviado com sucesso");
+        responseBody.put("feedbackId", feedbackId);
+        responseBody.put("createdAt", createdAt);
+        return responseBody;
+    }
+
+    /**
+     * Grava o registro de idempotência com PutItem condicional e TTL, junto com o status da resposta original.
+     * O TTL do DynamoDB apaga com atraso (até ~48 h), então um registro já expirado também é sobrescrito.
+     * Retorna null quando a chave foi registrada agora, ou o registro existente quando é um retry.
+     */
+    private Map<String, AttributeValue> claimIdempotencyKey(String idempotencyKey, String feedbackId, String createdAt,
+                                                            int statusCode) {
+        long now = Instant.now().getEpochSecond();
+        Map<String, AttributeValue> record = new HashMap<>();
+        record.put("idempotencyKey", AttributeValue.builder().s(idempotencyKey).build());
+        record.put("feedbackId", AttributeValue.builder().s(feedbackId).build());
+        record.put("createdAt", AttributeValue.builder().s(createdAt).build());
+        record.put("statusCode", AttributeValue.builder().n(String.valueOf(statusCode)).build());
+        record.put("expiresAt", AttributeValue.builder().n(String.valueOf(now + idempotencyTtlSeconds)).build());
+
+        try {
+            putItem(PutItemRequest.builder()
+                    .tableName(idempotencyTable)
+                    .item(record)
+                    .conditionExpression("attribute_not_exists(idempotencyKey) OR expiresAt < :now")
+                    .expressionAttributeValues(Map.of(":now", AttributeValue.builder().n(String.valueOf(now)).build()))
+                    .build());
+            return null;
+        } catch (ConditionalCheckFailedException e) {
+            return getItem(GetItemRequest.builder()
+                    .tableName(idempotencyTable)
+                    .key(Map.of("idempotencyKey", AttributeValue.builder().s(idempotencyKey).build()))
+                    .consistentRead(true)
+                    .build()).item();
+        }
+    }
+
+    // Libera a chave quando o feedback não foi gravado, para que o retry do cliente possa tentar de novo
+    private void releaseIdempotencyKey(String idempotencyKey, Context context) {
+        try {
+            deleteItem(DeleteItemRequest.builder()
+                    .tableName(idempotencyTable)
+                    .key(Map.of("idempotencyKey", AttributeValue.builder().s(idempotencyKey).build()))
+                    .build());
+        } catch (Exception e) {
+            log(context, "Erro ao liberar Idempotency-Key: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rate limiting por identidade, um token por feedback: o token bucket local recusa rajadas sem custo; o que
+     * passa por ele consome a cota da janela de um minuto no DynamoDB (UpdateItem atômico), que vale entre
+     * containers. Retorna null se a requisição pode seguir, senão a resposta 429 com Retry-After.
+     */
+    private APIGatewayProxyResponseEvent checkRateLimit(String identity, Context context) {
+        return allowedByRateLimit(identity, 1, context) > 0 ? null : tooManyRequests(identity);
+    }
+
+    // Quantos dos feedbacks pedidos cabem no bucket local e na cota compartilhada
+    private int allowedByRateLimit(String identity, int requested, Context context) {
+        if (rateLimitPerMinute <= 0) {
+            return requested;
+        }
+        int granted = rateLimiter.acquireUpTo(identity, requested);
+        if (granted == 0) {
+            return 0;
+        }
+        int allowed = consumeSharedQuota(identity, granted, context);
+        // Tokens que a cota compartilhada não concedeu voltam ao bucket local: nada foi gravado com eles
+        if (allowed < granted) {
+            rateLimiter.refund(identity, granted - allowed);
+        }
+        return allowed;
+    }
+
+    // Retry-After: o próximo token do bucket local ou, se ele já tem tokens, o fim da janela da cota
+    private APIGatewayProxyResponseEvent tooManyRequests(String identity) {
+        long retryAfterMillis = rateLimiter.millisUntilToken(identity);
+        if (retryAfterMillis == 0) {
+            long now = System.currentTimeMillis();
+            retryAfterMillis = 60_000 - now % 60_000;
+        }
+        APIGatewayProxyResponseEvent response = buildResponse(429, Map.of("error", "Limite de envios excedido, tente novamente mais tarde"));
+        response.getHeaders().put("Retry-After", String.valueOf(Math.max(1, (retryAfterMillis + 999) / 1000)));
+        return response;
+    }
+
+    /**
+     * Soma {@code requested} ao contador da janela se couber no limite. Se não couber, a resposta do condicional
+     * traz o contador atual e o que ainda resta da cota é pedido uma vez. Retorna quantos foram somados.
+     */
+    private int consumeSharedQuota(String identity, int requested, Context context) {
+        long now = System.currentTimeMillis();
+        long windowStart = now - now % 60_000;
+        Map<String, AttributeValue> key = Map.of("rateKey", AttributeValue.builder().s(identity + "#" + windowStart).build());
+        int amount = requested;
+        for (int attempt = 1; attempt <= 2 && amount > 0; attempt++) {
+            try {
+                updateItem(UpdateItemRequest.builder()
+                        .tableName(rateLimitTable)
+                        .key(key)
+                        .updateExpression("ADD requests :amount SET expiresAt = if_not_exists(expiresAt, :expiresAt)")
+                        .conditionExpression("attribute_not_exists(requests) OR requests <= :max")
+                        .expressionAttributeValues(Map.of(
+                                ":amount", AttributeValue.builder().n(String.valueOf(amount)).build(),
+                                ":max", AttributeValue.builder().n(String.valueOf(rateLimitPerMinute - amount)).build(),
+                                ":expiresAt", AttributeValue.builder().n(String.valueOf(windowStart / 1000 + 120)).build()))
+                        .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                        .build());
+                return amount;
+            } catch (ConditionalCheckFailedException e) {
+                AttributeValue current = e.hasItem() ? e.item().get("requests") : null;
+                amount = current != null ? Math.min(amount, rateLimitPerMinute - Integer.parseInt(current.n())) : 0;
+            } catch (Exception e) {
+                // Falha do contador não derruba a ingestão: o bucket local continua limitando
+                log(context, "Erro no contador de rate limiting: " + e.getMessage());
+                return requested;
+            }
+        }
+        return 0;
+    }
+
+    private String extractHeader(APIGatewayProxyRequestEvent input, String name) {
+        if (input.getHeaders() == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> header : input.getHeaders().entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null && !header.getValue().isBlank()) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private boolean isBatchRequest(APIGatewayProxyRequestEvent input) {
+        String path = input.getResource() != null ? input.getResource() : input.getPath();
+        return path != null && path.endsWith("/batch");
+    }
+
+    /**
+     * POST /feedbacks/batch: recebe um array de feedbacks e grava em lotes de 25 via BatchWriteItem.
+     * Retorna o resultado por item (na ordem de entrada) com o feedbackId gerado.
+     */
+    private APIGatewayProxyResponseEvent handleBatchRequest(APIGatewayProxyRequestEvent input, Context context) {
+        // Os feedbackIds do lote são gerados por item e não há registro de idempotência para ele: recusar a
+        // chave evita que o cliente conte com uma proteção contra retries que não existe
+        if (extractHeader(input, "Idempotency-Key") != null) {
+            return buildResponse(400, Map.of("error", "Idempotency-Key não é suportado em /feedbacks/batch"));
+        }
+
+        List<Object> entries;
+        try {
+            entries = input.getBody() != null ? mapper.readValue(input.getBody(), List.class) : null;
+        } catch (JsonProcessingException e) {
+            return buildResponse(400, Map.of("error", "Erro ao processar JSON de entrada"));
+        }
+
+        if (entries == null || entries.isEmpty()) {
+            return buildResponse(400, Map.of("error", "Lote de feedbacks vazio ou inválido"));
+        }
+        if (entries.size() > maxBatchItems) {
+            return buildResponse(400, Map.of("error", "Lote excede o limite de " + maxBatchItems + " feedbacks"));
+        }
+
+        String email = extractEmail(input);
+
+        // Um token por feedback: os que passam do limite voltam com erro no resultado do item
+        String identity = rateLimitIdentity(input);
+        int allowed = allowedByRateLimit(identity, entries.size(), context);
+        if (allowed == 0) {
+            return tooManyRequests(identity);
+        }
+
+        // --- Monta os itens e o resultado de cada posição do lote ---
+        List<Map<String, Object>> results = new ArrayList<>(entries.size());
+        List<WriteRequest> writes = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("index", i);
+            results.add(result);
+
+            if (i >= allowed) {
+                result.put("status", "erro");
+                result.put("error", "Limite de envios excedido, tente novamente mais tarde");
+                continue;
+            }
+            if (!(entries.get(i) instanceof Map<?, ?> entry)) {
+                result.put("status", "erro");
+                result.put("error", "Feedback inválido");
+                continue;
+            }
+            // Um item com tipo errado derrubaria o lote inteiro (ClassCastException aqui ou ValidationException
+            // no BatchWriteItem do chunk): ele sai do lote com o erro na sua posição
+            String invalid = invalidTextField(entry);
+            if (invalid == null) {
+                invalid = invalidField(entry);
+            }
+            if (invalid != null) {
+                result.put("status", "erro");
+                result.put("error", "Campo " + invalid + " inválido");
+                continue;
+            }
+
+            String feedbackId = ID_GENERATOR.nextId();
+            String createdAt = createdAtOf(feedbackId);
+            Map<String, AttributeValue> item = buildItem((Map<Object, Object>) entry, email, feedbackId, createdAt);
+            writes.add(WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build());
+
+            result.put("feedbackId", feedbackId);
+            result.put("createdAt", createdAt);
+            result.put("status", "ok");
+        }
+
+        // --- Grava em chunks de 25, coletando os feedbackIds que não puderam ser gravados ---
+        Set<String> failedIds = new HashSet<>();
+        List<CompletableFuture<Set<String>>> asyncChunks = new ArrayList<>();
+        for (int start = 0; start < writes.size(); start += BATCH_WRITE_LIMIT) {
+            List<WriteRequest> chunk = writes.subList(start, Math.min(start + BATCH_WRITE_LIMIT, writes.size()));
+            if (dynamoDbAsyncClient != null) {
+                // Modo async: todos os chunks ficam em voo ao mesmo tempo
+                asyncChunks.add(writeChunkAsync(chunk, 1, context));
+            } else {
+                failedIds.addAll(writeChunk(chunk, context));
+            }
+        }
+        for (CompletableFuture<Set<String>> chunk : asyncChunks) {
+            failedIds.addAll(chunk.join());
+        }
+
+        int failed = 0;
+        for (Map<String, Object> result : results) {
+            if (failedIds.contains(result.get("feedbackId"))) {
+                result.put("status", "erro");
+                result.put("error", "Falha ao salvar feedback no banco");
+            }
+            if (!"ok".equals(result.get("status"))) {
+                failed++;
+            }
+        }
+
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("message", "Olá " + email + ", " + (results.size() - failed) + " de " + results.size()
+                + " feedbacks foram enviados com sucesso");
+        responseBody.put("results", results);
+
+        int statusCode = failed == 0 ? 200 : (failed == results.size() ? 500 : 207);
+        return buildResponse(statusCode, responseBody);
+    }
+
+    /**
+     * Executa um BatchWriteItem e reenvia os UnprocessedItems com backoff exponencial e jitter.
+     * Retorna os feedbackIds que continuaram sem gravação após esgotar as tentativas.
+     */
+    private Set<String> writeChunk(List<WriteRequest> chunk, Context context) {
+        List<WriteRequest> pending = chunk;
+        for (int attempt = 1; attempt <= BATCH_MAX_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            if (attempt > 1) {
+                try {
+                    Thread.sleep(backoffMillis(attempt));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            try {
+                BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(batchWriteRequest(pending));
+                pending = response.unprocessedItems().getOrDefault(TABLE_NAME, List.of());
+            } catch (Exception e) {
+                log(context, "Erro no BatchWriteItem (tentativa " + attempt + "): " + e.getMessage());
+                break;
+            }
+        }
+        return feedbackIds(pending);
+    }
+
+    // Mesma estratégia de writeChunk sobre o cliente async; o backoff usa um delayedExecutor em vez de sleep
+    private CompletableFuture<Set<String>> writeChunkAsync(List<WriteRequest> pending, int attempt, Context context) {
+        return dynamoDbAsyncClient.batchWriteItem(batchWriteRequest(pending))
+                .handle((response, error) -> {
+                    if (error != null) {
+                        log(context, "Erro no BatchWriteItem (tentativa " + attempt + "): " + error.getMessage());
+                        return CompletableFuture.completedFuture(feedbackIds(pending));
+                    }
+                    List<WriteRequest> unprocessed = response.unprocessedItems().getOrDefault(TABLE_NAME, List.of());
+                    if (unprocessed.isEmpty() || attempt >= BATCH_MAX_ATTEMPTS) {
+                        return CompletableFuture.completedFuture(feedbackIds(unprocessed));
+                    }
+                    return CompletableFuture
+                            .runAsync(() -> { }, CompletableFuture.delayedExecutor(backoffMillis(attempt + 1), TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> writeChunkAsync(unprocessed, attempt + 1, context));
+                })
+                .thenCompose(result -> result);
+    }
+
+    private BatchWriteItemRequest batchWriteRequest(List<WriteRequest> writes) {
+        return BatchWriteItemRequest.builder()
+                .requestItems(Map.of(TABLE_NAME, writes))
+                .build();
+    }
+
+    private Set<String> feedbackIds(List<WriteRequest> writes) {
+        Set<String> ids = new HashSet<>();
+        for (WriteRequest write : writes) {
+            ids.add(write.putRequest().item().get("feedbackId").s());
+        }
+        return ids;
+    }
+
+    // Backoff exponencial com jitter: 50, 100, 200, 400 ms (limitado a 1 s)
+    private long backoffMillis(int attempt) {
+        long cap = Math.min(BATCH_MAX_BACKOFF_MS, BATCH_BASE_BACKOFF_MS << (attempt - 2));
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+
+    // --- Acesso ao DynamoDB: cliente async quando habilitado, senão o síncrono ---
+
+    private PutItemResponse putItem(PutItemRequest request) {
+        return dynamoDbAsyncClient != null ? join(dynamoDbAsyncClient.putItem(request)) : dynamoDbClient.putItem(request);
+    }
+
+    private GetItemResponse getItem(GetItemRequest request) {
+        return dynamoDbAsyncClient != null ? join(dynamoDbAsyncClient.getItem(request)) : dynamoDbClient.getItem(request);
+    }
+
+    private DeleteItemResponse deleteItem(DeleteItemRequest request) {
+        return dynamoDbAsyncClient != null ? join(dynamoDbAsyncClient.deleteItem(request)) : dynamoDbClient.deleteItem(request);
+    }
+
+    private UpdateItemResponse updateItem(UpdateItemRequest request) {
+        return dynamoDbAsyncClient != null ? join(dynamoDbAsyncClient.updateItem(request)) : dynamoDbClient.updateItem(request);
+    }
+
+    // Desembrulha a CompletionException para que erros do SDK (ex.: ConditionalCheckFailedException) sejam tratados como no modo síncrono
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String createdAtOf(String feedbackId) {
+        return CREATED_AT_FORMAT.format(Instant.ofEpochMilli(FeedbackIdGenerator.epochMillis(feedbackId)));
+    }
+
+    // Sem email (chamada anônima) cada IP de origem tem o seu balde, em vez de todos dividirem "sem email"
+    private String rateLimitIdentity(APIGatewayProxyRequestEvent input) {
+        String email = extractEmail(input);
+        if (!"sem email".equals(email)) {
+            return email;
+        }
+        String sourceIp = input.getRequestContext() != null && input.getRequestContext().getIdentity() != null
+                ? input.getRequestContext().getIdentity().getSourceIp()
+                : null;
+        return sourceIp != null && !sourceIp.isBlank() ? "ip#" + sourceIp : email;
+    }
+
+    private String extractEmail(APIGatewayProxyRequestEvent input) {
         // --- Recupera claims do Cognito Authorizer ---
         Map<String, Object> claims = null;
         try {
@@ -50,42 +651,102 @@ public class InsertFeedbackFunction implements RequestHandler<APIGatewayProxyReq
             // log opcional
         }
 
-        String email = claims != null ? (String) claims.get("email") : "sem email";
+        return claims != null ? (String) claims.get("email") : "sem email";
+    }
 
-        // --- Monta item DynamoDB ---
+    private Map<String, AttributeValue> buildItem(Map<Object, Object> body, String email, String feedbackId, String createdAt) {
         Map<String, AttributeValue> item = new HashMap<>();
-        String feedbackId = UUID.randomUUID().toString();
-        String createdAt = DateTimeFormatter.ISO_INSTANT.format(Instant.now());
-        
         item.put("feedbackId", AttributeValue.builder().s(feedbackId).build());
-        item.put("pk", AttributeValue.builder().s("FEEDBACK").build());
+        item.put("pk", AttributeValue.builder().s(partitionKey(feedbackId)).build());
         item.put("createdAt", AttributeValue.builder().s(createdAt).build());
         item.put("fullName", AttributeValue.builder().s((String) body.getOrDefault("fullName", "undefined")).build());
         item.put("category", AttributeValue.builder().s((String) body.getOrDefault("category", "undefined")).build());
-        item.put("comment", AttributeValue.builder().s((String) body.getOrDefault("comment", "empty")).build());
+        item.put("comment", textAttribute((String) body.getOrDefault("comment", "empty")));
         item.put("rating", AttributeValue.builder().n(String.valueOf(body.getOrDefault("rating", 0))).build());
         item.put("urgency", AttributeValue.builder().s((String) body.getOrDefault("urgency", "baixa")).build());
         item.put("nota", AttributeValue.builder().n(String.valueOf(body.getOrDefault("nota", 0))).build());
-        item.put("descricao", AttributeValue.builder().s((String) body.getOrDefault("descricao", "")).build());
+        item.put("descricao", textAttribute((String) body.getOrDefault("descricao", "")));
+        putDerivedAttributes(item, createdAt);
+        String reporterId = reporterId(email);
+        if (reporterId != null) {
+            item.put("reporterId", AttributeValue.builder().s(reporterId).build());
+        }
+        return item;
+    }
 
+    /**
+     * Identificador estável e anônimo de quem enviou o feedback (os 8 primeiros bytes do SHA-256 do email
+     * normalizado), usado na contagem de clientes distintos sem gravar o email no item.
+     */
+    static String reporterId(String email) {
+        if (email == null || email.isBlank() || "sem email".equals(email)) {
+            return null;
+        }
         try {
-            PutItemRequest request = PutItemRequest.builder()
-                    .tableName("FeedbacksTable")
-                    .item(item)
-                    .build();
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(email.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-            dynamoDbClient.putItem(request);
-        } catch (Exception e) {
-            return buildResponse(500, Map.of("error", "Falha ao salvar feedback no banco"));
+    /**
+     * Atributos derivados, calculados uma vez na escrita para que os consumidores não os recalculem:
+     * isCritical (send-queue), dayBucket/isoWeek (relatório semanal). criticalPk só existe nos itens
+     * críticos, o que torna o GSI critical-createdAt-index esparso.
+     */
+    private static void putDerivedAttributes(Map<String, AttributeValue> item, String createdAt) {
+        boolean critical = isCritical(item.get("category").s(), item.get("rating").n());
+        LocalDate day = LocalDate.parse(createdAt.substring(0, 10));
+        item.put("isCritical", AttributeValue.builder().bool(critical).build());
+        item.put("dayBucket", AttributeValue.builder().s(day.toString()).build());
+        item.put("isoWeek", AttributeValue.builder().s(isoWeek(day)).build());
+        if (critical) {
+            item.put("criticalPk", AttributeValue.builder().s(CRITICAL_PK).build());
         }
+    }
 
-        // --- Monta resposta JSON no formato desejado ---
-        Map<String, Object> responseBody = new HashMap<>();
-        responseBody.put("message", "Olá " + email + " seu feedback foi enviado com sucesso");
-        responseBody.put("feedbackId", feedbackId);
-        responseBody.put("createdAt", createdAt);
+    // Mesma regra que o send-queue aplicava a cada registro do stream
+    static boolean isCritical(String category, String rating) {
+        if ("Critical".equalsIgnoreCase(category)) {
+            return true;
+        }
+        try {
+            return new BigDecimal(rating).compareTo(BigDecimal.valueOf(2)) <= 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
 
-        return buildResponse(200, responseBody);
+    // Semana ISO-8601, ex.: 2026-W02 (o ano é o da semana, não o do calendário)
+    static String isoWeek(LocalDate day) {
+        return String.format("%d-W%02d", day.get(IsoFields.WEEK_BASED_YEAR), day.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+    }
+
+    // Textos longos vão comprimidos como B (ver TextCodec); os curtos continuam S
+    private static AttributeValue textAttribute(String text) {
+        byte[] compressed = TextCodec.encode(text);
+        return compressed != null
+                ? AttributeValue.builder().b(SdkBytes.fromByteArrayUnsafe(compressed)).build()
+                : AttributeValue.builder().s(text).build();
+    }
+
+    /**
+     * Partição do GSI pk-createdAt-index. Com PK_SHARD_COUNT > 1 as escritas são espalhadas em
+     * FEEDBACK#0..N-1 (o list-feedbacks consulta todos os shards); com 1 mantém a partição única FEEDBACK.
+     */
+    private String partitionKey(String feedbackId) {
+        if (shardCount <= 1) {
+            return "FEEDBACK";
+        }
+        return "FEEDBACK#" + Math.floorMod(feedbackId.hashCode(), shardCount);
+    }
+
+    private void log(Context context, String message) {
+        if (context != null && context.getLogger() != null) {
+            context.getLogger().log(message);
+        }
     }
 
     private APIGatewayProxyResponseEvent buildResponse(int statusCode, Map<String, Object> body) {
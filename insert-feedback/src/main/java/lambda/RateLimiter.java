@@ -0,0 +1,81 @@
+package lambda;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket por identidade, local ao container: caminho rápido do rate limiting, que recusa
+ * rajadas sem ida ao DynamoDB. O limite global entre containers fica no contador do DynamoDB.
+ * Guarda no máximo maxKeys identidades (LRU); uma identidade descartada volta com o balde cheio.
+ */
+class RateLimiter {
+
+    private static final class Bucket {
+        double tokens;
+        long refilledAtNanos;
+
+        Bucket(double tokens, long refilledAtNanos) {
+            this.tokens = tokens;
+            this.refilledAtNanos = refilledAtNanos;
+        }
+    }
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<String, Bucket> buckets;
+
+    RateLimiter(int burst, int perMinute, int maxKeys) {
+        this(burst, perMinute, maxKeys, System::nanoTime);
+    }
+
+    RateLimiter(int burst, int perMinute, int maxKeys, LongSupplier nanoClock) {
+        this.capacity = Math.max(1, burst);
+        this.tokensPerNano = perMinute / 60e9;
+        this.nanoClock = nanoClock;
+        this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    /**
+     * Consome até {@code permits} tokens (um por feedback de um lote).
+     * @return quantos foram concedidos; com 0, {@link #millisUntilToken(String)} diz quando tentar de novo
+     */
+    synchronized int acquireUpTo(String key, int permits) {
+        Bucket bucket = refill(key);
+        int granted = (int) Math.min(permits, Math.floor(bucket.tokens));
+        bucket.tokens -= granted;
+        return granted;
+    }
+
+    /** Devolve tokens concedidos por {@link #acquireUpTo} e não usados, sem passar da capacidade. */
+    synchronized void refund(String key, int permits) {
+        Bucket bucket = refill(key);
+        bucket.tokens = Math.min(capacity, bucket.tokens + permits);
+    }
+
+    synchronized long millisUntilToken(String key) {
+        Bucket bucket = refill(key);
+        return bucket.tokens >= 1 ? 0 : millisUntilToken(bucket);
+    }
+
+    private Bucket refill(String key) {
+        long now = nanoClock.getAsLong();
+        Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(capacity, now));
+        bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.refilledAtNanos) * tokensPerNano);
+        bucket.refilledAtNanos = now;
+        return bucket;
+    }
+
+    private long millisUntilToken(Bucket bucket) {
+        if (tokensPerNano <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(1, (long) Math.ceil((1 - bucket.tokens) / tokensPerNano / 1_000_000));
+    }
+}
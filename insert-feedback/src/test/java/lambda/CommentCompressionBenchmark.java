@@ -0,0 +1,136 @@
+package lambda;
+
+import lambda.common.Benchmark;
+import lambda.common.Microbenchmark;
+import lambda.common.TextCodec;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Economia da compressão de comment/descricao: bytes por item e WCU (1 WCU por KB) com e sem TextCodec,
+ * sobre comentários sintéticos montados a partir de frases típicas de feedback, e custo de encode/decode.
+ * Fora da suíte padrão; executar com:
+ * mvn -pl insert-feedback test -Dtest=CommentCompressionBenchmark -Dbenchmark=true
+ */
+@Benchmark
+class CommentCompressionBenchmark {
+
+    private static final int ITEMS = 20_000;
+
+    private static final String[] SENTENCES = {
+            "Não consigo acessar as aulas do módulo desde ontem.",
+            "A plataforma fica travando quando abro o vídeo da aula.",
+            "O áudio está fora de sincronia com a legenda.",
+            "Já tentei pelo aplicativo e pelo site, mas o erro continua.",
+            "Limpei o cache, troquei de navegador e nada mudou.",
+            "O professor explica muito bem e o conteúdo é excelente.",
+            "Gostaria de sugerir mais exercícios práticos no fim de cada módulo.",
+            "O material de apoio está desatualizado em relação ao que é mostrado na aula.",
+            "O suporte demorou três dias para responder o meu chamado.",
+            "Seria melhor se as aulas ao vivo ficassem gravadas na plataforma.",
+            "A prova tinha questões sobre um conteúdo que não foi apresentado no curso.",
+            "Não recebi o certificado depois de concluir todas as atividades.",
+            "A página de login às vezes retorna erro de senha inválida mesmo com a senha correta.",
+            "Adorei a didática da professora, muito clara e objetiva.",
+            "O fórum de dúvidas poderia ter respostas mais rápidas dos tutores.",
+            "Estou muito satisfeita com o curso, recomendo para todos.",
+    };
+
+    @Test
+    void measureWriteSavings() throws Exception {
+        InsertFeedbackFunction function = new InsertFeedbackFunction();
+        Method buildItem = InsertFeedbackFunction.class.getDeclaredMethod("buildItem", Map.class, String.class, String.class, String.class);
+        buildItem.setAccessible(true);
+
+        Random random = new Random(42);
+        List<String> comments = new ArrayList<>(ITEMS);
+        long plainBytes = 0, storedBytes = 0, plainWcu = 0, storedWcu = 0, compressed = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            String comment = comment(random);
+            comments.add(comment);
+            Map<Object, Object> body = new HashMap<>();
+            body.put("fullName", "Maria da Silva");
+            body.put("category", "reclamação");
+            body.put("comment", comment);
+            body.put("rating", 2);
+            body.put("urgency", "alta");
+            body.put("descricao", random.nextInt(4) == 0 ? comment(random) : "");
+
+            @SuppressWarnings("unchecked")
+            Map<String, AttributeValue> item = (Map<String, AttributeValue>) buildItem.invoke(function, body, "maria@exemplo.com",
+                    "0190a3c2-7d4e-7b1a-8c3f-2a9d5e6f7a8b", "2026-01-08T10:00:00.000Z");
+            long plain = itemSize(item, true);
+            long stored = itemSize(item, false);
+            plainBytes += plain;
+            storedBytes += stored;
+            plainWcu += (plain + 1023) / 1024;
+            storedWcu += (stored + 1023) / 1024;
+            if (item.get("comment").b() != null) {
+                compressed++;
+            }
+        }
+
+        System.out.printf("itens=%d  comprimidos=%.1f%%%n", ITEMS, 100.0 * compressed / ITEMS);
+        System.out.printf("bytes/item: texto=%d  comprimido=%d  (%.1f%% menor)%n",
+                plainBytes / ITEMS, storedBytes / ITEMS, 100.0 * (plainBytes - storedBytes) / plainBytes);
+        System.out.printf("WCU total:  texto=%d  comprimido=%d  (%.1f%% menor)%n",
+                plainWcu, storedWcu, 100.0 * (plainWcu - storedWcu) / plainWcu);
+
+        measureCodec(comments);
+    }
+
+    private static void measureCodec(List<String> comments) {
+        List<byte[]> encoded = new ArrayList<>();
+        for (String comment : comments) {
+            byte[] data = TextCodec.encode(comment);
+            if (data != null) {
+                encoded.add(data);
+            }
+        }
+
+        int rounds = 3;
+        Microbenchmark.run("TextCodec.encode", comments.size() * rounds, comments.size() * rounds, i -> {
+            byte[] data = TextCodec.encode(comments.get(i % comments.size()));
+            return data != null ? data.length : 0;
+        });
+        Microbenchmark.run("TextCodec.decode", encoded.size() * rounds, encoded.size() * rounds,
+                i -> TextCodec.decode(encoded.get(i % encoded.size())).length());
+    }
+
+    // Entre 1 e 20 frases: a maior parte fica abaixo do limite, a cauda longa é onde a compressão atua
+    private static String comment(Random random) {
+        int sentences = 1 + (int) Math.min(19, Math.abs(random.nextGaussian() * 6));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sentences; i++) {
+            text.append(SENTENCES[random.nextInt(SENTENCES.length)]).append(' ');
+        }
+        return text.toString().trim();
+    }
+
+    // Regra de tamanho do DynamoDB: nome do atributo + valor (S em UTF-8, B em bytes, N aproximado)
+    private static long itemSize(Map<String, AttributeValue> item, boolean asPlainText) {
+        long size = 0;
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            size += entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+            AttributeValue value = entry.getValue();
+            if (value.s() != null) {
+                size += value.s().getBytes(StandardCharsets.UTF_8).length;
+            } else if (value.b() != null) {
+                size += asPlainText
+                        ? TextCodec.decode(value.b().asByteArray()).getBytes(StandardCharsets.UTF_8).length
+                        : value.b().asByteArray().length;
+            } else if (value.n() != null) {
+                size += value.n().length() / 2 + 1;
+            }
+        }
+        return size;
+    }
+}
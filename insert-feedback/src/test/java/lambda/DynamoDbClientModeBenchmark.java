@@ -0,0 +1,134 @@
+package lambda;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import lambda.common.AwsClients;
+import lambda.common.Benchmark;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * Compara DYNAMODB_CLIENT_MODE=sync (UrlConnection) e async (CRT) contra um stub local do DynamoDB:
+ * tempo de init (build do cliente + primeira chamada) e latência p50/p99 de PutItem.
+ * Cada modo roda em uma JVM nova para que o cold start inclua o carregamento de classes.
+ * Fora da suíte padrão; executar com:
+ * mvn -pl insert-feedback test -Dtest=DynamoDbClientModeBenchmark -Dbenchmark=true
+ */
+@Benchmark
+class DynamoDbClientModeBenchmark {
+
+    private static final int CALLS = 2_000;
+
+    @Test
+    void compareSyncAndAsyncModes() throws Exception {
+        // Sem TCP_NODELAY o stub soma ~40 ms de delayed ACK a cada resposta
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/x-amz-json-1.0");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            String endpoint = "http://127.0.0.1:" + server.getAddress().getPort();
+            for (String mode : List.of("sync", "async")) {
+                fork(mode, endpoint);
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void fork(String mode, String endpoint) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java,
+                "-cp", System.getProperty("java.class.path"),
+                "-Daws.accessKeyId=local", "-Daws.secretAccessKey=local",
+                Probe.class.getName())
+                .redirectErrorStream(true);
+        // A JVM filha monta os clientes pela mesma fábrica dos handlers, configurada por variáveis de ambiente
+        builder.environment().put("DYNAMODB_CLIENT_MODE", mode);
+        builder.environment().put("DYNAMODB_ENDPOINT", endpoint);
+        Process process = builder.start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            output.lines().filter(line -> !line.startsWith("SLF4J")).forEach(System.out::println);
+        }
+        process.waitFor();
+    }
+
+    /** Executado na JVM filha. */
+    public static final class Probe {
+
+        public static void main(String[] args) {
+            boolean async = AwsClients.asyncMode("DYNAMODB");
+            PutItemRequest request = PutItemRequest.builder()
+                    .tableName("FeedbacksTable")
+                    .item(Map.of("feedbackId", AttributeValue.builder().s("bench").build()))
+                    .build();
+
+            long start = System.nanoTime();
+            InsertFeedbackFunction function = new InsertFeedbackFunction();
+            DynamoDbClient sync = field(function, "dynamoDbClient");
+            DynamoDbAsyncClient asyncClient = field(function, "dynamoDbAsyncClient");
+            long built = System.nanoTime();
+            call(sync, asyncClient, request);
+            long firstCall = System.nanoTime();
+
+            long[] latencies = new long[CALLS];
+            for (int i = 0; i < CALLS; i++) {
+                long t0 = System.nanoTime();
+                call(sync, asyncClient, request);
+                latencies[i] = System.nanoTime() - t0;
+            }
+            Arrays.sort(latencies);
+
+            System.out.printf("%-6s init=%6.1f ms  first call=%6.1f ms  p50=%6.3f ms  p99=%6.3f ms%n",
+                    async ? "async" : "sync", (built - start) / 1e6, (firstCall - built) / 1e6,
+                    latencies[CALLS / 2] / 1e6, latencies[CALLS * 99 / 100] / 1e6);
+
+            if (sync != null) {
+                sync.close();
+            } else {
+                asyncClient.close();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T field(InsertFeedbackFunction function, String name) {
+            try {
+                var field = InsertFeedbackFunction.class.getDeclaredField(name);
+                field.setAccessible(true);
+                return (T) field.get(function);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static void call(DynamoDbClient sync, DynamoDbAsyncClient async, PutItemRequest request) {
+            if (sync != null) {
+                sync.putItem(request);
+            } else {
+                async.putItem(request).join();
+            }
+        }
+    }
+}
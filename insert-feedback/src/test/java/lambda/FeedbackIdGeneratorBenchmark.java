@@ -0,0 +1,27 @@
+package lambda;
+
+import lambda.common.Benchmark;
+import lambda.common.Microbenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+/**
+ * Microbenchmark FeedbackIdGenerator x UUID.randomUUID() (ns/op e bytes alocados/op).
+ * Fora da suíte padrão; executar com:
+ * mvn -pl insert-feedback test -Dtest=FeedbackIdGeneratorBenchmark -Dbenchmark=true
+ */
+@Benchmark
+class FeedbackIdGeneratorBenchmark {
+
+    private static final int WARMUP = 2_000_000;
+    private static final int ITERATIONS = 5_000_000;
+
+    @Test
+    void compareWithRandomUuid() {
+        FeedbackIdGenerator generator = new FeedbackIdGenerator();
+
+        Microbenchmark.run("UUID.randomUUID().toString()", WARMUP, ITERATIONS, i -> UUID.randomUUID().toString().hashCode());
+        Microbenchmark.run("FeedbackIdGenerator.nextId()", WARMUP, ITERATIONS, i -> generator.nextId().hashCode());
+    }
+}
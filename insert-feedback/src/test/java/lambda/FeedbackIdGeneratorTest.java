@@ -0,0 +1,73 @@
+package lambda;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeedbackIdGeneratorTest {
+
+    private final FeedbackIdGenerator generator = new FeedbackIdGenerator();
+
+    @Test
+    void nextIdShouldBeValidUuidVersion7() {
+        String id = generator.nextId(1767866400000L);
+
+        UUID uuid = UUID.fromString(id);
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertEquals(id, uuid.toString());
+        assertEquals(1767866400000L, FeedbackIdGenerator.epochMillis(id));
+    }
+
+    @Test
+    void idsShouldBeStrictlyIncreasingWithinSameMillisecondAndWhenClockGoesBack() {
+        String previous = generator.nextId(1767866400000L);
+        for (int i = 0; i < 10_000; i++) {
+            // Relógio parado e voltando: a ordem continua estritamente crescente
+            String next = generator.nextId(1767866400000L - (i % 3));
+            assertTrue(next.compareTo(previous) > 0, next + " deveria ser maior que " + previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void idsShouldSortLikeTheirTimestamps() {
+        String older = generator.nextId(1767866400000L);
+        String newer = generator.nextId(1767866400001L);
+
+        assertTrue(older.compareTo(newer) < 0);
+        assertTrue(FeedbackIdGenerator.epochMillis(older) < FeedbackIdGenerator.epochMillis(newer));
+    }
+
+    @Test
+    void concurrentCallersShouldNeverGetDuplicates() throws Exception {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        ids.add(generator.nextId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(160_000, ids.size());
+    }
+}
@@ -5,17 +5,38 @@ import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lambda.common.ItemJson;
+import lambda.common.TextCodec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
-
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -205,6 +226,29 @@ class InsertFeedbackFunctionTest {
     assertEquals("FeedbacksTable", capturedRequest.tableName());
   }
 
+  @Test
+  void testHandleRequest_LongCommentIsStoredCompressed() throws Exception {
+    String longComment = "Não consigo acessar as aulas do módulo 3 desde ontem. A plataforma fica travando "
+        + "no vídeo e o áudio está fora de sincronia com a legenda. Já tentei pelo aplicativo e pelo site, "
+        + "limpei o cache e troquei de navegador, mas o erro continua. O conteúdo do curso é muito bom e o "
+        + "professor explica muito bem, mas assim não consigo acompanhar as atividades da semana.";
+    APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+    request.setBody(mapper.writeValueAsString(Map.of("comment", longComment, "descricao", "Curta")));
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class)))
+            .thenReturn(PutItemResponse.builder().build());
+
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    assertEquals(200, response.getStatusCode());
+    ArgumentCaptor<PutItemRequest> requestCaptor = ArgumentCaptor.forClass(PutItemRequest.class);
+    verify(mockDynamoDbClient).putItem(requestCaptor.capture());
+    Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue> item = requestCaptor.getValue().item();
+
+    assertNull(item.get("comment").s());
+    assertEquals(longComment, TextCodec.decode(item.get("comment").b().asByteArray()));
+    assertEquals("Curta", item.get("descricao").s());
+  }
+
   @Test
   void testBuildResponse_JsonSerializationError() {
     // Este teste verifica se o método buildResponse trata erros de serialização
@@ -220,6 +264,627 @@ class InsertFeedbackFunctionTest {
     assertEquals("application/json", response.getHeaders().get("Content-Type"));
   }
 
+  @Test
+  void testHandleRequest_IdempotencyKeyRepeatedInSameContainerUsesCache() throws Exception {
+    // Arrange
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class)))
+            .thenReturn(PutItemResponse.builder().build());
+
+    APIGatewayProxyRequestEvent first = createValidRequestWithClaims();
+    first.setHeaders(Map.of("Idempotency-Key", "abc-123"));
+    APIGatewayProxyRequestEvent retry = createValidRequestWithClaims();
+    retry.setHeaders(Map.of("idempotency-key", "abc-123"));
+
+    // Act
+    APIGatewayProxyResponseEvent firstResponse = function.handleRequest(first, mockContext);
+    APIGatewayProxyResponseEvent retryResponse = function.handleRequest(retry, mockContext);
+
+    // Assert
+    assertEquals(200, firstResponse.getStatusCode());
+    assertEquals(200, retryResponse.getStatusCode());
+    Map<String, Object> firstBody = mapper.readValue(firstResponse.getBody(), Map.class);
+    Map<String, Object> retryBody = mapper.readValue(retryResponse.getBody(), Map.class);
+    assertEquals(firstBody.get("feedbackId"), retryBody.get("feedbackId"));
+
+    // Registro de idempotência condicional + feedback, apenas na primeira chamada
+    ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+    verify(mockDynamoDbClient, times(2)).putItem(captor.capture());
+    PutItemRequest claim = captor.getAllValues().get(0);
+    assertEquals("FeedbackIdempotencyTable", claim.tableName());
+    // Registro já expirado mas ainda não apagado pelo TTL não bloqueia a chave
+    assertEquals("attribute_not_exists(idempotencyKey) OR expiresAt < :now", claim.conditionExpression());
+    assertEquals(Long.parseLong(claim.expressionAttributeValues().get(":now").n()) + 86400,
+            Long.parseLong(claim.item().get("expiresAt").n()), 5);
+    assertEquals("200", claim.item().get("statusCode").n());
+    assertEquals("test@example.com#abc-123", claim.item().get("idempotencyKey").s());
+    assertNotNull(claim.item().get("expiresAt").n());
+    assertEquals("FeedbacksTable", captor.getAllValues().get(1).tableName());
+  }
+
+  @Test
+  void testHandleRequest_IdempotencyKeyAlreadyStoredReturnsOriginalFeedback() throws Exception {
+    // Arrange
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().message("exists").build());
+    when(mockDynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                    "idempotencyKey", software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().s("test@example.com#abc-123").build(),
+                    "feedbackId", software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().s("fb-original").build(),
+                    "createdAt", software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().s("2026-01-08T10:00:00Z").build()))
+                    .build());
+
+    APIGatewayProxyRequestEvent request = createValidRequestWithClaims();
+    request.setHeaders(Map.of("Idempotency-Key", "abc-123"));
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    // Assert
+    assertEquals(200, response.getStatusCode());
+    Map<String, Object> responseBody = mapper.readValue(response.getBody(), Map.class);
+    assertEquals("fb-original", responseBody.get("feedbackId"));
+    assertEquals("2026-01-08T10:00:00Z", responseBody.get("createdAt"));
+    // Apenas a tentativa condicional; o feedback duplicado não é gravado
+    verify(mockDynamoDbClient, times(1)).putItem(any(PutItemRequest.class));
+  }
+
+  @Test
+  void testHandleRequest_IdempotencyReplayKeepsOriginalAsyncStatus() throws Exception {
+    // Arrange
+    SqsClient sqsClient = mock(SqsClient.class);
+    when(sqsClient.sendMessage(any(SendMessageRequest.class))).thenReturn(SendMessageResponse.builder().build());
+    var field = InsertFeedbackFunction.class.getDeclaredField("sqsClient");
+    field.setAccessible(true);
+    field.set(function, sqsClient);
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class)))
+            .thenReturn(PutItemResponse.builder().build())
+            .thenThrow(ConditionalCheckFailedException.builder().message("exists").build());
+
+    APIGatewayProxyRequestEvent request = createValidRequestWithClaims();
+    request.setHeaders(Map.of("Idempotency-Key", "abc-123"));
+
+    // Act
+    APIGatewayProxyResponseEvent first = function.handleRequest(request, mockContext);
+    APIGatewayProxyResponseEvent cachedRetry = function.handleRequest(request, mockContext);
+
+    // Assert
+    assertEquals(202, first.getStatusCode());
+    assertEquals(202, cachedRetry.getStatusCode());
+    ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+    verify(mockDynamoDbClient).putItem(captor.capture());
+    assertEquals("202", captor.getValue().item().get("statusCode").n());
+  }
+
+  @Test
+  void testHandleRequest_IdempotencyReplayFromTableUsesStoredStatus() throws Exception {
+    // Arrange
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().message("exists").build());
+    when(mockDynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                    "feedbackId", AttributeValue.builder().s("fb-original").build(),
+                    "createdAt", AttributeValue.builder().s("2026-01-08T10:00:00Z").build(),
+                    "statusCode", AttributeValue.builder().n("202").build()))
+                    .build());
+    APIGatewayProxyRequestEvent request = createValidRequestWithClaims();
+    request.setHeaders(Map.of("Idempotency-Key", "abc-123"));
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    // Assert
+    assertEquals(202, response.getStatusCode());
+    assertEquals("fb-original", mapper.readValue(response.getBody(), Map.class).get("feedbackId"));
+  }
+
+  @Test
+  void testHandleBatchRequest_MalformedEntryIsReportedPerItem() throws Exception {
+    // Arrange
+    APIGatewayProxyRequestEvent request = createBatchRequest(0);
+    request.setBody("[{\"fullName\":\"Ana\",\"comment\":\"Bom\",\"rating\":5},"
+            + "{\"fullName\":123,\"comment\":{\"texto\":\"x\"},\"rating\":4},"
+            + "{\"fullName\":\"Bia\",\"rating\":\"cinco\"},"
+            + "{\"fullName\":\"Caio\",\"comment\":\"Ok\",\"rating\":\"3\"}]");
+    when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+            .thenReturn(BatchWriteItemResponse.builder().build());
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    // Assert
+    assertEquals(207, response.getStatusCode());
+    List<Map<String, Object>> results = (List<Map<String, Object>>) mapper.readValue(response.getBody(), Map.class).get("results");
+    assertEquals(List.of("ok", "erro", "erro", "ok"), results.stream().map(result -> result.get("status")).toList());
+    assertEquals("Campo fullName inválido", results.get(1).get("error"));
+    assertEquals("Campo rating inválido", results.get(2).get("error"));
+    ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+    verify(mockDynamoDbClient).batchWriteItem(captor.capture());
+    assertEquals(2, captor.getValue().requestItems().get("FeedbacksTable").size());
+  }
+
+  @Test
+  void testHandleRequest_NonTextFieldReturns400() throws Exception {
+    // Arrange
+    APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+    request.setBody("{\"fullName\":\"Ana\",\"category\":[\"a\"],\"rating\":5}");
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    // Assert
+    assertEquals(400, response.getStatusCode());
+    verifyNoInteractions(mockDynamoDbClient);
+  }
+
+  @Test
+  void testHandleBatchRequest_RejectsIdempotencyKey() {
+    // Arrange
+    APIGatewayProxyRequestEvent request = createBatchRequest(2);
+    request.setHeaders(Map.of("Idempotency-Key", "abc-123"));
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    // Assert
+    assertEquals(400, response.getStatusCode());
+    verifyNoInteractions(mockDynamoDbClient);
+  }
+
+  @Test
+  void testHandleRequest_StoresDerivedAttributesForCriticalFeedback() throws Exception {
+    // Arrange
+    APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+    request.setBody(mapper.writeValueAsString(Map.of("category", "suggestion", "comment", "Ruim", "rating", 2)));
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class))).thenReturn(PutItemResponse.builder().build());
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    // Assert
+    assertEquals(200, response.getStatusCode());
+    ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+    verify(mockDynamoDbClient).putItem(captor.capture());
+    var item = captor.getValue().item();
+    assertTrue(item.get("isCritical").bool());
+    assertEquals("CRITICAL", item.get("criticalPk").s());
+    assertEquals(item.get("createdAt").s().substring(0, 10), item.get("dayBucket").s());
+    assertTrue(item.get("isoWeek").s().matches("\\d{4}-W\\d{2}"));
+    // Sem claim email não há como identificar o cliente
+    assertFalse(item.containsKey("reporterId"));
+  }
+
+  @Test
+  void testHandleRequest_NonCriticalFeedbackStaysOutOfCriticalIndex() {
+    // Arrange
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class))).thenReturn(PutItemResponse.builder().build());
+
+    // Act
+    function.handleRequest(createValidRequestWithClaims(), mockContext);
+
+    // Assert
+    ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+    verify(mockDynamoDbClient).putItem(captor.capture());
+    assertFalse(captor.getValue().item().get("isCritical").bool());
+    assertFalse(captor.getValue().item().containsKey("criticalPk"));
+    assertEquals(InsertFeedbackFunction.reporterId("test@example.com"), captor.getValue().item().get("reporterId").s());
+  }
+
+  @Test
+  void testReporterIdIsAnonymousAndNormalized() {
+    String reporterId = InsertFeedbackFunction.reporterId("Test@Example.com ");
+
+    assertEquals(InsertFeedbackFunction.reporterId("test@example.com"), reporterId);
+    assertTrue(reporterId.matches("[0-9a-f]{16}"));
+    assertNotEquals(InsertFeedbackFunction.reporterId("outro@example.com"), reporterId);
+    assertNull(InsertFeedbackFunction.reporterId("sem email"));
+  }
+
+  @Test
+  void testIsoWeekUsesWeekBasedYear() {
+    assertEquals("2026-W01", InsertFeedbackFunction.isoWeek(java.time.LocalDate.of(2025, 12, 29)));
+    assertEquals("2026-W53", InsertFeedbackFunction.isoWeek(java.time.LocalDate.of(2027, 1, 1)));
+    assertTrue(InsertFeedbackFunction.isCritical("critical", "5"));
+    assertFalse(InsertFeedbackFunction.isCritical("suggestion", "abc"));
+  }
+
+  @Test
+  void testHandleRequest_AsyncIngestionEnqueuesAndReturns202() throws Exception {
+    // Arrange
+    SqsClient sqsClient = mock(SqsClient.class);
+    when(sqsClient.sendMessage(any(SendMessageRequest.class))).thenReturn(SendMessageResponse.builder().build());
+    var field = InsertFeedbackFunction.class.getDeclaredField("sqsClient");
+    field.setAccessible(true);
+    field.set(function, sqsClient);
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(createValidRequest(), mockContext);
+
+    // Assert
+    assertEquals(202, response.getStatusCode());
+    Map<String, Object> responseBody = mapper.readValue(response.getBody(), Map.class);
+    ArgumentCaptor<SendMessageRequest> captor = ArgumentCaptor.forClass(SendMessageRequest.class);
+    verify(sqsClient).sendMessage(captor.capture());
+    var item = ItemJson.read(captor.getValue().messageBody());
+    assertEquals(responseBody.get("feedbackId"), item.get("feedbackId").s());
+    assertEquals(responseBody.get("createdAt"), item.get("createdAt").s());
+    verify(mockDynamoDbClient, never()).putItem(any(PutItemRequest.class));
+  }
+
+  @Test
+  void testHandleRequest_AsyncIngestionRejectsInvalidRating() throws Exception {
+    SqsClient sqsClient = mock(SqsClient.class);
+    var field = InsertFeedbackFunction.class.getDeclaredField("sqsClient");
+    field.setAccessible(true);
+    field.set(function, sqsClient);
+    APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+    request.setBody(mapper.writeValueAsString(Map.of("comment", "ok", "rating", "cinco")));
+
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    assertEquals(400, response.getStatusCode());
+    assertTrue(response.getBody().contains("rating"));
+    verifyNoInteractions(sqsClient);
+  }
+
+  @Test
+  void testHandleRequest_AsyncIngestionQueueFailureReturns500() throws Exception {
+    SqsClient sqsClient = mock(SqsClient.class);
+    when(sqsClient.sendMessage(any(SendMessageRequest.class)))
+            .thenThrow(SqsException.builder().message("indisponível").build());
+    var field = InsertFeedbackFunction.class.getDeclaredField("sqsClient");
+    field.setAccessible(true);
+    field.set(function, sqsClient);
+
+    APIGatewayProxyResponseEvent response = function.handleRequest(createValidRequest(), mockContext);
+
+    assertEquals(500, response.getStatusCode());
+    assertTrue(response.getBody().contains("Falha ao enfileirar feedback"));
+  }
+
+  @Test
+  void testHandleRequest_AsyncClientMode() throws Exception {
+    // Arrange
+    DynamoDbAsyncClient asyncClient = mock(DynamoDbAsyncClient.class);
+    when(asyncClient.putItem(any(PutItemRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(PutItemResponse.builder().build()));
+    when(asyncClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(BatchWriteItemResponse.builder().build()));
+    var field = InsertFeedbackFunction.class.getDeclaredField("dynamoDbAsyncClient");
+    field.setAccessible(true);
+    field.set(function, asyncClient);
+
+    // Act
+    APIGatewayProxyResponseEvent single = function.handleRequest(createValidRequest(), mockContext);
+    APIGatewayProxyResponseEvent batch = function.handleRequest(createBatchRequest(30), mockContext);
+
+    // Assert
+    assertEquals(200, single.getStatusCode());
+    assertEquals(200, batch.getStatusCode());
+    verify(asyncClient).putItem(any(PutItemRequest.class));
+    verify(asyncClient, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+    verifyNoInteractions(mockDynamoDbClient);
+  }
+
+  @Test
+  void testHandleBatchRequest_ChunksInto25ItemWrites() throws Exception {
+    // Arrange
+    APIGatewayProxyRequestEvent request = createBatchRequest(30);
+    when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+            .thenReturn(BatchWriteItemResponse.builder().build());
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    // Assert
+    assertEquals(200, response.getStatusCode());
+
+    ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+    verify(mockDynamoDbClient, times(2)).batchWriteItem(captor.capture());
+    assertEquals(25, captor.getAllValues().get(0).requestItems().get("FeedbacksTable").size());
+    assertEquals(5, captor.getAllValues().get(1).requestItems().get("FeedbacksTable").size());
+    verify(mockDynamoDbClient, never()).putItem(any(PutItemRequest.class));
+
+    Map<String, Object> responseBody = mapper.readValue(response.getBody(), Map.class);
+    List<Map<String, Object>> results = (List<Map<String, Object>>) responseBody.get("results");
+    assertEquals(30, results.size());
+    assertEquals(0, results.get(0).get("index"));
+    assertEquals("ok", results.get(29).get("status"));
+    assertNotNull(results.get(29).get("feedbackId"));
+  }
+
+  @Test
+  void testHandleBatchRequest_RetriesUnprocessedItems() throws Exception {
+    // Arrange
+    APIGatewayProxyRequestEvent request = createBatchRequest(3);
+    when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+            .thenAnswer(invocation -> {
+              BatchWriteItemRequest batch = invocation.getArgument(0);
+              List<WriteRequest> writes = batch.requestItems().get("FeedbacksTable");
+              // Primeira chamada devolve o último item como não processado
+              return BatchWriteItemResponse.builder()
+                      .unprocessedItems(writes.size() == 3
+                              ? Map.of("FeedbacksTable", List.of(writes.get(2)))
+                              : Map.of())
+                      .build();
+            });
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    // Assert
+    assertEquals(200, response.getStatusCode());
+    verify(mockDynamoDbClient, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+  }
+
+  @Test
+  void testHandleBatchRequest_ReportsItemsThatKeepFailing() throws Exception {
+    // Arrange
+    APIGatewayProxyRequestEvent request = createBatchRequest(2);
+    when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+            .thenAnswer(invocation -> {
+              BatchWriteItemRequest batch = invocation.getArgument(0);
+              List<WriteRequest> writes = batch.requestItems().get("FeedbacksTable");
+              return BatchWriteItemResponse.builder()
+                      .unprocessedItems(Map.of("FeedbacksTable", List.of(writes.get(writes.size() - 1))))
+                      .build();
+            });
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    // Assert
+    assertEquals(207, response.getStatusCode());
+    Map<String, Object> responseBody = mapper.readValue(response.getBody(), Map.class);
+    List<Map<String, Object>> results = (List<Map<String, Object>>) responseBody.get("results");
+    assertEquals("ok", results.get(0).get("status"));
+    assertEquals("erro", results.get(1).get("status"));
+  }
+
+  @Test
+  void testHandleBatchRequest_InvalidBody() {
+    // Arrange
+    APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+    request.setPath("/feedbacks/batch");
+    request.setBody("[]");
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    // Assert
+    assertEquals(400, response.getStatusCode());
+    verifyNoInteractions(mockDynamoDbClient);
+  }
+
+  @Test
+  void testHandleRequest_SharedQuotaExhaustedReturns429() throws Exception {
+    // Arrange
+    enableRateLimit(60, 10);
+    when(mockDynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().message("limite").build());
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(createValidRequest(), mockContext);
+
+    // Assert
+    assertEquals(429, response.getStatusCode());
+    long retryAfter = Long.parseLong(response.getHeaders().get("Retry-After"));
+    assertTrue(retryAfter >= 1 && retryAfter <= 60);
+    verify(mockDynamoDbClient, never()).putItem(any(PutItemRequest.class));
+  }
+
+  @Test
+  void testHandleRequest_LocalBucketRejectsBurstWithoutCallingDynamoDb() throws Exception {
+    // Arrange
+    enableRateLimit(60, 1);
+    when(mockDynamoDbClient.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder().build());
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class))).thenReturn(PutItemResponse.builder().build());
+
+    // Act
+    APIGatewayProxyResponseEvent first = function.handleRequest(createValidRequest(), mockContext);
+    APIGatewayProxyResponseEvent second = function.handleRequest(createValidRequest(), mockContext);
+
+    // Assert
+    assertEquals(200, first.getStatusCode());
+    assertEquals(429, second.getStatusCode());
+    assertEquals("1", second.getHeaders().get("Retry-After"));
+    ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(mockDynamoDbClient, times(1)).updateItem(captor.capture());
+    assertEquals("1", captor.getValue().expressionAttributeValues().get(":amount").n());
+    assertEquals("59", captor.getValue().expressionAttributeValues().get(":max").n());
+  }
+
+  @Test
+  void testHandleBatchRequest_ChargesOneTokenPerFeedback() throws Exception {
+    // Arrange
+    enableRateLimit(60, 3);
+    when(mockDynamoDbClient.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder().build());
+    when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+            .thenReturn(BatchWriteItemResponse.builder().build());
+
+    // Act
+    APIGatewayProxyResponseEvent first = function.handleRequest(createBatchRequest(5), mockContext);
+    APIGatewayProxyResponseEvent second = function.handleRequest(createBatchRequest(5), mockContext);
+
+    // Assert
+    assertEquals(207, first.getStatusCode());
+    List<Map<String, Object>> results = (List<Map<String, Object>>) mapper.readValue(first.getBody(), Map.class).get("results");
+    assertEquals(List.of("ok", "ok", "ok", "erro", "erro"), results.stream().map(result -> result.get("status")).toList());
+    ArgumentCaptor<UpdateItemRequest> quota = ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(mockDynamoDbClient).updateItem(quota.capture());
+    assertEquals("3", quota.getValue().expressionAttributeValues().get(":amount").n());
+    ArgumentCaptor<BatchWriteItemRequest> writes = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+    verify(mockDynamoDbClient).batchWriteItem(writes.capture());
+    assertEquals(3, writes.getValue().requestItems().get("FeedbacksTable").size());
+    // Bucket vazio: o lote seguinte inteiro é recusado
+    assertEquals(429, second.getStatusCode());
+  }
+
+  @Test
+  void testHandleBatchRequest_SharedQuotaGrantsOnlyWhatIsLeft() throws Exception {
+    // Arrange
+    enableRateLimit(60, 10);
+    when(mockDynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder()
+                    .item(Map.of("requests", AttributeValue.builder().n("58").build())).build())
+            .thenReturn(UpdateItemResponse.builder().build());
+    when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+            .thenReturn(BatchWriteItemResponse.builder().build());
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(createBatchRequest(5), mockContext);
+
+    // Assert
+    assertEquals(207, response.getStatusCode());
+    ArgumentCaptor<UpdateItemRequest> quota = ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(mockDynamoDbClient, times(2)).updateItem(quota.capture());
+    assertEquals("2", quota.getAllValues().get(1).expressionAttributeValues().get(":amount").n());
+    assertEquals("58", quota.getAllValues().get(1).expressionAttributeValues().get(":max").n());
+  }
+
+  @Test
+  void testHandleRequest_IdempotentReplayIsNotRateLimited() throws Exception {
+    // Arrange
+    enableRateLimit(60, 1);
+    when(mockDynamoDbClient.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder().build());
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class))).thenReturn(PutItemResponse.builder().build());
+
+    APIGatewayProxyRequestEvent first = createValidRequestWithClaims();
+    first.setHeaders(Map.of("Idempotency-Key", "abc-123"));
+    APIGatewayProxyRequestEvent retry = createValidRequestWithClaims();
+    retry.setHeaders(Map.of("Idempotency-Key", "abc-123"));
+
+    // Act
+    APIGatewayProxyResponseEvent firstResponse = function.handleRequest(first, mockContext);
+    APIGatewayProxyResponseEvent retryResponse = function.handleRequest(retry, mockContext);
+
+    // Assert: o bucket (burst 1) está vazio, mas o retry devolve o feedback gravado em vez de 429
+    assertEquals(200, firstResponse.getStatusCode());
+    assertEquals(200, retryResponse.getStatusCode());
+    assertEquals(mapper.readValue(firstResponse.getBody(), Map.class).get("feedbackId"),
+            mapper.readValue(retryResponse.getBody(), Map.class).get("feedbackId"));
+    verify(mockDynamoDbClient, times(1)).updateItem(any(UpdateItemRequest.class));
+  }
+
+  @Test
+  void testHandleRequest_RateLimitedRequestReleasesIdempotencyKey() throws Exception {
+    // Arrange
+    enableRateLimit(60, 10);
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class))).thenReturn(PutItemResponse.builder().build());
+    when(mockDynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().message("limite").build());
+
+    APIGatewayProxyRequestEvent request = createValidRequestWithClaims();
+    request.setHeaders(Map.of("Idempotency-Key", "abc-123"));
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(request, mockContext);
+
+    // Assert: a chave registrada é liberada para que o retry depois da janela grave o feedback
+    assertEquals(429, response.getStatusCode());
+    verify(mockDynamoDbClient, times(1)).putItem(any(PutItemRequest.class));
+    verify(mockDynamoDbClient).deleteItem(any(DeleteItemRequest.class));
+  }
+
+  @Test
+  void testHandleBatchRequest_TokensNotGrantedBySharedQuotaAreRefunded() throws Exception {
+    // Arrange: a cota compartilhada concede 2 dos 5 tokens tirados do bucket local (burst 5)
+    enableRateLimit(60, 5);
+    when(mockDynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder()
+                    .item(Map.of("requests", AttributeValue.builder().n("58").build())).build())
+            .thenReturn(UpdateItemResponse.builder().build());
+    when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+            .thenReturn(BatchWriteItemResponse.builder().build());
+
+    // Act
+    function.handleRequest(createBatchRequest(5), mockContext);
+
+    // Assert: os 3 não concedidos voltaram ao bucket local
+    ArgumentCaptor<UpdateItemRequest> quota = ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(mockDynamoDbClient, times(2)).updateItem(quota.capture());
+    String rateKey = quota.getValue().key().get("rateKey").s();
+    String identity = rateKey.substring(0, rateKey.lastIndexOf('#'));
+    var limiter = InsertFeedbackFunction.class.getDeclaredField("rateLimiter");
+    limiter.setAccessible(true);
+    assertEquals(3, ((RateLimiter) limiter.get(function)).acquireUpTo(identity, 5));
+  }
+
+  @Test
+  void testHandleRequest_AnonymousCallersAreLimitedBySourceIp() throws Exception {
+    // Arrange
+    enableRateLimit(60, 1);
+    when(mockDynamoDbClient.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder().build());
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class))).thenReturn(PutItemResponse.builder().build());
+
+    // Act
+    APIGatewayProxyResponseEvent first = function.handleRequest(anonymousRequest("203.0.113.1"), mockContext);
+    APIGatewayProxyResponseEvent other = function.handleRequest(anonymousRequest("203.0.113.2"), mockContext);
+    APIGatewayProxyResponseEvent again = function.handleRequest(anonymousRequest("203.0.113.1"), mockContext);
+
+    // Assert
+    assertEquals(200, first.getStatusCode());
+    assertEquals(200, other.getStatusCode());
+    assertEquals(429, again.getStatusCode());
+    ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(mockDynamoDbClient, times(2)).updateItem(captor.capture());
+    assertTrue(captor.getAllValues().get(0).key().get("rateKey").s().startsWith("ip#203.0.113.1#"));
+  }
+
+  private APIGatewayProxyRequestEvent anonymousRequest(String sourceIp) {
+    APIGatewayProxyRequestEvent request = createValidRequest();
+    APIGatewayProxyRequestEvent.ProxyRequestContext requestContext = new APIGatewayProxyRequestEvent.ProxyRequestContext();
+    requestContext.setIdentity(new APIGatewayProxyRequestEvent.RequestIdentity().withSourceIp(sourceIp));
+    request.setRequestContext(requestContext);
+    return request;
+  }
+
+  @Test
+  void testHandleRequest_RateLimitCounterErrorFailsOpen() throws Exception {
+    // Arrange
+    enableRateLimit(60, 10);
+    when(mockDynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(DynamoDbException.builder().message("indisponível").build());
+    when(mockDynamoDbClient.putItem(any(PutItemRequest.class))).thenReturn(PutItemResponse.builder().build());
+
+    // Act
+    APIGatewayProxyResponseEvent response = function.handleRequest(createValidRequest(), mockContext);
+
+    // Assert
+    assertEquals(200, response.getStatusCode());
+  }
+
+  private void enableRateLimit(int perMinute, int burst) throws Exception {
+    var limit = InsertFeedbackFunction.class.getDeclaredField("rateLimitPerMinute");
+    limit.setAccessible(true);
+    limit.set(function, perMinute);
+    var limiter = InsertFeedbackFunction.class.getDeclaredField("rateLimiter");
+    limiter.setAccessible(true);
+    limiter.set(function, new RateLimiter(burst, perMinute, 100));
+  }
+
+  private APIGatewayProxyRequestEvent createBatchRequest(int size) {
+    APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+    request.setPath("/feedbacks/batch");
+
+    List<Map<String, Object>> feedbacks = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      Map<String, Object> body = new HashMap<>();
+      body.put("fullName", "Cliente " + i);
+      body.put("category", "suggestion");
+      body.put("comment", "Comentário " + i);
+      body.put("rating", 4);
+      feedbacks.add(body);
+    }
+
+    try {
+      request.setBody(mapper.writeValueAsString(feedbacks));
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+
+    return request;
+  }
+
   private APIGatewayProxyRequestEvent createValidRequest() {
     APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
 
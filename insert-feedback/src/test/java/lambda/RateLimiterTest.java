@@ -0,0 +1,68 @@
+package lambda;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void tokensVoltamComOTempo() {
+        RateLimiter limiter = new RateLimiter(1, 60, 100, clock::get);
+        assertEquals(1, limiter.acquireUpTo("a@b.com", 1));
+
+        clock.addAndGet(400_000_000L);
+        assertEquals(0, limiter.acquireUpTo("a@b.com", 1));
+        assertEquals(600, limiter.millisUntilToken("a@b.com"));
+
+        clock.addAndGet(600_000_000L);
+        assertEquals(1, limiter.acquireUpTo("a@b.com", 1));
+    }
+
+    @Test
+    void tokensDevolvidosVoltamAoBaldeAteACapacidade() {
+        RateLimiter limiter = new RateLimiter(3, 60, 100, clock::get);
+        assertEquals(3, limiter.acquireUpTo("a@b.com", 3));
+
+        limiter.refund("a@b.com", 2);
+        assertEquals(2, limiter.acquireUpTo("a@b.com", 5));
+
+        limiter.refund("a@b.com", 10);
+        assertEquals(3, limiter.acquireUpTo("a@b.com", 5));
+    }
+
+    @Test
+    void loteConsomeUmTokenPorItemAteOQueHaNoBalde() {
+        RateLimiter limiter = new RateLimiter(3, 60, 100, clock::get);
+
+        assertEquals(3, limiter.acquireUpTo("a@b.com", 5));
+        assertEquals(0, limiter.acquireUpTo("a@b.com", 5));
+        assertEquals(1000, limiter.millisUntilToken("a@b.com"));
+
+        clock.addAndGet(2_000_000_000L);
+        assertEquals(2, limiter.acquireUpTo("a@b.com", 5));
+    }
+
+    @Test
+    void identidadesTemBaldesSeparados() {
+        RateLimiter limiter = new RateLimiter(1, 60, 100, clock::get);
+
+        assertEquals(1, limiter.acquireUpTo("a@b.com", 1));
+        assertEquals(1, limiter.acquireUpTo("c@d.com", 1));
+        assertEquals(0, limiter.acquireUpTo("a@b.com", 1));
+    }
+
+    @Test
+    void identidadeDescartadaPeloLruVoltaComBaldeCheio() {
+        RateLimiter limiter = new RateLimiter(1, 60, 2, clock::get);
+
+        assertEquals(1, limiter.acquireUpTo("a", 1));
+        assertEquals(1, limiter.acquireUpTo("b", 1));
+        assertEquals(1, limiter.acquireUpTo("c", 1));
+        assertEquals(1, limiter.acquireUpTo("a", 1));
+    }
+}
@@ -2,38 +2,78 @@ package lambda;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
 import software.amazon.awssdk.services.dynamodb.model.*;
-import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.http.crt.AwsCrtAsyncHttpClient;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lambda.common.AwsClients;
+import lambda.common.Priming;
+import lambda.common.TextCodec;
 
-import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ListFeedbacksFunction implements RequestHandler<Map<String, Object>, Map<String, Object>> {
 
+    private static final String PK_PREFIX = "FEEDBACK";
+    private static final String SHARD_EXHAUSTED = "DONE";
+
+    // GSI esparso: só os feedbacks críticos têm criticalPk (gravado pelo insert-feedback)
+    private static final String CRITICAL_INDEX = "critical-createdAt-index";
+    private static final String CRITICAL_PK = "CRITICAL";
+
+    // Consultas paralelas aos shards do GSI; threads virtuais reaproveitadas entre invocações
+    private static final ExecutorService SHARD_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
     private final DynamoDbClient ddb;
+    // Preenchido apenas com DYNAMODB_CLIENT_MODE=async; nesse modo o cliente síncrono não é criado
+    private final DynamoDbAsyncClient ddbAsync;
     private final String tableName = System.getenv("TABLE_NAME");
     private final int pageSize = Integer.parseInt(System.getenv().getOrDefault("DEFAULT_PAGE_SIZE", "100"));
+    private final int shardCount = Integer.parseInt(System.getenv().getOrDefault("PK_SHARD_COUNT", "1"));
+    // Rodadas extras por página para shards cuja página filtrada veio vazia (ver queryShards)
+    private final int maxRequeryRounds = Integer.parseInt(System.getenv().getOrDefault("SHARD_MAX_REQUERY_ROUNDS", "3"));
     private final ObjectMapper mapper = new ObjectMapper();
 
     public ListFeedbacksFunction() {
-        String endpoint = System.getenv("DYNAMODB_ENDPOINT"); // usado só em testes locais
-        String regionEnv = System.getenv("AWS_REGION");       // já existe na AWS automaticamente
-        Region region = Region.of(regionEnv != null ? regionEnv : "us-east-1");
-
-        DynamoDbClientBuilder builder = DynamoDbClient.builder().region(region);
-
-        if (endpoint != null && !endpoint.isEmpty()) {
-            builder.endpointOverride(URI.create(endpoint));
+        // DYNAMODB_ENDPOINT (testes locais) e AWS_REGION são tratados pela fábrica
+        if (AwsClients.asyncMode("DYNAMODB")) {
+            this.ddb = null;
+            this.ddbAsync = AwsClients.async("DYNAMODB", DynamoDbAsyncClient::builder, AwsCrtAsyncHttpClient.builder()
+                    .maxConcurrency(AwsClients.intEnv("DYNAMODB_MAX_CONCURRENCY", 50))
+                    .connectionTimeout(AwsClients.timeout("DYNAMODB", "CONNECT_TIMEOUT_MS", 1000))
+                    .connectionMaxIdleTime(Duration.ofSeconds(60)));
+        } else {
+            this.ddb = AwsClients.sync("DYNAMODB", DynamoDbClient::builder);
+            this.ddbAsync = null;
         }
-
-        this.ddb = builder.build();
+        Priming.register("list-feedbacks", this::prime);
     }
 
     @Override
     public Map<String, Object> handleRequest(Map<String, Object> event, Context context) {
+        return Priming.measureFirstInvocation(context, () -> handleEvent(event, context));
+    }
+
+    // Consulta real (somente leitura) em um intervalo vazio: aquece SDK, TLS, conversão e serialização
+    private void prime() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("startDate", "1970-01-01T00:00:00Z");
+        params.put("endDate", "1970-01-01T00:00:00Z");
+        Map<String, Object> result = processRequest(params);
+        result.put("items", convertItems(List.of(Map.of(
+                "feedbackId", AttributeValue.builder().s("priming").build(),
+                "rating", AttributeValue.builder().n("5").build()))));
+        createApiGatewayResponse(200, result);
+    }
+
+    private Map<String, Object> handleEvent(Map<String, Object> event, Context context) {
         try {
             // Verificar se é uma chamada do API Gateway
             boolean isApiGateway = event.containsKey("httpMethod") || event.containsKey("requestContext");
@@ -74,7 +114,7 @@ public class ListFeedbacksFunction implements RequestHandler<Map<String, Object>
         String startDate = (String) queryParams.get("startDate");
         String endDate = (String) queryParams.get("endDate");
         String urgency = (String) queryParams.get("urgency");
-        Map<String, Object> nextToken = (Map<String, Object>) queryParams.get("nextToken");
+        boolean criticalOnly = "true".equalsIgnoreCase(String.valueOf(queryParams.get("critical")));
 
         // Valores padrão se não fornecidos
         if (startDate == null || startDate.isEmpty()) {
@@ -84,16 +124,49 @@ public class ListFeedbacksFunction implements RequestHandler<Map<String, Object>
             endDate = "2030-12-31T23:59:59Z";
         }
 
+        // nextToken é sempre o cursor opaco em Base64, em todos os caminhos
+        String nextToken = (String) queryParams.get("nextToken");
+        Map<String, Object> result = new HashMap<>();
+        if (shardCount > 1 && !criticalOnly) {
+            queryShards(startDate, endDate, urgency, nextToken, result);
+        } else {
+            Map<String, Object> cursor = decodeCursor(nextToken);
+            Map<String, AttributeValue> startKey = cursor.isEmpty() ? null : convertMap(cursor);
+
+            // critical=true lê só o índice esparso, sem passar pelos shards nem pelos feedbacks não críticos
+            QueryResponse response = query(criticalOnly
+                    ? buildQuery(CRITICAL_INDEX, "criticalPk", CRITICAL_PK, startDate, endDate, urgency, startKey)
+                    : buildQuery(PK_PREFIX, startDate, endDate, urgency, startKey));
+
+            result.put("count", response.count());
+            result.put("items", convertItems(response.items()));
+            result.put("nextToken", response.lastEvaluatedKey().isEmpty() ? null : encodeCursor(toStringMap(response.lastEvaluatedKey())));
+        }
+        result.put("startDate", startDate);
+        result.put("endDate", endDate);
+        result.put("urgency", urgency);
+        result.put("critical", criticalOnly);
+
+        return result;
+    }
+
+    private QueryRequest buildQuery(String pk, String startDate, String endDate, String urgency,
+                                    Map<String, AttributeValue> exclusiveStartKey) {
+        return buildQuery("pk-createdAt-index", "pk", pk, startDate, endDate, urgency, exclusiveStartKey);
+    }
+
+    private QueryRequest buildQuery(String indexName, String keyAttribute, String pk, String startDate, String endDate,
+                                    String urgency, Map<String, AttributeValue> exclusiveStartKey) {
         Map<String, AttributeValue> exprValues = new HashMap<>();
-        exprValues.put(":pk", AttributeValue.builder().s("FEEDBACK").build());
+        exprValues.put(":pk", AttributeValue.builder().s(pk).build());
         exprValues.put(":start", AttributeValue.builder().s(startDate).build());
         exprValues.put(":end", AttributeValue.builder().s(endDate).build());
 
         QueryRequest.Builder queryBuilder = QueryRequest.builder()
                 .tableName(tableName)
-                .indexName("pk-createdAt-index")
+                .indexName(indexName)
                 .limit(pageSize)
-                .keyConditionExpression("pk = :pk AND createdAt BETWEEN :start AND :end");
+                .keyConditionExpression(keyAttribute + " = :pk AND createdAt BETWEEN :start AND :end");
 
         if (urgency != null && !urgency.isEmpty()) {
             exprValues.put(":urgency", AttributeValue.builder().s(urgency).build());
@@ -102,32 +175,204 @@ public class ListFeedbacksFunction implements RequestHandler<Map<String, Object>
 
         queryBuilder.expressionAttributeValues(exprValues);
 
-        if (nextToken != null && !nextToken.isEmpty()) {
-            queryBuilder.exclusiveStartKey(convertMap(nextToken));
+        if (exclusiveStartKey != null && !exclusiveStartKey.isEmpty()) {
+            queryBuilder.exclusiveStartKey(exclusiveStartKey);
         }
 
-        QueryResponse response = ddb.query(queryBuilder.build());
+        return queryBuilder.build();
+    }
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("count", response.count());
-        
+    /**
+     * Scatter-gather sobre as partições FEEDBACK#0..N-1 (mais a partição legada FEEDBACK, gravada antes
+     * do sharding). Cada shard é consultado em paralelo e os resultados são intercalados por createdAt
+     * (k-way merge). O nextToken é um cursor composto, em Base64, com a posição de cada shard.
+     */
+    private void queryShards(String startDate, String endDate, String urgency, String nextToken,
+                             Map<String, Object> result) {
+        Map<String, Object> cursor = decodeCursor(nextToken);
+
+        Map<String, CompletableFuture<QueryResponse>> futures = new LinkedHashMap<>();
+        for (int i = 0; i <= shardCount; i++) {
+            String pk = i < shardCount ? PK_PREFIX + "#" + i : PK_PREFIX;
+            Object position = cursor.get(pk);
+            if (SHARD_EXHAUSTED.equals(position)) {
+                continue;
+            }
+            Map<String, AttributeValue> startKey = position instanceof Map ? convertMap((Map<String, Object>) position) : null;
+            QueryRequest request = buildQuery(pk, startDate, endDate, urgency, startKey);
+            futures.put(pk, queryAsync(request));
+        }
+
+        List<String> shardKeys = new ArrayList<>(futures.keySet());
+        Map<String, QueryResponse> responses = new HashMap<>();
+        for (Map.Entry<String, CompletableFuture<QueryResponse>> entry : futures.entrySet()) {
+            responses.put(entry.getKey(), join(entry.getValue()));
+        }
+
+        // Com o filtro de urgency uma página pode vir vazia e com LastEvaluatedKey. Sem itens o shard não
+        // entraria no merge e os itens dele ainda não lidos poderiam ser anteriores aos da página, então cada
+        // um é consultado de novo (em paralelo) até trazer itens ou terminar, por no máximo maxRequeryRounds
+        // rodadas: um filtro muito seletivo não pode consumir a leitura da tabela inteira numa só invocação.
+        for (int round = 0; round < maxRequeryRounds; round++) {
+            futures.clear();
+            for (String pk : shardKeys) {
+                QueryResponse response = responses.get(pk);
+                if (response.items().isEmpty() && !response.lastEvaluatedKey().isEmpty()) {
+                    futures.put(pk, queryAsync(buildQuery(pk, startDate, endDate, urgency, response.lastEvaluatedKey())));
+                }
+            }
+            if (futures.isEmpty()) {
+                break;
+            }
+            for (Map.Entry<String, CompletableFuture<QueryResponse>> entry : futures.entrySet()) {
+                responses.put(entry.getKey(), join(entry.getValue()));
+            }
+        }
+
+        // --- k-way merge por createdAt (desempate por feedbackId) ---
+        Comparator<Map<String, AttributeValue>> order = Comparator
+                .comparing((Map<String, AttributeValue> item) -> stringAttr(item, "createdAt"))
+                .thenComparing(item -> stringAttr(item, "feedbackId"));
+        int[] positions = new int[shardKeys.size()];
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Comparator.comparing(
+                (Integer shard) -> responses.get(shardKeys.get(shard)).items().get(positions[shard]), order));
+        for (int shard = 0; shard < shardKeys.size(); shard++) {
+            if (!responses.get(shardKeys.get(shard)).items().isEmpty()) {
+                heap.add(shard);
+            }
+        }
+
+        // Shards que esgotaram as rodadas ainda vazios: só se sabe que os próximos itens deles vêm depois do
+        // LastEvaluatedKey, então a página para no menor deles (pode sair parcial, ou vazia, com o cursor).
+        Map<String, AttributeValue> bound = null;
+        for (String pk : shardKeys) {
+            QueryResponse response = responses.get(pk);
+            if (response.items().isEmpty() && !response.lastEvaluatedKey().isEmpty()
+                    && (bound == null || order.compare(response.lastEvaluatedKey(), bound) < 0)) {
+                bound = response.lastEvaluatedKey();
+            }
+        }
+
+        List<Map<String, AttributeValue>> merged = new ArrayList<>();
+        while (merged.size() < pageSize && !heap.isEmpty()) {
+            int next = heap.peek();
+            if (bound != null && order.compare(responses.get(shardKeys.get(next)).items().get(positions[next]), bound) > 0) {
+                break;
+            }
+            int shard = heap.poll();
+            QueryResponse response = responses.get(shardKeys.get(shard));
+            merged.add(response.items().get(positions[shard]++));
+
+            if (positions[shard] < response.items().size()) {
+                heap.add(shard);
+            } else if (!response.lastEvaluatedKey().isEmpty()) {
+                // O shard tem mais páginas: os próximos itens dele podem ser anteriores aos
+                // que restam nos outros shards, então a página termina aqui para manter a ordem.
+                break;
+            }
+        }
+
+        // --- Cursor composto: posição de cada shard após o merge ---
+        Map<String, Object> nextCursor = new LinkedHashMap<>(cursor);
+        boolean hasMore = false;
+        for (int shard = 0; shard < shardKeys.size(); shard++) {
+            String pk = shardKeys.get(shard);
+            QueryResponse response = responses.get(pk);
+            int consumed = positions[shard];
+            Map<String, AttributeValue> lastKey;
+            if (consumed < response.items().size()) {
+                lastKey = consumed > 0 ? indexKey(response.items().get(consumed - 1)) : null;
+            } else {
+                lastKey = response.lastEvaluatedKey().isEmpty() ? null : response.lastEvaluatedKey();
+            }
+
+            if (consumed < response.items().size() || lastKey != null) {
+                hasMore = true;
+                if (lastKey != null) {
+                    nextCursor.put(pk, toStringMap(lastKey));
+                }
+            } else {
+                nextCursor.put(pk, SHARD_EXHAUSTED);
+            }
+        }
+
+        result.put("count", merged.size());
+        result.put("items", convertItems(merged));
+        result.put("nextToken", hasMore ? encodeCursor(nextCursor) : null);
+    }
+
+    private QueryResponse query(QueryRequest request) {
+        return ddbAsync != null ? join(ddbAsync.query(request)) : ddb.query(request);
+    }
+
+    // Com o cliente async a consulta não ocupa thread; no modo síncrono roda em uma thread virtual
+    private CompletableFuture<QueryResponse> queryAsync(QueryRequest request) {
+        if (ddbAsync != null) {
+            return ddbAsync.query(request);
+        }
+        return CompletableFuture.supplyAsync(() -> ddb.query(request), SHARD_EXECUTOR);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Map<String, AttributeValue> indexKey(Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put("pk", item.get("pk"));
+        key.put("createdAt", item.get("createdAt"));
+        key.put("feedbackId", item.get("feedbackId"));
+        return key;
+    }
+
+    private String stringAttr(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value != null && value.s() != null ? value.s() : "";
+    }
+
+    private Map<String, Object> toStringMap(Map<String, AttributeValue> key) {
+        Map<String, Object> output = new HashMap<>();
+        key.forEach((k, v) -> output.put(k, v.s()));
+        return output;
+    }
+
+    private String encodeCursor(Map<String, Object> cursor) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mapper.writeValueAsBytes(cursor));
+        } catch (Exception e) {
+            throw new IllegalStateException("Falha ao gerar nextToken", e);
+        }
+    }
+
+    private Map<String, Object> decodeCursor(String token) {
+        if (token == null || token.isEmpty()) {
+            return new HashMap<>();
+        }
+        try {
+            return mapper.readValue(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8), Map.class);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("nextToken inválido", e);
+        }
+    }
+
+    private List<Map<String, Object>> convertItems(List<Map<String, AttributeValue>> items) {
         // Convert DynamoDB items to readable format
         List<Map<String, Object>> responseItems = new ArrayList<>();
-        for (Map<String, AttributeValue> item : response.items()) {
+        for (Map<String, AttributeValue> item : items) {
             Map<String, Object> convertedItem = new HashMap<>();
             for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
                 convertedItem.put(entry.getKey(), convertAttributeValue(entry.getValue()));
             }
             responseItems.add(convertedItem);
         }
-        
-        result.put("items", responseItems);
-        result.put("nextToken", response.lastEvaluatedKey().isEmpty() ? null : response.lastEvaluatedKey());
-        result.put("startDate", startDate);
-        result.put("endDate", endDate);
-        result.put("urgency", urgency);
-
-        return result;
+        return responseItems;
     }
 
     private Map<String, AttributeValue> convertMap(Map<String, Object> input) {
@@ -141,6 +386,9 @@ public class ListFeedbacksFunction implements RequestHandler<Map<String, Object>
     private Object convertAttributeValue(AttributeValue value) {
         if (value.s() != null) {
             return value.s();
+        } else if (value.b() != null) {
+            // Único uso de B na tabela: comment/descricao comprimidos
+            return TextCodec.decode(value.b().asByteArrayUnsafe());
         } else if (value.n() != null) {
             return value.n();
         } else if (value.bool() != null) {
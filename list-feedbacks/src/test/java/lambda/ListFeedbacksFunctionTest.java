@@ -2,10 +2,14 @@ package lambda;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import lambda.common.TextCodec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
@@ -13,6 +17,7 @@ import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -183,6 +188,27 @@ class ListFeedbacksFunctionTest {
         assertEquals("*", headers.get("Access-Control-Allow-Origin"));
     }
 
+    @Test
+    void handleRequestShouldDecodeCompressedComment() {
+        String longComment = "Não consigo acessar as aulas do módulo 3 desde ontem. A plataforma fica travando "
+                + "no vídeo e o áudio está fora de sincronia com a legenda. Já tentei pelo aplicativo e pelo site, "
+                + "mas o erro continua. O conteúdo do curso é muito bom e o professor explica muito bem.";
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("feedbackId", AttributeValue.builder().s("fb-1").build());
+        item.put("comment", AttributeValue.builder().b(SdkBytes.fromByteArray(TextCodec.encode(longComment))).build());
+        when(mockDynamoDB.query(any(QueryRequest.class)))
+                .thenReturn(QueryResponse.builder().items(List.of(item)).count(1).build());
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("startDate", "2026-01-01");
+        event.put("endDate", "2026-01-10");
+
+        Map<String, Object> result = function.handleRequest(event, mockContext);
+
+        List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("items");
+        assertEquals(longComment, items.get(0).get("comment"));
+    }
+
     @Test
     void handleRequestWithEmptyResultShouldReturnEmptyList() {
         // Preparar resposta vazia do DynamoDB
@@ -254,7 +280,7 @@ class ListFeedbacksFunctionTest {
     }
     
     @Test
-    void handleRequestWithNextTokenShouldPaginate() {
+    void handleRequestWithNextTokenShouldPaginate() throws Exception {
         // Preparar primeira página de resultados
         Map<String, AttributeValue> item = new HashMap<>();
         item.put("feedbackId", AttributeValue.builder().s("fb-789").build());
@@ -273,24 +299,48 @@ class ListFeedbacksFunctionTest {
 
         when(mockDynamoDB.query(any(QueryRequest.class))).thenReturn(queryResponse);
 
-        // Evento com nextToken
-        Map<String, Object> nextToken = new HashMap<>();
-        nextToken.put("feedbackId", "fb-123");
-        nextToken.put("pk", "FEEDBACK");
-
         Map<String, Object> event = new HashMap<>();
         event.put("startDate", "2026-01-01");
         event.put("endDate", "2026-01-10");
+
+        // Primeira página: o nextToken é o cursor opaco em Base64, como no caminho com shards
+        Map<String, Object> firstPage = function.handleRequest(event, mockContext);
+        String nextToken = (String) firstPage.get("nextToken");
+        assertNotNull(nextToken);
+
+        // Segunda página: o cursor volta como veio e vira o ExclusiveStartKey
+        clearInvocations(mockDynamoDB);
         event.put("nextToken", nextToken);
+        function.handleRequest(event, mockContext);
 
-        // Executar
-        Map<String, Object> result = function.handleRequest(event, mockContext);
+        ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(mockDynamoDB).query(captor.capture());
+        assertEquals(lastKey, captor.getValue().exclusiveStartKey());
+    }
 
-        // Verificar
-        assertNotNull(result);
-        assertNotNull(result.get("nextToken"));
-        Map<String, AttributeValue> returnedNextToken = (Map<String, AttributeValue>) result.get("nextToken");
-        assertEquals("fb-789", returnedNextToken.get("feedbackId").s());
+    @Test
+    void handleRequestWithCriticalFilterShouldReturnOpaqueCursor() throws Exception {
+        Map<String, AttributeValue> lastKey = Map.of(
+                "criticalPk", AttributeValue.builder().s("CRITICAL").build(),
+                "createdAt", AttributeValue.builder().s("2026-01-08T10:00:00Z").build(),
+                "feedbackId", AttributeValue.builder().s("fb-9").build());
+        when(mockDynamoDB.query(any(QueryRequest.class)))
+                .thenReturn(QueryResponse.builder().items(List.of()).count(0).lastEvaluatedKey(lastKey).build());
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("critical", "true");
+
+        Object nextToken = function.handleRequest(event, mockContext).get("nextToken");
+        assertInstanceOf(String.class, nextToken);
+
+        clearInvocations(mockDynamoDB);
+        event.put("nextToken", nextToken);
+        function.handleRequest(event, mockContext);
+
+        ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(mockDynamoDB).query(captor.capture());
+        assertEquals("critical-createdAt-index", captor.getValue().indexName());
+        assertEquals(lastKey, captor.getValue().exclusiveStartKey());
     }
     
     @Test
@@ -440,5 +490,229 @@ class ListFeedbacksFunctionTest {
         assertTrue(result.containsKey("body"));
         assertEquals(200, result.get("statusCode"));
     }
-}
 
+    @Test
+    void handleRequestWithShardsShouldMergeResultsByCreatedAt() throws Exception {
+        setField("shardCount", 2);
+
+        Map<String, List<Map<String, AttributeValue>>> shards = new HashMap<>();
+        shards.put("FEEDBACK#0", List.of(shardItem("FEEDBACK#0", "fb-1", "2026-01-08T10:00:00Z"),
+                shardItem("FEEDBACK#0", "fb-3", "2026-01-08T12:00:00Z")));
+        shards.put("FEEDBACK#1", List.of(shardItem("FEEDBACK#1", "fb-2", "2026-01-08T11:00:00Z")));
+        shards.put("FEEDBACK", List.of());
+        stubShardQueries(shards);
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("startDate", "2026-01-01");
+        event.put("endDate", "2026-01-10");
+
+        Map<String, Object> result = function.handleRequest(event, mockContext);
+
+        List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("items");
+        assertEquals(3, items.size());
+        assertEquals("fb-1", items.get(0).get("feedbackId"));
+        assertEquals("fb-2", items.get(1).get("feedbackId"));
+        assertEquals("fb-3", items.get(2).get("feedbackId"));
+        assertNull(result.get("nextToken"));
+        verify(mockDynamoDB, times(3)).query(any(QueryRequest.class));
+    }
+
+    @Test
+    void handleRequestWithCriticalFilterShouldQueryOnlySparseIndex() throws Exception {
+        setField("shardCount", 4);
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("feedbackId", AttributeValue.builder().s("fb-9").build());
+        item.put("criticalPk", AttributeValue.builder().s("CRITICAL").build());
+        item.put("createdAt", AttributeValue.builder().s("2026-01-08T10:00:00Z").build());
+        item.put("isCritical", AttributeValue.builder().bool(true).build());
+        when(mockDynamoDB.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder().items(item).count(1).build());
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("critical", "true");
+
+        Map<String, Object> result = function.handleRequest(event, mockContext);
+
+        ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(mockDynamoDB, times(1)).query(captor.capture());
+        assertEquals("critical-createdAt-index", captor.getValue().indexName());
+        assertTrue(captor.getValue().keyConditionExpression().startsWith("criticalPk = :pk"));
+        assertEquals("CRITICAL", captor.getValue().expressionAttributeValues().get(":pk").s());
+        List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("items");
+        assertEquals(true, items.get(0).get("isCritical"));
+    }
+
+    @Test
+    void handleRequestWithShardsShouldResumeFromCompositeCursor() throws Exception {
+        setField("shardCount", 2);
+        setField("pageSize", 2);
+
+        Map<String, List<Map<String, AttributeValue>>> shards = new HashMap<>();
+        shards.put("FEEDBACK#0", List.of(shardItem("FEEDBACK#0", "fb-1", "2026-01-08T10:00:00Z"),
+                shardItem("FEEDBACK#0", "fb-3", "2026-01-08T12:00:00Z")));
+        shards.put("FEEDBACK#1", List.of(shardItem("FEEDBACK#1", "fb-2", "2026-01-08T11:00:00Z")));
+        shards.put("FEEDBACK", List.of());
+        stubShardQueries(shards);
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("startDate", "2026-01-01");
+        event.put("endDate", "2026-01-10");
+
+        Map<String, Object> firstPage = function.handleRequest(event, mockContext);
+        assertEquals(2, firstPage.get("count"));
+        String nextToken = (String) firstPage.get("nextToken");
+        assertNotNull(nextToken);
+
+        // Segunda página: apenas o shard com itens pendentes é consultado, a partir do último item lido
+        clearInvocations(mockDynamoDB);
+        shards.put("FEEDBACK#0", List.of(shardItem("FEEDBACK#0", "fb-3", "2026-01-08T12:00:00Z")));
+        event.put("nextToken", nextToken);
+
+        Map<String, Object> secondPage = function.handleRequest(event, mockContext);
+
+        ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(mockDynamoDB, times(1)).query(captor.capture());
+        QueryRequest request = captor.getValue();
+        assertEquals("FEEDBACK#0", request.expressionAttributeValues().get(":pk").s());
+        assertEquals("2026-01-08T10:00:00Z", request.exclusiveStartKey().get("createdAt").s());
+
+        List<Map<String, Object>> items = (List<Map<String, Object>>) secondPage.get("items");
+        assertEquals(1, items.size());
+        assertEquals("fb-3", items.get(0).get("feedbackId"));
+        assertNull(secondPage.get("nextToken"));
+    }
+
+    @Test
+    void handleRequestWithFilteredEmptyShardPageShouldKeepQueryingThatShard() throws Exception {
+        setField("shardCount", 2);
+        setField("pageSize", 2);
+
+        // FEEDBACK#0: a primeira página filtrada vem vazia com LastEvaluatedKey; o item seguinte (10h) é o mais antigo
+        Map<String, AttributeValue> boundary = Map.of(
+                "pk", AttributeValue.builder().s("FEEDBACK#0").build(),
+                "createdAt", AttributeValue.builder().s("2026-01-08T09:00:00Z").build(),
+                "feedbackId", AttributeValue.builder().s("fb-0").build());
+        when(mockDynamoDB.query(any(QueryRequest.class))).thenAnswer(invocation -> {
+            QueryRequest request = invocation.getArgument(0);
+            String pk = request.expressionAttributeValues().get(":pk").s();
+            List<Map<String, AttributeValue>> items;
+            Map<String, AttributeValue> lastKey = Map.of();
+            if ("FEEDBACK#0".equals(pk) && request.exclusiveStartKey().isEmpty()) {
+                items = List.of();
+                lastKey = boundary;
+            } else if ("FEEDBACK#0".equals(pk)) {
+                items = List.of(shardItem(pk, "fb-1", "2026-01-08T10:00:00Z"));
+            } else if ("FEEDBACK#1".equals(pk)) {
+                items = List.of(shardItem(pk, "fb-2", "2026-01-08T11:00:00Z"), shardItem(pk, "fb-3", "2026-01-08T12:00:00Z"));
+            } else {
+                items = List.of();
+            }
+            return QueryResponse.builder().items(items).count(items.size()).lastEvaluatedKey(lastKey).build();
+        });
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("urgency", "HIGH");
+
+        Map<String, Object> result = function.handleRequest(event, mockContext);
+
+        List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("items");
+        assertEquals(List.of("fb-1", "fb-2"), items.stream().map(item -> item.get("feedbackId")).toList());
+        assertNotNull(result.get("nextToken"));
+        ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(mockDynamoDB, times(4)).query(captor.capture());
+        assertTrue(captor.getAllValues().stream().anyMatch(request -> boundary.equals(request.exclusiveStartKey())));
+    }
+
+    @Test
+    void handleRequestWithFilteredEmptyShardShouldStopAfterMaxRoundsWithPartialPage() throws Exception {
+        setField("shardCount", 2);
+        setField("maxRequeryRounds", 1);
+
+        // FEEDBACK#0 só devolve páginas filtradas vazias; o LastEvaluatedKey dele limita o que pode sair na página
+        Map<String, AttributeValue> boundary = Map.of(
+                "pk", AttributeValue.builder().s("FEEDBACK#0").build(),
+                "createdAt", AttributeValue.builder().s("2026-01-08T10:30:00Z").build(),
+                "feedbackId", AttributeValue.builder().s("fb-0").build());
+        when(mockDynamoDB.query(any(QueryRequest.class))).thenAnswer(invocation -> {
+            QueryRequest request = invocation.getArgument(0);
+            String pk = request.expressionAttributeValues().get(":pk").s();
+            if ("FEEDBACK#0".equals(pk)) {
+                return QueryResponse.builder().items(List.of()).count(0).lastEvaluatedKey(boundary).build();
+            }
+            List<Map<String, AttributeValue>> items = "FEEDBACK#1".equals(pk)
+                    ? List.of(shardItem(pk, "fb-1", "2026-01-08T10:00:00Z"), shardItem(pk, "fb-2", "2026-01-08T11:00:00Z"))
+                    : List.of();
+            return QueryResponse.builder().items(items).count(items.size()).build();
+        });
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("urgency", "HIGH");
+
+        Map<String, Object> result = function.handleRequest(event, mockContext);
+
+        // 3 consultas iniciais + 1 rodada extra para FEEDBACK#0, e só o item anterior ao limite
+        verify(mockDynamoDB, times(4)).query(any(QueryRequest.class));
+        List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("items");
+        assertEquals(List.of("fb-1"), items.stream().map(item -> item.get("feedbackId")).toList());
+        String nextToken = (String) result.get("nextToken");
+        assertNotNull(nextToken);
+
+        // A próxima página retoma FEEDBACK#0 do limite e FEEDBACK#1 depois do fb-1
+        clearInvocations(mockDynamoDB);
+        event.put("nextToken", nextToken);
+        function.handleRequest(event, mockContext);
+
+        ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(mockDynamoDB, atLeast(2)).query(captor.capture());
+        assertTrue(captor.getAllValues().stream().anyMatch(request -> boundary.equals(request.exclusiveStartKey())));
+        assertTrue(captor.getAllValues().stream().anyMatch(request -> "FEEDBACK#1".equals(request.expressionAttributeValues().get(":pk").s())
+                && "fb-1".equals(request.exclusiveStartKey().get("feedbackId").s())));
+    }
+
+    @Test
+    void handleRequestWithAsyncClientShouldQueryShardsWithoutSyncClient() throws Exception {
+        setField("shardCount", 2);
+        DynamoDbAsyncClient asyncClient = mock(DynamoDbAsyncClient.class);
+        when(asyncClient.query(any(QueryRequest.class))).thenAnswer(invocation -> {
+            QueryRequest request = invocation.getArgument(0);
+            String pk = request.expressionAttributeValues().get(":pk").s();
+            List<Map<String, AttributeValue>> items = "FEEDBACK#1".equals(pk)
+                    ? List.of(shardItem(pk, "fb-1", "2026-01-08T10:00:00Z"))
+                    : List.of();
+            return CompletableFuture.completedFuture(QueryResponse.builder().items(items).count(items.size()).build());
+        });
+        java.lang.reflect.Field field = ListFeedbacksFunction.class.getDeclaredField("ddbAsync");
+        field.setAccessible(true);
+        field.set(function, asyncClient);
+
+        Map<String, Object> event = new HashMap<>();
+        Map<String, Object> result = function.handleRequest(event, mockContext);
+
+        List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("items");
+        assertEquals(1, items.size());
+        assertEquals("fb-1", items.get(0).get("feedbackId"));
+        verify(asyncClient, times(3)).query(any(QueryRequest.class));
+        verifyNoInteractions(mockDynamoDB);
+    }
+
+    private void stubShardQueries(Map<String, List<Map<String, AttributeValue>>> shards) {
+        when(mockDynamoDB.query(any(QueryRequest.class))).thenAnswer(invocation -> {
+            QueryRequest request = invocation.getArgument(0);
+            List<Map<String, AttributeValue>> items = shards.get(request.expressionAttributeValues().get(":pk").s());
+            return QueryResponse.builder().items(items).count(items.size()).build();
+        });
+    }
+
+    private Map<String, AttributeValue> shardItem(String pk, String feedbackId, String createdAt) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("feedbackId", AttributeValue.builder().s(feedbackId).build());
+        item.put("pk", AttributeValue.builder().s(pk).build());
+        item.put("createdAt", AttributeValue.builder().s(createdAt).build());
+        return item;
+    }
+
+    private void setField(String name, int value) throws Exception {
+        java.lang.reflect.Field field = ListFeedbacksFunction.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(function, value);
+    }
+}
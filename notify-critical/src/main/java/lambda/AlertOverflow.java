@@ -0,0 +1,67 @@
+package lambda;
+
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fila de overflow dos alertas que não puderam ser enviados (breaker aberto ou tentativas esgotadas). O corpo
+ * é o evento original do EventBridge, para que o reenvio percorra o mesmo caminho; o motivo vai no atributo
+ * "reason". Mensagens que o reenvio não consegue entregar voltam a ficar visíveis e, esgotado o
+ * maxReceiveCount da fila, seguem para a FeedbackDLQ.
+ */
+class AlertOverflow {
+
+    static final int RECEIVE_LIMIT = 10;
+
+    private final SqsClient sqsClient;
+    private final String queueUrl;
+
+    AlertOverflow(SqsClient sqsClient, String queueUrl) {
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+    }
+
+    boolean enabled() {
+        return queueUrl != null && !queueUrl.isBlank();
+    }
+
+    void park(String eventJson, String reason) {
+        sqsClient.sendMessage(SendMessageRequest.builder()
+                .queueUrl(queueUrl)
+                .messageBody(eventJson)
+                .messageAttributes(Map.of("reason", MessageAttributeValue.builder()
+                        .dataType("String").stringValue(reason == null ? "desconhecido" : reason).build()))
+                .build());
+    }
+
+    List<Message> receive() {
+        return sqsClient.receiveMessage(ReceiveMessageRequest.builder()
+                .queueUrl(queueUrl)
+                .maxNumberOfMessages(RECEIVE_LIMIT)
+                .waitTimeSeconds(0)
+                .build()).messages();
+    }
+
+    void delete(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            entries.add(DeleteMessageBatchRequestEntry.builder()
+                    .id(String.valueOf(entries.size()))
+                    .receiptHandle(message.receiptHandle())
+                    .build());
+        }
+        sqsClient.deleteMessageBatch(DeleteMessageBatchRequest.builder().queueUrl(queueUrl).entries(entries).build());
+    }
+}
@@ -0,0 +1,77 @@
+package lambda;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker do provedor de e-mail, compartilhado pelas invocações do container. Fechado, deixa passar
+ * todas as chamadas e abre após {@code failureThreshold} falhas seguidas; aberto, recusa chamadas por
+ * {@code openMillis} e depois passa a meio-aberto, em que uma única chamada de sonda decide se fecha
+ * (sucesso) ou volta a abrir (falha).
+ */
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoTime;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probing;
+
+    CircuitBreaker(int failureThreshold, long openMillis, LongSupplier nanoTime) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openMillis * 1_000_000;
+        this.nanoTime = nanoTime;
+    }
+
+    /** @return se a chamada pode ser feita; em meio-aberto, só a sonda recebe true */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nanoTime.getAsLong() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            default:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probing = false;
+    }
+
+    synchronized void onFailure() {
+        probing = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nanoTime.getAsLong();
+        }
+    }
+
+    /**
+     * Chamada liberada por {@link #tryAcquire} que terminou sem resposta do provedor (interrompida ou com erro
+     * inesperado): não conta como sucesso nem falha, mas libera a sonda para que o meio-aberto não trave.
+     */
+    synchronized void release() {
+        probing = false;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+}
@@ -0,0 +1,84 @@
+package lambda;
+
+import lambda.common.AwsClients;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agrupamento do modo digest: cada feedback crítico cai na janela fixa (alinhada à época) que contém o
+ * horário do evento e, dentro dela, no grupo da sua categoria. Um grupo é enviado quando a janela já fechou
+ * ou quando atingiu o limiar de envio antecipado; os demais são adiados até o fim da janela. Cada grupo
+ * enviado vira um e-mail a cada {@code maxBatch} feedbacks.
+ *
+ * Variáveis: DIGEST_WINDOW_SECONDS (60), DIGEST_MAX_BATCH (50) e DIGEST_FLUSH_THRESHOLD (20).
+ */
+final class CriticalDigest {
+
+    record Entry(String messageId, String receiptHandle, Instant time, FeedbackEvent event) {}
+
+    record Group(Instant windowStart, Instant windowEnd, String category, List<Entry> entries) {}
+
+    record Plan(List<Group> flush, List<Group> deferred) {}
+
+    private final Duration window;
+    private final int maxBatch;
+    private final int flushThreshold;
+
+    CriticalDigest(Duration window, int maxBatch, int flushThreshold) {
+        if (window.toSeconds() < 1 || maxBatch < 1 || flushThreshold < 1) {
+            throw new IllegalArgumentException("Configuração de digest inválida: janela=" + window
+                    + ", lote=" + maxBatch + ", limiar=" + flushThreshold);
+        }
+        this.window = window;
+        this.maxBatch = maxBatch;
+        this.flushThreshold = flushThreshold;
+    }
+
+    static CriticalDigest fromEnvironment() {
+        return new CriticalDigest(Duration.ofSeconds(AwsClients.intEnv("DIGEST_WINDOW_SECONDS", 60)),
+                AwsClients.intEnv("DIGEST_MAX_BATCH", 50),
+                AwsClients.intEnv("DIGEST_FLUSH_THRESHOLD", 20));
+    }
+
+    Instant windowStart(Instant time) {
+        long seconds = window.toSeconds();
+        return Instant.ofEpochSecond(Math.floorDiv(time.getEpochSecond(), seconds) * seconds);
+    }
+
+    /**
+     * Separa o lote em grupos por janela e categoria, na ordem de chegada.
+     * @param now horário de referência para decidir se a janela do grupo já fechou
+     */
+    Plan plan(List<Entry> entries, Instant now) {
+        Map<String, Group> groups = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            Instant start = windowStart(entry.time());
+            String category = entry.event().category() == null ? "Sem categoria" : entry.event().category();
+            groups.computeIfAbsent(start.getEpochSecond() + "#" + category,
+                    key -> new Group(start, start.plus(window), category, new ArrayList<>())).entries().add(entry);
+        }
+
+        List<Group> flush = new ArrayList<>();
+        List<Group> deferred = new ArrayList<>();
+        for (Group group : groups.values()) {
+            boolean closed = !group.windowEnd().isAfter(now);
+            (closed || group.entries().size() >= flushThreshold ? flush : deferred).add(group);
+        }
+        return new Plan(flush, deferred);
+    }
+
+    // Partes de até maxBatch feedbacks; cada parte é um e-mail e falha ou é entregue de forma independente
+    List<List<Entry>> chunks(Group group) {
+        List<List<Entry>> chunks = new ArrayList<>();
+        List<Entry> entries = group.entries();
+        for (int start = 0; start < entries.size(); start += maxBatch) {
+            chunks.add(entries.subList(start, Math.min(start + maxBatch, entries.size())));
+        }
+        return chunks;
+    }
+}
@@ -1,5 +1,7 @@
 package lambda;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 public record FeedbackEvent(
         String feedbackId,
         String fullName,
@@ -7,4 +9,28 @@ public record FeedbackEvent(
         String comment,
         int rating,
         boolean isCritical
-) {}
+) {
+
+    /**
+     * Critério único de alerta dos três modos (immediate, batch e digest): a flag gravada pelo insert-feedback
+     * ou, para itens gravados sem ela, a categoria Critical.
+     */
+    boolean critical() {
+        return isCritical || "Critical".equals(category);
+    }
+
+    // detail do evento FeedbackCreated, como chega nas filas alimentadas pela CriticalFeedbackRule
+    static FeedbackEvent fromDetail(JsonNode detail) {
+        if (!detail.hasNonNull("feedbackId")) {
+            throw new IllegalArgumentException("evento sem detail.feedbackId");
+        }
+        return new FeedbackEvent(
+                detail.get("feedbackId").asText(),
+                detail.path("fullName").asText(null),
+                detail.path("category").asText(null),
+                detail.path("comment").asText(null),
+                detail.path("rating").asInt(),
+                detail.path("isCritical").asBoolean(false)
+        );
+    }
+}
@@ -0,0 +1,84 @@
+package lambda;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Cliente da API de envio do Mailtrap, criado uma vez por container: o HttpClient da JDK mantém as
+ * conexões abertas (keep-alive) entre invocações, então só o primeiro alerta paga o handshake TCP/TLS.
+ * Timeouts de conexão e de requisição limitam quanto um alerta pode esperar pelo provedor.
+ *
+ * Variáveis: MAILTRAP_TOKEN (obrigatória, parâmetro MailtrapToken do template), MAILTRAP_URL,
+ * MAILTRAP_CONNECT_TIMEOUT_MS (1000), MAILTRAP_REQUEST_TIMEOUT_MS (3000) e MAILTRAP_HTTP_VERSION (HTTP_1_1 ou HTTP_2).
+ */
+class MailtrapClient {
+
+    static final String DEFAULT_URL = "https://send.api.mailtrap.io/api/send";
+
+    private final HttpClient http;
+    private final URI endpoint;
+    private final String authorization;
+    private final Duration requestTimeout;
+
+    MailtrapClient(HttpClient http, URI endpoint, String token, Duration requestTimeout) {
+        this.http = http;
+        this.endpoint = endpoint;
+        this.authorization = "Bearer " + token;
+        this.requestTimeout = requestTimeout;
+    }
+
+    static MailtrapClient fromEnvironment() {
+        String token = requiredToken(System.getenv("MAILTRAP_TOKEN"));
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.valueOf(env("MAILTRAP_HTTP_VERSION", "HTTP_1_1")))
+                .connectTimeout(Duration.ofMillis(Long.parseLong(env("MAILTRAP_CONNECT_TIMEOUT_MS", "1000"))))
+                .build();
+        return new MailtrapClient(http,
+                URI.create(env("MAILTRAP_URL", DEFAULT_URL)),
+                token,
+                Duration.ofMillis(Long.parseLong(env("MAILTRAP_REQUEST_TIMEOUT_MS", "3000"))));
+    }
+
+    // Sem token o init falha: melhor que subir o container e só descobrir no primeiro alerta (401)
+    static String requiredToken(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalStateException("MAILTRAP_TOKEN não definido");
+        }
+        return value;
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    /**
+     * Envia o payload JSON e devolve o status HTTP.
+     * @throws IOException em erro de rede ou timeout (HttpTimeoutException)
+     */
+    int send(String json) throws IOException, InterruptedException {
+        return http.send(request(json), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * Envio assíncrono pelo mesmo pool de conexões; a future falha com HttpTimeoutException após o timeout
+     * da requisição.
+     */
+    CompletableFuture<Integer> sendAsync(String json) {
+        return http.sendAsync(request(json), HttpResponse.BodyHandlers.discarding()).thenApply(HttpResponse::statusCode);
+    }
+
+    HttpRequest request(String json) {
+        return HttpRequest.newBuilder(endpoint)
+                .timeout(requestTimeout)
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json; charset=UTF-8")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+}
@@ -0,0 +1,158 @@
+package lambda;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Envio ao Mailtrap protegido por {@link CircuitBreaker} e {@link RetryBudget}: até MAX_ATTEMPTS tentativas
+ * com backoff exponencial e jitter para erros de rede, timeouts, 429 e 5xx, desde que o breaker permita e
+ * haja orçamento. Outros 4xx são definitivos e não contam como falha do provedor. Usado pelos três modos de
+ * alerta: immediate e digest pelo {@link #send}; batch pelo {@link #sendAsync}, uma tentativa por mensagem.
+ *
+ * Variáveis: MAILTRAP_MAX_ATTEMPTS (3), BREAKER_FAILURE_THRESHOLD (5), BREAKER_OPEN_MS (30000),
+ * RETRY_BUDGET_RATIO (0.2) e RETRY_BUDGET_RESERVE (10).
+ */
+class MailtrapDelivery {
+
+    enum Outcome {
+        /** Provedor aceitou (2xx) */
+        SENT,
+        /** Provedor recusou o payload (4xx); reenviar não adianta */
+        REJECTED,
+        /** Tentativas ou orçamento esgotados */
+        FAILED,
+        /** Breaker aberto: nada foi enviado */
+        CIRCUIT_OPEN,
+        /** Já entregue segundo o {@link NotificationLedger}: nada foi enviado */
+        DUPLICATE,
+        /** Em envio por outra invocação segundo o {@link NotificationLedger}: nada foi enviado nem confirmado */
+        IN_FLIGHT
+    }
+
+    record Result(Outcome outcome, int status, String detail) {}
+
+    private static final long BASE_BACKOFF_MS = 50;
+    private static final long MAX_BACKOFF_MS = 1000;
+
+    private final MailtrapClient client;
+    private final CircuitBreaker breaker;
+    private final RetryBudget budget;
+    private final int maxAttempts;
+
+    MailtrapDelivery(MailtrapClient client, CircuitBreaker breaker, RetryBudget budget, int maxAttempts) {
+        this.client = client;
+        this.breaker = breaker;
+        this.budget = budget;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    static MailtrapDelivery fromEnvironment(MailtrapClient client) {
+        return new MailtrapDelivery(client,
+                new CircuitBreaker(intEnv("BREAKER_FAILURE_THRESHOLD", 5), intEnv("BREAKER_OPEN_MS", 30_000), System::nanoTime),
+                new RetryBudget(Double.parseDouble(env("RETRY_BUDGET_RATIO", "0.2")), intEnv("RETRY_BUDGET_RESERVE", 10)),
+                intEnv("MAILTRAP_MAX_ATTEMPTS", 3));
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        return Integer.parseInt(env(name, String.valueOf(defaultValue)));
+    }
+
+    Result send(String json) throws InterruptedException {
+        budget.onRequest();
+        Result last = new Result(Outcome.CIRCUIT_OPEN, 0, "circuit breaker aberto");
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            if (attempt > 1) {
+                if (!budget.tryRetry()) {
+                    return new Result(Outcome.FAILED, last.status(), last.detail() + " (orçamento de retentativas esgotado)");
+                }
+                Thread.sleep(backoffMillis(attempt));
+            }
+            if (!breaker.tryAcquire()) {
+                return attempt == 1 ? last : new Result(Outcome.CIRCUIT_OPEN, last.status(), last.detail());
+            }
+            boolean settled = false;
+            try {
+                int status = client.send(json);
+                settled = true;
+                last = settle(status);
+                if (last.outcome() != Outcome.FAILED) {
+                    return last;
+                }
+            } catch (IOException e) {
+                settled = true;
+                last = failed(e);
+            } finally {
+                // Interrompida sem resposta: sem isso a sonda do meio-aberto ficaria presa e o breaker não fecharia mais
+                if (!settled) {
+                    breaker.release();
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Uma única tentativa, sem bloquear: no modo batch quem reenvia é o SQS.
+     * Com o breaker aberto nada é enviado e a future já vem completa com CIRCUIT_OPEN.
+     */
+    CompletableFuture<Result> sendAsync(String json) {
+        budget.onRequest();
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.completedFuture(new Result(Outcome.CIRCUIT_OPEN, 0, "circuit breaker aberto"));
+        }
+        CompletableFuture<Integer> request;
+        try {
+            request = client.sendAsync(json);
+        } catch (RuntimeException e) {
+            breaker.release();
+            return CompletableFuture.completedFuture(new Result(Outcome.FAILED, 0, e.getClass().getSimpleName() + ": " + e.getMessage()));
+        }
+        return request.handle((status, error) -> {
+            if (error == null) {
+                return settle(status);
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof IOException e) {
+                return failed(e);
+            }
+            breaker.release();
+            return new Result(Outcome.FAILED, 0, cause.getClass().getSimpleName() + ": " + cause.getMessage());
+        });
+    }
+
+    // Registra a resposta no breaker; FAILED indica que vale tentar de novo
+    private Result settle(int status) {
+        if (status >= 200 && status < 300) {
+            breaker.onSuccess();
+            return new Result(Outcome.SENT, status, null);
+        }
+        if (status != 429 && status < 500) {
+            // O provedor respondeu: para o breaker isso é sucesso, o problema é a requisição
+            breaker.onSuccess();
+            return new Result(Outcome.REJECTED, status, "Código HTTP: " + status);
+        }
+        breaker.onFailure();
+        return new Result(Outcome.FAILED, status, "Código HTTP: " + status);
+    }
+
+    private Result failed(IOException e) {
+        breaker.onFailure();
+        return new Result(Outcome.FAILED, 0, e.getClass().getSimpleName() + ": " + e.getMessage());
+    }
+
+    CircuitBreaker.State state() {
+        return breaker.state();
+    }
+
+    private static long backoffMillis(int attempt) {
+        long cap = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << (attempt - 2));
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+}
@@ -0,0 +1,178 @@
+package lambda;
+
+import lambda.common.AwsClients;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registro de entregas por feedbackId e canal, para que reentregas do EventBridge e replays do stream não
+ * gerem o mesmo e-mail duas vezes. Antes de enviar, {@link #claim} grava o item PENDING com PutItem
+ * condicional; depois do envio, {@link #markSent} o marca SENT ou {@link #release} o apaga para permitir nova
+ * tentativa. Um PENDING mais antigo que o lease (invocação que morreu no meio do envio) pode ser retomado.
+ * Os itens expiram via TTL.
+ *
+ * Na frente da tabela fica um cache LRU, por container, das chaves já enviadas: a duplicata que cai no mesmo
+ * container é descartada sem chamar o DynamoDB nem o Mailtrap. Sem NOTIFICATION_LEDGER_TABLE só o cache atua.
+ *
+ * Variáveis: NOTIFICATION_LEDGER_TABLE, NOTIFICATION_LEDGER_TTL_SECONDS (7 dias),
+ * NOTIFICATION_LEDGER_LEASE_SECONDS (300) e NOTIFICATION_LEDGER_CACHE_SIZE (1024).
+ */
+class NotificationLedger {
+
+    static final String EMAIL = "email";
+
+    enum Claim {
+        /** Esta invocação deve enviar */
+        CLAIMED,
+        /** Já enviado (SENT): o evento pode ser confirmado sem novo envio */
+        DUPLICATE,
+        /**
+         * Em envio por outra invocação (PENDING dentro do lease): nada foi entregue ainda e o dono pode falhar e
+         * liberar. Quem chama não deve confirmar o evento, e sim devolvê-lo para nova tentativa
+         */
+        IN_FLIGHT
+    }
+
+    private static final String STATUS_PENDING = "PENDING";
+    private static final String STATUS_SENT = "SENT";
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+    private final long ttlSeconds;
+    private final long leaseSeconds;
+    private final Map<String, Boolean> recentlySent;
+    private final Clock clock;
+
+    NotificationLedger(DynamoDbClient dynamoDbClient, String tableName, long ttlSeconds, long leaseSeconds,
+                       int cacheSize, Clock clock) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+        this.ttlSeconds = ttlSeconds;
+        this.leaseSeconds = leaseSeconds;
+        this.clock = clock;
+        this.recentlySent = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    static NotificationLedger fromEnvironment() {
+        String table = System.getenv("NOTIFICATION_LEDGER_TABLE");
+        boolean enabled = table != null && !table.isBlank();
+        return new NotificationLedger(enabled ? AwsClients.sync("DYNAMODB", DynamoDbClient::builder) : null,
+                enabled ? table : null,
+                AwsClients.intEnv("NOTIFICATION_LEDGER_TTL_SECONDS", 7 * 24 * 3600),
+                AwsClients.intEnv("NOTIFICATION_LEDGER_LEASE_SECONDS", 300),
+                AwsClients.intEnv("NOTIFICATION_LEDGER_CACHE_SIZE", 1024),
+                Clock.systemUTC());
+    }
+
+    boolean enabled() {
+        return tableName != null;
+    }
+
+    /**
+     * @throws software.amazon.awssdk.core.exception.SdkException se a tabela não responder; quem chama decide
+     *         se envia mesmo assim
+     */
+    Claim claim(String feedbackId, String channel) {
+        String key = key(feedbackId, channel);
+        // get (e não containsKey) para atualizar a ordem de acesso do LRU
+        if (recentlySent.get(key) != null) {
+            return Claim.DUPLICATE;
+        }
+        if (!enabled()) {
+            return Claim.CLAIMED;
+        }
+        long now = clock.instant().getEpochSecond();
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("deliveryKey", AttributeValue.builder().s(key).build());
+        item.put("feedbackId", AttributeValue.builder().s(feedbackId).build());
+        item.put("channel", AttributeValue.builder().s(channel).build());
+        item.put("status", AttributeValue.builder().s(STATUS_PENDING).build());
+        item.put("claimedAt", AttributeValue.builder().n(String.valueOf(now)).build());
+        item.put("expiresAt", AttributeValue.builder().n(String.valueOf(now + ttlSeconds)).build());
+        try {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item)
+                    .conditionExpression("attribute_not_exists(deliveryKey) OR (#status = :pending AND claimedAt < :staleBefore)")
+                    .expressionAttributeNames(Map.of("#status", "status"))
+                    .expressionAttributeValues(Map.of(
+                            ":pending", AttributeValue.builder().s(STATUS_PENDING).build(),
+                            ":staleBefore", AttributeValue.builder().n(String.valueOf(now - leaseSeconds)).build()))
+                    .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                    .build());
+            return Claim.CLAIMED;
+        } catch (ConditionalCheckFailedException e) {
+            AttributeValue status = e.hasItem() ? e.item().get("status") : null;
+            if (status != null && STATUS_SENT.equals(status.s())) {
+                recentlySent.put(key, Boolean.TRUE);
+                return Claim.DUPLICATE;
+            }
+            return Claim.IN_FLIGHT;
+        }
+    }
+
+    void markSent(String feedbackId, String channel) {
+        String key = key(feedbackId, channel);
+        recentlySent.put(key, Boolean.TRUE);
+        if (!enabled()) {
+            return;
+        }
+        long now = clock.instant().getEpochSecond();
+        dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("deliveryKey", AttributeValue.builder().s(key).build()))
+                // Sem claim (tabela indisponível no início do envio) o item nasce aqui e precisa do TTL
+                .updateExpression("SET #status = :sent, sentAt = :now, expiresAt = if_not_exists(expiresAt, :expiresAt)")
+                .expressionAttributeNames(Map.of("#status", "status"))
+                .expressionAttributeValues(Map.of(
+                        ":sent", AttributeValue.builder().s(STATUS_SENT).build(),
+                        ":now", AttributeValue.builder().n(String.valueOf(now)).build(),
+                        ":expiresAt", AttributeValue.builder().n(String.valueOf(now + ttlSeconds)).build()))
+                .build());
+    }
+
+    // Só apaga o PENDING: um SENT gravado por outra invocação continua valendo
+    void release(String feedbackId, String channel) {
+        if (!enabled()) {
+            return;
+        }
+        try {
+            dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("deliveryKey", AttributeValue.builder().s(key(feedbackId, channel)).build()))
+                    .conditionExpression("#status = :pending")
+                    .expressionAttributeNames(Map.of("#status", "status"))
+                    .expressionAttributeValues(Map.of(":pending", AttributeValue.builder().s(STATUS_PENDING).build()))
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            // Já SENT ou expirado
+        }
+    }
+
+    void prime() {
+        if (enabled()) {
+            dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+        }
+    }
+
+    private static String key(String feedbackId, String channel) {
+        return feedbackId + "#" + channel;
+    }
+}
@@ -0,0 +1,161 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lambda.common.AwsClients;
+import lambda.common.Priming;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Modo batch dos alertas críticos: a CriticalFeedbackRule entrega os eventos na CriticalAlertQueue e esta
+ * função recebe até 10 por invocação. Os e-mails (um por feedback, como o notify-critical) são enviados em
+ * paralelo pelo {@link MailtrapDelivery#sendAsync}, com no máximo NOTIFY_MAX_IN_FLIGHT (4) requisições em
+ * andamento, e só as mensagens cujo envio falhou voltam em batchItemFailures. Com o circuit breaker aberto
+ * nenhuma requisição é feita: as mensagens voltam para a fila sem martelar o provedor. Feedbacks já notificados
+ * (ver {@link NotificationLedger}) são descartados antes do envio; os que outra invocação está enviando voltam
+ * em batchItemFailures.
+ */
+public class NotifyCriticalBatchFunction implements RequestHandler<SQSEvent, SQSBatchResponse> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final DateTimeFormatter SENT_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final MailtrapClient mailtrap;
+    private final MailtrapDelivery delivery;
+    private final NotificationLedger ledger;
+    private final int maxInFlight = Math.max(1, AwsClients.intEnv("NOTIFY_MAX_IN_FLIGHT", 4));
+
+    public NotifyCriticalBatchFunction() {
+        this.mailtrap = MailtrapClient.fromEnvironment();
+        this.delivery = MailtrapDelivery.fromEnvironment(mailtrap);
+        this.ledger = NotificationLedger.fromEnvironment();
+        Priming.register("notify-critical-batch", this::prime);
+    }
+
+    @Override
+    public SQSBatchResponse handleRequest(SQSEvent event, Context context) {
+        return Priming.measureFirstInvocation(context, () -> processEvent(event, context));
+    }
+
+    private SQSBatchResponse processEvent(SQSEvent event, Context context) {
+        List<SQSBatchResponse.BatchItemFailure> failures = new ArrayList<>();
+        Map<String, CompletableFuture<MailtrapDelivery.Result>> deliveries = new LinkedHashMap<>();
+        Map<String, FeedbackEvent> feedbacks = new HashMap<>();
+        Set<String> claimed = new HashSet<>();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        String now = LocalDateTime.now(NotifyCriticalFunction.ALERT_ZONE).format(SENT_AT);
+
+        for (SQSEvent.SQSMessage message : event.getRecords()) {
+            FeedbackEvent feedback;
+            try {
+                feedback = FeedbackEvent.fromDetail(MAPPER.readTree(message.getBody()).path("detail"));
+            } catch (Exception e) {
+                log(context, "Mensagem inválida " + message.getMessageId() + ": " + e.getMessage());
+                failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+                continue;
+            }
+            if (!feedback.critical()) {
+                log(context, "Feedback não é crítico. Nenhum e-mail enviado: " + feedback.feedbackId());
+                continue;
+            }
+
+            // Duplicatas (mesmo feedbackId já notificado) param aqui, antes de qualquer chamada HTTP
+            try {
+                NotificationLedger.Claim claim = ledger.claim(feedback.feedbackId(), NotificationLedger.EMAIL);
+                if (claim == NotificationLedger.Claim.DUPLICATE) {
+                    log(context, "Notificação duplicada ignorada: feedbackId=" + feedback.feedbackId());
+                    continue;
+                }
+                if (claim == NotificationLedger.Claim.IN_FLIGHT) {
+                    // Volta para a fila: se o envio da outra invocação falhar, a reentrega é quem envia
+                    log(context, "Notificação em envio por outra invocação: feedbackId=" + feedback.feedbackId());
+                    failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+                    continue;
+                }
+                claimed.add(message.getMessageId());
+            } catch (RuntimeException e) {
+                log(context, "Ledger de notificações indisponível, enviando sem deduplicação: " + e.getMessage());
+            }
+
+            String json = NotifyCriticalFunction.buildPayload(feedback, NotifyCriticalFunction.ALERT_RECIPIENT, now);
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+                continue;
+            }
+            deliveries.put(message.getMessageId(), delivery.sendAsync(json).whenComplete((result, error) -> inFlight.release()));
+            feedbacks.put(message.getMessageId(), feedback);
+        }
+
+        int sent = 0;
+        for (Map.Entry<String, CompletableFuture<MailtrapDelivery.Result>> entry : deliveries.entrySet()) {
+            String feedbackId = feedbacks.get(entry.getKey()).feedbackId();
+            MailtrapDelivery.Result result = entry.getValue().join();
+            if (result.outcome() == MailtrapDelivery.Outcome.SENT) {
+                sent++;
+                markSent(feedbackId, context);
+                continue;
+            }
+            log(context, "Falha ao enviar e-mail da mensagem " + entry.getKey() + ": " + result.outcome() + " (" + result.detail() + ")");
+            if (claimed.contains(entry.getKey())) {
+                release(feedbackId, context);
+            }
+            failures.add(new SQSBatchResponse.BatchItemFailure(entry.getKey()));
+        }
+
+        log(context, "E-mails enviados: " + sent + " de " + deliveries.size() + "; mensagens com falha: " + failures.size()
+                + "; breaker " + delivery.state());
+        return new SQSBatchResponse(failures);
+    }
+
+    // Também para envios sem claim (ledger indisponível no início): a entrega fica registrada se a tabela voltou
+    private void markSent(String feedbackId, Context context) {
+        try {
+            ledger.markSent(feedbackId, NotificationLedger.EMAIL);
+        } catch (RuntimeException e) {
+            log(context, "Erro ao atualizar o ledger de notificações: " + e.getMessage());
+        }
+    }
+
+    private void release(String feedbackId, Context context) {
+        try {
+            ledger.release(feedbackId, NotificationLedger.EMAIL);
+        } catch (RuntimeException e) {
+            log(context, "Erro ao liberar o ledger de notificações: " + e.getMessage());
+        }
+    }
+
+    // Mensagem fictícia pelo parsing e montagem do payload e da requisição; nada é enviado
+    private void prime() {
+        try {
+            FeedbackEvent feedback = FeedbackEvent.fromDetail(MAPPER.readTree("{\"feedbackId\":\"priming\","
+                    + "\"fullName\":\"Priming\",\"category\":\"Critical\",\"comment\":\"priming\",\"rating\":1,\"isCritical\":true}"));
+            mailtrap.request(NotifyCriticalFunction.buildPayload(feedback, "priming@example.com", "1970-01-01 00:00:00"));
+            ledger.prime();
+        } catch (Exception e) {
+            throw new IllegalStateException("Priming do notify-critical-batch falhou", e);
+        }
+    }
+
+    private void log(Context context, String message) {
+        if (context != null && context.getLogger() != null) {
+            context.getLogger().log(message);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lambda.common.AwsClients;
+import lambda.common.NotificationTemplate;
+import lambda.common.NotificationTemplates;
+import lambda.common.Priming;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Modo digest dos alertas críticos: a CriticalFeedbackRule entrega os eventos na CriticalDigestQueue e esta
+ * função, acionada em lotes pelo SQS, envia um e-mail de resumo por janela e categoria
+ * ({@link CriticalDigest}) em vez de um e-mail por feedback.
+ *
+ * Grupos cuja janela ainda está aberta e que não atingiram o limiar são devolvidos em batchItemFailures com a
+ * visibilidade ajustada para o fim da janela, e voltam para ser enviados juntos. O envio passa pelo
+ * {@link MailtrapDelivery} (circuit breaker e orçamento de retentativas); falhas, inclusive com o breaker aberto,
+ * devolvem só as mensagens da parte que falhou e, esgotado o maxReceiveCount, elas vão para a FeedbackDLQ.
+ */
+public class NotifyCriticalDigestFunction implements RequestHandler<SQSEvent, SQSBatchResponse> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final DateTimeFormatter WINDOW_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+            .withZone(NotifyCriticalFunction.ALERT_ZONE);
+    private static final int VISIBILITY_BATCH_LIMIT = 10;
+
+    private final MailtrapClient mailtrap;
+    private final MailtrapDelivery delivery;
+    private final SqsClient sqsClient;
+    private final CriticalDigest digest;
+    private final String queueUrl = System.getenv("DIGEST_QUEUE_URL");
+    private Clock clock = Clock.systemUTC();
+
+    public NotifyCriticalDigestFunction() {
+        this.mailtrap = MailtrapClient.fromEnvironment();
+        this.delivery = MailtrapDelivery.fromEnvironment(mailtrap);
+        this.sqsClient = AwsClients.sync("SQS", SqsClient::builder);
+        this.digest = CriticalDigest.fromEnvironment();
+        Priming.register("notify-critical-digest", this::prime);
+    }
+
+    @Override
+    public SQSBatchResponse handleRequest(SQSEvent event, Context context) {
+        return Priming.measureFirstInvocation(context, () -> processEvent(event, context));
+    }
+
+    private SQSBatchResponse processEvent(SQSEvent event, Context context) {
+        List<SQSBatchResponse.BatchItemFailure> failures = new ArrayList<>();
+        List<CriticalDigest.Entry> entries = new ArrayList<>();
+        Instant now = clock.instant();
+
+        for (SQSEvent.SQSMessage message : event.getRecords()) {
+            try {
+                CriticalDigest.Entry entry = toEntry(message, now);
+                if (entry.event().critical()) {
+                    entries.add(entry);
+                } else {
+                    log(context, "Feedback não crítico ignorado: " + entry.event().feedbackId());
+                }
+            } catch (Exception e) {
+                log(context, "Mensagem inválida " + message.getMessageId() + ": " + e.getMessage());
+                failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+            }
+        }
+
+        CriticalDigest.Plan plan = digest.plan(entries, now);
+        int emails = 0;
+        for (CriticalDigest.Group group : plan.flush()) {
+            List<List<CriticalDigest.Entry>> chunks = digest.chunks(group);
+            for (int part = 0; part < chunks.size(); part++) {
+                List<CriticalDigest.Entry> chunk = chunks.get(part);
+                if (send(group, chunk, part + 1, chunks.size(), context)) {
+                    emails++;
+                } else {
+                    chunk.forEach(entry -> failures.add(new SQSBatchResponse.BatchItemFailure(entry.messageId())));
+                }
+            }
+        }
+
+        int deferred = 0;
+        for (CriticalDigest.Group group : plan.deferred()) {
+            defer(group, now, context);
+            deferred += group.entries().size();
+            group.entries().forEach(entry -> failures.add(new SQSBatchResponse.BatchItemFailure(entry.messageId())));
+        }
+
+        log(context, "Digest: " + entries.size() + " feedbacks críticos, " + emails + " e-mails enviados, "
+                + deferred + " adiados até o fim da janela; mensagens devolvidas: " + failures.size());
+        return new SQSBatchResponse(failures);
+    }
+
+    // Corpo da mensagem é o evento do EventBridge; sem "time", vale o horário de envio para a fila
+    private CriticalDigest.Entry toEntry(SQSEvent.SQSMessage message, Instant now) throws Exception {
+        JsonNode root = MAPPER.readTree(message.getBody());
+        FeedbackEvent event = FeedbackEvent.fromDetail(root.path("detail"));
+        Instant time = now;
+        if (root.hasNonNull("time")) {
+            time = Instant.parse(root.get("time").asText());
+        } else if (message.getAttributes() != null && message.getAttributes().get("SentTimestamp") != null) {
+            time = Instant.ofEpochMilli(Long.parseLong(message.getAttributes().get("SentTimestamp")));
+        }
+        return new CriticalDigest.Entry(message.getMessageId(), message.getReceiptHandle(), time, event);
+    }
+
+    private boolean send(CriticalDigest.Group group, List<CriticalDigest.Entry> chunk, int part, int parts, Context context) {
+        try {
+            // Com o breaker aberto nada é enviado: as mensagens voltam para a fila em batchItemFailures
+            MailtrapDelivery.Result result = delivery.send(buildPayload(group, chunk, part, parts));
+            if (result.outcome() == MailtrapDelivery.Outcome.SENT) {
+                return true;
+            }
+            log(context, "Falha ao enviar digest de " + group.category() + ": " + result.outcome() + " (" + result.detail()
+                    + "); breaker " + delivery.state());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log(context, "Envio do digest interrompido: " + e.getMessage());
+        } catch (Exception e) {
+            log(context, "Erro ao enviar digest de " + group.category() + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Adia o grupo até o fim da janela: a visibilidade das mensagens passa a ser o tempo restante, para que
+     * voltem juntas quando a janela fechar. Se a alteração falhar, vale o VisibilityTimeout da fila.
+     */
+    private void defer(CriticalDigest.Group group, Instant now, Context context) {
+        if (queueUrl == null || queueUrl.isBlank()) {
+            return;
+        }
+        int seconds = (int) Math.max(1, Duration.between(now, group.windowEnd()).toSeconds() + 1);
+        List<CriticalDigest.Entry> entries = group.entries();
+        for (int start = 0; start < entries.size(); start += VISIBILITY_BATCH_LIMIT) {
+            List<ChangeMessageVisibilityBatchRequestEntry> batch = new ArrayList<>();
+            for (CriticalDigest.Entry entry : entries.subList(start, Math.min(start + VISIBILITY_BATCH_LIMIT, entries.size()))) {
+                batch.add(ChangeMessageVisibilityBatchRequestEntry.builder()
+                        .id(String.valueOf(batch.size()))
+                        .receiptHandle(entry.receiptHandle())
+                        .visibilityTimeout(seconds)
+                        .build());
+            }
+            try {
+                ChangeMessageVisibilityBatchResponse response = sqsClient.changeMessageVisibilityBatch(
+                        ChangeMessageVisibilityBatchRequest.builder().queueUrl(queueUrl).entries(batch).build());
+                if (response.hasFailed() && !response.failed().isEmpty()) {
+                    log(context, "Visibilidade não ajustada para " + response.failed().size() + " mensagens");
+                }
+            } catch (Exception e) {
+                log(context, "Erro ao adiar mensagens do digest: " + e.getMessage());
+            }
+        }
+    }
+
+    String buildPayload(CriticalDigest.Group group, List<CriticalDigest.Entry> chunk, int part, int parts) {
+        NotificationTemplate itemTemplate = NotificationTemplates.forEventType(NotificationTemplates.CRITICAL_DIGEST_ITEM);
+        StringBuilder items = new StringBuilder(chunk.size() * 96);
+        Map<String, Object> item = new HashMap<>(6);
+        for (CriticalDigest.Entry entry : chunk) {
+            FeedbackEvent event = entry.event();
+            item.put("feedbackId", event.feedbackId());
+            item.put("fullName", event.fullName());
+            item.put("rating", event.rating());
+            item.put("comment", event.comment());
+            itemTemplate.renderTo(items, item);
+        }
+
+        Map<String, Object> values = new HashMap<>(12);
+        values.put("to", NotifyCriticalFunction.ALERT_RECIPIENT);
+        values.put("count", chunk.size());
+        values.put("category", group.category());
+        values.put("partSuffix", parts > 1 ? " (" + part + "/" + parts + ")" : "");
+        values.put("partDetail", parts > 1 ? " (parte " + part + " de " + parts + ", total de " + group.entries().size() + ")" : "");
+        values.put("windowStart", WINDOW_FORMAT.format(group.windowStart()));
+        values.put("windowEnd", WINDOW_FORMAT.format(group.windowEnd()));
+        values.put("items", items);
+        return NotificationTemplates.forEventType(NotificationTemplates.CRITICAL_DIGEST).render(values);
+    }
+
+    // Mensagem fictícia pelo parsing, agrupamento e montagem do payload e da requisição; nada é enviado
+    private void prime() {
+        SQSEvent.SQSMessage message = new SQSEvent.SQSMessage();
+        message.setMessageId("priming");
+        message.setBody("{\"time\":\"1970-01-01T00:00:00Z\",\"detail\":{\"feedbackId\":\"priming\",\"fullName\":\"Priming\","
+                + "\"category\":\"Critical\",\"comment\":\"priming\",\"rating\":1,\"isCritical\":true}}");
+        try {
+            CriticalDigest.Plan plan = digest.plan(List.of(toEntry(message, Instant.EPOCH)), Instant.now());
+            for (CriticalDigest.Group group : plan.flush()) {
+                mailtrap.request(buildPayload(group, group.entries(), 1, 1));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Priming do digest falhou", e);
+        }
+    }
+
+    private void log(Context context, String message) {
+        if (context != null && context.getLogger() != null) {
+            context.getLogger().log(message);
+        }
+    }
+
+    // Usado nos testes para fixar o horário de referência das janelas
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+}
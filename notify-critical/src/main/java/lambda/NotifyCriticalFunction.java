@@ -2,96 +2,232 @@ package lambda;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
-import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.ClassicHttpResponse;
-import org.apache.hc.core5.http.io.HttpClientResponseHandler;
-import org.apache.hc.core5.http.io.entity.StringEntity;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lambda.common.AwsClients;
+import lambda.common.NotificationTemplates;
+import lambda.common.Priming;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.Message;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 
+/**
+ * Envia um e-mail por feedback crítico. O envio passa por {@link MailtrapDelivery} (timeouts, retentativas
+ * dentro do orçamento e circuit breaker); alertas que não saem são estacionados na fila de overflow
+ * (NOTIFY_OVERFLOW_QUEUE_URL) em vez de perdidos. Sem fila de overflow, ou se ela também falhar, a invocação
+ * falha e o Lambda aplica as retentativas da invocação assíncrona e a FeedbackDLQ.
+ *
+ * O evento {@code {"action": "redrive"}} (agendado no template) reenvia até REDRIVE_MAX alertas da fila de
+ * overflow enquanto o breaker estiver fechado.
+ */
 public class NotifyCriticalFunction implements RequestHandler<Map<String,Object>, String> {
 
+    static final String ALERT_RECIPIENT = "paivaag.developer@gmail.com";
+    static final ZoneId ALERT_ZONE = ZoneId.of("America/Sao_Paulo");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long REDRIVE_MIN_REMAINING_MS = 5_000;
+
+    // Reaproveitados entre invocações do container: conexões abertas, estado do breaker e orçamento
+    private final MailtrapClient mailtrap;
+    private final MailtrapDelivery delivery;
+    private final AlertOverflow overflow;
+    private final NotificationLedger ledger;
+    private final int redriveMax = AwsClients.intEnv("REDRIVE_MAX", 20);
+
+    public NotifyCriticalFunction() {
+        this.mailtrap = MailtrapClient.fromEnvironment();
+        this.delivery = MailtrapDelivery.fromEnvironment(mailtrap);
+        this.overflow = new AlertOverflow(AwsClients.sync("SQS", SqsClient::builder), System.getenv("NOTIFY_OVERFLOW_QUEUE_URL"));
+        this.ledger = NotificationLedger.fromEnvironment();
+        Priming.register("notify-critical", this::prime);
+    }
+
     @Override
     public String handleRequest(Map<String,Object> input, Context context) {
-        Map<String,Object> detail = (Map<String,Object>) input.get("detail");
+        return Priming.measureFirstInvocation(context, () -> "redrive".equals(input.get("action"))
+                ? redrive(context)
+                : processEvent(input, context));
+    }
+
+    // Evento fictício pelo parsing e montagem do payload e da requisição, sem enviar e-mail. Nenhuma
+    // conexão é aberta: ela não sobreviveria à restauração do snapshot
+    private void prime() {
+        Map<String,Object> detail = new HashMap<>();
+        detail.put("feedbackId", "priming");
+        detail.put("fullName", "Priming");
+        detail.put("category", "Critical");
+        detail.put("comment", "priming");
+        detail.put("rating", 1);
+        detail.put("isCritical", true);
+
+        String json = buildPayload(toFeedbackEvent(detail), "priming@example.com", "1970-01-01 00:00:00");
+        mailtrap.request(json);
+        ledger.prime();
+    }
 
-        FeedbackEvent event = new FeedbackEvent(
+    private FeedbackEvent toFeedbackEvent(Map<String,Object> detail) {
+        return new FeedbackEvent(
                 (String) detail.get("feedbackId"),
                 (String) detail.get("fullName"),
                 (String) detail.get("category"),
                 (String) detail.get("comment"),
                 ((Number) detail.get("rating")).intValue(),
-                (Boolean) detail.get("isCritical")
+                Boolean.TRUE.equals(detail.get("isCritical"))
         );
+    }
+
+    private String processEvent(Map<String,Object> input, Context context) {
+        Map<String,Object> detail = (Map<String,Object>) input.get("detail");
+
+        FeedbackEvent event = toFeedbackEvent(detail);
 
         context.getLogger().log("Iniciando notify-critical para feedbackId=" + event.feedbackId());
 
-        if (!Objects.equals(event.category(), "Critical")) {
+        if (!event.critical()) {
             context.getLogger().log("Feedback não é crítico. Nenhum e-mail enviado.");
             return "Feedback não é crítico. Nenhum e-mail enviado.";
         }
 
-        String to = "paivaag.developer@gmail.com";
-        context.getLogger().log("Destinatário definido: " + to);
+        MailtrapDelivery.Result result = deliverOnce(event, context);
+        String message = switch (result.outcome()) {
+            case SENT -> "E-mail enviado via API Mailtrap.";
+            case DUPLICATE -> "Notificação já enviada para feedbackId=" + event.feedbackId() + ". Nenhum e-mail enviado.";
+            case REJECTED -> "Falha ao enviar e-mail. " + result.detail();
+            case FAILED, CIRCUIT_OPEN, IN_FLIGHT -> park(input, result, context);
+        };
+        context.getLogger().log("Resultado final: " + message);
+        return message;
+    }
 
-        String now = LocalDateTime.now(ZoneId.of("America/Sao_Paulo"))
-                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    /**
+     * Envia no máximo uma vez por feedbackId: duplicatas param no {@link NotificationLedger}, antes de qualquer
+     * chamada HTTP. Se o ledger estiver indisponível o alerta é enviado mesmo assim; melhor um e-mail repetido
+     * do que um alerta perdido.
+     */
+    private MailtrapDelivery.Result deliverOnce(FeedbackEvent event, Context context) {
+        boolean claimed = false;
+        try {
+            switch (ledger.claim(event.feedbackId(), NotificationLedger.EMAIL)) {
+                case DUPLICATE -> {
+                    context.getLogger().log("Notificação duplicada ignorada: feedbackId=" + event.feedbackId());
+                    return new MailtrapDelivery.Result(MailtrapDelivery.Outcome.DUPLICATE, 0, "feedbackId já notificado");
+                }
+                case IN_FLIGHT -> {
+                    // O dono do lease ainda pode falhar: confirmar aqui perderia o alerta
+                    context.getLogger().log("Notificação em envio por outra invocação: feedbackId=" + event.feedbackId());
+                    return new MailtrapDelivery.Result(MailtrapDelivery.Outcome.IN_FLIGHT, 0, "envio em andamento por outra invocação");
+                }
+                default -> claimed = true;
+            }
+        } catch (RuntimeException e) {
+            context.getLogger().log("Ledger de notificações indisponível, enviando sem deduplicação: " + e.getMessage());
+        }
 
-        String json = """
-        {
-          "from": {
-            "email": "hello@demomailtrap.co",
-            "name": "TechChallenge"
-          },
-          "to": [
-            { "email": "%s" }
-          ],
-          "subject": "🚨 Feedback Recebido",
-          "text": "ID: %s\\nNome: %s\\nCategoria: %s\\nComentario: %s\\nNota: %d\\nData: %s",
-          "category": "Feedback Alert"
+        MailtrapDelivery.Result result = deliver(event, context);
+        try {
+            if (result.outcome() == MailtrapDelivery.Outcome.SENT) {
+                ledger.markSent(event.feedbackId(), NotificationLedger.EMAIL);
+            } else if (claimed) {
+                ledger.release(event.feedbackId(), NotificationLedger.EMAIL);
+            }
+        } catch (RuntimeException e) {
+            context.getLogger().log("Erro ao atualizar o ledger de notificações: " + e.getMessage());
         }
-        """.formatted(
-                to,
-                event.feedbackId(),
-                event.fullName(),
-                event.category(),
-                event.comment(),
-                event.rating(),
-                now
-        );
+        return result;
+    }
 
+    private MailtrapDelivery.Result deliver(FeedbackEvent event, Context context) {
+        String now = LocalDateTime.now(ALERT_ZONE)
+                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        String json = buildPayload(event, ALERT_RECIPIENT, now);
         context.getLogger().log("Payload JSON montado: " + json);
 
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
-            HttpPost post = new HttpPost("https://send.api.mailtrap.io/api/send");
-            post.setHeader("Authorization", "Bearer " + "c8f907eda4864e9689e66051ce5e0bcc");
-            post.setHeader("Content-Type", "application/json; charset=UTF-8");
-            post.setEntity(new StringEntity(json));
-
-            context.getLogger().log("Enviando requisição para Mailtrap...");
-
-            HttpClientResponseHandler<String> responseHandler = (ClassicHttpResponse response) -> {
-                int status = response.getCode();
-                context.getLogger().log("Resposta HTTP recebida: " + status);
-                if (status >= 200 && status < 300) {
-                    return "E-mail enviado via API Mailtrap.";
-                } else {
-                    return "Falha ao enviar e-mail. Código HTTP: " + status;
-                }
-            };
-
-            String result = client.execute(post, responseHandler);
-            context.getLogger().log("Resultado final: " + result);
+        try {
+            MailtrapDelivery.Result result = delivery.send(json);
+            context.getLogger().log("Envio " + event.feedbackId() + ": " + result.outcome()
+                    + (result.detail() != null ? " (" + result.detail() + ")" : "") + "; breaker " + delivery.state());
             return result;
-        } catch (Exception e) {
-            context.getLogger().log("Erro ao enviar via API: " + e.getMessage());
-            return "Erro: " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new MailtrapDelivery.Result(MailtrapDelivery.Outcome.FAILED, 0, "envio interrompido");
         }
     }
-}
\ No newline at end of file
+
+    // Sem fila de overflow (ou com falha nela) a exceção devolve o evento ao Lambda: retentativas e FeedbackDLQ
+    private String park(Map<String,Object> input, MailtrapDelivery.Result result, Context context) {
+        String reason = result.outcome() + ": " + result.detail();
+        if (!overflow.enabled()) {
+            throw new IllegalStateException("Alerta não enviado e sem fila de overflow (" + reason + ")");
+        }
+        try {
+            overflow.park(MAPPER.writeValueAsString(input), reason);
+        } catch (JsonProcessingException | RuntimeException e) {
+            throw new IllegalStateException("Alerta não enviado nem estacionado (" + reason + "): " + e.getMessage(), e);
+        }
+        context.getLogger().log("Alerta estacionado na fila de overflow: " + reason);
+        return "Alerta enfileirado para reenvio. " + reason;
+    }
+
+    /**
+     * Reenvia os alertas estacionados, em lotes de até 10, e apaga só os entregues. Para quando a fila
+     * esvazia, quando o breaker recusa um envio, ao atingir REDRIVE_MAX ou perto do timeout da invocação.
+     */
+    private String redrive(Context context) {
+        if (!overflow.enabled()) {
+            return "Fila de overflow não configurada.";
+        }
+        int sent = 0;
+        int attempted = 0;
+        boolean circuitOpen = false;
+        while (!circuitOpen && attempted < redriveMax && hasTimeLeft(context)) {
+            List<Message> messages = overflow.receive();
+            if (messages.isEmpty()) {
+                break;
+            }
+            List<Message> delivered = new ArrayList<>();
+            for (Message message : messages) {
+                if (circuitOpen || attempted >= redriveMax) {
+                    break;
+                }
+                attempted++;
+                try {
+                    Map<String,Object> input = MAPPER.readValue(message.body(), Map.class);
+                    MailtrapDelivery.Result result = deliverOnce(toFeedbackEvent((Map<String,Object>) input.get("detail")), context);
+                    if (result.outcome() == MailtrapDelivery.Outcome.SENT || result.outcome() == MailtrapDelivery.Outcome.DUPLICATE) {
+                        delivered.add(message);
+                    }
+                    circuitOpen = result.outcome() == MailtrapDelivery.Outcome.CIRCUIT_OPEN;
+                } catch (Exception e) {
+                    // Fica na fila; esgotado o maxReceiveCount, vai para a FeedbackDLQ
+                    context.getLogger().log("Alerta inválido na fila de overflow " + message.messageId() + ": " + e.getMessage());
+                }
+            }
+            overflow.delete(delivered);
+            sent += delivered.size();
+        }
+        String result = "Reenvio: " + sent + " de " + attempted + " alertas entregues"
+                + (circuitOpen ? "; interrompido com o circuit breaker aberto." : ".");
+        context.getLogger().log(result);
+        return result;
+    }
+
+    // Contexto sem prazo (0) não limita o reenvio
+    private static boolean hasTimeLeft(Context context) {
+        int remaining = context.getRemainingTimeInMillis();
+        return remaining <= 0 || remaining > REDRIVE_MIN_REMAINING_MS;
+    }
+
+    // Valores na ordem das variáveis do template (to, feedbackId, fullName, category, comment, rating, sentAt)
+    static String buildPayload(FeedbackEvent event, String to, String now) {
+        return NotificationTemplates.forEventType(NotificationTemplates.CRITICAL_ALERT).render(
+                to, event.feedbackId(), event.fullName(), event.category(), event.comment(), event.rating(), now);
+    }
+}
@@ -0,0 +1,31 @@
+package lambda;
+
+/**
+ * Orçamento de retentativas: cada envio deposita {@code ratio} fichas e cada retentativa gasta uma, com
+ * saldo limitado a {@code reserve}. Com o provedor instável, as retentativas ficam em torno de ratio x envios
+ * em vez de multiplicar a carga por MAX_ATTEMPTS.
+ */
+final class RetryBudget {
+
+    private final double ratio;
+    private final double reserve;
+    private double tokens;
+
+    RetryBudget(double ratio, int reserve) {
+        this.ratio = ratio;
+        this.reserve = reserve;
+        this.tokens = reserve;
+    }
+
+    synchronized void onRequest() {
+        tokens = Math.min(reserve, tokens + ratio);
+    }
+
+    synchronized boolean tryRetry() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+}
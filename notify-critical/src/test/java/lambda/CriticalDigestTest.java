@@ -0,0 +1,85 @@
+package lambda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CriticalDigestTest {
+
+    private static final Instant WINDOW = Instant.parse("2026-10-17T12:00:00Z");
+
+    @Test
+    void windowStartShouldAlignToWindowSize() {
+        CriticalDigest digest = new CriticalDigest(Duration.ofSeconds(60), 50, 20);
+
+        assertEquals(WINDOW, digest.windowStart(WINDOW.plusSeconds(59)));
+        assertEquals(WINDOW.plusSeconds(60), digest.windowStart(WINDOW.plusSeconds(60)));
+    }
+
+    @Test
+    void planShouldGroupByWindowAndCategory() {
+        CriticalDigest digest = new CriticalDigest(Duration.ofSeconds(60), 50, 20);
+        List<CriticalDigest.Entry> entries = List.of(
+                entry("1", WINDOW.plusSeconds(1), "Critical"),
+                entry("2", WINDOW.plusSeconds(2), "Atendimento"),
+                entry("3", WINDOW.plusSeconds(3), "Critical"),
+                entry("4", WINDOW.plusSeconds(61), "Critical"));
+
+        CriticalDigest.Plan plan = digest.plan(entries, WINDOW.plusSeconds(600));
+
+        assertEquals(3, plan.flush().size());
+        assertEquals(0, plan.deferred().size());
+        assertEquals("Critical", plan.flush().get(0).category());
+        assertEquals(2, plan.flush().get(0).entries().size());
+        assertEquals(WINDOW.plusSeconds(60), plan.flush().get(0).windowEnd());
+        assertEquals(WINDOW.plusSeconds(60), plan.flush().get(2).windowStart());
+    }
+
+    @Test
+    void planShouldDeferOpenWindowBelowThreshold() {
+        CriticalDigest digest = new CriticalDigest(Duration.ofSeconds(60), 50, 3);
+        List<CriticalDigest.Entry> entries = new ArrayList<>();
+        entries.add(entry("1", WINDOW.plusSeconds(1), "Atendimento"));
+        for (int i = 0; i < 3; i++) {
+            entries.add(entry("c" + i, WINDOW.plusSeconds(2 + i), "Critical"));
+        }
+
+        CriticalDigest.Plan plan = digest.plan(entries, WINDOW.plusSeconds(30));
+
+        assertEquals(1, plan.flush().size());
+        assertEquals("Critical", plan.flush().get(0).category());
+        assertEquals(1, plan.deferred().size());
+        assertEquals("Atendimento", plan.deferred().get(0).category());
+    }
+
+    @Test
+    void chunksShouldSplitByMaxBatch() {
+        CriticalDigest digest = new CriticalDigest(Duration.ofSeconds(60), 2, 20);
+        List<CriticalDigest.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            entries.add(entry(String.valueOf(i), WINDOW, "Critical"));
+        }
+
+        List<List<CriticalDigest.Entry>> chunks = digest.chunks(digest.plan(entries, WINDOW.plusSeconds(60)).flush().get(0));
+
+        assertEquals(3, chunks.size());
+        assertEquals(1, chunks.get(2).size());
+    }
+
+    @Test
+    void invalidConfigurationShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CriticalDigest(Duration.ZERO, 50, 20));
+        assertThrows(IllegalArgumentException.class, () -> new CriticalDigest(Duration.ofSeconds(60), 0, 20));
+    }
+
+    static CriticalDigest.Entry entry(String id, Instant time, String category) {
+        return new CriticalDigest.Entry("m-" + id, "r-" + id, time,
+                new FeedbackEvent("fb-" + id, "Cliente " + id, category, "comentário", 1, true));
+    }
+}
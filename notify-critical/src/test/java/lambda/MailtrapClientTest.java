@@ -0,0 +1,104 @@
+package lambda;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MailtrapClientTest {
+
+    private HttpServer server;
+    private URI endpoint;
+    private final Set<Integer> remotePorts = new HashSet<>();
+    private final AtomicReference<String> authorization = new AtomicReference<>();
+    private final AtomicReference<String> body = new AtomicReference<>();
+    private volatile long delayMs;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/send", exchange -> {
+            synchronized (remotePorts) {
+                remotePorts.add(exchange.getRemoteAddress().getPort());
+            }
+            authorization.set(exchange.getRequestHeaders().getFirst("Authorization"));
+            body.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/api/send");
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void sendShouldPostJsonWithBearerToken() throws Exception {
+        MailtrapClient client = new MailtrapClient(HttpClient.newHttpClient(), endpoint, "tok", Duration.ofSeconds(2));
+
+        int status = client.send("{\"a\":1}");
+
+        assertEquals(200, status);
+        assertEquals("Bearer tok", authorization.get());
+        assertEquals("{\"a\":1}", body.get());
+    }
+
+    @Test
+    void sendShouldReuseConnectionAcrossCalls() throws Exception {
+        MailtrapClient client = new MailtrapClient(HttpClient.newHttpClient(), endpoint, "tok", Duration.ofSeconds(2));
+
+        for (int i = 0; i < 5; i++) {
+            client.send("{}");
+        }
+
+        assertEquals(1, remotePorts.size());
+    }
+
+    @Test
+    void sendShouldTimeOutOnSlowProvider() {
+        delayMs = 500;
+        MailtrapClient client = new MailtrapClient(HttpClient.newHttpClient(), endpoint, "tok", Duration.ofMillis(100));
+
+        assertThrows(HttpTimeoutException.class, () -> client.send("{}"));
+    }
+
+    @Test
+    void requestShouldCarryTimeoutAndHeaders() {
+        MailtrapClient client = new MailtrapClient(HttpClient.newHttpClient(), endpoint, "tok", Duration.ofMillis(750));
+
+        HttpRequest request = client.request("{}");
+
+        assertEquals(Duration.ofMillis(750), request.timeout().orElseThrow());
+        assertEquals("POST", request.method());
+        assertEquals("application/json; charset=UTF-8", request.headers().firstValue("Content-Type").orElseThrow());
+    }
+
+    @Test
+    void missingTokenShouldFailFast() {
+        assertThrows(IllegalStateException.class, () -> MailtrapClient.requiredToken(null));
+        assertThrows(IllegalStateException.class, () -> MailtrapClient.requiredToken(" "));
+        assertEquals("tok", MailtrapClient.requiredToken("tok"));
+    }
+}
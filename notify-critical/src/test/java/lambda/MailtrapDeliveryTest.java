@@ -0,0 +1,101 @@
+package lambda;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class MailtrapDeliveryTest {
+
+    private final MailtrapClient client = mock(MailtrapClient.class);
+
+    @Test
+    void transientFailureShouldBeRetried() throws Exception {
+        when(client.send(anyString())).thenThrow(new IOException("connection reset")).thenReturn(429).thenReturn(200);
+
+        MailtrapDelivery.Result result = delivery(5, 10).send("{}");
+
+        assertEquals(MailtrapDelivery.Outcome.SENT, result.outcome());
+        verify(client, times(3)).send(anyString());
+    }
+
+    @Test
+    void clientErrorShouldNotBeRetried() throws Exception {
+        when(client.send(anyString())).thenReturn(422);
+
+        MailtrapDelivery.Result result = delivery(5, 10).send("{}");
+
+        assertEquals(MailtrapDelivery.Outcome.REJECTED, result.outcome());
+        assertEquals(422, result.status());
+        verify(client, times(1)).send(anyString());
+    }
+
+    @Test
+    void exhaustedBudgetShouldStopRetries() throws Exception {
+        when(client.send(anyString())).thenReturn(503);
+        MailtrapDelivery delivery = delivery(100, 1);
+
+        MailtrapDelivery.Result first = delivery.send("{}");
+        MailtrapDelivery.Result second = delivery.send("{}");
+
+        assertEquals(MailtrapDelivery.Outcome.FAILED, first.outcome());
+        assertEquals(MailtrapDelivery.Outcome.FAILED, second.outcome());
+        // Reserva de 1 ficha: só o primeiro envio ganha uma retentativa
+        verify(client, times(3)).send(anyString());
+    }
+
+    @Test
+    void openCircuitShouldSkipCall() throws Exception {
+        when(client.send(anyString())).thenReturn(500);
+        MailtrapDelivery delivery = delivery(2, 10);
+
+        assertEquals(MailtrapDelivery.Outcome.CIRCUIT_OPEN, delivery.send("{}").outcome());
+        assertEquals(MailtrapDelivery.Outcome.CIRCUIT_OPEN, delivery.send("{}").outcome());
+
+        verify(client, times(2)).send(anyString());
+        assertEquals(CircuitBreaker.State.OPEN, delivery.state());
+    }
+
+    @Test
+    void interruptedProbeShouldReleaseHalfOpenBreaker() throws Exception {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(1, 1_000, now::get);
+        MailtrapDelivery delivery = new MailtrapDelivery(client, breaker, new RetryBudget(0.1, 10), 1);
+        when(client.send(anyString())).thenReturn(500).thenThrow(new InterruptedException()).thenReturn(200);
+        delivery.send("{}");
+        now.addAndGet(1_000_000_000L);
+
+        assertThrows(InterruptedException.class, () -> delivery.send("{}"));
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, delivery.state());
+        assertEquals(MailtrapDelivery.Outcome.SENT, delivery.send("{}").outcome());
+        assertEquals(CircuitBreaker.State.CLOSED, delivery.state());
+    }
+
+    @Test
+    void sendAsyncShouldRecordOutcomeAndSkipWhenOpen() throws Exception {
+        when(client.sendAsync(anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new HttpTimeoutException("request timed out")))
+                .thenReturn(CompletableFuture.completedFuture(200));
+        MailtrapDelivery delivery = delivery(1, 10);
+
+        MailtrapDelivery.Result first = delivery.sendAsync("{}").join();
+        MailtrapDelivery.Result second = delivery.sendAsync("{}").join();
+
+        assertEquals(MailtrapDelivery.Outcome.FAILED, first.outcome());
+        assertEquals(MailtrapDelivery.Outcome.CIRCUIT_OPEN, second.outcome());
+        verify(client, times(1)).sendAsync(anyString());
+    }
+
+    private MailtrapDelivery delivery(int breakerThreshold, int budgetReserve) {
+        return new MailtrapDelivery(client, new CircuitBreaker(breakerThreshold, 60_000, System::nanoTime),
+                new RetryBudget(0.1, budgetReserve), 3);
+    }
+}
@@ -0,0 +1,134 @@
+package lambda;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class NotificationLedgerTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-17T12:00:00Z");
+
+    private final DynamoDbClient dynamo = mock(DynamoDbClient.class);
+
+    @Test
+    void claimShouldPutPendingItemWithTtlAndLeaseCondition() {
+        NotificationLedger ledger = ledger(4);
+
+        assertEquals(NotificationLedger.Claim.CLAIMED, ledger.claim("fb-1", NotificationLedger.EMAIL));
+
+        ArgumentCaptor<PutItemRequest> put = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(dynamo).putItem(put.capture());
+        Map<String, AttributeValue> item = put.getValue().item();
+        assertEquals("Ledger", put.getValue().tableName());
+        assertEquals("fb-1#email", item.get("deliveryKey").s());
+        assertEquals("PENDING", item.get("status").s());
+        assertEquals(String.valueOf(NOW.getEpochSecond() + 3600), item.get("expiresAt").n());
+        assertTrue(put.getValue().conditionExpression().startsWith("attribute_not_exists(deliveryKey)"));
+        assertEquals(String.valueOf(NOW.getEpochSecond() - 300),
+                put.getValue().expressionAttributeValues().get(":staleBefore").n());
+    }
+
+    @Test
+    void claimOfPendingItemShouldBeInFlightAndNotCached() {
+        when(dynamo.putItem(any(PutItemRequest.class))).thenThrow(ConditionalCheckFailedException.builder()
+                .item(Map.of("status", AttributeValue.builder().s("PENDING").build())).build());
+        NotificationLedger ledger = ledger(4);
+
+        assertEquals(NotificationLedger.Claim.IN_FLIGHT, ledger.claim("fb-1", NotificationLedger.EMAIL));
+        assertEquals(NotificationLedger.Claim.IN_FLIGHT, ledger.claim("fb-1", NotificationLedger.EMAIL));
+
+        // Em envio por outra invocação, que ainda pode falhar e liberar: a tabela volta a ser consultada
+        verify(dynamo, times(2)).putItem(any(PutItemRequest.class));
+    }
+
+    @Test
+    void claimAfterLeaseOwnerReleasesShouldBeClaimed() {
+        when(dynamo.putItem(any(PutItemRequest.class)))
+                .thenReturn(null)
+                .thenThrow(ConditionalCheckFailedException.builder()
+                        .item(Map.of("status", AttributeValue.builder().s("PENDING").build())).build())
+                .thenReturn(null);
+        NotificationLedger ledger = ledger(4);
+
+        assertEquals(NotificationLedger.Claim.CLAIMED, ledger.claim("fb-1", NotificationLedger.EMAIL));
+        // Duplicata concorrente enquanto o dono envia: não é entregue nem deve ser confirmada
+        assertEquals(NotificationLedger.Claim.IN_FLIGHT, ledger.claim("fb-1", NotificationLedger.EMAIL));
+        ledger.release("fb-1", NotificationLedger.EMAIL);
+
+        assertEquals(NotificationLedger.Claim.CLAIMED, ledger.claim("fb-1", NotificationLedger.EMAIL));
+    }
+
+    @Test
+    void markSentShouldUpdateStatusAndCacheKey() {
+        NotificationLedger ledger = ledger(4);
+
+        ledger.markSent("fb-1", NotificationLedger.EMAIL);
+
+        ArgumentCaptor<UpdateItemRequest> update = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamo).updateItem(update.capture());
+        assertEquals("fb-1#email", update.getValue().key().get("deliveryKey").s());
+        assertEquals("SENT", update.getValue().expressionAttributeValues().get(":sent").s());
+        assertEquals(NotificationLedger.Claim.DUPLICATE, ledger.claim("fb-1", NotificationLedger.EMAIL));
+        verify(dynamo, never()).putItem(any(PutItemRequest.class));
+    }
+
+    @Test
+    void releaseShouldDeleteOnlyPendingAndIgnoreSent() {
+        when(dynamo.deleteItem(any(DeleteItemRequest.class))).thenThrow(ConditionalCheckFailedException.builder().build());
+        NotificationLedger ledger = ledger(4);
+
+        ledger.release("fb-1", NotificationLedger.EMAIL);
+
+        ArgumentCaptor<DeleteItemRequest> delete = ArgumentCaptor.forClass(DeleteItemRequest.class);
+        verify(dynamo).deleteItem(delete.capture());
+        assertEquals("#status = :pending", delete.getValue().conditionExpression());
+    }
+
+    @Test
+    void cacheShouldEvictLeastRecentlyUsedKey() {
+        NotificationLedger ledger = ledger(2);
+        ledger.markSent("fb-1", NotificationLedger.EMAIL);
+        ledger.markSent("fb-2", NotificationLedger.EMAIL);
+        ledger.claim("fb-1", NotificationLedger.EMAIL);
+        ledger.markSent("fb-3", NotificationLedger.EMAIL);
+
+        assertEquals(NotificationLedger.Claim.DUPLICATE, ledger.claim("fb-1", NotificationLedger.EMAIL));
+        assertEquals(NotificationLedger.Claim.DUPLICATE, ledger.claim("fb-3", NotificationLedger.EMAIL));
+        assertEquals(NotificationLedger.Claim.CLAIMED, ledger.claim("fb-2", NotificationLedger.EMAIL));
+        verify(dynamo, times(1)).putItem(any(PutItemRequest.class));
+    }
+
+    @Test
+    void withoutTableOnlyCacheShouldApply() {
+        NotificationLedger ledger = new NotificationLedger(null, null, 3600, 300, 4, Clock.fixed(NOW, ZoneOffset.UTC));
+
+        assertFalse(ledger.enabled());
+        assertEquals(NotificationLedger.Claim.CLAIMED, ledger.claim("fb-1", NotificationLedger.EMAIL));
+        ledger.release("fb-1", NotificationLedger.EMAIL);
+        ledger.markSent("fb-1", NotificationLedger.EMAIL);
+        ledger.prime();
+
+        assertEquals(NotificationLedger.Claim.DUPLICATE, ledger.claim("fb-1", NotificationLedger.EMAIL));
+        assertEquals(NotificationLedger.Claim.CLAIMED, ledger.claim("fb-1", "sms"));
+    }
+
+    private NotificationLedger ledger(int cacheSize) {
+        return new NotificationLedger(dynamo, "Ledger", 3600, 300, cacheSize, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,63 @@
+package lambda;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lambda.common.Benchmark;
+import lambda.common.Microbenchmark;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Custo de montar o payload do alerta crítico: o text block com {@code .formatted} (comportamento anterior,
+ * que reinterpreta o formato a cada chamada e não escapa o conteúdo), a montagem com Jackson (como o digest
+ * fazia) e o template compilado de {@link lambda.common.NotificationTemplates} com escape JSON.
+ * Fora da suíte padrão; executar com:
+ * mvn -pl notify-critical test -Dtest=NotificationTemplateBenchmark -Dbenchmark=true
+ */
+@Benchmark
+class NotificationTemplateBenchmark {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final FeedbackEvent EVENT = new FeedbackEvent("3f2a9c1e-7d4b-4b8e-9a51-0c2d6e8f1a77", "João da Silva",
+            "Critical", "O sistema ficou fora do ar durante a aula inteira, \"de novo\".\nPrecisamos de uma solução.", 1, true);
+    private static final String TO = "paivaag.developer@gmail.com";
+    private static final String NOW = "2026-10-17 10:00:00";
+
+    @Test
+    void compareFormattedJacksonAndTemplate() {
+        System.out.printf("Payloads: %d%n", ITERATIONS);
+        Microbenchmark.run("text block + formatted", WARMUP, ITERATIONS, i -> formatted().length());
+        Microbenchmark.run("Jackson ObjectNode", WARMUP, ITERATIONS, i -> jackson().length());
+        Microbenchmark.run("template compilado", WARMUP, ITERATIONS, i -> NotifyCriticalFunction.buildPayload(EVENT, TO, NOW).length());
+    }
+
+    // Montagem anterior do NotifyCriticalFunction
+    private static String formatted() {
+        return """
+        {
+          "from": {
+            "email": "hello@demomailtrap.co",
+            "name": "TechChallenge"
+          },
+          "to": [
+            { "email": "%s" }
+          ],
+          "subject": "🚨 Feedback Recebido",
+          "text": "ID: %s\\nNome: %s\\nCategoria: %s\\nComentario: %s\\nNota: %d\\nData: %s",
+          "category": "Feedback Alert"
+        }
+        """.formatted(TO, EVENT.feedbackId(), EVENT.fullName(), EVENT.category(), EVENT.comment(), EVENT.rating(), NOW);
+    }
+
+    private static String jackson() {
+        ObjectNode root = MAPPER.createObjectNode();
+        root.putObject("from").put("email", "hello@demomailtrap.co").put("name", "TechChallenge");
+        root.putArray("to").addObject().put("email", TO);
+        root.put("subject", "🚨 Feedback Recebido");
+        root.put("text", "ID: " + EVENT.feedbackId() + "\nNome: " + EVENT.fullName() + "\nCategoria: " + EVENT.category()
+                + "\nComentario: " + EVENT.comment() + "\nNota: " + EVENT.rating() + "\nData: " + NOW);
+        root.put("category", "Feedback Alert");
+        return root.toString();
+    }
+}
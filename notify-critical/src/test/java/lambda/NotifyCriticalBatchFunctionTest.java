@@ -0,0 +1,260 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class NotifyCriticalBatchFunctionTest {
+
+    private HttpServer server;
+    private URI endpoint;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private Context context;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        context = mock(Context.class);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(10));
+        server.createContext("/api/send", exchange -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            requests.incrementAndGet();
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            exchange.sendResponseHeaders(body.contains("fb-fail") ? 500 : 200, -1);
+            exchange.close();
+        });
+        server.start();
+        endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/api/send");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void deliveriesShouldRunConcurrentlyUpToLimit() throws Exception {
+        NotifyCriticalBatchFunction function = functionWith(realClient(), 3);
+        List<SQSEvent.SQSMessage> messages = new ArrayList<>();
+        for (int i = 1; i <= 9; i++) {
+            messages.add(message("m-" + i, "fb-" + i, "Critical"));
+        }
+
+        SQSBatchResponse response = function.handleRequest(event(messages), context);
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        assertEquals(9, requests.get());
+        // Cada resposta leva 100 ms: com envio sequencial o stub nunca veria mais de uma requisição por vez
+        assertEquals(3, maxInFlight.get());
+    }
+
+    @Test
+    void onlyFailedDeliveriesShouldBeReported() throws Exception {
+        NotifyCriticalBatchFunction function = functionWith(realClient(), 4);
+
+        SQSBatchResponse response = function.handleRequest(event(List.of(
+                message("m-1", "fb-1", "Critical"),
+                message("m-2", "fb-fail", "Critical"),
+                message("m-3", "fb-3", "Critical"))), context);
+
+        assertEquals(Set.of("m-2"), failedIds(response));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void nonCriticalMessagesShouldBeSkippedAndInvalidReported() throws Exception {
+        NotifyCriticalBatchFunction function = functionWith(realClient(), 4);
+        SQSEvent.SQSMessage invalid = new SQSEvent.SQSMessage();
+        invalid.setMessageId("m-bad");
+        invalid.setBody("{\"detail\":{}}");
+
+        SQSBatchResponse response = function.handleRequest(event(List.of(
+                message("m-1", "fb-1", "General"), invalid)), context);
+
+        assertEquals(Set.of("m-bad"), failedIds(response));
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    void flaggedFeedbackOutsideCriticalCategoryShouldBeSent() throws Exception {
+        NotifyCriticalBatchFunction function = functionWith(realClient(), 4);
+
+        SQSBatchResponse response = function.handleRequest(event(List.of(
+                message("m-1", "fb-1", "Atendimento", true))), context);
+
+        assertEquals(Set.of(), failedIds(response));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void exceptionFromClientShouldFailOnlyThatMessage() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.sendAsync(anyString()))
+                .thenReturn(CompletableFuture.completedFuture(200))
+                .thenReturn(CompletableFuture.failedFuture(new java.net.http.HttpTimeoutException("request timed out")));
+        NotifyCriticalBatchFunction function = functionWith(mailtrap, 1);
+
+        SQSBatchResponse response = function.handleRequest(event(List.of(
+                message("m-1", "fb-1", "Critical"),
+                message("m-2", "fb-2", "Critical"))), context);
+
+        assertEquals(Set.of("m-2"), failedIds(response));
+        verify(mailtrap, times(2)).sendAsync(anyString());
+    }
+
+    @Test
+    void openCircuitShouldReturnMessagesWithoutRequests() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 60_000, System::nanoTime);
+        breaker.onFailure();
+        NotifyCriticalBatchFunction function = functionWith(realClient(), 4, breaker);
+
+        SQSBatchResponse response = function.handleRequest(event(List.of(
+                message("m-1", "fb-1", "Critical"),
+                message("m-2", "fb-2", "Critical"))), context);
+
+        assertEquals(Set.of("m-1", "m-2"), failedIds(response));
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    void failuresShouldOpenCircuitForLaterMessages() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.sendAsync(anyString())).thenReturn(CompletableFuture.completedFuture(503));
+        NotifyCriticalBatchFunction function = functionWith(mailtrap, 1, new CircuitBreaker(2, 60_000, System::nanoTime));
+        List<SQSEvent.SQSMessage> messages = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            messages.add(message("m-" + i, "fb-" + i, "Critical"));
+        }
+
+        SQSBatchResponse response = function.handleRequest(event(messages), context);
+
+        assertEquals(5, response.getBatchItemFailures().size());
+        verify(mailtrap, times(2)).sendAsync(anyString());
+    }
+
+    @Test
+    void alreadyNotifiedFeedbackShouldBeSkippedWithoutRequest() throws Exception {
+        NotifyCriticalBatchFunction function = functionWith(realClient(), 4);
+        function.handleRequest(event(List.of(message("m-1", "fb-1", "Critical"))), context);
+
+        // Reentrega da mesma mensagem (ou do mesmo feedback em outra mensagem): o ledger do container já registrou
+        SQSBatchResponse response = function.handleRequest(event(List.of(
+                message("m-1", "fb-1", "Critical"),
+                message("m-2", "fb-2", "Critical"))), context);
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void concurrentClaimShouldBeRetriedAfterLeaseOwnerFails() throws Exception {
+        DynamoDbClient dynamo = mock(DynamoDbClient.class);
+        // Outra invocação tem o lease de fb-1; o envio dela falha e o PENDING é apagado antes da reentrega
+        when(dynamo.putItem(any(PutItemRequest.class)))
+                .thenThrow(ConditionalCheckFailedException.builder()
+                        .item(Map.of("status", AttributeValue.builder().s("PENDING").build())).build())
+                .thenReturn(null);
+        NotifyCriticalBatchFunction function = functionWith(realClient(), 4);
+        inject(function, "ledger", new NotificationLedger(dynamo, "NotificationLedger", 604_800, 300, 1024, Clock.systemUTC()));
+
+        SQSBatchResponse concurrent = function.handleRequest(event(List.of(message("m-1", "fb-1", "Critical"))), context);
+
+        assertEquals(Set.of("m-1"), failedIds(concurrent));
+        assertEquals(0, requests.get());
+
+        SQSBatchResponse redelivery = function.handleRequest(event(List.of(message("m-1", "fb-1", "Critical"))), context);
+
+        assertTrue(redelivery.getBatchItemFailures().isEmpty());
+        assertEquals(1, requests.get());
+        verify(dynamo).updateItem(any(UpdateItemRequest.class));
+    }
+
+    private MailtrapClient realClient() {
+        return new MailtrapClient(HttpClient.newHttpClient(), endpoint, "tok", Duration.ofSeconds(2));
+    }
+
+    private static NotifyCriticalBatchFunction functionWith(MailtrapClient mailtrap, int maxInFlight) throws Exception {
+        return functionWith(mailtrap, maxInFlight, new CircuitBreaker(5, 30_000, System::nanoTime));
+    }
+
+    private static NotifyCriticalBatchFunction functionWith(MailtrapClient mailtrap, int maxInFlight, CircuitBreaker breaker) throws Exception {
+        NotifyCriticalBatchFunction function = new NotifyCriticalBatchFunction();
+        inject(function, "mailtrap", mailtrap);
+        inject(function, "delivery", new MailtrapDelivery(mailtrap, breaker, new RetryBudget(0.2, 10), 1));
+        inject(function, "maxInFlight", maxInFlight);
+        return function;
+    }
+
+    private static void inject(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static SQSEvent event(List<SQSEvent.SQSMessage> messages) {
+        SQSEvent event = new SQSEvent();
+        event.setRecords(messages);
+        return event;
+    }
+
+    private static SQSEvent.SQSMessage message(String messageId, String feedbackId, String category) {
+        return message(messageId, feedbackId, category, "Critical".equals(category));
+    }
+
+    private static SQSEvent.SQSMessage message(String messageId, String feedbackId, String category, boolean isCritical) {
+        SQSEvent.SQSMessage message = new SQSEvent.SQSMessage();
+        message.setMessageId(messageId);
+        message.setBody("{\"detail-type\":\"FeedbackCreated\",\"detail\":{\"feedbackId\":\"" + feedbackId
+                + "\",\"fullName\":\"Cliente\",\"category\":\"" + category + "\",\"comment\":\"Fora do ar\",\"rating\":1,\"isCritical\":" + isCritical + "}}");
+        return message;
+    }
+
+    private static Set<String> failedIds(SQSBatchResponse response) {
+        return response.getBatchItemFailures().stream()
+                .map(SQSBatchResponse.BatchItemFailure::getItemIdentifier)
+                .collect(Collectors.toSet());
+    }
+}
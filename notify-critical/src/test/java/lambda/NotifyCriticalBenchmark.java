@@ -0,0 +1,121 @@
+package lambda;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import lambda.common.Benchmark;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+/**
+ * Latência por alerta do envio ao Mailtrap contra um stub HTTP local: um cliente Apache novo por alerta
+ * (comportamento anterior), um HttpClient da JDK novo por alerta e o {@link MailtrapClient} compartilhado
+ * do container. O stub é HTTP puro, então a diferença medida é só a criação do cliente e o connect TCP;
+ * contra o Mailtrap real cada conexão nova soma ainda o handshake TLS.
+ * Fora da suíte padrão; executar com:
+ * mvn -pl notify-critical test -Dtest=NotifyCriticalBenchmark -Dbenchmark=true
+ */
+@Benchmark
+class NotifyCriticalBenchmark {
+
+    private static final int ALERTS = 500;
+    private static final long STUB_LATENCY_MS = Long.getLong("stub.latency.ms", 2);
+    private static final String PAYLOAD = "{\"subject\":\"Feedback crítico\",\"text\":\"ID: fb-1\"}";
+
+    @Test
+    void comparePerAlertAndPooledClients() throws Exception {
+        // Sem TCP_NODELAY o stub soma ~40 ms de delayed ACK a cada resposta
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        Set<Integer> connections = new HashSet<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.createContext("/", exchange -> {
+            synchronized (connections) {
+                connections.add(exchange.getRemoteAddress().getPort());
+            }
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(STUB_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"success\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        URI endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/api/send");
+
+        try {
+            // Aquecimento do JIT e das classes dos dois clientes
+            runApachePerAlert(endpoint, 50);
+            runJdkPerAlert(endpoint, 50);
+            runPooled(endpoint, 50);
+
+            connections.clear();
+            long apache = runApachePerAlert(endpoint, ALERTS);
+            int apacheConnections = connections.size();
+            connections.clear();
+            long jdk = runJdkPerAlert(endpoint, ALERTS);
+            int jdkConnections = connections.size();
+            connections.clear();
+            long pooled = runPooled(endpoint, ALERTS);
+            int pooledConnections = connections.size();
+
+            System.out.printf("Alertas: %d, latência do stub: %d ms%n", ALERTS, STUB_LATENCY_MS);
+            print("Apache novo por alerta", apache, apacheConnections);
+            print("JDK novo por alerta", jdk, jdkConnections);
+            print("MailtrapClient compartilhado", pooled, pooledConnections);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static long runApachePerAlert(URI endpoint, int alerts) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < alerts; i++) {
+            try (CloseableHttpClient client = HttpClients.createDefault()) {
+                HttpPost post = new HttpPost(endpoint);
+                post.setHeader("Authorization", "Bearer tok");
+                post.setEntity(new StringEntity(PAYLOAD, ContentType.APPLICATION_JSON));
+                client.execute(post, response -> response.getCode());
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runJdkPerAlert(URI endpoint, int alerts) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < alerts; i++) {
+            try (HttpClient http = HttpClient.newHttpClient()) {
+                new MailtrapClient(http, endpoint, "tok", Duration.ofSeconds(3)).send(PAYLOAD);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runPooled(URI endpoint, int alerts) throws Exception {
+        MailtrapClient client = new MailtrapClient(HttpClient.newHttpClient(), endpoint, "tok", Duration.ofSeconds(3));
+        long start = System.nanoTime();
+        for (int i = 0; i < alerts; i++) {
+            client.send(PAYLOAD);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void print(String label, long nanos, int connections) {
+        System.out.printf("%-30s %8.3f ms/alerta  %4d conexões TCP%n", label, nanos / 1e6 / ALERTS, connections);
+    }
+}
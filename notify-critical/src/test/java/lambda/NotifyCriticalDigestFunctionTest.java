@@ -0,0 +1,200 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+
+import java.lang.reflect.Field;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class NotifyCriticalDigestFunctionTest {
+
+    private static final Instant WINDOW = Instant.parse("2026-10-17T12:00:00Z");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private MailtrapClient mailtrap;
+    private SqsClient sqsClient;
+    private Context context;
+
+    @BeforeEach
+    void setUp() {
+        mailtrap = mock(MailtrapClient.class);
+        sqsClient = mock(SqsClient.class);
+        context = mock(Context.class);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+        when(sqsClient.changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class)))
+                .thenReturn(ChangeMessageVisibilityBatchResponse.builder().build());
+    }
+
+    @Test
+    void closedWindowShouldSendOneEmailPerCategory() throws Exception {
+        when(mailtrap.send(anyString())).thenReturn(200);
+        NotifyCriticalDigestFunction function = functionWith(new CriticalDigest(Duration.ofSeconds(60), 50, 20), WINDOW.plusSeconds(120));
+
+        SQSBatchResponse response = function.handleRequest(event(
+                message("1", WINDOW.plusSeconds(1), "Critical"),
+                message("2", WINDOW.plusSeconds(5), "Critical"),
+                message("3", WINDOW.plusSeconds(9), "Entrega")), context);
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        ArgumentCaptor<String> payloads = ArgumentCaptor.forClass(String.class);
+        verify(mailtrap, times(2)).send(payloads.capture());
+        JsonNode first = MAPPER.readTree(payloads.getAllValues().get(0));
+        assertEquals("🚨 2 feedbacks críticos - Critical", first.get("subject").asText());
+        assertTrue(first.get("text").asText().contains("ID: fb-2"));
+        assertEquals(NotifyCriticalFunction.ALERT_RECIPIENT, first.get("to").get(0).get("email").asText());
+    }
+
+    @Test
+    void openWindowBelowThresholdShouldBeDeferred() throws Exception {
+        NotifyCriticalDigestFunction function = functionWith(new CriticalDigest(Duration.ofSeconds(60), 50, 5), WINDOW.plusSeconds(20));
+
+        SQSBatchResponse response = function.handleRequest(event(
+                message("1", WINDOW.plusSeconds(1), "Critical"),
+                message("2", WINDOW.plusSeconds(2), "Critical")), context);
+
+        assertEquals(Set.of("m-1", "m-2"), failedIds(response));
+        verify(mailtrap, never()).send(anyString());
+        ArgumentCaptor<ChangeMessageVisibilityBatchRequest> request = ArgumentCaptor.forClass(ChangeMessageVisibilityBatchRequest.class);
+        verify(sqsClient).changeMessageVisibilityBatch(request.capture());
+        assertEquals(41, request.getValue().entries().get(0).visibilityTimeout());
+        assertEquals("r-1", request.getValue().entries().get(0).receiptHandle());
+    }
+
+    @Test
+    void thresholdShouldFlushBeforeWindowCloses() throws Exception {
+        when(mailtrap.send(anyString())).thenReturn(200);
+        NotifyCriticalDigestFunction function = functionWith(new CriticalDigest(Duration.ofSeconds(60), 50, 2), WINDOW.plusSeconds(20));
+
+        SQSBatchResponse response = function.handleRequest(event(
+                message("1", WINDOW.plusSeconds(1), "Critical"),
+                message("2", WINDOW.plusSeconds(2), "Critical")), context);
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        verify(mailtrap, times(1)).send(anyString());
+        verifyNoInteractions(sqsClient);
+    }
+
+    @Test
+    void failedChunkShouldReturnOnlyItsMessages() throws Exception {
+        when(mailtrap.send(anyString())).thenReturn(200).thenReturn(503);
+        NotifyCriticalDigestFunction function = functionWith(new CriticalDigest(Duration.ofSeconds(60), 2, 20), WINDOW.plusSeconds(120));
+        List<SQSEvent.SQSMessage> messages = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            messages.add(message(String.valueOf(i), WINDOW.plusSeconds(i), "Critical"));
+        }
+
+        SQSBatchResponse response = function.handleRequest(event(messages.toArray(SQSEvent.SQSMessage[]::new)), context);
+
+        assertEquals(Set.of("m-3", "m-4"), failedIds(response));
+        ArgumentCaptor<String> payloads = ArgumentCaptor.forClass(String.class);
+        verify(mailtrap, times(2)).send(payloads.capture());
+        assertEquals("🚨 2 feedbacks críticos - Critical (1/2)", MAPPER.readTree(payloads.getAllValues().get(0)).get("subject").asText());
+    }
+
+    @Test
+    void openCircuitShouldReturnChunksWithoutSending() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 60_000, System::nanoTime);
+        breaker.onFailure();
+        NotifyCriticalDigestFunction function = functionWith(new CriticalDigest(Duration.ofSeconds(60), 50, 20), WINDOW.plusSeconds(120), breaker);
+
+        SQSBatchResponse response = function.handleRequest(event(
+                message("1", WINDOW.plusSeconds(1), "Critical"),
+                message("2", WINDOW.plusSeconds(5), "Entrega")), context);
+
+        assertEquals(Set.of("m-1", "m-2"), failedIds(response));
+        verifyNoInteractions(mailtrap);
+    }
+
+    @Test
+    void invalidMessageShouldBeReportedAndOthersSent() throws Exception {
+        when(mailtrap.send(anyString())).thenReturn(200);
+        NotifyCriticalDigestFunction function = functionWith(new CriticalDigest(Duration.ofSeconds(60), 50, 20), WINDOW.plusSeconds(120));
+        SQSEvent.SQSMessage invalid = new SQSEvent.SQSMessage();
+        invalid.setMessageId("m-bad");
+        invalid.setBody("não é json");
+
+        SQSBatchResponse response = function.handleRequest(event(invalid, message("1", WINDOW, "Critical")), context);
+
+        assertEquals(Set.of("m-bad"), failedIds(response));
+        verify(mailtrap, times(1)).send(anyString());
+    }
+
+    @Test
+    void payloadShouldEscapeUserText() throws Exception {
+        NotifyCriticalDigestFunction function = functionWith(new CriticalDigest(Duration.ofSeconds(60), 50, 20), WINDOW);
+        CriticalDigest.Entry entry = new CriticalDigest.Entry("m-1", "r-1", WINDOW,
+                new FeedbackEvent("fb-1", "Ana \"A\"", "Critical", "linha 1\nlinha 2", 1, true));
+        CriticalDigest.Group group = new CriticalDigest.Group(WINDOW, WINDOW.plusSeconds(60), "Critical", List.of(entry));
+
+        JsonNode payload = MAPPER.readTree(function.buildPayload(group, group.entries(), 1, 1));
+
+        assertTrue(payload.get("text").asText().contains("Nome: Ana \"A\""));
+        assertTrue(payload.get("text").asText().contains("linha 1\nlinha 2"));
+    }
+
+    private NotifyCriticalDigestFunction functionWith(CriticalDigest digest, Instant now) throws Exception {
+        return functionWith(digest, now, new CircuitBreaker(5, 30_000, System::nanoTime));
+    }
+
+    private NotifyCriticalDigestFunction functionWith(CriticalDigest digest, Instant now, CircuitBreaker breaker) throws Exception {
+        NotifyCriticalDigestFunction function = new NotifyCriticalDigestFunction();
+        inject(function, "mailtrap", mailtrap);
+        inject(function, "delivery", new MailtrapDelivery(mailtrap, breaker, new RetryBudget(0.2, 10), 1));
+        inject(function, "sqsClient", sqsClient);
+        inject(function, "digest", digest);
+        inject(function, "queueUrl", "https://sqs.us-east-1.amazonaws.com/123/CriticalDigestQueue");
+        function.setClock(Clock.fixed(now, ZoneOffset.UTC));
+        return function;
+    }
+
+    private static void inject(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static SQSEvent event(SQSEvent.SQSMessage... messages) {
+        SQSEvent event = new SQSEvent();
+        event.setRecords(List.of(messages));
+        return event;
+    }
+
+    private static SQSEvent.SQSMessage message(String id, Instant time, String category) {
+        SQSEvent.SQSMessage message = new SQSEvent.SQSMessage();
+        message.setMessageId("m-" + id);
+        message.setReceiptHandle("r-" + id);
+        message.setBody("{\"source\":\"feedback.created\",\"detail-type\":\"FeedbackCreated\",\"time\":\"" + time + "\","
+                + "\"detail\":{\"feedbackId\":\"fb-" + id + "\",\"fullName\":\"Cliente " + id + "\",\"category\":\""
+                + category + "\",\"comment\":\"Sistema fora\",\"rating\":1,\"isCritical\":true}}");
+        return message;
+    }
+
+    private static Set<String> failedIds(SQSBatchResponse response) {
+        return response.getBatchItemFailures().stream()
+                .map(SQSBatchResponse.BatchItemFailure::getItemIdentifier)
+                .collect(Collectors.toSet());
+    }
+}
@@ -2,19 +2,35 @@ package lambda;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
-import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.ClassicHttpResponse;
-import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
-import org.mockito.MockedStatic;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
 
+import java.lang.reflect.Field;
+import java.net.http.HttpTimeoutException;
+import java.time.Clock;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 class NotifyCriticalFunctionTest {
@@ -44,8 +60,300 @@ class NotifyCriticalFunctionTest {
 
     @Test
     void handleRequestCriticalShouldSendEmailViaHttpClient() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenReturn(200);
+        NotifyCriticalFunction function = functionWith(mailtrap);
+
+        String result = function.handleRequest(criticalInput(), mockContext());
+
+        assertEquals("E-mail enviado via API Mailtrap.", result);
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(mailtrap, times(1)).send(payload.capture());
+        assertTrue(payload.getValue().contains("ID: fb-1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void handleRequestFlaggedOutsideCriticalCategoryShouldSendEmail() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenReturn(200);
+        NotifyCriticalFunction function = functionWith(mailtrap);
+        Map<String, Object> input = criticalInput();
+        ((Map<String, Object>) input.get("detail")).put("category", "Atendimento");
+
+        String result = function.handleRequest(input, mockContext());
+
+        assertEquals("E-mail enviado via API Mailtrap.", result);
+        verify(mailtrap, times(1)).send(anyString());
+    }
+
+    @Test
+    void payloadShouldStayValidJsonWithQuotesAndNewlines() throws Exception {
+        FeedbackEvent event = new FeedbackEvent("fb-1", "Ana \"Tia\" Souza", "Critical", "linha 1\nlinha \\2", 1, true);
+
+        JsonNode payload = new ObjectMapper().readTree(NotifyCriticalFunction.buildPayload(event, "x@example.com", "2026-10-17 10:00:00"));
+
+        assertEquals("x@example.com", payload.get("to").get(0).get("email").asText());
+        assertEquals("ID: fb-1\nNome: Ana \"Tia\" Souza\nCategoria: Critical\nComentario: linha 1\nlinha \\2\nNota: 1\nData: 2026-10-17 10:00:00",
+                payload.get("text").asText());
+    }
+
+    @Test
+    void handleRequestShouldReuseClientAcrossInvocations() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenReturn(202);
+        NotifyCriticalFunction function = functionWith(mailtrap);
+
+        function.handleRequest(criticalInput("fb-1"), mockContext());
+        function.handleRequest(criticalInput("fb-2"), mockContext());
+
+        verify(mailtrap, times(2)).send(anyString());
+    }
+
+    @Test
+    void handleRequestAlreadySentShouldNotCallMailtrap() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        DynamoDbClient dynamo = mock(DynamoDbClient.class);
+        when(dynamo.putItem(any(PutItemRequest.class))).thenThrow(ConditionalCheckFailedException.builder()
+                .item(Map.of("status", AttributeValue.builder().s("SENT").build())).build());
+        NotifyCriticalFunction function = functionWith(mailtrap);
+        inject(function, "ledger", ledgerWith(dynamo));
+
+        String result = function.handleRequest(criticalInput(), mockContext());
+        // Segunda reentrega: o cache do container responde sem consultar a tabela
+        function.handleRequest(criticalInput(), mockContext());
+
+        assertEquals("Notificação já enviada para feedbackId=fb-1. Nenhum e-mail enviado.", result);
+        verifyNoInteractions(mailtrap);
+        verify(dynamo, times(1)).putItem(any(PutItemRequest.class));
+    }
+
+    @Test
+    void retryInsideLeaseShouldBeParkedNotAcknowledged() throws Exception {
+        // Invocação anterior morreu no meio do envio: o PENDING dela ainda está dentro do lease
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        DynamoDbClient dynamo = mock(DynamoDbClient.class);
+        when(dynamo.putItem(any(PutItemRequest.class))).thenThrow(ConditionalCheckFailedException.builder()
+                .item(Map.of("status", AttributeValue.builder().s("PENDING").build())).build());
+        SqsClient sqs = mock(SqsClient.class);
+        NotifyCriticalFunction function = functionWith(mailtrap, sqs, "https://sqs/overflow");
+        inject(function, "ledger", ledgerWith(dynamo));
+
+        String result = function.handleRequest(criticalInput(), mockContext());
+
+        assertTrue(result.startsWith("Alerta enfileirado para reenvio. IN_FLIGHT"), result);
+        verify(sqs).sendMessage(any(SendMessageRequest.class));
+        verifyNoInteractions(mailtrap);
+    }
+
+    @Test
+    void retryInsideLeaseWithoutOverflowShouldFailInvocation() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        DynamoDbClient dynamo = mock(DynamoDbClient.class);
+        when(dynamo.putItem(any(PutItemRequest.class))).thenThrow(ConditionalCheckFailedException.builder()
+                .item(Map.of("status", AttributeValue.builder().s("PENDING").build())).build());
+        NotifyCriticalFunction function = functionWith(mailtrap);
+        inject(function, "ledger", ledgerWith(dynamo));
+
+        assertThrows(IllegalStateException.class, () -> function.handleRequest(criticalInput(), mockContext()));
+        verifyNoInteractions(mailtrap);
+    }
+
+    @Test
+    void redriveShouldKeepAlertInFlightElsewhere() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        DynamoDbClient dynamo = mock(DynamoDbClient.class);
+        when(dynamo.putItem(any(PutItemRequest.class))).thenThrow(ConditionalCheckFailedException.builder()
+                .item(Map.of("status", AttributeValue.builder().s("PENDING").build())).build());
+        SqsClient sqs = mock(SqsClient.class);
+        when(sqs.receiveMessage(any(ReceiveMessageRequest.class)))
+                .thenReturn(ReceiveMessageResponse.builder().messages(parked("p-1")).build())
+                .thenReturn(ReceiveMessageResponse.builder().build());
+        NotifyCriticalFunction function = functionWith(mailtrap, sqs, "https://sqs/overflow");
+        inject(function, "ledger", ledgerWith(dynamo));
+
+        String result = function.handleRequest(Map.of("action", "redrive"), mockContext());
+
+        assertEquals("Reenvio: 0 de 1 alertas entregues.", result);
+        verify(sqs, never()).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+        verifyNoInteractions(mailtrap);
+    }
+
+    @Test
+    void handleRequestShouldMarkSentAndSkipRedelivery() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenReturn(200);
+        DynamoDbClient dynamo = mock(DynamoDbClient.class);
+        NotifyCriticalFunction function = functionWith(mailtrap);
+        inject(function, "ledger", ledgerWith(dynamo));
+
+        function.handleRequest(criticalInput(), mockContext());
+        String result = function.handleRequest(criticalInput(), mockContext());
+
+        assertTrue(result.startsWith("Notificação já enviada"), result);
+        verify(mailtrap, times(1)).send(anyString());
+        verify(dynamo, times(1)).putItem(any(PutItemRequest.class));
+        verify(dynamo).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    void handleRequestFailureShouldReleaseClaim() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenReturn(400);
+        DynamoDbClient dynamo = mock(DynamoDbClient.class);
+        NotifyCriticalFunction function = functionWith(mailtrap);
+        inject(function, "ledger", ledgerWith(dynamo));
+
+        function.handleRequest(criticalInput(), mockContext());
+
+        verify(dynamo).deleteItem(any(DeleteItemRequest.class));
+        verify(dynamo, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    void handleRequestShouldSendWhenLedgerIsUnavailable() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenReturn(200);
+        DynamoDbClient dynamo = mock(DynamoDbClient.class);
+        when(dynamo.putItem(any(PutItemRequest.class))).thenThrow(DynamoDbException.builder().message("throttled").build());
+        NotifyCriticalFunction function = functionWith(mailtrap);
+        inject(function, "ledger", ledgerWith(dynamo));
+
+        String result = function.handleRequest(criticalInput(), mockContext());
+
+        assertEquals("E-mail enviado via API Mailtrap.", result);
+        verify(mailtrap, times(1)).send(anyString());
+    }
+
+    @Test
+    void handleRequestTimeoutShouldParkAlertOnOverflowQueue() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenThrow(new HttpTimeoutException("request timed out"));
+        SqsClient sqs = mock(SqsClient.class);
+        NotifyCriticalFunction function = functionWith(mailtrap, sqs, "https://sqs/overflow");
+
+        String result = function.handleRequest(criticalInput(), mockContext());
+
+        assertTrue(result.startsWith("Alerta enfileirado para reenvio. FAILED"), result);
+        verify(mailtrap, times(3)).send(anyString());
+        ArgumentCaptor<SendMessageRequest> parked = ArgumentCaptor.forClass(SendMessageRequest.class);
+        verify(sqs).sendMessage(parked.capture());
+        assertEquals("https://sqs/overflow", parked.getValue().queueUrl());
+        assertTrue(parked.getValue().messageBody().contains("\"feedbackId\":\"fb-1\""));
+    }
+
+    @Test
+    void handleRequestWithoutOverflowShouldFailInvocation() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenReturn(503);
+        NotifyCriticalFunction function = functionWith(mailtrap, mock(SqsClient.class), null);
+
+        assertThrows(IllegalStateException.class, () -> function.handleRequest(criticalInput(), mockContext()));
+    }
+
+    @Test
+    void handleRequestRejectedPayloadShouldNotRetryNorPark() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenReturn(400);
+        SqsClient sqs = mock(SqsClient.class);
+        NotifyCriticalFunction function = functionWith(mailtrap, sqs, "https://sqs/overflow");
+
+        String result = function.handleRequest(criticalInput(), mockContext());
+
+        assertEquals("Falha ao enviar e-mail. Código HTTP: 400", result);
+        verify(mailtrap, times(1)).send(anyString());
+        verifyNoInteractions(sqs);
+    }
+
+    @Test
+    void handleRequestWithOpenCircuitShouldParkWithoutCalling() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenReturn(503);
+        SqsClient sqs = mock(SqsClient.class);
+        NotifyCriticalFunction function = functionWith(mailtrap, sqs, "https://sqs/overflow");
+
+        // 3 tentativas por alerta: o breaker (limiar 5) abre durante o segundo alerta
+        function.handleRequest(criticalInput(), mockContext());
+        function.handleRequest(criticalInput(), mockContext());
+        String result = function.handleRequest(criticalInput(), mockContext());
+
+        assertTrue(result.startsWith("Alerta enfileirado para reenvio. CIRCUIT_OPEN"), result);
+        verify(mailtrap, times(5)).send(anyString());
+        verify(sqs, times(3)).sendMessage(any(SendMessageRequest.class));
+    }
+
+    @Test
+    void redriveShouldDeleteOnlyDeliveredAlerts() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenReturn(200).thenReturn(400);
+        SqsClient sqs = mock(SqsClient.class);
+        when(sqs.receiveMessage(any(ReceiveMessageRequest.class)))
+                .thenReturn(ReceiveMessageResponse.builder().messages(parked("p-1"), parked("p-2")).build())
+                .thenReturn(ReceiveMessageResponse.builder().build());
+        NotifyCriticalFunction function = functionWith(mailtrap, sqs, "https://sqs/overflow");
+
+        String result = function.handleRequest(Map.of("action", "redrive"), mockContext());
+
+        assertEquals("Reenvio: 1 de 2 alertas entregues.", result);
+        ArgumentCaptor<DeleteMessageBatchRequest> deleted = ArgumentCaptor.forClass(DeleteMessageBatchRequest.class);
+        verify(sqs).deleteMessageBatch(deleted.capture());
+        assertEquals(1, deleted.getValue().entries().size());
+        assertEquals("rh-p-1", deleted.getValue().entries().get(0).receiptHandle());
+    }
+
+    @Test
+    void redriveShouldStopWhenCircuitOpens() throws Exception {
+        MailtrapClient mailtrap = mock(MailtrapClient.class);
+        when(mailtrap.send(anyString())).thenReturn(503);
+        SqsClient sqs = mock(SqsClient.class);
+        when(sqs.receiveMessage(any(ReceiveMessageRequest.class)))
+                .thenReturn(ReceiveMessageResponse.builder().messages(parked("p-1"), parked("p-2"), parked("p-3")).build());
+        NotifyCriticalFunction function = functionWith(mailtrap, sqs, "https://sqs/overflow");
+
+        String result = function.handleRequest(Map.of("action", "redrive"), mockContext());
+
+        assertEquals("Reenvio: 0 de 2 alertas entregues; interrompido com o circuit breaker aberto.", result);
+        verify(sqs, times(1)).receiveMessage(any(ReceiveMessageRequest.class));
+        verify(sqs, never()).sendMessage(any(SendMessageRequest.class));
+    }
+
+    private static NotifyCriticalFunction functionWith(MailtrapClient mailtrap) throws Exception {
+        return functionWith(mailtrap, mock(SqsClient.class), null);
+    }
+
+    private static NotifyCriticalFunction functionWith(MailtrapClient mailtrap, SqsClient sqs, String overflowUrl) throws Exception {
+        NotifyCriticalFunction function = new NotifyCriticalFunction();
+        inject(function, "mailtrap", mailtrap);
+        inject(function, "delivery", new MailtrapDelivery(mailtrap,
+                new CircuitBreaker(5, 30_000, System::nanoTime), new RetryBudget(0.2, 10), 3));
+        inject(function, "overflow", new AlertOverflow(sqs, overflowUrl));
+        return function;
+    }
+
+    private static NotificationLedger ledgerWith(DynamoDbClient dynamo) {
+        return new NotificationLedger(dynamo, "NotificationLedger", 604_800, 300, 1024, Clock.systemUTC());
+    }
+
+    private static void inject(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static Message parked(String id) {
+        return Message.builder().messageId(id).receiptHandle("rh-" + id)
+                .body("{\"detail\":{\"feedbackId\":\"" + id + "\",\"fullName\":\"Ana\",\"category\":\"Critical\","
+                        + "\"comment\":\"Fora\",\"rating\":1,\"isCritical\":true}}")
+                .build();
+    }
+
+    private static Map<String, Object> criticalInput() {
+        return criticalInput("fb-1");
+    }
+
+    private static Map<String, Object> criticalInput(String feedbackId) {
         Map<String, Object> detail = new HashMap<>();
-        detail.put("feedbackId", "fb-1");
+        detail.put("feedbackId", feedbackId);
         detail.put("fullName", "João Silva");
         detail.put("category", "Critical");
         detail.put("comment", "Ótimo");
@@ -54,32 +362,12 @@ class NotifyCriticalFunctionTest {
 
         Map<String, Object> input = new HashMap<>();
         input.put("detail", detail);
+        return input;
+    }
 
+    private static Context mockContext() {
         Context ctx = mock(Context.class);
-        LambdaLogger logger = mock(LambdaLogger.class);
-        when(ctx.getLogger()).thenReturn(logger);
-
-        CloseableHttpClient mockClient = mock(CloseableHttpClient.class);
-        when(mockClient.execute(any(HttpPost.class), any(HttpClientResponseHandler.class)))
-                .thenAnswer(invocation -> {
-                    HttpClientResponseHandler<String> handler = invocation.getArgument(1);
-                    ClassicHttpResponse response = mock(ClassicHttpResponse.class);
-                    when(response.getCode()).thenReturn(200);
-                    try {
-                        return handler.handleResponse(response);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                });
-
-        try (MockedStatic<HttpClients> mocked = mockStatic(HttpClients.class)) {
-            mocked.when(HttpClients::createDefault).thenReturn(mockClient);
-
-            NotifyCriticalFunction function = new NotifyCriticalFunction();
-            String result = function.handleRequest(input, ctx);
-
-            assertEquals("E-mail enviado via API Mailtrap.", result);
-            verify(mockClient, times(1)).execute(any(HttpPost.class), any(HttpClientResponseHandler.class));
-        }
-    }
-}
\ No newline at end of file
+        when(ctx.getLogger()).thenReturn(mock(LambdaLogger.class));
+        return ctx;
+    }
+}
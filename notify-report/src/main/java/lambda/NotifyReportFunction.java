@@ -3,21 +3,20 @@ package lambda;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import lambda.common.AwsClients;
+import lambda.common.NotificationTemplates;
+import lambda.common.Priming;
 
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.S3ClientBuilder;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
 
 import software.amazon.awssdk.services.ses.SesClient;
 import software.amazon.awssdk.services.ses.model.*;
 
-import java.net.URI;
 import java.util.Map;
 
 public class NotifyReportFunction implements RequestHandler<Map<String, Object>, String> {
@@ -29,38 +28,35 @@ public class NotifyReportFunction implements RequestHandler<Map<String, Object>,
     private final String sourceEmail;
 
     public NotifyReportFunction() {
-        String s3Endpoint = System.getenv("S3_ENDPOINT");
-        String accessKey = System.getenv("AWS_ACCESS_KEY_ID");
-        String secretKey = System.getenv("AWS_SECRET_ACCESS_KEY");
-        
-        S3ClientBuilder builder = S3Client.builder();
-        
-        if (s3Endpoint != null && !s3Endpoint.isEmpty()) {
-            // MinIO ou S3 local
-            builder.endpointOverride(URI.create(s3Endpoint))
-                   .forcePathStyle(true)
-                   .region(Region.US_EAST_1);
-            
-            if (accessKey != null && secretKey != null) {
-                AwsBasicCredentials credentials = AwsBasicCredentials.create(accessKey, secretKey);
-                builder.credentialsProvider(StaticCredentialsProvider.create(credentials));
-            }
-        } else {
-            // AWS S3 em produção - usar credenciais padrão
-            String regionEnv = System.getenv("AWS_REGION");
-            Region region = regionEnv != null ? Region.of(regionEnv) : Region.US_EAST_1;
-            builder.region(region);
-        }
-        
-        this.s3 = builder.build();
-        this.ses = SesClient.create();
+        // S3_ENDPOINT aponta para MinIO ou S3 local, que exigem path-style
+        this.s3 = AwsClients.sync("S3", S3Client::builder, builder -> builder.forcePathStyle(AwsClients.endpoint("S3") != null));
+        this.ses = AwsClients.sync("SES", SesClient::builder);
         this.bucketName = System.getenv("REPORTS_BUCKET");
         this.recipientEmail = System.getenv("RECIPIENT_EMAIL");
         this.sourceEmail = System.getenv("SOURCE_EMAIL") != null ? System.getenv("SOURCE_EMAIL") : "no-reply@seu-dominio-validado.com";
+        Priming.register("notify-report", this::prime);
     }
 
     @Override
     public String handleRequest(Map<String, Object> input, Context context) {
+        return Priming.measureFirstInvocation(context, () -> sendReport(input, context));
+    }
+
+    // Chamadas somente leitura para aquecer os clientes S3 e SES e montar um e-mail fictício, sem enviar
+    private void prime() {
+        s3.headBucket(HeadBucketRequest.builder().bucket(bucketName).build());
+        ses.getSendQuota(GetSendQuotaRequest.builder().build());
+        SendEmailRequest.builder()
+            .destination(Destination.builder().toAddresses("priming@example.com").build())
+            .message(Message.builder()
+                .subject(Content.builder().data("priming").build())
+                .body(Body.builder().text(Content.builder().data(buildBody("priming.txt", "priming")).build()).build())
+                .build())
+            .source(sourceEmail)
+            .build();
+    }
+
+    private String sendReport(Map<String, Object> input, Context context) {
         LambdaLogger logger = context.getLogger();
         logger.log("Iniciando envio do relatório por e-mail...\n");
         logger.log("RECIPIENT_EMAIL: " + recipientEmail + "\n");
@@ -95,7 +91,7 @@ public class NotifyReportFunction implements RequestHandler<Map<String, Object>,
                         .build())
                     .body(Body.builder()
                         .text(Content.builder()
-                            .data(reportContent.toString())
+                            .data(buildBody(objectKey, reportContent))
                             .build())
                         .build())
                     .build())
@@ -112,4 +108,9 @@ public class NotifyReportFunction implements RequestHandler<Map<String, Object>,
             throw new RuntimeException(e);
         }
     }
+
+    static String buildBody(String reportKey, String reportContent) {
+        return NotificationTemplates.forEventType(NotificationTemplates.WEEKLY_REPORT)
+            .render(Map.of("reportKey", reportKey, "report", reportContent));
+    }
 }
@@ -431,4 +431,12 @@ class NotifyReportFunctionTest {
             assertTrue(result.contains("enviado com sucesso"));
         }
     }
+
+    @Test
+    void buildBodyShouldRenderReportTemplate() {
+        String body = NotifyReportFunction.buildBody("weekly-report-2026-01-08.txt", "=== RELATÓRIO SEMANAL ===\nMédia: \"4.5\"");
+
+        assertTrue(body.startsWith("=== RELATÓRIO SEMANAL ===\nMédia: \"4.5\"\n"));
+        assertTrue(body.contains("Relatório weekly-report-2026-01-08.txt gerado automaticamente"));
+    }
 }
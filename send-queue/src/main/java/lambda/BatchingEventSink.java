@@ -0,0 +1,129 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Base dos sinks que publicam em lote: monta os lotes respeitando o limite de entradas e de bytes do
+ * serviço e reenvia só as entradas que falharam, com backoff exponencial e jitter.
+ */
+abstract class BatchingEventSink implements EventSink {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+
+    BatchingEventSink(int maxEntries, long maxBytes, int maxAttempts, long baseBackoffMs, long maxBackoffMs) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /** Tamanho da entrada segundo a regra de cálculo do serviço. */
+    protected abstract long size(Event event);
+
+    /**
+     * Envia um lote.
+     * @return as posições (no lote) das entradas que falharam e podem ser reenviadas
+     * @throws RuntimeException quando a chamada inteira falha; o lote todo fica pendente
+     */
+    protected abstract List<Integer> send(List<Event> batch, Context context);
+
+    @Override
+    public final int publish(List<Event> events, Context context) {
+        int offset = 0;
+        for (List<Event> batch : batches(events)) {
+            int failedIndex = publishBatch(batch, context);
+            if (failedIndex >= 0) {
+                return offset + failedIndex;
+            }
+            offset += batch.size();
+        }
+        return -1;
+    }
+
+    final List<List<Event>> batches(List<Event> events) {
+        List<List<Event>> batches = new ArrayList<>();
+        List<Event> current = new ArrayList<>();
+        long currentBytes = 0;
+        for (Event event : events) {
+            long size = size(event);
+            if (!current.isEmpty() && (current.size() == maxEntries || currentBytes + size > maxBytes)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(event);
+            currentBytes += size;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    // Retorna a posição no lote da primeira entrada que continuou falhando após esgotar as tentativas, ou -1
+    private int publishBatch(List<Event> batch, Context context) {
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            pending.add(i);
+        }
+        for (int attempt = 1; attempt <= maxAttempts && !pending.isEmpty(); attempt++) {
+            if (attempt > 1) {
+                try {
+                    Thread.sleep(backoffMillis(attempt));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            List<Integer> failed;
+            try {
+                failed = send(pending.stream().map(batch::get).toList(), context);
+            } catch (Exception e) {
+                // O SDK já fez os retries da chamada; o lote fica pendente para a próxima entrega
+                context.getLogger().log("Erro ao publicar lote (tentativa " + attempt + "): " + e.getMessage());
+                break;
+            }
+            List<Integer> stillPending = new ArrayList<>(failed.size());
+            for (int position : failed) {
+                stillPending.add(pending.get(position));
+            }
+            pending = stillPending;
+        }
+        return pending.isEmpty() ? -1 : pending.getFirst();
+    }
+
+    private long backoffMillis(int attempt) {
+        long cap = Math.min(maxBackoffMs, baseBackoffMs << (attempt - 2));
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+
+    static long utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,40 @@
+package lambda;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Serializa o detail do evento FeedbackCreated com o JsonGenerator do Jackson (streaming), que escapa
+ * aspas, quebras de linha e caracteres de controle dos textos livres. O buffer de saída é reaproveitado
+ * entre chamadas: a instância não é thread-safe, cada thread de processamento usa a sua.
+ */
+final class DetailEncoder {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final CharArrayWriter buffer = new CharArrayWriter(512);
+
+    String encode(String feedbackId, String fullName, String category, String comment,
+                  int rating, boolean isCritical, String createdAt) {
+        buffer.reset();
+        try (JsonGenerator json = JSON.createGenerator(buffer)) {
+            json.writeStartObject();
+            json.writeStringField("feedbackId", feedbackId);
+            json.writeStringField("fullName", fullName);
+            json.writeStringField("category", category);
+            json.writeStringField("comment", comment);
+            json.writeNumberField("rating", rating);
+            json.writeBooleanField("isCritical", isCritical);
+            json.writeStringField("createdAt", createdAt);
+            json.writeEndObject();
+        } catch (IOException e) {
+            // CharArrayWriter não lança IOException; mantido pela assinatura do gerador
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import software.amazon.awssdk.services.eventbridge.EventBridgeClient;
+import software.amazon.awssdk.services.eventbridge.model.DescribeEventBusRequest;
+import software.amazon.awssdk.services.eventbridge.model.PutEventsRequest;
+import software.amazon.awssdk.services.eventbridge.model.PutEventsRequestEntry;
+import software.amazon.awssdk.services.eventbridge.model.PutEventsResponse;
+import software.amazon.awssdk.services.eventbridge.model.PutEventsResultEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PutEvents em lotes de até 10 entradas e 256 KB; reenvia as entradas com ErrorCode (FailedEntryCount > 0).
+ */
+class EventBridgeSink extends BatchingEventSink {
+
+    static final String SOURCE = "feedback.created";
+
+    private final EventBridgeClient client;
+
+    EventBridgeSink(EventBridgeClient client) {
+        super(10, 256 * 1024, 4, 50, 1000);
+        this.client = client;
+    }
+
+    // Regra de tamanho de entrada da documentação do PutEvents: Source + DetailType + Detail (sem Time e Resources)
+    @Override
+    protected long size(Event event) {
+        return utf8Length(SOURCE) + utf8Length(event.detailType()) + utf8Length(event.detail());
+    }
+
+    @Override
+    protected List<Integer> send(List<Event> batch, Context context) {
+        List<PutEventsRequestEntry> entries = new ArrayList<>(batch.size());
+        for (Event event : batch) {
+            entries.add(PutEventsRequestEntry.builder()
+                    .source(SOURCE)
+                    .detailType(event.detailType())
+                    .detail(event.detail())
+                    .eventBusName(event.target())
+                    .build());
+        }
+        PutEventsResponse response = client.putEvents(PutEventsRequest.builder().entries(entries).build());
+        if (response.failedEntryCount() == null || response.failedEntryCount() == 0) {
+            return List.of();
+        }
+
+        // As entradas da resposta seguem a ordem da requisição
+        List<Integer> failed = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PutEventsResultEntry result = i < response.entries().size() ? response.entries().get(i) : null;
+            if (result == null || result.errorCode() != null) {
+                failed.add(i);
+                if (result != null) {
+                    context.getLogger().log("Falha ao publicar evento: " + result.errorCode() + " " + result.errorMessage());
+                }
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public void prime() {
+        client.describeEventBus(DescribeEventBusRequest.builder().name("default").build());
+    }
+}
@@ -0,0 +1,33 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+import java.util.List;
+
+/**
+ * Destino dos eventos publicados pelo send-queue (EVENT_SINK): eventbridge (padrão), sqs, kinesis ou memory.
+ * Cada implementação agrupa os eventos conforme os limites do próprio serviço e reenvia as falhas com a
+ * própria política de retry. As implementações são usadas por várias faixas ao mesmo tempo e devem ser thread-safe.
+ */
+interface EventSink {
+
+    /**
+     * @param id         eventID do registro do stream, estável entre reentregas (deduplicação no SQS FIFO)
+     * @param key        chave de partição/ordenação (feedbackId)
+     * @param target     barramento de destino das regras de roteamento; só o EventBridge o utiliza
+     * @param detailType tipo do evento (detail-type no EventBridge, atributo da mensagem no SQS)
+     * @param detail     JSON do evento
+     */
+    record Event(String id, String key, String target, String detailType, String detail) {
+    }
+
+    /**
+     * Publica os eventos em ordem, parando no primeiro lote com falha.
+     * @return a posição do primeiro evento que não foi publicado após as tentativas, ou -1 se todos foram
+     */
+    int publish(List<Event> events, Context context);
+
+    /** Chamada sem efeito colateral para aquecer o cliente no priming. */
+    default void prime() {
+    }
+}
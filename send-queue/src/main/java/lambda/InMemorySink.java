@@ -0,0 +1,37 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sink em memória para testes de carga (EVENT_SINK=memory): guarda os eventos sem chamada de rede, o que
+ * isola o custo do próprio send-queue. Guarda no máximo MAX_EVENTS; além disso só conta.
+ */
+class InMemorySink implements EventSink {
+
+    private static final int MAX_EVENTS = 100_000;
+
+    private final List<Event> events = new ArrayList<>();
+    private long published;
+
+    @Override
+    public synchronized int publish(List<Event> batch, Context context) {
+        for (Event event : batch) {
+            if (events.size() < MAX_EVENTS) {
+                events.add(event);
+            }
+        }
+        published += batch.size();
+        return -1;
+    }
+
+    synchronized List<Event> events() {
+        return List.copyOf(events);
+    }
+
+    synchronized long published() {
+        return published;
+    }
+}
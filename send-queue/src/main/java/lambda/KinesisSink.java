@@ -0,0 +1,72 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.kinesis.model.DescribeStreamSummaryRequest;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsRequest;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsRequestEntry;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsResponse;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsResultEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PutRecords em lotes de até 500 registros e 5 MB, com o feedbackId como partition key (mesmo shard,
+ * ordem preservada por feedback); reenvia os registros com ErrorCode (FailedRecordCount > 0).
+ */
+class KinesisSink extends BatchingEventSink {
+
+    private final KinesisClient client;
+    private final String streamName;
+
+    KinesisSink(KinesisClient client, String streamName) {
+        super(500, 5L * 1024 * 1024, 4, 100, 2000);
+        this.client = client;
+        this.streamName = streamName;
+    }
+
+    // Dados + partition key contam para o limite da requisição
+    @Override
+    protected long size(Event event) {
+        return utf8Length(event.detail()) + utf8Length(event.key());
+    }
+
+    @Override
+    protected List<Integer> send(List<Event> batch, Context context) {
+        List<PutRecordsRequestEntry> records = new ArrayList<>(batch.size());
+        for (Event event : batch) {
+            records.add(PutRecordsRequestEntry.builder()
+                    .partitionKey(event.key())
+                    .data(SdkBytes.fromString(event.detail(), StandardCharsets.UTF_8))
+                    .build());
+        }
+        PutRecordsResponse response = client.putRecords(PutRecordsRequest.builder()
+                .streamName(streamName)
+                .records(records)
+                .build());
+        if (response.failedRecordCount() == null || response.failedRecordCount() == 0) {
+            return List.of();
+        }
+
+        // Os resultados seguem a ordem da requisição
+        List<Integer> failed = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PutRecordsResultEntry result = i < response.records().size() ? response.records().get(i) : null;
+            if (result == null || result.errorCode() != null) {
+                failed.add(i);
+                if (result != null) {
+                    context.getLogger().log("Falha ao gravar registro: " + result.errorCode() + " " + result.errorMessage());
+                }
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public void prime() {
+        client.describeStreamSummary(DescribeStreamSummaryRequest.builder().streamName(streamName).build());
+    }
+}
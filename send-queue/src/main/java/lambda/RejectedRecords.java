@@ -0,0 +1,64 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Registros do stream que nunca serão publicáveis (sem rating, tipos errados...) vão para REJECTED_RECORDS_QUEUE_URL
+ * e o processamento do shard segue: reportá-los em batchItemFailures faria o Lambda reentregar o mesmo registro
+ * até ele expirar do stream. A mensagem segue o formato do destino OnFailure (metadados, não a imagem do item).
+ */
+class RejectedRecords {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final SqsClient client;
+    private final String queueUrl;
+
+    RejectedRecords(SqsClient client, String queueUrl) {
+        this.client = client;
+        this.queueUrl = queueUrl;
+    }
+
+    /**
+     * @return false se a mensagem não pôde ser enviada; o registro deve então ser reportado como falha
+     */
+    boolean reject(DynamodbEvent.DynamodbStreamRecord record, String feedbackId, RuntimeException error, Context context) {
+        try {
+            client.sendMessage(SendMessageRequest.builder()
+                    .queueUrl(queueUrl)
+                    .messageBody(body(record, feedbackId, error))
+                    .build());
+            context.getLogger().log("Registro " + record.getDynamodb().getSequenceNumber() + " enviado para a fila de rejeitados: " + error);
+            return true;
+        } catch (RuntimeException e) {
+            context.getLogger().log("Erro ao enviar registro " + record.getDynamodb().getSequenceNumber() + " para a fila de rejeitados: " + e);
+            return false;
+        }
+    }
+
+    private static String body(DynamodbEvent.DynamodbStreamRecord record, String feedbackId, RuntimeException error) {
+        StringWriter out = new StringWriter(256);
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("reason", "InvalidRecord");
+            json.writeStringField("eventSourceARN", record.getEventSourceARN());
+            json.writeStringField("eventID", record.getEventID());
+            json.writeStringField("sequenceNumber", record.getDynamodb().getSequenceNumber());
+            json.writeStringField("feedbackId", feedbackId);
+            json.writeStringField("error", error.toString());
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,393 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import lambda.common.HyperLogLog;
+import lambda.common.KllSketch;
+import lambda.common.Rollups;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Mantém os agregados por dia e por semana (ver {@link Rollups}) a partir dos INSERTs do stream.
+ *
+ * Os registros são somados em memória e gravados em TransactWriteItems de até 100 ações: um UpdateItem ADD
+ * por item de agregado tocado e, para cada registro, um marcador {@code SEQ#<sequence number>} com
+ * attribute_not_exists. Na reentrega de um registro já somado o marcador falha a condição, a transação
+ * inteira é cancelada sem efeito, e ela é refeita sem esse registro: nenhum contador é somado duas vezes.
+ * Os marcadores expiram por TTL depois da retenção do stream (24 h).
+ *
+ * O item do dia também guarda os sketches (ver {@link Rollups#REPORTERS}): como não há ADD para eles, os
+ * itens do dia são lidos antes da transação, os sketches combinados com os registros do grupo e regravados
+ * com a condição de que sketchVersion não mudou desde a leitura. Se outro shard gravou no meio, a
+ * transação é cancelada e o grupo é refeito a partir de uma leitura nova.
+ */
+class RollupWriter {
+
+    private static final int MAX_ACTIONS = 100;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BASE_BACKOFF_MS = 50;
+    private static final long MAX_BACKOFF_MS = 1000;
+    private static final Duration MARKER_TTL = Duration.ofDays(2);
+
+    private record Contribution(String sequenceNumber, List<String> rollupKeys, Map<String, BigDecimal> counters,
+                                String dayKey, String reporter, String category, Float rating) {
+    }
+
+    private final DynamoDbClient dynamoDb;
+    private final String tableName;
+
+    RollupWriter(DynamoDbClient dynamoDb, String tableName) {
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Soma os registros em ordem e para no primeiro grupo que não pôde ser gravado.
+     * @return o sequence number do primeiro registro não somado, ou null se todos foram (ou já estavam) somados
+     */
+    String apply(List<DynamodbEvent.DynamodbStreamRecord> records, Context context) {
+        List<Contribution> chunk = new ArrayList<>();
+        Set<String> rollupKeys = new HashSet<>();
+        int applied = 0;
+        int skipped = 0;
+        for (DynamodbEvent.DynamodbStreamRecord record : records) {
+            Contribution contribution = contribution(record);
+            if (contribution == null) {
+                // Sem data não há agregado a atualizar; o registro não volta para o stream por isso
+                context.getLogger().log("Registro sem createdAt ignorado nos agregados: " + record.getDynamodb().getSequenceNumber());
+                skipped++;
+                continue;
+            }
+            int newKeys = 0;
+            for (String key : contribution.rollupKeys()) {
+                newKeys += rollupKeys.contains(key) ? 0 : 1;
+            }
+            if (!chunk.isEmpty() && chunk.size() + rollupKeys.size() + 1 + newKeys > MAX_ACTIONS) {
+                String failed = write(chunk, context);
+                if (failed != null) {
+                    logSummary(context, applied, skipped, failed);
+                    return failed;
+                }
+                applied += chunk.size();
+                chunk = new ArrayList<>();
+                rollupKeys.clear();
+            }
+            chunk.add(contribution);
+            rollupKeys.addAll(contribution.rollupKeys());
+        }
+        String failed = chunk.isEmpty() ? null : write(chunk, context);
+        if (failed == null) {
+            applied += chunk.size();
+        }
+        logSummary(context, applied, skipped, failed);
+        return failed;
+    }
+
+    private static void logSummary(Context context, int applied, int skipped, String failed) {
+        context.getLogger().log("Agregados: " + applied + " registros somados; ignorados: " + skipped
+                + (failed != null ? "; retomando a partir de " + failed : ""));
+    }
+
+    // Grava um grupo; registros cujo marcador já existe saem do grupo e a transação é refeita com o resto
+    private String write(List<Contribution> chunk, Context context) {
+        List<Contribution> pending = new ArrayList<>(chunk);
+        int attempt = 1;
+        while (!pending.isEmpty()) {
+            try {
+                Map<String, Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue>> days = readDays(pending);
+                dynamoDb.transactWriteItems(TransactWriteItemsRequest.builder().transactItems(actions(pending, days)).build());
+                return null;
+            } catch (TransactionCanceledException e) {
+                List<Contribution> notApplied = withoutAlreadyApplied(pending, e.cancellationReasons());
+                if (notApplied.size() < pending.size()) {
+                    context.getLogger().log("Agregados: " + (pending.size() - notApplied.size()) + " registros já somados");
+                    pending = notApplied;
+                    continue;
+                }
+                // sketchVersion mudou (outro shard gravou no mesmo dia), conflito de transação ou throttling: relê e tenta de novo
+                if (!retry(++attempt, context, e)) {
+                    return pending.getFirst().sequenceNumber();
+                }
+            } catch (Exception e) {
+                if (!retry(++attempt, context, e)) {
+                    return pending.getFirst().sequenceNumber();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean retry(int attempt, Context context, Exception error) {
+        context.getLogger().log("Erro ao gravar agregados (tentativa " + (attempt - 1) + "): " + error.getMessage());
+        if (attempt > MAX_ATTEMPTS) {
+            return false;
+        }
+        try {
+            Thread.sleep(backoffMillis(attempt));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static long backoffMillis(int attempt) {
+        long cap = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << (attempt - 2));
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+
+    // Os motivos seguem a ordem das ações: primeiro os marcadores, um por registro
+    private static List<Contribution> withoutAlreadyApplied(List<Contribution> pending, List<CancellationReason> reasons) {
+        List<Contribution> notApplied = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            CancellationReason reason = i < reasons.size() ? reasons.get(i) : null;
+            if (reason == null || !"ConditionalCheckFailed".equals(reason.code())) {
+                notApplied.add(pending.get(i));
+            }
+        }
+        return notApplied;
+    }
+
+    private List<TransactWriteItem> actions(List<Contribution> contributions,
+                                            Map<String, Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue>> days) {
+        String expiresAt = String.valueOf(Instant.now().plus(MARKER_TTL).getEpochSecond());
+        List<TransactWriteItem> actions = new ArrayList<>();
+        Map<String, Map<String, BigDecimal>> deltas = new LinkedHashMap<>();
+        Map<String, DaySketches> sketches = new LinkedHashMap<>();
+        for (Contribution contribution : contributions) {
+            actions.add(TransactWriteItem.builder().put(Put.builder()
+                    .tableName(tableName)
+                    .item(Map.of(
+                            Rollups.KEY, s(Rollups.sequenceKey(contribution.sequenceNumber())),
+                            Rollups.EXPIRES_AT, n(expiresAt)))
+                    .conditionExpression("attribute_not_exists(#key)")
+                    .expressionAttributeNames(Map.of("#key", Rollups.KEY))
+                    .build()).build());
+            for (String key : contribution.rollupKeys()) {
+                Map<String, BigDecimal> counters = deltas.computeIfAbsent(key, k -> new LinkedHashMap<>());
+                contribution.counters().forEach((name, value) -> counters.merge(name, value, BigDecimal::add));
+            }
+            sketches.computeIfAbsent(contribution.dayKey(), key -> new DaySketches(days.get(key))).add(contribution);
+        }
+        deltas.forEach((key, counters) -> actions.add(TransactWriteItem.builder().update(update(key, counters, sketches.get(key))).build()));
+        return actions;
+    }
+
+    private Update update(String rollupKey, Map<String, BigDecimal> counters, DaySketches sketches) {
+        StringBuilder add = new StringBuilder("ADD ");
+        Map<String, String> names = new HashMap<>();
+        Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue> values = new HashMap<>();
+        int i = 0;
+        for (Map.Entry<String, BigDecimal> counter : counters.entrySet()) {
+            add.append(i == 0 ? "" : ", ").append("#c").append(i).append(" :c").append(i);
+            names.put("#c" + i, counter.getKey());
+            values.put(":c" + i, n(counter.getValue().toPlainString()));
+            i++;
+        }
+        Update.Builder update = Update.builder()
+                .tableName(tableName)
+                .key(Map.of(Rollups.KEY, s(rollupKey)));
+        if (sketches == null) {
+            return update.updateExpression(add.toString())
+                    .expressionAttributeNames(names)
+                    .expressionAttributeValues(values)
+                    .build();
+        }
+
+        add.append(", #version :one");
+        names.put("#version", Rollups.SKETCH_VERSION);
+        values.put(":one", n("1"));
+        StringBuilder set = new StringBuilder(" SET ");
+        int j = 0;
+        for (Map.Entry<String, byte[]> sketch : sketches.serialize().entrySet()) {
+            set.append(j == 0 ? "" : ", ").append("#s").append(j).append(" = :s").append(j);
+            names.put("#s" + j, sketch.getKey());
+            values.put(":s" + j, software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder()
+                    .b(SdkBytes.fromByteArray(sketch.getValue()))
+                    .build());
+            j++;
+        }
+        String condition;
+        if (sketches.version == null) {
+            condition = "attribute_not_exists(#version)";
+        } else {
+            condition = "#version = :version";
+            values.put(":version", n(sketches.version));
+        }
+        return update.updateExpression(add + set.toString())
+                .conditionExpression(condition)
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .build();
+    }
+
+    /** Sketches de um dia: os lidos da tabela mais os registros do grupo. */
+    private static final class DaySketches {
+
+        private final String version;
+        private final HyperLogLog reporters;
+        private final Map<String, KllSketch> ratings = new LinkedHashMap<>();
+
+        DaySketches(Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue> item) {
+            software.amazon.awssdk.services.dynamodb.model.AttributeValue version = item != null ? item.get(Rollups.SKETCH_VERSION) : null;
+            this.version = version != null ? version.n() : null;
+            software.amazon.awssdk.services.dynamodb.model.AttributeValue reporters = item != null ? item.get(Rollups.REPORTERS) : null;
+            this.reporters = reporters != null ? HyperLogLog.fromBytes(reporters.b().asByteArrayUnsafe()) : new HyperLogLog();
+            if (item != null) {
+                item.forEach((name, value) -> {
+                    if (name.startsWith(Rollups.RATING_SKETCH_PREFIX) && value.b() != null) {
+                        ratings.put(name, KllSketch.fromBytes(value.b().asByteArrayUnsafe()));
+                    }
+                });
+            }
+        }
+
+        void add(Contribution contribution) {
+            if (contribution.reporter() != null) {
+                reporters.offer(contribution.reporter());
+            }
+            if (contribution.rating() != null && contribution.category() != null) {
+                ratings.computeIfAbsent(Rollups.RATING_SKETCH_PREFIX + contribution.category(), name -> new KllSketch())
+                        .update(contribution.rating());
+            }
+        }
+
+        Map<String, byte[]> serialize() {
+            Map<String, byte[]> serialized = new LinkedHashMap<>();
+            serialized.put(Rollups.REPORTERS, reporters.toBytes());
+            ratings.forEach((name, sketch) -> serialized.put(name, sketch.toBytes()));
+            return serialized;
+        }
+    }
+
+    // Leitura consistente dos itens de dia do grupo, repetindo as chaves não processadas
+    private Map<String, Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue>> readDays(List<Contribution> contributions) {
+        Set<String> dayKeys = new TreeSet<>();
+        for (Contribution contribution : contributions) {
+            dayKeys.add(contribution.dayKey());
+        }
+        List<Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue>> pending = new ArrayList<>();
+        for (String key : dayKeys) {
+            pending.add(Map.of(Rollups.KEY, s(key)));
+        }
+        Map<String, Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue>> days = new HashMap<>();
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            if (attempt > MAX_ATTEMPTS) {
+                throw new IllegalStateException("Itens de agregado não lidos após " + MAX_ATTEMPTS + " tentativas");
+            }
+            BatchGetItemResponse response = dynamoDb.batchGetItem(BatchGetItemRequest.builder()
+                    .requestItems(Map.of(tableName, KeysAndAttributes.builder().keys(pending).consistentRead(true).build()))
+                    .build());
+            for (Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue> item
+                    : response.responses().getOrDefault(tableName, List.of())) {
+                days.put(item.get(Rollups.KEY).s(), item);
+            }
+            KeysAndAttributes unprocessed = response.unprocessedKeys().get(tableName);
+            pending = unprocessed != null ? unprocessed.keys() : List.of();
+        }
+        return days;
+    }
+
+    private static Contribution contribution(DynamodbEvent.DynamodbStreamRecord record) {
+        Map<String, AttributeValue> image = record.getDynamodb().getNewImage();
+        String day = text(image.get("dayBucket"));
+        if (day == null) {
+            // Itens gravados antes de dayBucket existir
+            String createdAt = text(image.get("createdAt"));
+            if (createdAt == null || createdAt.length() < 10) {
+                return null;
+            }
+            day = createdAt.substring(0, 10);
+        }
+        String week = text(image.get("isoWeek"));
+        if (week == null) {
+            week = Rollups.isoWeek(LocalDate.parse(day));
+        }
+
+        String category = text(image.get("category"));
+        BigDecimal rating = number(image.get("rating"));
+        AttributeValue critical = image.get("isCritical");
+        boolean isCritical = critical != null && critical.getBOOL() != null
+                ? critical.getBOOL()
+                : "Critical".equalsIgnoreCase(category) || (rating != null && rating.compareTo(BigDecimal.valueOf(2)) <= 0);
+        String urgency = text(image.get("urgency"));
+
+        Map<String, BigDecimal> counters = new LinkedHashMap<>();
+        counters.put(Rollups.TOTAL, BigDecimal.ONE);
+        counters.put(Rollups.CRITICAL, isCritical ? BigDecimal.ONE : BigDecimal.ZERO);
+        // Mesmo padrão do relatório: sem urgency o feedback conta como baixa
+        counters.put(Rollups.URGENCY_PREFIX + (urgency != null ? urgency : "baixa"), BigDecimal.ONE);
+        if (category != null) {
+            counters.put(Rollups.CATEGORY_PREFIX + category, BigDecimal.ONE);
+        }
+        // Notas fora de 1..5 (0 = não informada) não entram na média nem no histograma
+        if (rating != null && rating.compareTo(BigDecimal.ONE) >= 0 && rating.compareTo(BigDecimal.valueOf(5)) <= 0) {
+            counters.put(Rollups.RATING_SUM, rating);
+            counters.put(Rollups.RATING_COUNT, BigDecimal.ONE);
+            counters.put(Rollups.RATING_PREFIX + rating.setScale(0, RoundingMode.FLOOR).intValue(), BigDecimal.ONE);
+        }
+        // Itens anteriores ao reporterId contam pelo nome informado
+        String reporter = text(image.get("reporterId"));
+        if (reporter == null) {
+            reporter = text(image.get("fullName"));
+        }
+        Float ratingValue = counters.containsKey(Rollups.RATING_COUNT) ? rating.floatValue() : null;
+        return new Contribution(record.getDynamodb().getSequenceNumber(),
+                List.of(Rollups.dayKey(day), Rollups.weekKey(week)), counters,
+                Rollups.dayKey(day), reporter, category, ratingValue);
+    }
+
+    private static String text(AttributeValue value) {
+        return value != null ? value.getS() : null;
+    }
+
+    private static BigDecimal number(AttributeValue value) {
+        if (value == null || value.getN() == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.getN());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static software.amazon.awssdk.services.dynamodb.model.AttributeValue s(String value) {
+        return software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().s(value).build();
+    }
+
+    private static software.amazon.awssdk.services.dynamodb.model.AttributeValue n(String value) {
+        return software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().n(value).build();
+    }
+
+    void prime() {
+        dynamoDb.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+    }
+}
@@ -0,0 +1,210 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoublePredicate;
+import java.util.function.Predicate;
+
+/**
+ * Regras de roteamento do send-queue (ROUTING_RULES), compiladas uma vez no init em predicados sobre a
+ * NewImage do registro. A primeira regra que casa define o barramento e o detail-type do evento; um
+ * registro que não casa com nenhuma regra não é publicado.
+ *
+ * Formato: regras separadas por ';', cada uma {@code condição [&& condição...] -> barramento[/detail-type]}.
+ * Condições: {@code atributo = valor}, {@code !=}, {@code <}, {@code <=}, {@code >}, {@code >=} (numéricas),
+ * {@code atributo exists} e {@code *} (sempre). Valores com espaços ou com {@code ; && ->} vão entre aspas
+ * simples ou duplas ({@code category = 'Muito Crítico'}); qualquer token a mais ou aspa sem fechamento é erro
+ * no init, em vez de uma regra que silenciosamente nunca casa. Ex.:
+ * {@code isCritical = true -> default; category = Critical -> default; rating <= 2 -> default}
+ */
+final class RoutingRules {
+
+    static final String PUBLISH_ALL = "* -> default/FeedbackCreated";
+
+    private static final String DEFAULT_DETAIL_TYPE = "FeedbackCreated";
+
+    record Route(String eventBusName, String detailType) {
+    }
+
+    private record Rule(Predicate<Map<String, AttributeValue>> condition, Route route) {
+    }
+
+    private final List<Rule> rules;
+
+    private RoutingRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    static RoutingRules parse(String spec) {
+        List<Rule> rules = new ArrayList<>();
+        for (String text : split(spec, ";")) {
+            if (text.isBlank()) {
+                continue;
+            }
+            int arrow = indexOutsideQuotes(text, "->", 0);
+            if (arrow < 0) {
+                throw new IllegalArgumentException("Regra de roteamento sem destino: " + text.trim());
+            }
+            rules.add(new Rule(condition(text.substring(0, arrow)), route(text.substring(arrow + 2))));
+        }
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("ROUTING_RULES sem regras");
+        }
+        return new RoutingRules(List.copyOf(rules));
+    }
+
+    /**
+     * @return o destino do registro, ou null quando nenhuma regra casa e o evento não deve ser publicado
+     */
+    Route route(Map<String, AttributeValue> newImage) {
+        for (Rule rule : rules) {
+            if (rule.condition().test(newImage)) {
+                return rule.route();
+            }
+        }
+        return null;
+    }
+
+    private static Route route(String text) {
+        String target = text.trim();
+        int slash = target.indexOf('/');
+        String bus = slash < 0 ? target : target.substring(0, slash).trim();
+        String detailType = slash < 0 ? DEFAULT_DETAIL_TYPE : target.substring(slash + 1).trim();
+        if (bus.isEmpty() || detailType.isEmpty()) {
+            throw new IllegalArgumentException("Destino de roteamento inválido: " + target);
+        }
+        return new Route(bus, detailType);
+    }
+
+    private static Predicate<Map<String, AttributeValue>> condition(String text) {
+        Predicate<Map<String, AttributeValue>> condition = null;
+        for (String term : split(text, "&&")) {
+            Predicate<Map<String, AttributeValue>> predicate = term(term.trim());
+            condition = condition == null ? predicate : condition.and(predicate);
+        }
+        return condition;
+    }
+
+    private static Predicate<Map<String, AttributeValue>> term(String term) {
+        if (term.equals("*")) {
+            return image -> true;
+        }
+        String[] parts = tokens(term);
+        if (parts.length == 2 && parts[1].equals("exists")) {
+            String attribute = parts[0];
+            return image -> image.containsKey(attribute);
+        }
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Condição de roteamento inválida: " + term);
+        }
+
+        String attribute = parts[0];
+        String value = parts[2];
+        return switch (parts[1]) {
+            case "=" -> image -> value.equalsIgnoreCase(text(image.get(attribute)));
+            case "!=" -> image -> !value.equalsIgnoreCase(text(image.get(attribute)));
+            case "<", "<=", ">", ">=" -> numeric(attribute, parts[1], parseNumber(value, term));
+            default -> throw new IllegalArgumentException("Operador de roteamento desconhecido: " + term);
+        };
+    }
+
+    // Separa por um delimitador fora de aspas
+    private static List<String> split(String text, String separator) {
+        List<String> pieces = new ArrayList<>();
+        int start = 0;
+        for (int at = indexOutsideQuotes(text, separator, 0); at >= 0; at = indexOutsideQuotes(text, separator, start)) {
+            pieces.add(text.substring(start, at));
+            start = at + separator.length();
+        }
+        pieces.add(text.substring(start));
+        return pieces;
+    }
+
+    private static int indexOutsideQuotes(String text, String token, int from) {
+        char quote = 0;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (text.startsWith(token, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Palavras da condição separadas por espaço; um trecho entre aspas é uma palavra só, sem as aspas
+    private static String[] tokens(String term) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < term.length()) {
+            char c = term.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                int end = term.indexOf(c, i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Aspas sem fechamento na condição de roteamento: " + term);
+                }
+                tokens.add(term.substring(i + 1, end));
+                i = end + 1;
+                if (i < term.length() && !Character.isWhitespace(term.charAt(i))) {
+                    throw new IllegalArgumentException("Valor entre aspas seguido de texto na condição de roteamento: " + term);
+                }
+            } else {
+                int end = i;
+                while (end < term.length() && !Character.isWhitespace(term.charAt(end))) {
+                    if (term.charAt(end) == '\'' || term.charAt(end) == '"') {
+                        throw new IllegalArgumentException("Aspas no meio de um valor na condição de roteamento: " + term);
+                    }
+                    end++;
+                }
+                tokens.add(term.substring(i, end));
+                i = end;
+            }
+        }
+        return tokens.toArray(String[]::new);
+    }
+
+    private static Predicate<Map<String, AttributeValue>> numeric(String attribute, String operator, double limit) {
+        DoublePredicate test = switch (operator) {
+            case "<" -> number -> number < limit;
+            case "<=" -> number -> number <= limit;
+            case ">" -> number -> number > limit;
+            default -> number -> number >= limit;
+        };
+        return image -> {
+            AttributeValue value = image.get(attribute);
+            return value != null && value.getN() != null && test.test(Double.parseDouble(value.getN()));
+        };
+    }
+
+    private static double parseNumber(String value, String term) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor numérico inválido na condição de roteamento: " + term);
+        }
+    }
+
+    // Valor comparável de S, N ou BOOL; B (texto comprimido) não entra nas regras
+    private static String text(AttributeValue value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.getS() != null) {
+            return value.getS();
+        }
+        if (value.getN() != null) {
+            return value.getN();
+        }
+        return value.getBOOL() != null ? value.getBOOL().toString() : null;
+    }
+}
@@ -3,71 +3,272 @@ package lambda;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
 import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
-import software.amazon.awssdk.regions.Region;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import lambda.common.AwsClients;
+import lambda.common.Priming;
+import lambda.common.TextCodec;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.eventbridge.EventBridgeClient;
-import software.amazon.awssdk.services.eventbridge.model.PutEventsRequest;
-import software.amazon.awssdk.services.eventbridge.model.PutEventsRequestEntry;
-import software.amazon.awssdk.services.eventbridge.model.PutEventsResponse;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
 
+import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Lambda function to process DynamoDB stream events and send them to EventBridge.
+ * Lambda function to process DynamoDB stream events and send them to EventBridge (or to the sink chosen by EVENT_SINK).
  */
 
-public class SendQueueFunction implements RequestHandler<DynamodbEvent, String> {
+public class SendQueueFunction implements RequestHandler<DynamodbEvent, StreamsEventResponse> {
 
-    private final EventBridgeClient eventBridgeClient;
+    // Registros por faixa antes de abrir outra: um PutEvents/SendMessageBatch cheio
+    private static final int LANE_MIN_RECORDS = 10;
+
+    // Faixas do modo concorrente; threads virtuais reaproveitadas entre invocações
+    private static final ExecutorService LANE_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final EventSink sink;
+    // Agregados por dia/semana lidos pelo relatório semanal; sem AGGREGATES_TABLE não são mantidos
+    private final RollupWriter rollups;
+    // Registros inválidos saem do shard por aqui; sem REJECTED_RECORDS_QUEUE_URL são reportados como falha
+    private final RejectedRecords rejected;
+    // Encoder do modo sequencial; as invocações de um container são sequenciais
+    private final DetailEncoder detailEncoder = new DetailEncoder();
+    // Faixas processadas em paralelo por lote do stream; 1 mantém o processamento sequencial
+    private final int concurrency = Integer.parseInt(System.getenv().getOrDefault("SEND_QUEUE_CONCURRENCY", "1"));
+    // Sem ROUTING_RULES todo INSERT é publicado no barramento default, como antes das regras
+    private final RoutingRules routingRules = RoutingRules.parse(
+            System.getenv().getOrDefault("ROUTING_RULES", RoutingRules.PUBLISH_ALL));
 
     public SendQueueFunction() {
-        this.eventBridgeClient = EventBridgeClient.builder()
-                .region(Region.US_EAST_1)
-                .build();
+        this.sink = createSink(System.getenv().getOrDefault("EVENT_SINK", "eventbridge"));
+        String aggregatesTable = System.getenv("AGGREGATES_TABLE");
+        this.rollups = aggregatesTable != null && !aggregatesTable.isBlank()
+                ? new RollupWriter(AwsClients.sync("DYNAMODB", DynamoDbClient::builder), aggregatesTable)
+                : null;
+        String rejectedQueueUrl = System.getenv("REJECTED_RECORDS_QUEUE_URL");
+        this.rejected = rejectedQueueUrl != null && !rejectedQueueUrl.isBlank()
+                ? new RejectedRecords(AwsClients.sync("SQS", SqsClient::builder), rejectedQueueUrl)
+                : null;
+        Priming.register("send-queue", this::prime);
+    }
+
+    private static EventSink createSink(String type) {
+        return switch (type.toLowerCase()) {
+            case "eventbridge" -> new EventBridgeSink(AwsClients.sync("EVENTBRIDGE", EventBridgeClient::builder));
+            case "sqs" -> new SqsSink(AwsClients.sync("SQS", SqsClient::builder), requiredEnv("EVENT_SINK_QUEUE_URL"));
+            case "kinesis" -> new KinesisSink(AwsClients.sync("KINESIS", KinesisClient::builder), requiredEnv("EVENT_SINK_STREAM_NAME"));
+            case "memory" -> new InMemorySink();
+            default -> throw new IllegalArgumentException("EVENT_SINK desconhecido: " + type);
+        };
+    }
+
+    private static String requiredEnv(String name) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalStateException(name + " não definido");
+        }
+        return value;
     }
 
     @Override
-    public String handleRequest(DynamodbEvent event, Context context) {
+    public StreamsEventResponse handleRequest(DynamodbEvent event, Context context) {
+        return Priming.measureFirstInvocation(context, () -> processEvent(event, context));
+    }
+
+    /**
+     * Com SEND_QUEUE_CONCURRENCY > 1 os INSERTs são distribuídos em faixas por feedbackId, processadas em
+     * paralelo em threads virtuais; dentro de cada faixa a ordem do stream é mantida, então eventos do
+     * mesmo feedbackId nunca são publicados fora de ordem. Cada faixa para na primeira falha e reporta o
+     * sequence number do registro; o Lambda retoma o shard a partir do menor deles. Se os agregados falham
+     * num registro, as faixas só publicam os anteriores a ele: o que vem depois volta na reentrega e seria
+     * publicado duas vezes.
+     */
+    private StreamsEventResponse processEvent(DynamodbEvent event, Context context) {
+        List<DynamodbEvent.DynamodbStreamRecord> inserts = new ArrayList<>();
         for (DynamodbEvent.DynamodbStreamRecord record : event.getRecords()) {
             if ("INSERT".equals(record.getEventName())) {
-                String detailJson = getDetailJson(record);
+                inserts.add(record);
+            }
+        }
 
-                PutEventsRequestEntry entry = PutEventsRequestEntry.builder()
-                        .source("feedback.created")
-                        .detailType("FeedbackCreated")
-                        .detail(detailJson)
-                        .eventBusName("default")
-                        .build();
+        List<String> failedSequenceNumbers = new ArrayList<>();
+        // Os agregados contam todo INSERT, publicado ou não pelas regras de roteamento
+        if (rollups != null) {
+            String failed = rollups.apply(inserts, context);
+            if (failed != null) {
+                failedSequenceNumbers.add(failed);
+                inserts = recordsBefore(inserts, failed);
+            }
+        }
 
-                PutEventsRequest request = PutEventsRequest.builder()
-                        .entries(entry)
-                        .build();
+        // Só abre uma faixa a mais quando há registros para mais um PutEvents cheio: dividir um lote
+        // pequeno trocaria uma chamada com várias entradas por várias chamadas com uma só
+        int laneCount = Math.min(concurrency, (inserts.size() + LANE_MIN_RECORDS - 1) / LANE_MIN_RECORDS);
+        if (laneCount <= 1) {
+            String failed = processLane(inserts, detailEncoder, context);
+            if (failed != null) {
+                failedSequenceNumbers.add(failed);
+            }
+        } else {
+            List<List<DynamodbEvent.DynamodbStreamRecord>> lanes = new ArrayList<>();
+            for (int i = 0; i < laneCount; i++) {
+                lanes.add(new ArrayList<>());
+            }
+            for (DynamodbEvent.DynamodbStreamRecord record : inserts) {
+                lanes.get(Math.floorMod(partitionKey(record).hashCode(), laneCount)).add(record);
+            }
 
-                context.getLogger().log("Sending event to EventBridge" + request);
+            // DetailEncoder reaproveita o buffer e não é thread-safe: um por faixa
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (List<DynamodbEvent.DynamodbStreamRecord> lane : lanes) {
+                if (lane.isEmpty()) {
+                    continue;
+                }
+                futures.add(CompletableFuture
+                        .supplyAsync(() -> processLane(lane, new DetailEncoder(), context), LANE_EXECUTOR)
+                        .exceptionally(e -> {
+                            // Erro inesperado na faixa: ela inteira volta na próxima entrega
+                            context.getLogger().log("Erro ao processar faixa: " + e);
+                            return lane.getFirst().getDynamodb().getSequenceNumber();
+                        }));
+            }
+            for (CompletableFuture<String> future : futures) {
+                String failed = future.join();
+                if (failed != null) {
+                    failedSequenceNumbers.add(failed);
+                }
+            }
+        }
 
-                PutEventsResponse response = eventBridgeClient.putEvents(request);
-                context.getLogger().log("Evento publicado: " + response.toString());
+        List<StreamsEventResponse.BatchItemFailure> failures = new ArrayList<>();
+        for (String sequenceNumber : failedSequenceNumbers) {
+            failures.add(new StreamsEventResponse.BatchItemFailure(sequenceNumber));
+        }
+        return new StreamsEventResponse(failures);
+    }
+
+    // Registros anteriores ao sequence number informado, na ordem do stream
+    private static List<DynamodbEvent.DynamodbStreamRecord> recordsBefore(List<DynamodbEvent.DynamodbStreamRecord> records,
+                                                                         String sequenceNumber) {
+        for (int i = 0; i < records.size(); i++) {
+            if (sequenceNumber.equals(records.get(i).getDynamodb().getSequenceNumber())) {
+                return records.subList(0, i);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Publica os registros em ordem e, na primeira falha, devolve o sequence number do registro (ou null):
+     * o que foi publicado antes dele não é reenviado, e o que vem depois fica para a próxima entrega.
+     */
+    private String processLane(List<DynamodbEvent.DynamodbStreamRecord> records, DetailEncoder encoder, Context context) {
+        List<EventSink.Event> events = new ArrayList<>();
+        List<String> sequenceNumbers = new ArrayList<>();
+        String failedSequenceNumber = null;
+        int dropped = 0;
+        for (DynamodbEvent.DynamodbStreamRecord record : records) {
+            try {
+                RoutingRules.Route route = routingRules.route(record.getDynamodb().getNewImage());
+                if (route == null) {
+                    dropped++;
+                    continue;
+                }
+                events.add(new EventSink.Event(record.getEventID(), partitionKey(record), route.eventBusName(), route.detailType(),
+                        getDetailJson(record, encoder)));
+                sequenceNumbers.add(record.getDynamodb().getSequenceNumber());
+            } catch (RuntimeException e) {
+                // Um registro inválido falharia em toda reentrega: vai para a fila de rejeitados e o shard segue
+                if (rejected != null && rejected.reject(record, partitionKey(record), e, context)) {
+                    dropped++;
+                    continue;
+                }
+                context.getLogger().log("Registro inválido " + record.getDynamodb().getSequenceNumber() + ": " + e);
+                failedSequenceNumber = record.getDynamodb().getSequenceNumber();
+                break;
             }
         }
-        return "Eventos processados com sucesso";
+
+        int published = events.size();
+        int failedIndex = sink.publish(events, context);
+        if (failedIndex >= 0) {
+            failedSequenceNumber = sequenceNumbers.get(failedIndex);
+            published = failedIndex;
+        }
+
+        context.getLogger().log("Eventos publicados: " + published + " de " + events.size() + "; descartados pelas regras: " + dropped
+                + (failedSequenceNumber != null ? "; retomando a partir de " + failedSequenceNumber : ""));
+        return failedSequenceNumber;
     }
 
-    private String getDetailJson(DynamodbEvent.DynamodbStreamRecord record) {
+    // Chave de ordenação: feedbackId das Keys do registro (sempre presentes no stream) ou da NewImage
+    private static String partitionKey(DynamodbEvent.DynamodbStreamRecord record) {
+        StreamRecord streamRecord = record.getDynamodb();
+        Map<String, AttributeValue> source = streamRecord.getKeys() != null && streamRecord.getKeys().containsKey("feedbackId")
+                ? streamRecord.getKeys()
+                : streamRecord.getNewImage();
+        AttributeValue feedbackId = source != null ? source.get("feedbackId") : null;
+        return feedbackId != null && feedbackId.getS() != null ? feedbackId.getS() : "";
+    }
+
+    // Monta o detail de um registro fictício e aquece o cliente do sink com uma chamada sem efeito colateral
+    private void prime() {
+        Map<String, AttributeValue> newImage = new HashMap<>();
+        newImage.put("feedbackId", new AttributeValue().withS("priming"));
+        newImage.put("fullName", new AttributeValue().withS("Priming"));
+        newImage.put("category", new AttributeValue().withS("suggestion"));
+        newImage.put("comment", new AttributeValue().withS("priming"));
+        newImage.put("rating", new AttributeValue().withN("5"));
+
+        DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+        record.setDynamodb(new StreamRecord().withNewImage(newImage));
+        record.setEventName("INSERT");
+        routingRules.route(newImage);
+        getDetailJson(record, detailEncoder);
+
+        sink.prime();
+        if (rollups != null) {
+            rollups.prime();
+        }
+    }
+
+    private String getDetailJson(DynamodbEvent.DynamodbStreamRecord record, DetailEncoder encoder) {
         Map<String, AttributeValue> newImage = record.getDynamodb().getNewImage();
 
         String feedbackId = newImage.get("feedbackId").getS();
         String fullName   = newImage.get("fullName").getS();
         String category   = newImage.get("category").getS();
-        String comment    = newImage.get("comment").getS();
+        String comment    = text(newImage.get("comment"));
         int rating        = Integer.parseInt(newImage.get("rating").getN());
 
-        boolean isCritical = "Critical".equalsIgnoreCase(category) || rating <= 2;
+        // isCritical é gravado pelo insert-feedback; itens anteriores a ele ainda são avaliados aqui
+        AttributeValue critical = newImage.get("isCritical");
+        boolean isCritical = critical != null && critical.getBOOL() != null
+                ? critical.getBOOL()
+                : "Critical".equalsIgnoreCase(category) || rating <= 2;
         String createdAt   = Instant.now().toString();
 
-        return String.format(
-                "{\"feedbackId\":\"%s\",\"fullName\":\"%s\",\"category\":\"%s\",\"comment\":\"%s\",\"rating\":%d,\"isCritical\":%s,\"createdAt\":\"%s\"}",
-                feedbackId, fullName, category, comment, rating, isCritical, createdAt
-        );
+        return encoder.encode(feedbackId, fullName, category, comment, rating, isCritical, createdAt);
+    }
+
+    // comment longo chega comprimido como B (ver TextCodec)
+    private static String text(AttributeValue value) {
+        if (value.getB() == null) {
+            return value.getS();
+        }
+        ByteBuffer buffer = value.getB().duplicate();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return TextCodec.decode(data);
     }
 }
\ No newline at end of file
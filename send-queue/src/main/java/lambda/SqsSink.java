@@ -0,0 +1,81 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SendMessageBatch em lotes de até 10 mensagens e 256 KB. O corpo é o detail e o tipo vai no atributo
+ * detailType. Em fila FIFO o feedbackId é o MessageGroupId, o que preserva a ordem por feedback, e o eventID do
+ * registro é o MessageDeduplicationId: o reenvio de um lote após falha parcial ou timeout não duplica mensagens
+ * dentro da janela de deduplicação (5 min), sem depender de ContentBasedDeduplication na fila.
+ */
+class SqsSink extends BatchingEventSink {
+
+    private final SqsClient client;
+    private final String queueUrl;
+    private final boolean fifo;
+
+    SqsSink(SqsClient client, String queueUrl) {
+        super(10, 256 * 1024, 4, 50, 1000);
+        this.client = client;
+        this.queueUrl = queueUrl;
+        this.fifo = queueUrl.endsWith(".fifo");
+    }
+
+    // Corpo + nome, tipo e valor do atributo detailType
+    @Override
+    protected long size(Event event) {
+        return utf8Length(event.detail()) + "detailType".length() + "String".length() + utf8Length(event.detailType());
+    }
+
+    @Override
+    protected List<Integer> send(List<Event> batch, Context context) {
+        List<SendMessageBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Event event = batch.get(i);
+            SendMessageBatchRequestEntry.Builder entry = SendMessageBatchRequestEntry.builder()
+                    .id(String.valueOf(i))
+                    .messageBody(event.detail())
+                    .messageAttributes(Map.of("detailType", MessageAttributeValue.builder()
+                            .dataType("String")
+                            .stringValue(event.detailType())
+                            .build()));
+            if (fifo) {
+                entry.messageGroupId(event.key())
+                        .messageDeduplicationId(event.id());
+            }
+            entries.add(entry.build());
+        }
+        SendMessageBatchResponse response = client.sendMessageBatch(SendMessageBatchRequest.builder()
+                .queueUrl(queueUrl)
+                .entries(entries)
+                .build());
+
+        List<Integer> failed = new ArrayList<>();
+        for (BatchResultErrorEntry error : response.failed()) {
+            failed.add(Integer.parseInt(error.id()));
+            context.getLogger().log("Falha ao enviar mensagem: " + error.code() + " " + error.message());
+        }
+        failed.sort(null);
+        return failed;
+    }
+
+    @Override
+    public void prime() {
+        client.getQueueAttributes(GetQueueAttributesRequest.builder()
+                .queueUrl(queueUrl)
+                .attributeNames(QueueAttributeName.QUEUE_ARN)
+                .build());
+    }
+}
@@ -0,0 +1,61 @@
+package lambda;
+
+import lambda.common.Benchmark;
+import lambda.common.Microbenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Microbenchmark do detail do evento: String.format (implementação anterior, sem escape) x DetailEncoder
+ * (JsonGenerator com buffer reaproveitado), em ns/op e bytes alocados/op, sobre registros com nomes e
+ * comentários acentuados de tamanhos variados.
+ * Fora da suíte padrão; executar com:
+ * mvn -pl send-queue test -Dtest=DetailEncoderBenchmark -Dbenchmark=true
+ */
+@Benchmark
+class DetailEncoderBenchmark {
+
+    private static final int WARMUP = 500_000;
+    private static final int ITERATIONS = 2_000_000;
+    private static final int RECORDS = 1_024;
+
+    private static final String[] SENTENCES = {
+            "Não consigo acessar as aulas do módulo desde ontem.",
+            "A plataforma fica travando quando abro o vídeo da aula.",
+            "O professor explica muito bem e o conteúdo é excelente.",
+            "O suporte demorou três dias para responder o meu chamado.",
+            "Gostaria de sugerir mais exercícios práticos no fim de cada módulo.",
+    };
+
+    private record Detail(String feedbackId, String fullName, String category, String comment, int rating) {
+    }
+
+    @Test
+    void compareFormatAndStreamingEncoder() {
+        Random random = new Random(42);
+        Detail[] records = new Detail[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            StringBuilder comment = new StringBuilder();
+            for (int s = 0, n = 1 + random.nextInt(6); s < n; s++) {
+                comment.append(SENTENCES[random.nextInt(SENTENCES.length)]).append(' ');
+            }
+            records[i] = new Detail("0190a3c2-7d4e-7b1a-8c3f-" + String.format("%012d", i), "Maria da Conceição",
+                    random.nextBoolean() ? "suggestion" : "Critical", comment.toString().trim(), 1 + random.nextInt(5));
+        }
+        String createdAt = "2026-01-08T10:00:00.000Z";
+
+        Microbenchmark.run("String.format", WARMUP, ITERATIONS, i -> {
+            Detail d = records[i & (RECORDS - 1)];
+            return String.format(
+                    "{\"feedbackId\":\"%s\",\"fullName\":\"%s\",\"category\":\"%s\",\"comment\":\"%s\",\"rating\":%d,\"isCritical\":%s,\"createdAt\":\"%s\"}",
+                    d.feedbackId(), d.fullName(), d.category(), d.comment(), d.rating(), d.rating() <= 2, createdAt).length();
+        });
+
+        DetailEncoder encoder = new DetailEncoder();
+        Microbenchmark.run("DetailEncoder", WARMUP, ITERATIONS, i -> {
+            Detail d = records[i & (RECORDS - 1)];
+            return encoder.encode(d.feedbackId(), d.fullName(), d.category(), d.comment(), d.rating(), d.rating() <= 2, createdAt).length();
+        });
+    }
+}
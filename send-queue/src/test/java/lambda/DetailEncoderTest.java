@@ -0,0 +1,52 @@
+package lambda;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DetailEncoderTest {
+
+    @Test
+    void escapesQuotesAndControlCharacters() throws Exception {
+        String comment = "Ele disse \"não funciona\"\nlinha 2\t\\ fim \u0001";
+
+        String json = new DetailEncoder().encode("fb-1", "João \"Jota\"", "UX", comment, 1, true, "2026-01-08T10:00:00Z");
+
+        Map<String, String> fields = parse(json);
+        assertEquals(comment, fields.get("comment"));
+        assertEquals("João \"Jota\"", fields.get("fullName"));
+        assertEquals("1", fields.get("rating"));
+        assertEquals("true", fields.get("isCritical"));
+    }
+
+    @Test
+    void bufferIsResetBetweenCalls() throws Exception {
+        DetailEncoder encoder = new DetailEncoder();
+        encoder.encode("fb-1", "Nome longo ".repeat(100), "UX", "Comentário", 5, false, "2026-01-08T10:00:00Z");
+
+        String json = encoder.encode("fb-2", "Ana", "UX", "Ok", 4, false, "2026-01-08T11:00:00Z");
+
+        assertEquals("{\"feedbackId\":\"fb-2\",\"fullName\":\"Ana\",\"category\":\"UX\",\"comment\":\"Ok\","
+                + "\"rating\":4,\"isCritical\":false,\"createdAt\":\"2026-01-08T11:00:00Z\"}", json);
+    }
+
+    private static Map<String, String> parse(String json) throws Exception {
+        Map<String, String> fields = new HashMap<>();
+        try (JsonParser parser = new JsonFactory().createParser(json)) {
+            assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                fields.put(name, parser.getText());
+            }
+            assertNull(parser.nextToken());
+        }
+        return fields;
+    }
+}
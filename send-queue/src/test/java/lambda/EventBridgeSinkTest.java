@@ -0,0 +1,53 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.eventbridge.EventBridgeClient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class EventBridgeSinkTest {
+
+    @Test
+    void batches_shouldRespectRequestSizeLimit() {
+        String detail = "x".repeat(100 * 1024);
+        List<EventSink.Event> events = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            events.add(new EventSink.Event("evt-" + i, "id-" + i, "default", "FeedbackCreated", detail));
+        }
+
+        List<List<EventSink.Event>> batches = new EventBridgeSink(mock(EventBridgeClient.class)).batches(events);
+
+        assertEquals(List.of(2, 2, 1), batches.stream().map(List::size).toList());
+    }
+
+    @Test
+    void batches_shouldRespectEntryLimit() {
+        List<EventSink.Event> events = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            events.add(new EventSink.Event("evt-" + i, "id-" + i, "default", "FeedbackCreated", "{}"));
+        }
+
+        List<List<EventSink.Event>> batches = new EventBridgeSink(mock(EventBridgeClient.class)).batches(events);
+
+        assertEquals(List.of(10, 10, 5), batches.stream().map(List::size).toList());
+    }
+
+    @Test
+    void utf8Length_countsMultiByteCharacters() {
+        assertEquals(0, BatchingEventSink.utf8Length(null));
+        assertEquals("João 😀".getBytes(java.nio.charset.StandardCharsets.UTF_8).length,
+                BatchingEventSink.utf8Length("João 😀"));
+    }
+
+    static Context mockContext() {
+        Context context = mock(Context.class);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+        return context;
+    }
+}
@@ -0,0 +1,62 @@
+package lambda;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.kinesis.model.KinesisException;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsRequest;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsResponse;
+import software.amazon.awssdk.services.kinesis.model.PutRecordsResultEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class KinesisSinkTest {
+
+    @Test
+    void publish_shouldUseFeedbackIdAsPartitionKeyInSingleCall() {
+        KinesisClient client = mock(KinesisClient.class);
+        when(client.putRecords(any(PutRecordsRequest.class))).thenReturn(PutRecordsResponse.builder().failedRecordCount(0).build());
+        KinesisSink sink = new KinesisSink(client, "feedback-events");
+
+        int failed = sink.publish(events(50), EventBridgeSinkTest.mockContext());
+
+        assertEquals(-1, failed);
+        ArgumentCaptor<PutRecordsRequest> captor = ArgumentCaptor.forClass(PutRecordsRequest.class);
+        verify(client).putRecords(captor.capture());
+        assertEquals("feedback-events", captor.getValue().streamName());
+        assertEquals(50, captor.getValue().records().size());
+        assertEquals("id-7", captor.getValue().records().get(7).partitionKey());
+        assertEquals("{\"n\":7}", captor.getValue().records().get(7).data().asUtf8String());
+    }
+
+    @Test
+    void publish_shouldReportFirstRecordThatKeepsFailing() {
+        KinesisClient client = mock(KinesisClient.class);
+        when(client.putRecords(any(PutRecordsRequest.class)))
+                .thenReturn(PutRecordsResponse.builder()
+                        .failedRecordCount(1)
+                        .records(PutRecordsResultEntry.builder().sequenceNumber("1").build(),
+                                PutRecordsResultEntry.builder().errorCode("ProvisionedThroughputExceededException").build(),
+                                PutRecordsResultEntry.builder().sequenceNumber("3").build())
+                        .build())
+                .thenThrow(KinesisException.builder().message("Service unavailable").build());
+        KinesisSink sink = new KinesisSink(client, "feedback-events");
+
+        int failed = sink.publish(events(3), EventBridgeSinkTest.mockContext());
+
+        assertEquals(1, failed);
+        verify(client, times(2)).putRecords(any(PutRecordsRequest.class));
+    }
+
+    private static List<EventSink.Event> events(int size) {
+        List<EventSink.Event> events = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            events.add(new EventSink.Event("evt-" + i, "id-" + i, "default", "FeedbackCreated", "{\"n\":" + i + "}"));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,222 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import lambda.common.HyperLogLog;
+import lambda.common.KllSketch;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RollupWriterTest {
+
+    @Test
+    void apply_shouldAddCountersAndMarkersInOneTransaction() {
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        when(client.transactWriteItems(any(TransactWriteItemsRequest.class))).thenReturn(TransactWriteItemsResponse.builder().build());
+        RollupWriter writer = writerWith(client);
+
+        List<DynamodbEvent.DynamodbStreamRecord> records = List.of(
+                record("100", "2026-01-08", "UX", "1", "alta"),
+                record("101", "2026-01-08", "UX", "4", null),
+                record("102", "2026-01-09", "Critical", "5", "media"));
+
+        assertNull(writer.apply(records, mockContext()));
+
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(client).transactWriteItems(captor.capture());
+        List<TransactWriteItem> actions = captor.getValue().transactItems();
+        // 3 marcadores + DAY#2026-01-08, DAY#2026-01-09 e WEEK#2026-W02
+        assertEquals(6, actions.size());
+        assertEquals("SEQ#100", actions.getFirst().put().item().get("rollupKey").s());
+        assertEquals("attribute_not_exists(#key)", actions.getFirst().put().conditionExpression());
+
+        Map<String, String> week = counters(actions, "WEEK#2026-W02");
+        assertEquals("3", week.get("total"));
+        assertEquals("2", week.get("critical"));
+        assertEquals("10", week.get("ratingSum"));
+        assertEquals("3", week.get("ratingCount"));
+        assertEquals("1", week.get("urgency#alta"));
+        assertEquals("1", week.get("urgency#baixa"));
+        assertEquals("2", week.get("category#UX"));
+        assertEquals("1", week.get("rating#4"));
+        assertEquals("2", counters(actions, "DAY#2026-01-08").get("total"));
+    }
+
+    @Test
+    void apply_replayedRecordsAreNotCountedTwice() {
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        // O marcador do primeiro registro já existe: a transação é cancelada e refeita sem ele
+        when(client.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenThrow(TransactionCanceledException.builder()
+                        .message("Transaction cancelled")
+                        .cancellationReasons(
+                                CancellationReason.builder().code("ConditionalCheckFailed").build(),
+                                CancellationReason.builder().code("None").build(),
+                                CancellationReason.builder().code("None").build(),
+                                CancellationReason.builder().code("None").build())
+                        .build())
+                .thenReturn(TransactWriteItemsResponse.builder().build());
+        RollupWriter writer = writerWith(client);
+
+        assertNull(writer.apply(List.of(
+                record("100", "2026-01-08", "UX", "1", "alta"),
+                record("101", "2026-01-08", "UX", "4", "baixa")), mockContext()));
+
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(client, times(2)).transactWriteItems(captor.capture());
+        List<TransactWriteItem> retried = captor.getAllValues().get(1).transactItems();
+        assertEquals("SEQ#101", retried.getFirst().put().item().get("rollupKey").s());
+        assertEquals("1", counters(retried, "WEEK#2026-W02").get("total"));
+        assertNull(counters(retried, "WEEK#2026-W02").get("urgency#alta"));
+    }
+
+    @Test
+    void apply_shouldSplitTransactionsAtOneHundredActions() {
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        when(client.transactWriteItems(any(TransactWriteItemsRequest.class))).thenReturn(TransactWriteItemsResponse.builder().build());
+        RollupWriter writer = writerWith(client);
+        List<DynamodbEvent.DynamodbStreamRecord> records = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            records.add(record(String.valueOf(100 + i), "2026-01-08", "UX", "3", "baixa"));
+        }
+
+        assertNull(writer.apply(records, mockContext()));
+
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(client, times(2)).transactWriteItems(captor.capture());
+        assertEquals(List.of(100, 54), captor.getAllValues().stream().map(r -> r.transactItems().size()).toList());
+    }
+
+    @Test
+    void apply_shouldReportFirstRecordOfFailedTransaction() {
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        when(client.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenThrow(DynamoDbException.builder().message("Service unavailable").build());
+        RollupWriter writer = writerWith(client);
+
+        String failed = writer.apply(List.of(
+                record("100", "2026-01-08", "UX", "1", "alta"),
+                record("101", "2026-01-08", "UX", "4", "baixa")), mockContext());
+
+        assertEquals("100", failed);
+        verify(client, times(4)).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    void apply_shouldMergeSketchesIntoDayItemWithVersionCheck() {
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        HyperLogLog stored = new HyperLogLog();
+        stored.offer("reporter-a");
+        KllSketch storedRatings = new KllSketch();
+        storedRatings.update(2);
+        Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue> day = new HashMap<>();
+        day.put("rollupKey", software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().s("DAY#2026-01-08").build());
+        day.put("sketchVersion", software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().n("7").build());
+        day.put("reporters", software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder()
+                .b(SdkBytes.fromByteArray(stored.toBytes())).build());
+        day.put("ratingSketch#UX", software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder()
+                .b(SdkBytes.fromByteArray(storedRatings.toBytes())).build());
+        when(client.batchGetItem(any(BatchGetItemRequest.class))).thenReturn(BatchGetItemResponse.builder()
+                .responses(Map.of("FeedbackAggregatesTable", List.of(day)))
+                .build());
+        when(client.transactWriteItems(any(TransactWriteItemsRequest.class))).thenReturn(TransactWriteItemsResponse.builder().build());
+        RollupWriter writer = new RollupWriter(client, "FeedbackAggregatesTable");
+
+        DynamodbEvent.DynamodbStreamRecord first = record("100", "2026-01-08", "UX", "4", "alta");
+        first.getDynamodb().getNewImage().put("reporterId", new AttributeValue().withS("reporter-b"));
+        DynamodbEvent.DynamodbStreamRecord second = record("101", "2026-01-08", "UX", "5", "alta");
+        second.getDynamodb().getNewImage().put("reporterId", new AttributeValue().withS("reporter-a"));
+        assertNull(writer.apply(List.of(first, second), mockContext()));
+
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(client).transactWriteItems(captor.capture());
+        Update dayUpdate = captor.getValue().transactItems().stream()
+                .map(TransactWriteItem::update)
+                .filter(update -> update != null && update.key().get("rollupKey").s().equals("DAY#2026-01-08"))
+                .findFirst().orElseThrow();
+        assertEquals("#version = :version", dayUpdate.conditionExpression());
+        assertEquals("7", dayUpdate.expressionAttributeValues().get(":version").n());
+        Map<String, byte[]> sketches = new HashMap<>();
+        dayUpdate.expressionAttributeNames().forEach((alias, name) -> {
+            var value = dayUpdate.expressionAttributeValues().get(":" + alias.substring(1));
+            if (value != null && value.b() != null) {
+                sketches.put(name, value.b().asByteArray());
+            }
+        });
+        assertEquals(2, HyperLogLog.fromBytes(sketches.get("reporters")).estimate());
+        KllSketch ratings = KllSketch.fromBytes(sketches.get("ratingSketch#UX"));
+        assertEquals(3, ratings.count());
+        assertEquals(4f, ratings.quantile(0.5));
+        // O item da semana só recebe contadores
+        Update weekUpdate = captor.getValue().transactItems().stream()
+                .map(TransactWriteItem::update)
+                .filter(update -> update != null && update.key().get("rollupKey").s().startsWith("WEEK#"))
+                .findFirst().orElseThrow();
+        assertNull(weekUpdate.conditionExpression());
+    }
+
+    private static RollupWriter writerWith(DynamoDbClient client) {
+        when(client.batchGetItem(any(BatchGetItemRequest.class))).thenReturn(BatchGetItemResponse.builder().build());
+        return new RollupWriter(client, "FeedbackAggregatesTable");
+    }
+
+    private static Map<String, String> counters(List<TransactWriteItem> actions, String rollupKey) {
+        Map<String, String> counters = new HashMap<>();
+        for (TransactWriteItem action : actions) {
+            Update update = action.update();
+            if (update != null && rollupKey.equals(update.key().get("rollupKey").s())) {
+                update.expressionAttributeNames().forEach((alias, name) -> {
+                    var value = update.expressionAttributeValues().get(":" + alias.substring(1));
+                    if (value != null && value.n() != null) {
+                        counters.put(name, value.n());
+                    }
+                });
+            }
+        }
+        return counters;
+    }
+
+    private static DynamodbEvent.DynamodbStreamRecord record(String sequenceNumber, String day, String category,
+                                                             String rating, String urgency) {
+        Map<String, AttributeValue> image = new HashMap<>();
+        image.put("feedbackId", new AttributeValue().withS("id-" + sequenceNumber));
+        image.put("createdAt", new AttributeValue().withS(day + "T10:00:00.000Z"));
+        image.put("category", new AttributeValue().withS(category));
+        image.put("rating", new AttributeValue().withN(rating));
+        if (urgency != null) {
+            image.put("urgency", new AttributeValue().withS(urgency));
+        }
+        DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+        record.setEventName("INSERT");
+        record.setDynamodb(new StreamRecord().withNewImage(image).withSequenceNumber(sequenceNumber));
+        return record;
+    }
+
+    private static Context mockContext() {
+        Context context = mock(Context.class);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+        return context;
+    }
+}
@@ -0,0 +1,57 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import lambda.common.Benchmark;
+import lambda.common.Microbenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Custo por registro da avaliação das regras de roteamento (ns/op e bytes alocados/op), com a regra
+ * do template (só críticos) e com uma lista maior em que a maioria dos registros passa por todas as regras.
+ * Fora da suíte padrão; executar com:
+ * mvn -pl send-queue test -Dtest=RoutingRulesBenchmark -Dbenchmark=true
+ */
+@Benchmark
+class RoutingRulesBenchmark {
+
+    private static final int WARMUP = 2_000_000;
+    private static final int ITERATIONS = 10_000_000;
+    private static final int RECORDS = 1_024;
+
+    @Test
+    void measureEvaluationCost() {
+        Random random = new Random(42);
+        @SuppressWarnings("unchecked")
+        Map<String, AttributeValue>[] images = new Map[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            int rating = 1 + random.nextInt(5);
+            String category = random.nextInt(20) == 0 ? "Critical" : "suggestion";
+            Map<String, AttributeValue> image = new HashMap<>();
+            image.put("feedbackId", new AttributeValue().withS("0190a3c2-7d4e-7b1a-8c3f-" + i));
+            image.put("category", new AttributeValue().withS(category));
+            image.put("rating", new AttributeValue().withN(String.valueOf(rating)));
+            image.put("urgency", new AttributeValue().withS(random.nextBoolean() ? "alta" : "baixa"));
+            image.put("isCritical", new AttributeValue().withBOOL(rating <= 2 || category.equals("Critical")));
+            image.put("comment", new AttributeValue().withS("O conteúdo das aulas é muito bom"));
+            images[i] = image;
+        }
+
+        run("template (3 regras)", RoutingRules.parse(
+                "isCritical = true -> default; category = Critical -> default; rating <= 2 -> default"), images);
+        run("8 regras", RoutingRules.parse(
+                "urgency = alta && rating <= 1 -> ops/Urgent; category = bug -> ops/Bug; category = elogio -> mkt/Praise;"
+                        + "descricao exists && rating < 3 -> default; isCritical = true -> default;"
+                        + "category = Critical -> default; rating <= 2 -> default; urgency = media -> default"), images);
+    }
+
+    private static void run(String name, RoutingRules rules, Map<String, AttributeValue>[] images) {
+        Microbenchmark.Result result = Microbenchmark.measure(name, WARMUP, ITERATIONS,
+                i -> rules.route(images[i & (RECORDS - 1)]) != null ? 1 : 0);
+        System.out.printf("%-20s %6.1f ns/op %6.1f B/op  publicados=%.1f%%%n",
+                name, result.nanosPerOp(), result.bytesPerOp(), 100.0 * result.checksum() / ITERATIONS);
+    }
+}
@@ -0,0 +1,87 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingRulesTest {
+
+    private static final String CRITICAL_ONLY =
+            "isCritical = true -> default; category = Critical -> default; rating <= 2 -> default";
+
+    @Test
+    void firstMatchingRuleDefinesTheRoute() {
+        RoutingRules rules = RoutingRules.parse("rating <= 2 && urgency = alta -> ops/UrgentFeedback; rating <= 2 -> default");
+
+        assertEquals(new RoutingRules.Route("ops", "UrgentFeedback"),
+                rules.route(Map.of("rating", n("1"), "urgency", s("ALTA"))));
+        assertEquals(new RoutingRules.Route("default", "FeedbackCreated"),
+                rules.route(Map.of("rating", n("2"), "urgency", s("baixa"))));
+    }
+
+    @Test
+    void recordWithoutMatchIsDropped() {
+        RoutingRules rules = RoutingRules.parse(CRITICAL_ONLY);
+
+        assertNull(rules.route(Map.of("isCritical", bool(false), "category", s("suggestion"), "rating", n("5"))));
+        assertNotNull(rules.route(Map.of("isCritical", bool(true), "rating", n("5"))));
+        // Itens gravados antes de isCritical existir
+        assertNotNull(rules.route(Map.of("category", s("critical"), "rating", n("4"))));
+        assertNotNull(rules.route(Map.of("category", s("UX"), "rating", n("1"))));
+    }
+
+    @Test
+    void publishAllMatchesEveryRecord() {
+        RoutingRules rules = RoutingRules.parse(RoutingRules.PUBLISH_ALL);
+
+        assertEquals(new RoutingRules.Route("default", "FeedbackCreated"), rules.route(Map.of()));
+    }
+
+    @Test
+    void existsAndNotEqualsConditions() {
+        RoutingRules rules = RoutingRules.parse("descricao exists && category != elogio -> default");
+
+        assertNotNull(rules.route(Map.of("descricao", s("texto"), "category", s("UX"))));
+        assertNull(rules.route(Map.of("descricao", s("texto"), "category", s("elogio"))));
+        assertNull(rules.route(Map.of("category", s("UX"))));
+    }
+
+    @Test
+    void quotedValuesKeepSpacesAndSeparators() {
+        RoutingRules rules = RoutingRules.parse("category = 'Muito Crítico' -> ops/Urgent; comment = \"a; b && c -> d\" -> default");
+
+        assertEquals(new RoutingRules.Route("ops", "Urgent"), rules.route(Map.of("category", s("muito crítico"))));
+        assertNull(rules.route(Map.of("category", s("Muito"))));
+        assertEquals(new RoutingRules.Route("default", "FeedbackCreated"), rules.route(Map.of("comment", s("a; b && c -> d"))));
+    }
+
+    @Test
+    void unquotedValueWithSpacesFailsAtParse() {
+        assertThrows(IllegalArgumentException.class, () -> RoutingRules.parse("category = Muito Crítico -> default"));
+        assertThrows(IllegalArgumentException.class, () -> RoutingRules.parse("category = 'Muito Crítico -> default"));
+        assertThrows(IllegalArgumentException.class, () -> RoutingRules.parse("category = 'Muito'Crítico -> default"));
+    }
+
+    @Test
+    void invalidSpecFailsAtParse() {
+        assertThrows(IllegalArgumentException.class, () -> RoutingRules.parse("rating <= 2"));
+        assertThrows(IllegalArgumentException.class, () -> RoutingRules.parse("rating ~ 2 -> default"));
+        assertThrows(IllegalArgumentException.class, () -> RoutingRules.parse("rating <= dois -> default"));
+        assertThrows(IllegalArgumentException.class, () -> RoutingRules.parse(" ; "));
+    }
+
+    private static AttributeValue s(String value) {
+        return new AttributeValue().withS(value);
+    }
+
+    private static AttributeValue n(String value) {
+        return new AttributeValue().withN(value);
+    }
+
+    private static AttributeValue bool(boolean value) {
+        return new AttributeValue().withBOOL(value);
+    }
+}
@@ -0,0 +1,169 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import com.sun.net.httpserver.HttpServer;
+import lambda.common.Benchmark;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.eventbridge.EventBridgeClient;
+import software.amazon.awssdk.services.eventbridge.model.PutEventsRequest;
+import software.amazon.awssdk.services.eventbridge.model.PutEventsRequestEntry;
+
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Vazão do send-queue contra um stub local do EventBridge: um PutEvents por registro (comportamento
+ * anterior) contra PutEvents em lotes de até 10 entradas, sequencial e em 4 faixas paralelas
+ * (SEND_QUEUE_CONCURRENCY), para lotes do stream de 5 e 50 registros.
+ * O stub responde após STUB_LATENCY_MS para simular a ida e volta até o serviço.
+ * Fora da suíte padrão; executar com:
+ * mvn -pl send-queue test -Dtest=SendQueueBenchmark -Dbenchmark=true
+ */
+@Benchmark
+class SendQueueBenchmark {
+
+    private static final int RECORDS = 2_000;
+    private static final long STUB_LATENCY_MS = Long.getLong("stub.latency.ms", 5);
+    private static final Pattern SOURCE = Pattern.compile("\"Source\"");
+
+    @Test
+    void compareSingleAndBatchedPutEvents() throws Exception {
+        // Sem TCP_NODELAY o stub soma ~40 ms de delayed ACK a cada resposta
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        AtomicInteger calls = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/", exchange -> {
+            String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Matcher matcher = SOURCE.matcher(request);
+            StringBuilder entries = new StringBuilder();
+            while (matcher.find()) {
+                entries.append(entries.isEmpty() ? "" : ",").append("{\"EventId\":\"e-").append(calls.get()).append("\"}");
+            }
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(STUB_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"FailedEntryCount\":0,\"Entries\":[" + entries + "]}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/x-amz-json-1.1");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        try (EventBridgeClient client = EventBridgeClient.builder()
+                .region(Region.US_EAST_1)
+                .endpointOverride(URI.create("http://127.0.0.1:" + server.getAddress().getPort()))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("local", "local")))
+                .httpClientBuilder(UrlConnectionHttpClient.builder())
+                .build()) {
+            SendQueueFunction function = new SendQueueFunction();
+            Field field = SendQueueFunction.class.getDeclaredField("sink");
+            field.setAccessible(true);
+            field.set(function, new EventBridgeSink(client));
+            Field concurrency = SendQueueFunction.class.getDeclaredField("concurrency");
+            concurrency.setAccessible(true);
+            Context context = mock(Context.class);
+            when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+
+            System.out.printf("stub: %d ms por requisição, %d registros%n", STUB_LATENCY_MS, RECORDS);
+            for (int streamBatch : new int[]{5, 50}) {
+                List<DynamodbEvent> events = events(streamBatch);
+
+                // Aquecimento dos dois caminhos
+                runSingle(client, events.subList(0, 2));
+                events.subList(0, 2).forEach(event -> function.handleRequest(event, context));
+
+                calls.set(0);
+                long start = System.nanoTime();
+                runSingle(client, events);
+                report("um por registro", streamBatch, System.nanoTime() - start, calls.get());
+
+                calls.set(0);
+                start = System.nanoTime();
+                events.forEach(event -> function.handleRequest(event, context));
+                report("em lote", streamBatch, System.nanoTime() - start, calls.get());
+
+                concurrency.set(function, 4);
+                calls.set(0);
+                start = System.nanoTime();
+                events.forEach(event -> function.handleRequest(event, context));
+                report("em lote, 4 faixas", streamBatch, System.nanoTime() - start, calls.get());
+                concurrency.set(function, 1);
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    // Comportamento anterior: um PutEventsRequest com uma única entrada por registro INSERT
+    private static void runSingle(EventBridgeClient client, List<DynamodbEvent> events) {
+        for (DynamodbEvent event : events) {
+            for (DynamodbEvent.DynamodbStreamRecord record : event.getRecords()) {
+                client.putEvents(PutEventsRequest.builder()
+                        .entries(PutEventsRequestEntry.builder()
+                                .source("feedback.created")
+                                .detailType("FeedbackCreated")
+                                .detail("{\"feedbackId\":\"" + record.getDynamodb().getNewImage().get("feedbackId").getS() + "\"}")
+                                .eventBusName("default")
+                                .build())
+                        .build());
+            }
+        }
+    }
+
+    private static void report(String mode, int streamBatch, long nanos, int calls) {
+        System.out.printf("lote do stream=%-3d %-18s %8.0f registros/s  %5d chamadas PutEvents%n",
+                streamBatch, mode, RECORDS / (nanos / 1e9), calls);
+    }
+
+    private static List<DynamodbEvent> events(int streamBatch) {
+        List<DynamodbEvent> events = new ArrayList<>();
+        for (int start = 0; start < RECORDS; start += streamBatch) {
+            List<DynamodbEvent.DynamodbStreamRecord> records = new ArrayList<>();
+            for (int i = start; i < Math.min(RECORDS, start + streamBatch); i++) {
+                Map<String, AttributeValue> newImage = new HashMap<>();
+                newImage.put("feedbackId", new AttributeValue().withS("fb-" + i));
+                newImage.put("fullName", new AttributeValue().withS("Maria da Silva"));
+                newImage.put("category", new AttributeValue().withS("suggestion"));
+                newImage.put("comment", new AttributeValue().withS("O conteúdo das aulas é muito bom"));
+                newImage.put("rating", new AttributeValue().withN(String.valueOf(1 + i % 5)));
+
+                DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+                record.setDynamodb(new StreamRecord().withNewImage(newImage));
+                record.setEventName("INSERT");
+                records.add(record);
+            }
+            DynamodbEvent event = new DynamodbEvent();
+            event.setRecords(records);
+            events.add(event);
+        }
+        return events;
+    }
+}
@@ -3,17 +3,28 @@ package lambda;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
 import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
 import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import lambda.common.TextCodec;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import software.amazon.awssdk.services.eventbridge.EventBridgeClient;
+import software.amazon.awssdk.services.eventbridge.model.EventBridgeException;
 import software.amazon.awssdk.services.eventbridge.model.PutEventsRequest;
+import software.amazon.awssdk.services.eventbridge.model.PutEventsRequestEntry;
 import software.amazon.awssdk.services.eventbridge.model.PutEventsResponse;
+import software.amazon.awssdk.services.eventbridge.model.PutEventsResultEntry;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SqsException;
 
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,10 +37,7 @@ class SendQueueFunctionTest {
         EventBridgeClient mockClient = mock(EventBridgeClient.class);
         when(mockClient.putEvents(any(PutEventsRequest.class))).thenReturn(PutEventsResponse.builder().build());
 
-        SendQueueFunction function = new SendQueueFunction();
-        Field field = SendQueueFunction.class.getDeclaredField("eventBridgeClient");
-        field.setAccessible(true);
-        field.set(function, mockClient);
+        SendQueueFunction function = functionWith(mockClient);
 
         var event = getDynamodbEvent();
 
@@ -37,9 +45,9 @@ class SendQueueFunctionTest {
         LambdaLogger logger = mock(LambdaLogger.class);
         when(mockContext.getLogger()).thenReturn(logger);
 
-        String result = function.handleRequest(event, mockContext);
+        StreamsEventResponse result = function.handleRequest(event, mockContext);
 
-        assertEquals("Eventos processados com sucesso", result);
+        assertTrue(result.getBatchItemFailures().isEmpty());
 
         ArgumentCaptor<PutEventsRequest> captor = ArgumentCaptor.forClass(PutEventsRequest.class);
         verify(mockClient, times(1)).putEvents(captor.capture());
@@ -50,6 +58,360 @@ class SendQueueFunctionTest {
         assertTrue(detail.contains("\"isCritical\":true"));
     }
 
+    @Test
+    void handleRequest_shouldDecodeCompressedComment() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        when(mockClient.putEvents(any(PutEventsRequest.class))).thenReturn(PutEventsResponse.builder().build());
+
+        SendQueueFunction function = functionWith(mockClient);
+
+        String longComment = "A plataforma fica travando no vídeo e o áudio está fora de sincronia com a legenda. "
+                + "Já tentei pelo aplicativo e pelo site, limpei o cache e troquei de navegador, mas o erro "
+                + "continua. O conteúdo do curso é muito bom, mas assim não consigo acompanhar as aulas.";
+        var event = getDynamodbEvent();
+        AttributeValue comment = new AttributeValue();
+        comment.setB(ByteBuffer.wrap(TextCodec.encode(longComment)));
+        event.getRecords().getFirst().getDynamodb().getNewImage().put("comment", comment);
+
+        Context mockContext = mock(Context.class);
+        when(mockContext.getLogger()).thenReturn(mock(LambdaLogger.class));
+
+        function.handleRequest(event, mockContext);
+
+        ArgumentCaptor<PutEventsRequest> captor = ArgumentCaptor.forClass(PutEventsRequest.class);
+        verify(mockClient).putEvents(captor.capture());
+        assertTrue(captor.getValue().entries().getFirst().detail().contains(longComment));
+    }
+
+    @Test
+    void handleRequest_shouldUsePrecomputedIsCritical() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        when(mockClient.putEvents(any(PutEventsRequest.class))).thenReturn(PutEventsResponse.builder().build());
+
+        SendQueueFunction function = functionWith(mockClient);
+
+        // O atributo gravado na escrita prevalece sobre a regra local (rating 1 seria crítico)
+        var event = getDynamodbEvent();
+        event.getRecords().getFirst().getDynamodb().getNewImage().put("isCritical", new AttributeValue().withBOOL(false));
+
+        Context mockContext = mock(Context.class);
+        when(mockContext.getLogger()).thenReturn(mock(LambdaLogger.class));
+
+        function.handleRequest(event, mockContext);
+
+        ArgumentCaptor<PutEventsRequest> captor = ArgumentCaptor.forClass(PutEventsRequest.class);
+        verify(mockClient).putEvents(captor.capture());
+        assertTrue(captor.getValue().entries().getFirst().detail().contains("\"isCritical\":false"));
+    }
+
+    @Test
+    void handleRequest_shouldBatchUpToTenEntriesPerCall() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        when(mockClient.putEvents(any(PutEventsRequest.class))).thenReturn(PutEventsResponse.builder().failedEntryCount(0).build());
+        SendQueueFunction function = functionWith(mockClient);
+
+        function.handleRequest(getDynamodbEvent(23), mockContext());
+
+        ArgumentCaptor<PutEventsRequest> captor = ArgumentCaptor.forClass(PutEventsRequest.class);
+        verify(mockClient, times(3)).putEvents(captor.capture());
+        assertEquals(List.of(10, 10, 3), captor.getAllValues().stream().map(request -> request.entries().size()).toList());
+    }
+
+    @Test
+    void handleRequest_shouldRetryOnlyFailedEntries() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        when(mockClient.putEvents(any(PutEventsRequest.class)))
+                .thenReturn(PutEventsResponse.builder()
+                        .failedEntryCount(1)
+                        .entries(PutEventsResultEntry.builder().eventId("e-0").build(),
+                                PutEventsResultEntry.builder().errorCode("ThrottlingException").errorMessage("Rate exceeded").build(),
+                                PutEventsResultEntry.builder().eventId("e-2").build())
+                        .build())
+                .thenReturn(PutEventsResponse.builder().failedEntryCount(0).build());
+        SendQueueFunction function = functionWith(mockClient);
+
+        StreamsEventResponse result = function.handleRequest(getDynamodbEvent(3), mockContext());
+
+        assertTrue(result.getBatchItemFailures().isEmpty());
+        ArgumentCaptor<PutEventsRequest> captor = ArgumentCaptor.forClass(PutEventsRequest.class);
+        verify(mockClient, times(2)).putEvents(captor.capture());
+        List<PutEventsRequestEntry> retried = captor.getAllValues().get(1).entries();
+        assertEquals(1, retried.size());
+        assertTrue(retried.getFirst().detail().contains("\"feedbackId\":\"id-1\""));
+    }
+
+    @Test
+    void handleRequest_shouldReportFirstEntryThatKeepsFailing() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        List<PutEventsResultEntry> firstResults = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            firstResults.add(i == 1
+                    ? PutEventsResultEntry.builder().errorCode("InternalFailure").build()
+                    : PutEventsResultEntry.builder().eventId("e-" + i).build());
+        }
+        when(mockClient.putEvents(any(PutEventsRequest.class)))
+                .thenReturn(PutEventsResponse.builder().failedEntryCount(1).entries(firstResults).build())
+                .thenReturn(PutEventsResponse.builder()
+                        .failedEntryCount(1)
+                        .entries(PutEventsResultEntry.builder().errorCode("InternalFailure").build())
+                        .build());
+        SendQueueFunction function = functionWith(mockClient);
+
+        StreamsEventResponse result = function.handleRequest(getDynamodbEvent(12), mockContext());
+
+        assertEquals(List.of("101"), sequenceNumbers(result));
+        // O segundo PutEvents (registros 10 e 11) não é enviado: o shard será retomado a partir do 101
+        verify(mockClient, times(4)).putEvents(any(PutEventsRequest.class));
+    }
+
+    @Test
+    void handleRequest_invalidRecordStopsAtItsSequenceNumber() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        when(mockClient.putEvents(any(PutEventsRequest.class))).thenReturn(PutEventsResponse.builder().failedEntryCount(0).build());
+        SendQueueFunction function = functionWith(mockClient);
+        DynamodbEvent event = getDynamodbEvent(5);
+        event.getRecords().get(2).getDynamodb().getNewImage().remove("rating");
+
+        StreamsEventResponse result = function.handleRequest(event, mockContext());
+
+        assertEquals(List.of("102"), sequenceNumbers(result));
+        ArgumentCaptor<PutEventsRequest> captor = ArgumentCaptor.forClass(PutEventsRequest.class);
+        verify(mockClient).putEvents(captor.capture());
+        assertEquals(2, captor.getValue().entries().size());
+    }
+
+    @Test
+    void handleRequest_invalidRecordGoesToRejectedQueueWithoutBlockingShard() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        when(mockClient.putEvents(any(PutEventsRequest.class))).thenReturn(PutEventsResponse.builder().failedEntryCount(0).build());
+        SqsClient sqs = mock(SqsClient.class);
+        SendQueueFunction function = functionWith(mockClient);
+        setField(function, "rejected", new RejectedRecords(sqs, "https://sqs/FeedbackDLQ"));
+        DynamodbEvent event = getDynamodbEvent(5);
+        event.getRecords().get(2).getDynamodb().getNewImage().remove("rating");
+
+        StreamsEventResponse result = function.handleRequest(event, mockContext());
+
+        // Nada a reentregar: o registro 102 está na fila e os demais foram publicados
+        assertTrue(result.getBatchItemFailures().isEmpty());
+        ArgumentCaptor<SendMessageRequest> parked = ArgumentCaptor.forClass(SendMessageRequest.class);
+        verify(sqs).sendMessage(parked.capture());
+        assertEquals("https://sqs/FeedbackDLQ", parked.getValue().queueUrl());
+        assertTrue(parked.getValue().messageBody().contains("\"sequenceNumber\":\"102\""));
+        assertTrue(parked.getValue().messageBody().contains("\"feedbackId\":\"id-2\""));
+        ArgumentCaptor<PutEventsRequest> captor = ArgumentCaptor.forClass(PutEventsRequest.class);
+        verify(mockClient).putEvents(captor.capture());
+        assertEquals(4, captor.getValue().entries().size());
+    }
+
+    @Test
+    void handleRequest_rejectedQueueErrorFallsBackToBatchItemFailure() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        when(mockClient.putEvents(any(PutEventsRequest.class))).thenReturn(PutEventsResponse.builder().failedEntryCount(0).build());
+        SqsClient sqs = mock(SqsClient.class);
+        when(sqs.sendMessage(any(SendMessageRequest.class))).thenThrow(SqsException.builder().message("throttled").build());
+        SendQueueFunction function = functionWith(mockClient);
+        setField(function, "rejected", new RejectedRecords(sqs, "https://sqs/FeedbackDLQ"));
+        DynamodbEvent event = getDynamodbEvent(5);
+        event.getRecords().get(2).getDynamodb().getNewImage().remove("rating");
+
+        StreamsEventResponse result = function.handleRequest(event, mockContext());
+
+        assertEquals(List.of("102"), sequenceNumbers(result));
+    }
+
+    @Test
+    void handleRequest_putEventsErrorReportsFirstRecordOfBatch() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        when(mockClient.putEvents(any(PutEventsRequest.class)))
+                .thenReturn(PutEventsResponse.builder().failedEntryCount(0).build())
+                .thenThrow(EventBridgeException.builder().message("Service unavailable").build());
+        SendQueueFunction function = functionWith(mockClient);
+
+        StreamsEventResponse result = function.handleRequest(getDynamodbEvent(15), mockContext());
+
+        assertEquals(List.of("110"), sequenceNumbers(result));
+    }
+
+    @Test
+    void handleRequest_concurrentModeKeepsOrderPerFeedbackId() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        List<String> published = java.util.Collections.synchronizedList(new ArrayList<>());
+        when(mockClient.putEvents(any(PutEventsRequest.class))).thenAnswer(invocation -> {
+            PutEventsRequest request = invocation.getArgument(0);
+            request.entries().forEach(entry -> published.add(entry.detail()));
+            return PutEventsResponse.builder().failedEntryCount(0).build();
+        });
+        SendQueueFunction function = functionWith(mockClient);
+        setConcurrency(function, 4);
+
+        // 40 registros de 8 feedbackIds; o rating marca a ordem no stream
+        DynamodbEvent event = getDynamodbEvent(40);
+        for (int i = 0; i < 40; i++) {
+            var image = event.getRecords().get(i).getDynamodb().getNewImage();
+            image.put("feedbackId", new AttributeValue().withS("id-" + (i % 8)));
+            image.put("rating", new AttributeValue().withN(String.valueOf(i)));
+        }
+
+        StreamsEventResponse result = function.handleRequest(event, mockContext());
+
+        assertTrue(result.getBatchItemFailures().isEmpty());
+        assertEquals(40, published.size());
+        for (int key = 0; key < 8; key++) {
+            String id = "\"feedbackId\":\"id-" + key + "\"";
+            List<String> ratings = published.stream().filter(detail -> detail.contains(id))
+                    .map(detail -> detail.replaceAll(".*\"rating\":(\\d+).*", "$1"))
+                    .toList();
+            List<String> expected = new ArrayList<>();
+            for (int i = key; i < 40; i += 8) {
+                expected.add(String.valueOf(i));
+            }
+            assertEquals(expected, ratings);
+        }
+    }
+
+    @Test
+    void handleRequest_concurrentModeAggregatesFailuresFromEveryLane() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        when(mockClient.putEvents(any(PutEventsRequest.class))).thenReturn(PutEventsResponse.builder().failedEntryCount(0).build());
+        SendQueueFunction function = functionWith(mockClient);
+        setConcurrency(function, 2);
+        DynamodbEvent event = getDynamodbEvent(20);
+        // Quebra um registro de cada faixa (feedbackIds com hash par e ímpar)
+        List<String> broken = new ArrayList<>();
+        boolean[] laneBroken = new boolean[2];
+        for (var record : event.getRecords()) {
+            int lane = Math.floorMod(record.getDynamodb().getNewImage().get("feedbackId").getS().hashCode(), 2);
+            if (!laneBroken[lane]) {
+                laneBroken[lane] = true;
+                record.getDynamodb().getNewImage().remove("rating");
+                broken.add(record.getDynamodb().getSequenceNumber());
+            }
+        }
+
+        StreamsEventResponse result = function.handleRequest(event, mockContext());
+
+        assertEquals(broken.stream().sorted().toList(), sequenceNumbers(result).stream().sorted().toList());
+    }
+
+    @Test
+    void handleRequest_shouldPublishOnlyRoutedRecords() throws Exception {
+        EventBridgeClient mockClient = mock(EventBridgeClient.class);
+        when(mockClient.putEvents(any(PutEventsRequest.class))).thenReturn(PutEventsResponse.builder().failedEntryCount(0).build());
+        SendQueueFunction function = functionWith(mockClient);
+        Field field = SendQueueFunction.class.getDeclaredField("routingRules");
+        field.setAccessible(true);
+        field.set(function, RoutingRules.parse("rating <= 2 -> critical-bus/CriticalFeedback"));
+        DynamodbEvent event = getDynamodbEvent(4);
+        event.getRecords().get(1).getDynamodb().getNewImage().put("rating", new AttributeValue().withN("5"));
+        event.getRecords().get(3).getDynamodb().getNewImage().put("rating", new AttributeValue().withN("4"));
+
+        StreamsEventResponse result = function.handleRequest(event, mockContext());
+
+        assertTrue(result.getBatchItemFailures().isEmpty());
+        ArgumentCaptor<PutEventsRequest> captor = ArgumentCaptor.forClass(PutEventsRequest.class);
+        verify(mockClient).putEvents(captor.capture());
+        List<PutEventsRequestEntry> entries = captor.getValue().entries();
+        assertEquals(2, entries.size());
+        assertEquals("critical-bus", entries.getFirst().eventBusName());
+        assertEquals("CriticalFeedback", entries.getFirst().detailType());
+    }
+
+    private static void setConcurrency(SendQueueFunction function, int value) throws Exception {
+        Field field = SendQueueFunction.class.getDeclaredField("concurrency");
+        field.setAccessible(true);
+        field.set(function, value);
+    }
+
+    private static List<String> sequenceNumbers(StreamsEventResponse response) {
+        return response.getBatchItemFailures().stream()
+                .map(StreamsEventResponse.BatchItemFailure::getItemIdentifier)
+                .toList();
+    }
+
+    @Test
+    void handleRequest_inMemorySinkKeepsPublishedEvents() throws Exception {
+        SendQueueFunction function = new SendQueueFunction();
+        InMemorySink sink = new InMemorySink();
+        setSink(function, sink);
+
+        StreamsEventResponse result = function.handleRequest(getDynamodbEvent(3), mockContext());
+
+        assertTrue(result.getBatchItemFailures().isEmpty());
+        assertEquals(List.of("id-0", "id-1", "id-2"), sink.events().stream().map(EventSink.Event::key).toList());
+        assertEquals("default", sink.events().getFirst().target());
+        assertEquals("FeedbackCreated", sink.events().getFirst().detailType());
+    }
+
+    @Test
+    void handleRequest_rollupFailureStopsPublishingAtFailedRecord() throws Exception {
+        SendQueueFunction function = new SendQueueFunction();
+        InMemorySink sink = new InMemorySink();
+        setSink(function, sink);
+        RollupWriter rollups = mock(RollupWriter.class);
+        when(rollups.apply(anyList(), any(Context.class))).thenReturn("102");
+        setField(function, "rollups", rollups);
+
+        StreamsEventResponse result = function.handleRequest(getDynamodbEvent(5), mockContext());
+
+        // 102 em diante volta na reentrega: publicar agora faria esses eventos saírem duas vezes
+        assertEquals(List.of("102"), sequenceNumbers(result));
+        assertEquals(List.of("id-0", "id-1"), sink.events().stream().map(EventSink.Event::key).toList());
+    }
+
+    @Test
+    void handleRequest_rollupFailureAlsoTrimsConcurrentLanes() throws Exception {
+        SendQueueFunction function = new SendQueueFunction();
+        InMemorySink sink = new InMemorySink();
+        setSink(function, sink);
+        setConcurrency(function, 4);
+        RollupWriter rollups = mock(RollupWriter.class);
+        when(rollups.apply(anyList(), any(Context.class))).thenReturn("130");
+        setField(function, "rollups", rollups);
+
+        StreamsEventResponse result = function.handleRequest(getDynamodbEvent(40), mockContext());
+
+        // 30 registros antes da falha ainda se dividem em 3 faixas
+        assertEquals(List.of("130"), sequenceNumbers(result));
+        assertEquals(30, sink.events().size());
+        assertTrue(sink.events().stream().allMatch(e -> Integer.parseInt(e.key().substring(3)) < 30));
+    }
+
+    private SendQueueFunction functionWith(EventBridgeClient client) throws Exception {
+        SendQueueFunction function = new SendQueueFunction();
+        setSink(function, new EventBridgeSink(client));
+        return function;
+    }
+
+    private static void setSink(SendQueueFunction function, EventSink sink) throws Exception {
+        setField(function, "sink", sink);
+    }
+
+    private static void setField(SendQueueFunction function, String name, Object value) throws Exception {
+        Field field = SendQueueFunction.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(function, value);
+    }
+
+    private Context mockContext() {
+        Context context = mock(Context.class);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+        return context;
+    }
+
+    private DynamodbEvent getDynamodbEvent(int size) {
+        List<DynamodbEvent.DynamodbStreamRecord> records = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            DynamodbEvent.DynamodbStreamRecord record = getDynamodbEvent().getRecords().getFirst();
+            record.getDynamodb().getNewImage().put("feedbackId", new AttributeValue().withS("id-" + i));
+            record.getDynamodb().setSequenceNumber(String.valueOf(100 + i));
+            records.add(record);
+        }
+        DynamodbEvent event = new DynamodbEvent();
+        event.setRecords(records);
+        return event;
+    }
+
     private DynamodbEvent getDynamodbEvent() {
         DynamodbEvent event = new DynamodbEvent();
         DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
@@ -0,0 +1,68 @@
+package lambda;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SqsSinkTest {
+
+    private static final String FIFO_URL = "https://sqs.us-east-1.amazonaws.com/123456789012/feedback-events.fifo";
+
+    @Test
+    void publish_shouldSendBatchWithGroupAndDeduplicationIdOnFifoQueue() {
+        SqsClient client = mock(SqsClient.class);
+        when(client.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(SendMessageBatchResponse.builder().build());
+        SqsSink sink = new SqsSink(client, FIFO_URL);
+
+        int failed = sink.publish(List.of(
+                new EventSink.Event("evt-1", "id-1", "default", "FeedbackCreated", "{\"feedbackId\":\"id-1\"}"),
+                new EventSink.Event("evt-2", "id-2", "default", "FeedbackCreated", "{\"feedbackId\":\"id-2\"}")),
+                EventBridgeSinkTest.mockContext());
+
+        assertEquals(-1, failed);
+        ArgumentCaptor<SendMessageBatchRequest> captor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+        verify(client).sendMessageBatch(captor.capture());
+        SendMessageBatchRequest request = captor.getValue();
+        assertEquals(FIFO_URL, request.queueUrl());
+        SendMessageBatchRequestEntry first = request.entries().getFirst();
+        assertEquals("id-1", first.messageGroupId());
+        assertEquals("evt-1", first.messageDeduplicationId());
+        assertEquals("evt-2", request.entries().get(1).messageDeduplicationId());
+        assertEquals("{\"feedbackId\":\"id-1\"}", first.messageBody());
+        assertEquals("FeedbackCreated", first.messageAttributes().get("detailType").stringValue());
+    }
+
+    @Test
+    void publish_shouldRetryOnlyFailedMessages() {
+        SqsClient client = mock(SqsClient.class);
+        when(client.sendMessageBatch(any(SendMessageBatchRequest.class)))
+                .thenReturn(SendMessageBatchResponse.builder()
+                        .failed(BatchResultErrorEntry.builder().id("1").code("ServiceUnavailable").senderFault(false).build())
+                        .build())
+                .thenReturn(SendMessageBatchResponse.builder().build());
+        SqsSink sink = new SqsSink(client, "https://sqs.us-east-1.amazonaws.com/123456789012/feedback-events");
+
+        int failed = sink.publish(List.of(
+                new EventSink.Event("evt-0", "id-0", "default", "FeedbackCreated", "a"),
+                new EventSink.Event("evt-1", "id-1", "default", "FeedbackCreated", "b"),
+                new EventSink.Event("evt-2", "id-2", "default", "FeedbackCreated", "c")),
+                EventBridgeSinkTest.mockContext());
+
+        assertEquals(-1, failed);
+        ArgumentCaptor<SendMessageBatchRequest> captor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+        verify(client, times(2)).sendMessageBatch(captor.capture());
+        List<SendMessageBatchRequestEntry> retried = captor.getAllValues().get(1).entries();
+        assertEquals(List.of("b"), retried.stream().map(SendMessageBatchRequestEntry::messageBody).toList());
+        assertNull(retried.getFirst().messageGroupId());
+        assertNull(retried.getFirst().messageDeduplicationId());
+    }
+}
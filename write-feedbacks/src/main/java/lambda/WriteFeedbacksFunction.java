@@ -0,0 +1,138 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import lambda.common.AwsClients;
+import lambda.common.ItemJson;
+import lambda.common.Priming;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Consumidor da fila de ingestão (INGESTION_MODE=async do insert-feedback): grava os itens recebidos
+ * em lotes de 25 via BatchWriteItem e devolve em batchItemFailures apenas as mensagens que não foram
+ * gravadas, para que o SQS reentregue só essas (ReportBatchItemFailures).
+ *
+ * Cada mensagem traz o item já montado pelo insert-feedback (feedbackId, pk, textos comprimidos) no
+ * formato JSON do DynamoDB; a gravação é um PutItem pelo feedbackId, então reentregas são idempotentes.
+ */
+public class WriteFeedbacksFunction implements RequestHandler<SQSEvent, SQSBatchResponse> {
+
+    private static final int BATCH_WRITE_LIMIT = 25;
+    private static final int BATCH_MAX_ATTEMPTS = 5;
+    private static final long BATCH_BASE_BACKOFF_MS = 50;
+    private static final long BATCH_MAX_BACKOFF_MS = 1000;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName = System.getenv().getOrDefault("TABLE_NAME", "FeedbacksTable");
+
+    public WriteFeedbacksFunction() {
+        this.dynamoDbClient = AwsClients.sync("DYNAMODB", DynamoDbClient::builder);
+        Priming.register("write-feedbacks", this::prime);
+    }
+
+    @Override
+    public SQSBatchResponse handleRequest(SQSEvent event, Context context) {
+        return Priming.measureFirstInvocation(context, () -> processEvent(event, context));
+    }
+
+    private SQSBatchResponse processEvent(SQSEvent event, Context context) {
+        List<SQSBatchResponse.BatchItemFailure> failures = new ArrayList<>();
+
+        // feedbackId -> mensagens com esse item; o SQS pode entregar a mesma mensagem duas vezes no lote,
+        // e o BatchWriteItem rejeita chaves repetidas na mesma requisição
+        Map<String, List<String>> messagesById = new LinkedHashMap<>();
+        Map<String, Map<String, AttributeValue>> items = new LinkedHashMap<>();
+        for (SQSEvent.SQSMessage message : event.getRecords()) {
+            try {
+                Map<String, AttributeValue> item = ItemJson.read(message.getBody());
+                String feedbackId = item.get("feedbackId").s();
+                items.putIfAbsent(feedbackId, item);
+                messagesById.computeIfAbsent(feedbackId, id -> new ArrayList<>()).add(message.getMessageId());
+            } catch (RuntimeException e) {
+                // Mensagem malformada volta para a fila e, esgotado o maxReceiveCount, vai para a DLQ
+                log(context, "Mensagem inválida " + message.getMessageId() + ": " + e.getMessage());
+                failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+            }
+        }
+
+        List<WriteRequest> writes = new ArrayList<>(items.size());
+        for (Map<String, AttributeValue> item : items.values()) {
+            writes.add(WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build());
+        }
+
+        int written = 0;
+        for (int start = 0; start < writes.size(); start += BATCH_WRITE_LIMIT) {
+            List<WriteRequest> chunk = writes.subList(start, Math.min(start + BATCH_WRITE_LIMIT, writes.size()));
+            List<WriteRequest> unprocessed = writeChunk(chunk, context);
+            written += chunk.size() - unprocessed.size();
+            for (WriteRequest write : unprocessed) {
+                String feedbackId = write.putRequest().item().get("feedbackId").s();
+                for (String messageId : messagesById.get(feedbackId)) {
+                    failures.add(new SQSBatchResponse.BatchItemFailure(messageId));
+                }
+            }
+        }
+
+        log(context, "Feedbacks gravados: " + written + " de " + writes.size() + "; mensagens com falha: " + failures.size());
+        return new SQSBatchResponse(failures);
+    }
+
+    /**
+     * Executa um BatchWriteItem e reenvia os UnprocessedItems com backoff exponencial e jitter.
+     * Retorna os itens que continuaram sem gravação após esgotar as tentativas.
+     */
+    private List<WriteRequest> writeChunk(List<WriteRequest> chunk, Context context) {
+        List<WriteRequest> pending = chunk;
+        for (int attempt = 1; attempt <= BATCH_MAX_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            if (attempt > 1) {
+                try {
+                    Thread.sleep(backoffMillis(attempt));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            try {
+                BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(Map.of(tableName, pending))
+                        .build());
+                pending = response.unprocessedItems().getOrDefault(tableName, List.of());
+            } catch (Exception e) {
+                log(context, "Erro no BatchWriteItem (tentativa " + attempt + "): " + e.getMessage());
+                break;
+            }
+        }
+        return pending;
+    }
+
+    private static long backoffMillis(int attempt) {
+        long cap = Math.min(BATCH_MAX_BACKOFF_MS, BATCH_BASE_BACKOFF_MS << (attempt - 2));
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+
+    // Conversão de uma mensagem fictícia e DescribeTable para aquecer o cliente; nada é gravado
+    private void prime() {
+        ItemJson.read("{\"feedbackId\":{\"S\":\"priming\"},\"rating\":{\"N\":\"5\"},\"comment\":{\"B\":\"AQ==\"}}");
+        dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+    }
+
+    private void log(Context context, String message) {
+        if (context != null && context.getLogger() != null) {
+            context.getLogger().log(message);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import lambda.common.ItemJson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WriteFeedbacksFunctionTest {
+
+    private DynamoDbClient mockDynamoDbClient;
+    private Context mockContext;
+    private WriteFeedbacksFunction function;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mockDynamoDbClient = mock(DynamoDbClient.class);
+        mockContext = mock(Context.class);
+        when(mockContext.getLogger()).thenReturn(mock(LambdaLogger.class));
+        function = new WriteFeedbacksFunction();
+        inject(function, mockDynamoDbClient);
+    }
+
+    @Test
+    void allMessagesWrittenReturnsNoFailures() {
+        when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(BatchWriteItemResponse.builder().build());
+
+        SQSBatchResponse response = function.handleRequest(event(30), mockContext);
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(mockDynamoDbClient, times(2)).batchWriteItem(captor.capture());
+        assertEquals(25, captor.getAllValues().get(0).requestItems().get("FeedbacksTable").size());
+        assertEquals(5, captor.getAllValues().get(1).requestItems().get("FeedbacksTable").size());
+    }
+
+    @Test
+    void persistentUnprocessedItemsAreReportedAsFailures() {
+        when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+            BatchWriteItemRequest request = invocation.getArgument(0);
+            List<WriteRequest> unprocessed = request.requestItems().get("FeedbacksTable").stream()
+                    .filter(write -> write.putRequest().item().get("feedbackId").s().equals("fb-1"))
+                    .toList();
+            return BatchWriteItemResponse.builder()
+                    .unprocessedItems(unprocessed.isEmpty() ? Map.of() : Map.of("FeedbacksTable", unprocessed))
+                    .build();
+        });
+
+        SQSBatchResponse response = function.handleRequest(event(3), mockContext);
+
+        assertEquals(List.of("msg-1"), messageIds(response));
+        verify(mockDynamoDbClient, times(5)).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    void batchWriteErrorFailsWholeChunk() {
+        when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenThrow(DynamoDbException.builder().message("ProvisionedThroughputExceeded").build());
+
+        SQSBatchResponse response = function.handleRequest(event(3), mockContext);
+
+        assertEquals(List.of("msg-0", "msg-1", "msg-2"), messageIds(response));
+    }
+
+    @Test
+    void malformedMessageIsReportedWithoutBlockingTheOthers() {
+        when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(BatchWriteItemResponse.builder().build());
+        SQSEvent event = event(2);
+        event.getRecords().add(message("msg-bad", "não é json"));
+
+        SQSBatchResponse response = function.handleRequest(event, mockContext);
+
+        assertEquals(List.of("msg-bad"), messageIds(response));
+        verify(mockDynamoDbClient).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    void duplicateDeliveriesAreWrittenOnce() {
+        when(mockDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(BatchWriteItemResponse.builder().build());
+        SQSEvent event = event(2);
+        event.getRecords().add(message("msg-dup", ItemJson.write(item("fb-0"))));
+
+        SQSBatchResponse response = function.handleRequest(event, mockContext);
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(mockDynamoDbClient).batchWriteItem(captor.capture());
+        assertEquals(2, captor.getValue().requestItems().get("FeedbacksTable").size());
+    }
+
+    /**
+     * Cliente real do SDK contra um stand-in local do DynamoDB (BatchWriteItem que devolve metade do lote
+     * como UnprocessedItems na primeira chamada). O mesmo fluxo roda com DynamoDB Local apontando
+     * DYNAMODB_ENDPOINT para ele e invocando o handler com test-payloads/write-feedbacks.json.
+     */
+    @Test
+    void writesAgainstLocalDynamoDbStandIn() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, JsonNode> table = new ConcurrentHashMap<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            JsonNode request = mapper.readTree(exchange.getRequestBody());
+            ArrayNode writes = (ArrayNode) request.path("RequestItems").path("FeedbacksTable");
+            ObjectNode response = mapper.createObjectNode();
+            ArrayNode unprocessed = response.putObject("UnprocessedItems").putArray("FeedbacksTable");
+            boolean throttle = calls.getAndIncrement() == 0;
+            for (int i = 0; i < writes.size(); i++) {
+                JsonNode item = writes.get(i).path("PutRequest").path("Item");
+                if (throttle && i % 2 == 1) {
+                    unprocessed.add(writes.get(i));
+                } else {
+                    table.put(item.path("feedbackId").path("S").asText(), item);
+                }
+            }
+            byte[] body = mapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().add("Content-Type", "application/x-amz-json-1.0");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try (DynamoDbClient client = DynamoDbClient.builder()
+                .region(Region.US_EAST_1)
+                .endpointOverride(URI.create("http://127.0.0.1:" + server.getAddress().getPort()))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("local", "local")))
+                .httpClientBuilder(UrlConnectionHttpClient.builder())
+                .build()) {
+            inject(function, client);
+
+            SQSBatchResponse response = function.handleRequest(event(10), mockContext);
+
+            assertTrue(response.getBatchItemFailures().isEmpty());
+            assertEquals(2, calls.get());
+            assertEquals(10, table.size());
+            assertEquals("Comentário 3", table.get("fb-3").path("comment").path("S").asText());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void inject(WriteFeedbacksFunction function, DynamoDbClient client) throws Exception {
+        Field field = WriteFeedbacksFunction.class.getDeclaredField("dynamoDbClient");
+        field.setAccessible(true);
+        field.set(function, client);
+    }
+
+    private static SQSEvent event(int size) {
+        List<SQSEvent.SQSMessage> messages = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            messages.add(message("msg-" + i, ItemJson.write(item("fb-" + i))));
+        }
+        SQSEvent event = new SQSEvent();
+        event.setRecords(messages);
+        return event;
+    }
+
+    private static SQSEvent.SQSMessage message(String messageId, String body) {
+        SQSEvent.SQSMessage message = new SQSEvent.SQSMessage();
+        message.setMessageId(messageId);
+        message.setBody(body);
+        return message;
+    }
+
+    private static Map<String, AttributeValue> item(String feedbackId) {
+        return Map.of(
+                "feedbackId", AttributeValue.builder().s(feedbackId).build(),
+                "pk", AttributeValue.builder().s("FEEDBACK").build(),
+                "comment", AttributeValue.builder().s("Comentário " + feedbackId.substring(3)).build(),
+                "rating", AttributeValue.builder().n("4").build());
+    }
+
+    private static List<String> messageIds(SQSBatchResponse response) {
+        return response.getBatchItemFailures().stream()
+                .map(SQSBatchResponse.BatchItemFailure::getItemIdentifier)
+                .sorted()
+                .toList();
+    }
+}